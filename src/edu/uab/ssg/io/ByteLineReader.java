@@ -0,0 +1,313 @@
+package edu.uab.ssg.io;
+
+import java.io.*;
+
+/**
+ * A reader for delimited text files that works on raw bytes.
+ *
+ * <p>Each call to <code>readLine</code> reads the next line into a reused
+ * buffer and records where its fields start and end, without creating any
+ * objects. Fields can then be compared, parsed as integers or turned into
+ * strings one at a time, so a parser can test a few fields of a line and
+ * skip it before paying for full tokenisation. Unix- and Windows-style line
+ * endings are both accepted. Text is decoded as UTF-8.</p>
+ *
+ * @author Jelai Wang
+ */
+public final class ByteLineReader {
+	private static final String CHARSET = "UTF-8";
+
+	private InputStream in;
+	private byte delimiter;
+	private byte[] input = new byte[1 << 16];
+	private int inputPosition = 0, inputLength = 0;
+	private byte[] line = new byte[256];
+	private int length = 0;
+	private int[] starts = new int[16], ends = new int[16];
+	private int numberOfFields = 0;
+
+	/**
+	 * Constructs the reader.
+	 * @param delimiter The field delimiter, typically a tab.
+	 */
+	public ByteLineReader(InputStream in, char delimiter) {
+		if (in == null)
+			throw new NullPointerException("in");
+		if (delimiter > 127)
+			throw new IllegalArgumentException(String.valueOf(delimiter));
+		this.in = in;
+		this.delimiter = (byte) delimiter;
+	}
+
+	/**
+	 * Reads the next line, returning false at the end of the input.
+	 */
+	public boolean readLine() throws IOException {
+		length = 0;
+		boolean eof = true;
+		while (true) {
+			if (inputPosition == inputLength) {
+				inputLength = in.read(input, 0, input.length);
+				inputPosition = 0;
+				if (inputLength <= 0) {
+					inputLength = 0;
+					break;
+				}
+			}
+			eof = false;
+			// Copy up to the next newline in one go.
+			int i = inputPosition;
+			while (i < inputLength && input[i] != '\n') i++;
+			append(input, inputPosition, i - inputPosition);
+			if (i < inputLength) {
+				inputPosition = i + 1;
+				break;
+			}
+			inputPosition = inputLength;
+		}
+		if (eof)
+			return false;
+		if (length > 0 && line[length - 1] == '\r') length--;
+		split();
+		return true;
+	}
+
+	private void append(byte[] bytes, int offset, int count) {
+		if (length + count > line.length) {
+			byte[] tmp = new byte[Math.max(line.length * 2, length + count)];
+			System.arraycopy(line, 0, tmp, 0, length);
+			line = tmp;
+		}
+		System.arraycopy(bytes, offset, line, length, count);
+		length += count;
+	}
+
+	private void split() {
+		numberOfFields = 0;
+		int start = 0;
+		for (int i = 0; i <= length; i++) {
+			if (i == length || line[i] == delimiter) {
+				if (numberOfFields == starts.length) {
+					int[] tmp = new int[starts.length * 2];
+					System.arraycopy(starts, 0, tmp, 0, numberOfFields);
+					starts = tmp;
+					tmp = new int[ends.length * 2];
+					System.arraycopy(ends, 0, tmp, 0, numberOfFields);
+					ends = tmp;
+				}
+				starts[numberOfFields] = start;
+				ends[numberOfFields] = i;
+				numberOfFields++;
+				start = i + 1;
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of fields in the current line. An empty line has one empty field.
+	 */
+	public int getNumberOfFields() { return numberOfFields; }
+
+	/**
+	 * Returns true if the current line starts with the given character.
+	 */
+	public boolean startsWith(char c) {
+		return length > 0 && line[0] == (byte) c;
+	}
+
+	/**
+	 * Returns true if the given field of the current line equals the given value.
+	 * @param value The value, as returned by <code>getBytes</code>.
+	 */
+	public boolean fieldEquals(int field, byte[] value) {
+		checkField(field);
+		int start = starts[field];
+		if (ends[field] - start != value.length)
+			return false;
+		for (int i = 0; i < value.length; i++) {
+			if (line[start + i] != value[i])
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the length, in bytes, of the given field of the current line.
+	 */
+	public int getFieldLength(int field) {
+		checkField(field);
+		return ends[field] - starts[field];
+	}
+
+	/**
+	 * Returns a byte of the given field of the current line.
+	 */
+	public byte getFieldByte(int field, int index) {
+		checkField(field);
+		if (index < 0 || index >= ends[field] - starts[field])
+			throw new IndexOutOfBoundsException(String.valueOf(index));
+		return line[starts[field] + index];
+	}
+
+	/**
+	 * Returns a hash code of the bytes of the given field of the current line,
+	 * equal to <code>hashCode(getBytes(value))</code> when the field equals
+	 * the value.
+	 */
+	public int hashField(int field) {
+		checkField(field);
+		return hashCode(line, starts[field], ends[field]);
+	}
+
+	/**
+	 * Returns a hash code of the given bytes, consistent with <code>hashField</code>.
+	 */
+	public static int hashCode(byte[] bytes) {
+		return hashCode(bytes, 0, bytes.length);
+	}
+
+	private static int hashCode(byte[] bytes, int start, int end) {
+		int hash = 1;
+		for (int i = start; i < end; i++) {
+			hash = 31 * hash + bytes[i];
+		}
+		return hash;
+	}
+
+	/**
+	 * Returns the given field of the current line parsed as a decimal integer.
+	 */
+	public int getIntField(int field) {
+		checkField(field);
+		int start = starts[field], end = ends[field];
+		if (start == end)
+			throw new NumberFormatException(getField(field));
+		boolean negative = line[start] == '-';
+		int i = negative ? start + 1 : start;
+		if (i == end)
+			throw new NumberFormatException(getField(field));
+		long value = 0;
+		for (; i < end; i++) {
+			int digit = line[i] - '0';
+			if (digit < 0 || digit > 9)
+				throw new NumberFormatException(getField(field));
+			value = value * 10 + digit;
+			if (value > 2147483648L)
+				throw new NumberFormatException(getField(field));
+		}
+		value = negative ? -value : value;
+		if (value > Integer.MAX_VALUE)
+			throw new NumberFormatException(getField(field));
+		return (int) value;
+	}
+
+	/**
+	 * Returns the given field of the current line as a string.
+	 */
+	public String getField(int field) {
+		checkField(field);
+		return decode(starts[field], ends[field] - starts[field]);
+	}
+
+	/**
+	 * Returns the current line, without its line ending, as a string.
+	 */
+	public String getLine() {
+		return decode(0, length);
+	}
+
+	private String decode(int offset, int count) {
+		try {
+			return new String(line, offset, count, CHARSET);
+		}
+		catch (UnsupportedEncodingException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private void checkField(int field) {
+		if (field < 0 || field >= numberOfFields)
+			throw new IndexOutOfBoundsException(String.valueOf(field));
+	}
+
+	/**
+	 * Closes the underlying input stream.
+	 */
+	public void close() throws IOException {
+		in.close();
+	}
+
+	/**
+	 * Returns the bytes of the given value, for comparison with <code>fieldEquals</code>.
+	 */
+	public static byte[] getBytes(String value) {
+		if (value == null)
+			throw new NullPointerException("value");
+		try {
+			return value.getBytes(CHARSET);
+		}
+		catch (UnsupportedEncodingException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * A filter applied to the raw fields of a line before it is parsed.
+	 */
+	public interface LineFilter {
+		/**
+		 * Returns true if the current line of the given reader should be parsed.
+		 */
+		boolean acceptLine(ByteLineReader reader);
+	}
+
+	/**
+	 * A filter that accepts every line.
+	 */
+	public static final LineFilter ACCEPT_ALL = new LineFilter() {
+		public boolean acceptLine(ByteLineReader reader) {
+			return true;
+		}
+	};
+
+	/**
+	 * Returns a filter that accepts lines whose given field equals one of the given values.
+	 * Lines without the field are rejected.
+	 */
+	public static LineFilter createFieldFilter(final int field, String... values) {
+		if (field < 0)
+			throw new IllegalArgumentException(String.valueOf(field));
+		if (values.length == 0)
+			throw new IllegalArgumentException("values");
+		final byte[][] bytes = new byte[values.length][];
+		for (int i = 0; i < values.length; i++) {
+			bytes[i] = getBytes(values[i]);
+		}
+		return new LineFilter() {
+			public boolean acceptLine(ByteLineReader reader) {
+				if (field >= reader.getNumberOfFields())
+					return false;
+				for (int i = 0; i < bytes.length; i++) {
+					if (reader.fieldEquals(field, bytes[i]))
+						return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * Returns a filter that accepts lines accepted by both of the given filters.
+	 */
+	public static LineFilter and(final LineFilter filter1, final LineFilter filter2) {
+		if (filter1 == null)
+			throw new NullPointerException("filter1");
+		if (filter2 == null)
+			throw new NullPointerException("filter2");
+		return new LineFilter() {
+			public boolean acceptLine(ByteLineReader reader) {
+				return filter1.acceptLine(reader) && filter2.acceptLine(reader);
+			}
+		};
+	}
+}
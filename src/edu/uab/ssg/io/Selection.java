@@ -0,0 +1,242 @@
+package edu.uab.ssg.io;
+
+import java.util.*;
+
+/**
+ * A selection of samples and markers for parsers of wide files, with one
+ * column per sample and one row per marker, to read only part of the file.
+ *
+ * <p>A sample is selected by name. A marker is selected by name or by
+ * falling in one of a set of chromosome regions; with neither names nor
+ * regions given, every marker is selected. A parser asks about a row as
+ * soon as it has read the marker fields at the start of the line, and
+ * skips the rest of the row if the marker is not selected. For a selected
+ * row it asks a <code>Columns</code>, set up once from the header, for the
+ * fields of the selected samples only; the other fields are stepped over
+ * without being copied out of the line.</p>
+ *
+ * <p>Selections are immutable and may be shared between threads.</p>
+ *
+ * @author Jelai Wang
+ */
+public final class Selection {
+	/**
+	 * Selects every sample and every marker.
+	 */
+	public static final Selection ALL = new Selection(null, null);
+
+	private Set<String> sampleNames, markerNames;
+	private List<Region> regions;
+
+	/**
+	 * Constructs a selection.
+	 * @param sampleNames The names of the selected samples, or null to select every sample.
+	 * @param markerNames The names of the selected markers, or null to select markers only by region, or every marker if there are no regions.
+	 */
+	public Selection(Set<String> sampleNames, Set<String> markerNames) {
+		this(sampleNames == null ? null : new HashSet<String>(sampleNames), markerNames == null ? null : new HashSet<String>(markerNames), Collections.<Region>emptyList());
+	}
+
+	private Selection(Set<String> sampleNames, Set<String> markerNames, List<Region> regions) {
+		this.sampleNames = sampleNames;
+		this.markerNames = markerNames;
+		this.regions = regions;
+	}
+
+	/**
+	 * Returns a selection that also selects the markers in the given region.
+	 * A marker whose chromosome is not known to the parser is matched on position alone.
+	 * @param start The first position of the region.
+	 * @param end The last position of the region.
+	 */
+	public Selection withRegion(String chromosome, int start, int end) {
+		if (chromosome == null)
+			throw new NullPointerException("chromosome");
+		if (end < start)
+			throw new IllegalArgumentException(start + " " + end);
+		List<Region> list = new ArrayList<Region>(regions);
+		list.add(new Region(chromosome, start, end));
+		return new Selection(sampleNames, markerNames, Collections.unmodifiableList(list));
+	}
+
+	/**
+	 * Returns true if every sample is selected.
+	 */
+	public boolean selectsAllSamples() { return sampleNames == null; }
+
+	/**
+	 * Returns true if every marker is selected.
+	 */
+	public boolean selectsAllMarkers() { return markerNames == null && regions.isEmpty(); }
+
+	/**
+	 * Returns true if the given sample is selected.
+	 */
+	public boolean isSampleSelected(String sampleName) {
+		if (sampleName == null)
+			throw new NullPointerException("sampleName");
+		return sampleNames == null || sampleNames.contains(sampleName);
+	}
+
+	/**
+	 * Returns true if the given marker is selected.
+	 * @param chromosome The chromosome, or null if it is not known.
+	 */
+	public boolean isMarkerSelected(String markerName, String chromosome, int position) {
+		if (markerName == null)
+			throw new NullPointerException("markerName");
+		if (selectsAllMarkers())
+			return true;
+		if (markerNames != null && markerNames.contains(markerName))
+			return true;
+		for (int i = 0, n = regions.size(); i < n; i++) {
+			Region region = regions.get(i);
+			if ((chromosome == null || region.chromosome.equals(chromosome)) && position >= region.start && position <= region.end)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Sets up the columns of a file for reading the fields of the selected samples.
+	 * @param columnSampleNames The sample name of each sample column, in order; a sample may have several columns.
+	 * @param numberOfLeadingFields The number of marker fields before the first sample column.
+	 * @param delimiter The field delimiter.
+	 * @param collapseDelimiters True if a run of delimiters separates two fields and delimiters at the start and end of a line are ignored, as by a <code>StringTokenizer</code>; false if every delimiter separates two fields, as by <code>String.split(delimiter, -1)</code>.
+	 */
+	public Columns selectColumns(List<String> columnSampleNames, int numberOfLeadingFields, char delimiter, boolean collapseDelimiters) {
+		if (columnSampleNames == null)
+			throw new NullPointerException("columnSampleNames");
+		if (numberOfLeadingFields < 0)
+			throw new IllegalArgumentException(String.valueOf(numberOfLeadingFields));
+		boolean[] selected = new boolean[columnSampleNames.size()];
+		int count = 0;
+		for (int i = 0; i < selected.length; i++) {
+			selected[i] = isSampleSelected(columnSampleNames.get(i));
+			if (selected[i]) count++;
+		}
+		return new Columns(selected, count, numberOfLeadingFields, delimiter, collapseDelimiters);
+	}
+
+	private static final class Region {
+		private String chromosome;
+		private int start, end;
+
+		private Region(String chromosome, int start, int end) {
+			this.chromosome = chromosome;
+			this.start = start;
+			this.end = end;
+		}
+	}
+
+	/**
+	 * The selected columns of a file, for splitting its rows. Immutable.
+	 */
+	public static final class Columns {
+		private boolean[] selected;
+		private int[] indexes;
+		private int numberOfLeadingFields;
+		private char delimiter;
+		private boolean collapseDelimiters;
+
+		private Columns(boolean[] selected, int numberOfSelectedColumns, int numberOfLeadingFields, char delimiter, boolean collapseDelimiters) {
+			this.selected = selected;
+			this.indexes = new int[numberOfSelectedColumns];
+			for (int i = 0, k = 0; i < selected.length; i++) {
+				if (selected[i]) indexes[k++] = i;
+			}
+			this.numberOfLeadingFields = numberOfLeadingFields;
+			this.delimiter = delimiter;
+			this.collapseDelimiters = collapseDelimiters;
+		}
+
+		/**
+		 * Returns the number of sample columns in the file.
+		 */
+		public int getNumberOfColumns() { return selected.length; }
+
+		/**
+		 * Returns the number of selected sample columns.
+		 */
+		public int getNumberOfSelectedColumns() { return indexes.length; }
+
+		/**
+		 * Returns the index, among the sample columns of the file, of the given selected column.
+		 */
+		public int getColumnIndex(int selectedColumn) { return indexes[selectedColumn]; }
+
+		/**
+		 * Returns the elements of the given list, one per sample column, at the selected columns.
+		 */
+		public <T> List<T> select(List<T> list) {
+			if (list == null)
+				throw new NullPointerException("list");
+			if (list.size() != selected.length)
+				throw new IllegalArgumentException(String.valueOf(list.size()));
+			List<T> result = new ArrayList<T>(indexes.length);
+			for (int i = 0; i < indexes.length; i++) {
+				result.add(list.get(indexes[i]));
+			}
+			return result;
+		}
+
+		/**
+		 * Returns an array for the fields of a row: the leading fields followed by the selected columns.
+		 */
+		public String[] createFields() { return new String[numberOfLeadingFields + indexes.length]; }
+
+		/**
+		 * Reads the leading fields of a row into the start of the array,
+		 * returning the position in the line from which to read the rest.
+		 * @throws IllegalArgumentException If the row has too few fields.
+		 */
+		public int readLeadingFields(String line, String[] fields) {
+			int position = collapseDelimiters ? skipDelimiters(line, 0) : 0;
+			for (int i = 0; i < numberOfLeadingFields; i++) {
+				if (position < 0 || position > line.length() || (collapseDelimiters && position == line.length()))
+					throw new IllegalArgumentException(line);
+				int end = findEnd(line, position);
+				fields[i] = line.substring(position, end);
+				position = next(line, end);
+			}
+			return position;
+		}
+
+		/**
+		 * Reads the selected columns of a row, from the position returned
+		 * by <code>readLeadingFields</code>, into the array after the
+		 * leading fields.
+		 * @throws IllegalArgumentException If the row does not have one field per sample column.
+		 */
+		public void readSelectedFields(String line, int position, String[] fields) {
+			int k = numberOfLeadingFields;
+			for (int i = 0; i < selected.length; i++) {
+				if (position < 0 || position > line.length() || (collapseDelimiters && position == line.length()))
+					throw new IllegalArgumentException(line);
+				int end = findEnd(line, position);
+				if (selected[i])
+					fields[k++] = line.substring(position, end);
+				position = next(line, end);
+			}
+			if (position >= 0 && !(collapseDelimiters && position == line.length())) // Fields left over.
+				throw new IllegalArgumentException(line);
+		}
+
+		private int findEnd(String line, int position) {
+			int end = line.indexOf(delimiter, position);
+			return end < 0 ? line.length() : end;
+		}
+
+		// Returns the start of the field after the delimiter at the given position, or -1 at the end of the line.
+		private int next(String line, int end) {
+			if (end == line.length())
+				return -1;
+			return collapseDelimiters ? skipDelimiters(line, end) : end + 1;
+		}
+
+		private int skipDelimiters(String line, int position) {
+			while (position < line.length() && line.charAt(position) == delimiter) position++;
+			return position;
+		}
+	}
+}
@@ -1,5 +1,7 @@
 package edu.uab.ssg.io.decode;
 
+import edu.uab.ssg.io.Selection;
+import edu.uab.ssg.model.snp.*;
 import java.util.*;
 import java.io.*;
 
@@ -20,9 +22,50 @@ import java.io.*;
  *
  * The field delimiter is the tab character.
  *
+ * <p>The sample names of the header are indexed once per file, and every
+ * record shares that index. A record stores each genotype as a one-byte
+ * code, <code>AA</code>, <code>AB</code>, <code>BB</code> or
+ * <code>NC</code>, so its size grows with the number of samples alone and
+ * its genotypes can be read by sample index without a lookup by name.
+ * Rows can also be read straight into a <code>PackedGenotypeMatrix</code>
+ * with <code>parseMatrix</code>.</p>
+ *
+ * <p>A record has one sample per genotype column, so a sample name that
+ * appears in more than one column of the header is listed once per column
+ * by <code>getSampleNames</code>, and looking it up by name finds its
+ * first column. Records used to keep one genotype per distinct name, that
+ * of the last column.</p>
+ *
  * @author Jelai Wang
  */
 public final class GTypeFileParser {
+	/**
+	 * The code of an AA genotype, the same as <code>PackedGenotypeMatrix.HOMOZYGOUS_1</code>.
+	 */
+	public static final int AA = PackedGenotypeMatrix.HOMOZYGOUS_1;
+
+	/**
+	 * The code of an AB genotype, the same as <code>PackedGenotypeMatrix.HETEROZYGOUS</code>.
+	 */
+	public static final int AB = PackedGenotypeMatrix.HETEROZYGOUS;
+
+	/**
+	 * The code of a BB genotype, the same as <code>PackedGenotypeMatrix.HOMOZYGOUS_2</code>.
+	 */
+	public static final int BB = PackedGenotypeMatrix.HOMOZYGOUS_2;
+
+	/**
+	 * The code of an NC (no call) genotype, the same as <code>PackedGenotypeMatrix.MISSING</code>.
+	 */
+	public static final int NC = PackedGenotypeMatrix.MISSING;
+
+	/**
+	 * The code of any other genotype, which is kept as given.
+	 */
+	public static final int OTHER = 4;
+
+	private static final String[] GENOTYPES = { "AA", "AB", "BB", "NC" };
+
 	/**
 	 * Constructs the parser.
 	 */
@@ -37,8 +80,42 @@ public final class GTypeFileParser {
 	 * is passed to the user-supplied record listener.
 	 */
 	public void parse(InputStream in, RecordListener listener) throws IOException {
+		parse(in, Selection.ALL, listener);
+	}
+
+	/**
+	 * Parses the input stream for the SNP records of the selected SNPs,
+	 * with the genotypes of the selected samples only. Samples are selected
+	 * by their names in the header, and SNPs by name, chromosome and
+	 * position. The genotypes of a SNP that is not selected are not read.
+	 * @param in The input stream, typically a file input stream, of the
+	 * SNP file to be parsed.
+	 * @param listener As the input stream is parsed, each SNP record
+	 * is passed to the user-supplied record listener.
+	 */
+	public void parse(InputStream in, Selection selection, RecordListener listener) throws IOException {
+		parse(in, selection, listener, false);
+	}
+
+	/**
+	 * Parses the input stream as for <code>parse</code>, also appending the
+	 * genotypes of each parsed record to a genotype matrix of the selected
+	 * samples, with allele A as the first allele and allele B as the second.
+	 * Genotypes other than AA, AB and BB are taken as missing.
+	 * @param listener As the input stream is parsed, each SNP record is
+	 * passed to the user-supplied record listener once it is in the matrix.
+	 * @return The matrix, with one marker per parsed record, in order.
+	 */
+	public PackedGenotypeMatrix parseMatrix(InputStream in, Selection selection, RecordListener listener) throws IOException {
+		return parse(in, selection, listener, true);
+	}
+
+	// Returns the matrix of the parsed records if asked for, and otherwise null.
+	private PackedGenotypeMatrix parse(InputStream in, Selection selection, RecordListener listener, boolean toMatrix) throws IOException {
 		if (in == null)
 			throw new NullPointerException("in");
+		if (selection == null)
+			throw new NullPointerException("selection");
 		if (listener == null)
 			throw new NullPointerException("listener");
 		BufferedReader reader = new BufferedReader(new InputStreamReader(in));
@@ -51,20 +128,32 @@ public final class GTypeFileParser {
 		if (!"Position".equals(header[2]))
 			throw new IllegalArgumentException(header[2]);
 
-		List<String> sampleNames = Collections.unmodifiableList(Arrays.asList(header).subList(3, header.length));
+		List<String> allSampleNames = Arrays.asList(header).subList(3, header.length);
+		Selection.Columns columns = selection.selectColumns(allSampleNames, 3, '\t', true);
+		SampleIndex samples = new SampleIndex(columns.select(allSampleNames));
+		PackedGenotypeMatrix matrix = toMatrix ? new PackedGenotypeMatrix(samples.names) : null;
+		long[] words = toMatrix ? new long[(samples.names.size() + PackedGenotypeMatrix.CALLS_PER_WORD - 1) / PackedGenotypeMatrix.CALLS_PER_WORD] : null;
 
+		String[] fields = columns.createFields();
 		String line = null;
 		while ((line = reader.readLine()) != null) {
-			SNPRecord record = null;
+			ParsedSNPRecord record = null;
 			try {
-				record = new ParsedSNPRecord(line, sampleNames);
+				int position = columns.readLeadingFields(line, fields);
+				if (!selection.selectsAllMarkers() && !selection.isMarkerSelected(fields[0], fields[1], Integer.parseInt(fields[2])))
+					continue;
+				columns.readSelectedFields(line, position, fields);
+				record = new ParsedSNPRecord(line, fields, samples);
 			}
 			catch (RuntimeException e) {
 				listener.handleBadRecordFormat(line);
 				continue;
 			}
+			if (toMatrix)
+				matrix.add(new DefaultSNP(record.name, record.chr, record.position), null, "A", "B", record.pack(words));
 			listener.handleParsedRecord(record);
 		}
+		return matrix;
 	}
 
 	/**
@@ -104,7 +193,7 @@ public final class GTypeFileParser {
 		int getPosition();
 
 		/**
-		 * Returns the samples for which this record contains genotypes.
+		 * Returns the samples for which this record contains genotypes, one per genotype column, duplicates included.
 		 */
 		List<String> getSampleNames();
 
@@ -114,50 +203,136 @@ public final class GTypeFileParser {
 		boolean existsGenotype(String sampleName);
 
 		/**
-		 * Returns the genotype at this SNP for the given sample.
+		 * Returns the genotype at this SNP for the given sample, from its first column if the name appears more than once.
 		 */
 		String getGenotype(String sampleName);
+
+		/**
+		 * Returns the number of samples for which this record contains genotypes.
+		 */
+		int getNumberOfSamples();
+
+		/**
+		 * Returns the index of the given sample in <code>getSampleNames</code>, or -1 if there is none.
+		 */
+		int indexOf(String sampleName);
+
+		/**
+		 * Returns the genotype at this SNP for the sample with the given index.
+		 */
+		String getGenotype(int sampleIndex);
+
+		/**
+		 * Returns the code of the genotype at this SNP for the sample with the given index, for example <code>AB</code>.
+		 */
+		int getGenotypeCode(int sampleIndex);
+	}
+
+	// The sample names of a file, shared by its records.
+	private static final class SampleIndex {
+		private List<String> names;
+		private Map<String, Integer> indexes = new HashMap<String, Integer>();
+
+		private SampleIndex(List<String> names) {
+			this.names = Collections.unmodifiableList(new ArrayList<String>(names));
+			for (int i = names.size() - 1; i >= 0; i--) { // The first of duplicate names wins.
+				indexes.put(names.get(i), Integer.valueOf(i));
+			}
+		}
+
+		private int indexOf(String name) {
+			Integer index = indexes.get(name);
+			return index != null ? index.intValue() : -1;
+		}
 	}
 
-	private class ParsedSNPRecord implements SNPRecord {
+	private static final class ParsedSNPRecord implements SNPRecord {
 		private String line;
 		private String name, chr;
 		private int position;
-		private Map<String, String> sampleNameToGenotype;
+		private SampleIndex samples;
+		private byte[] codes;
+		private String[] others; // Genotypes coded as OTHER, or null if there are none.
 
-		private ParsedSNPRecord(String line, List<String> sampleNames) {
+		private ParsedSNPRecord(String line, String[] tokens, SampleIndex samples) {
 			if (line == null)
 				throw new NullPointerException("line");
 			this.line = line;
-			this.sampleNameToGenotype = new LinkedHashMap<String, String>();
+			this.samples = samples;
 
-			StringTokenizer tokenizer = new StringTokenizer(line, "\t");
-			if (tokenizer.countTokens() != sampleNames.size() + 3)
+			int n = samples.names.size();
+			if (tokens.length != n + 3)
 				throw new IllegalArgumentException(line);
-			this.name = tokenizer.nextToken();
-			this.chr = tokenizer.nextToken();
-			this.position = Integer.parseInt(tokenizer.nextToken());
-
-			int index = 0;
-			while (tokenizer.hasMoreTokens()) {
-				String genotype = tokenizer.nextToken();
-				String sampleName = sampleNames.get(index++);
-				sampleNameToGenotype.put(sampleName, genotype);
+			this.name = tokens[0];
+			this.chr = tokens[1];
+			this.position = Integer.parseInt(tokens[2]);
+
+			this.codes = new byte[n];
+			for (int i = 0; i < n; i++) {
+				String genotype = tokens[i + 3];
+				int code = encode(genotype);
+				if (code == OTHER) {
+					if (others == null) others = new String[n];
+					others[i] = genotype;
+				}
+				codes[i] = (byte) code;
+			}
+		}
+
+		private static int encode(String genotype) {
+			if (genotype.length() != 2)
+				return OTHER;
+			char ch1 = genotype.charAt(0), ch2 = genotype.charAt(1);
+			if (ch1 == 'A')
+				return ch2 == 'A' ? AA : (ch2 == 'B' ? AB : OTHER);
+			if (ch1 == 'B')
+				return ch2 == 'B' ? BB : OTHER;
+			if (ch1 == 'N')
+				return ch2 == 'C' ? NC : OTHER;
+			return OTHER;
+		}
+
+		// Packs the genotype codes as by PackedGenotypeMatrix.getWord, taking OTHER as missing.
+		private long[] pack(long[] words) {
+			Arrays.fill(words, 0L);
+			for (int i = 0; i < codes.length; i++) {
+				long code = codes[i] == OTHER ? NC : codes[i];
+				words[i / PackedGenotypeMatrix.CALLS_PER_WORD] |= code << ((i % PackedGenotypeMatrix.CALLS_PER_WORD) << 1);
 			}
+			return words;
 		}
 
 		public String getName() { return name; }
 		public String getChr() { return chr; }
 		public int getPosition() { return position; }
-		public List<String> getSampleNames() { return Collections.unmodifiableList(new ArrayList<String>(sampleNameToGenotype.keySet())); }
-		public boolean existsGenotype(String sampleName) { return sampleNameToGenotype.containsKey(sampleName); }
+		public List<String> getSampleNames() { return samples.names; }
+		public boolean existsGenotype(String sampleName) { return samples.indexOf(sampleName) >= 0; }
+		public int getNumberOfSamples() { return codes.length; }
+
+		public int indexOf(String sampleName) {
+			if (sampleName == null)
+				throw new NullPointerException("sampleName");
+			return samples.indexOf(sampleName);
+		}
 
 		public String getGenotype(String sampleName) {
 			if (sampleName == null)
 				throw new NullPointerException("sampleName");
-			if (!sampleNameToGenotype.containsKey(sampleName))
+			int index = samples.indexOf(sampleName);
+			if (index < 0)
 				throw new IllegalArgumentException(sampleName);
-			return sampleNameToGenotype.get(sampleName);
+			return getGenotype(index);
+		}
+
+		public String getGenotype(int sampleIndex) {
+			int code = getGenotypeCode(sampleIndex);
+			return code == OTHER ? others[sampleIndex] : GENOTYPES[code];
+		}
+
+		public int getGenotypeCode(int sampleIndex) {
+			if (sampleIndex < 0 || sampleIndex >= codes.length)
+				throw new IndexOutOfBoundsException(String.valueOf(sampleIndex));
+			return codes[sampleIndex];
 		}
 
 		public String toString() { return line; }
@@ -0,0 +1,184 @@
+package edu.uab.ssg.io.eigenstrat;
+
+import java.util.*;
+import java.io.*;
+
+/**
+ * A parser for EIGENSTRAT genotype files, in either the ASCII .geno format
+ * (see <code>GENOWriter</code>) or the binary PACKEDANCESTRYMAP format (see
+ * <code>PackedGENOWriter</code>). The format is recognised from the start of
+ * the file. Each SNP is passed to the listener as a record of values, the
+ * number of copies of the reference allele, or <code>MISSING_VALUE</code>.
+ *
+ * @author Jelai Wang
+ */
+public final class GENOParser {
+	/**
+	 * The value of a missing genotype.
+	 */
+	public static final int MISSING_VALUE = GenotypeCoder.MISSING;
+
+	private static final String PACKED_MAGIC = "GENO";
+	private static final int PACKED_MISSING_VALUE = 3;
+
+	private List<String> sampleIDs, snpIDs;
+
+	/**
+	 * Constructs the parser.
+	 */
+	public GENOParser() {
+	}
+
+	/**
+	 * Sets the sample and SNP IDs, from the .ind and .snp files, that the
+	 * header hashes of a packed file are checked against.
+	 */
+	public void setExpectedIDs(List<String> sampleIDs, List<String> snpIDs) {
+		if (sampleIDs == null)
+			throw new NullPointerException("sampleIDs");
+		if (snpIDs == null)
+			throw new NullPointerException("snpIDs");
+		this.sampleIDs = new ArrayList<String>(sampleIDs);
+		this.snpIDs = new ArrayList<String>(snpIDs);
+	}
+
+	/**
+	 * Parses the input stream for genotype records.
+	 */
+	public void parse(InputStream in, RecordListener listener) throws IOException {
+		if (in == null)
+			throw new NullPointerException("in");
+		if (listener == null)
+			throw new NullPointerException("listener");
+		BufferedInputStream input = new BufferedInputStream(in, 1 << 16);
+		input.mark(PACKED_MAGIC.length());
+		byte[] magic = new byte[PACKED_MAGIC.length()];
+		int length = 0, n = 0;
+		while (length < magic.length && (n = input.read(magic, length, magic.length - length)) > 0) {
+			length += n;
+		}
+		input.reset();
+		if (length == magic.length && PACKED_MAGIC.equals(new String(magic, "US-ASCII")))
+			parsePacked(input, listener);
+		else
+			parseASCII(input, listener);
+	}
+
+	private void parseASCII(InputStream in, RecordListener listener) throws IOException {
+		BufferedReader reader = new BufferedReader(new InputStreamReader(in, "US-ASCII"));
+		String line = null;
+		int numberOfSamples = -1;
+		while ((line = reader.readLine()) != null) {
+			byte[] values = new byte[line.length()];
+			boolean ok = numberOfSamples == -1 || line.length() == numberOfSamples;
+			for (int i = 0; i < values.length && ok; i++) {
+				int value = line.charAt(i) - '0';
+				if (value != 0 && value != 1 && value != 2 && value != MISSING_VALUE) ok = false;
+				values[i] = (byte) value;
+			}
+			if (!ok || values.length == 0) {
+				listener.handleBadRecordFormat(line);
+				continue;
+			}
+			numberOfSamples = values.length;
+			listener.handleParsedRecord(new DefaultRecord(values));
+		}
+		reader.close();
+	}
+
+	private void parsePacked(InputStream in, RecordListener listener) throws IOException {
+		DataInputStream input = new DataInputStream(in);
+		byte[] header = new byte[PackedGENOWriter.getRecordLength(0)];
+		input.readFully(header);
+		int end = 0;
+		while (end < header.length && header[end] != 0) end++;
+		String[] tokens = new String(header, 0, end, "US-ASCII").trim().split("\\s+");
+		if (tokens.length != 5 || !PACKED_MAGIC.equals(tokens[0]))
+			throw new IOException(new String(header, 0, end, "US-ASCII"));
+		int numberOfSamples = Integer.parseInt(tokens[1]);
+		int numberOfSNPs = Integer.parseInt(tokens[2]);
+		if (sampleIDs != null) {
+			checkHash(tokens[3], sampleIDs, numberOfSamples);
+			checkHash(tokens[4], snpIDs, numberOfSNPs);
+		}
+		int recordLength = PackedGENOWriter.getRecordLength(numberOfSamples);
+		input.readFully(new byte[recordLength - header.length]); // The rest of the header record.
+		byte[] record = new byte[recordLength];
+		for (int i = 0; i < numberOfSNPs; i++) {
+			try {
+				input.readFully(record);
+			}
+			catch (EOFException e) {
+				throw new IOException("Expected " + numberOfSNPs + " SNPs but found " + i + ".");
+			}
+			byte[] values = new byte[numberOfSamples];
+			for (int j = 0; j < numberOfSamples; j++) {
+				int value = (record[j >> 2] >> ((3 - (j & 3)) << 1)) & 3;
+				values[j] = (byte) (value == PACKED_MISSING_VALUE ? MISSING_VALUE : value);
+			}
+			listener.handleParsedRecord(new DefaultRecord(values));
+		}
+		input.close();
+	}
+
+	private static void checkHash(String hex, List<String> ids, int count) throws IOException {
+		if (ids.size() != count)
+			throw new IOException(ids.size() + " " + count);
+		int hash = PackedGENOWriter.hash(ids);
+		if (hash != (int) Long.parseLong(hex, 16))
+			throw new IOException("Hash mismatch: " + hex + " " + Integer.toHexString(hash));
+	}
+
+	/**
+	 * A listener for handling parsed records and problems due to bad record formatting.
+	 */
+	public interface RecordListener {
+		/**
+		 * Handles the record of the next SNP.
+		 */
+		void handleParsedRecord(Record record);
+
+		/**
+		 * Handles input that could not be parsed due to a formatting problem.
+		 * Only lines of the ASCII format are passed here; a bad packed file
+		 * causes an IOException instead.
+		 * @param line The line of text that could not be parsed.
+		 */
+		void handleBadRecordFormat(String line);
+	}
+
+	/**
+	 * The genotypes of a SNP.
+	 */
+	public interface Record {
+		/**
+		 * Returns the number of samples.
+		 */
+		int getNumberOfSamples();
+
+		/**
+		 * Returns the number of copies of the reference allele for the sample at the given index, or <code>MISSING_VALUE</code>.
+		 */
+		int getValue(int sampleIndex);
+	}
+
+	private static final class DefaultRecord implements Record {
+		private byte[] values;
+
+		private DefaultRecord(byte[] values) {
+			this.values = values;
+		}
+
+		public int getNumberOfSamples() { return values.length; }
+		public int getValue(int sampleIndex) { return values[sampleIndex]; }
+
+		// The record as a line of the ASCII format.
+		public String toString() {
+			StringBuilder builder = new StringBuilder(values.length);
+			for (int i = 0; i < values.length; i++) {
+				builder.append(values[i]);
+			}
+			return builder.toString();
+		}
+	}
+}
@@ -3,39 +3,53 @@ package edu.uab.ssg.io.eigenstrat;
 import edu.uab.ssg.model.snp.*;
 import java.util.*;
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
 
 /**
+ * A writer for the EIGENSTRAT genotype file format, one line per SNP and one
+ * character per sample: the number of copies of the reference allele, or 9
+ * for missing data. See <code>PackedGENOWriter</code> for the binary
+ * PACKEDANCESTRYMAP form, and <code>SNPWriter</code> for the reference
+ * alleles.
+ *
+ * <p>Besides writing one SNP at a time, the writer accepts a block of SNPs
+ * as a <code>PackedGenotypeMatrix</code> with a table of reference alleles,
+ * for example from a legend or BIM file. Each byte of packed calls is then
+ * turned into its four digits with a single table lookup, straight into a
+ * direct buffer that is written to the output channel.</p>
+ *
  * @author Jelai Wang
  */
 public final class GENOWriter {
-	private static final char MISSING_VALUE = '9';
-	private static final char EOL = '\n';
-	private BufferedWriter writer;
-	
+	private static final byte EOL = '\n';
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private WritableByteChannel channel;
+	private ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
 	public GENOWriter(OutputStream out) {
 		if (out == null)
 			throw new NullPointerException("out");
-		this.writer = new BufferedWriter(new OutputStreamWriter(out));
+		this.channel = out instanceof FileOutputStream ? ((FileOutputStream) out).getChannel() : Channels.newChannel(out);
 	}
 
-	// Returns first non-null allele value or null if none is found.
-	private String findReferenceAllele(SNP snp, List<Sample> samples) {
-		for (Iterator<Sample> it = samples.iterator(); it.hasNext(); ) {
-			Sample sample = it.next();
-			if (sample.existsGenotype(snp)) {
-				Sample.Genotype genotype = sample.getGenotype(snp);
-				String a1 = genotype.getAllele1();
-				String a2 = genotype.getAllele2();
-				if (a1 != null) return a1;
-				if (a2 != null) return a2;
-			}
+	public void close() throws IOException {
+		flush();
+		channel.close();
+	}
+
+	private void flush() throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
 		}
-		return null;
+		buffer.clear();
 	}
 
-	public void close() throws IOException {
-		writer.flush();
-		writer.close();
+	private void put(byte b) throws IOException {
+		if (!buffer.hasRemaining()) flush();
+		buffer.put(b);
 	}
 
 	public void write(SNP snp, List<Sample> samples) throws IOException {
@@ -45,39 +59,48 @@ public final class GENOWriter {
 			throw new NullPointerException("samples");
 		if (samples.size() < 1)
 			throw new IllegalArgumentException(String.valueOf(samples.size()));
+		write(GenotypeCoder.getMarkerGenotypes(snp, samples));
+	}
 
-		String referenceAllele = findReferenceAllele(snp, samples);
-		if (referenceAllele == null) { // Data are completely missing.
-			System.err.println("Data are missing for " + snp.getName() + ".");
-			return; 
+	/**
+	 * Writes the genotypes of a SNP. A SNP whose data are completely missing
+	 * is written as a line of missing values, so the lines stay in step with
+	 * the .snp file.
+	 */
+	public void write(MarkerGenotypes genotypes) throws IOException {
+		if (genotypes == null)
+			throw new NullPointerException("genotypes");
+		String referenceAllele = GenotypeCoder.findAlleles(genotypes)[0];
+		for (int i = 0, n = genotypes.getNumberOfSamples(); i < n; i++) {
+			int value = referenceAllele == null ? GenotypeCoder.MISSING : GenotypeCoder.getValue(referenceAllele, genotypes.getAllele1(i), genotypes.getAllele2(i));
+			put((byte) ('0' + value));
 		}
+		put(EOL);
+	}
 
-		StringBuilder builder = new StringBuilder();
-		for (Iterator<Sample> it = samples.iterator(); it.hasNext(); ) {
-			Sample sample = it.next();
-			if (sample.existsGenotype(snp)) {
-				Sample.Genotype genotype = sample.getGenotype(snp);
-				String a1 = genotype.getAllele1();
-				String a2 = genotype.getAllele2();
-
-				if (a1 == null && a2 == null) { // Data are missing.
-					builder.append(MISSING_VALUE);
+	/**
+	 * Writes every SNP of a block, in order.
+	 * @param referenceAlleles The reference allele of each SNP of the block,
+	 * or null to use the first allele of each SNP of the block. A null entry
+	 * also means the first allele.
+	 */
+	public void write(PackedGenotypeMatrix block, String[] referenceAlleles) throws IOException {
+		GenotypeCoder.checkBlock(block, referenceAlleles);
+		int numberOfSamples = block.getNumberOfSamples();
+		int numberOfWords = (numberOfSamples + PackedGenotypeMatrix.CALLS_PER_WORD - 1) / PackedGenotypeMatrix.CALLS_PER_WORD;
+		for (int marker = 0, n = block.getNumberOfMarkers(); marker < n; marker++) {
+			byte[] digits = GenotypeCoder.DIGITS[GenotypeCoder.getOrientation(block, marker, referenceAlleles != null ? referenceAlleles[marker] : null)];
+			int remaining = numberOfSamples;
+			for (int w = 0; w < numberOfWords; w++) {
+				long word = block.getWord(marker, w);
+				for (int k = 0; k < 8 && remaining > 0; k++) {
+					int count = Math.min(4, remaining);
+					if (buffer.remaining() < count) flush();
+					buffer.put(digits, (((int) (word >>> (k << 3))) & 0xff) << 2, count);
+					remaining -= count;
 				}
-				else if (a1 != null && a2 != null) {
-					int count = 0;
-					if (referenceAllele.equals(a1)) count++;
-					if (referenceAllele.equals(a2)) count++;
-					builder.append(count);
-				}
-				else { // Half-missing. What to do?
-					throw new RuntimeException();
-				}
-			}
-			else { // Data are missing.  Likely not assessed for genotype.
-				builder.append(MISSING_VALUE);
 			}
+			put(EOL);
 		}
-		builder.append(EOL);
-		writer.write(builder.toString());
 	}
 }
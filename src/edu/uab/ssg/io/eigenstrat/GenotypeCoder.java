@@ -0,0 +1,113 @@
+package edu.uab.ssg.io.eigenstrat;
+
+import edu.uab.ssg.model.snp.*;
+import java.util.*;
+
+/**
+ * Codes genotype calls as EIGENSTRAT values, the number of copies of the
+ * reference allele. The reference allele of a SNP is the first allele
+ * called for any sample, and the variant allele the first other allele, so
+ * the .geno and .snp writers agree on them.
+ *
+ * @author Jelai Wang
+ */
+final class GenotypeCoder {
+	static final int MISSING = 9;
+
+	// EIGENSTRAT values of the PackedGenotypeMatrix codes, by whether the reference allele is the first allele of the marker, the second, or neither.
+	private static final int[][] VALUES = { { 2, 1, 0, MISSING }, { 0, 1, 2, MISSING }, { 0, 0, 0, MISSING } };
+
+	/**
+	 * Indexed by orientation and then by a byte of packed matrix calls, the
+	 * ASCII digits of its four calls, four bytes per entry.
+	 */
+	static final byte[][] DIGITS = new byte[VALUES.length][256 * 4];
+
+	/**
+	 * Indexed by orientation and then by a byte of packed matrix calls, the
+	 * same four calls as a PACKEDANCESTRYMAP byte, first sample in the high bits.
+	 */
+	static final byte[][] PACKED = new byte[VALUES.length][256];
+
+	static {
+		for (int orientation = 0; orientation < VALUES.length; orientation++) {
+			for (int b = 0; b < 256; b++) {
+				int packed = 0;
+				for (int k = 0; k < 4; k++) {
+					int value = VALUES[orientation][(b >> (k << 1)) & 3];
+					DIGITS[orientation][(b << 2) + k] = (byte) ('0' + value);
+					packed |= (value == MISSING ? 3 : value) << ((3 - k) << 1);
+				}
+				PACKED[orientation][b] = (byte) packed;
+			}
+		}
+	}
+
+	private GenotypeCoder() {
+	}
+
+	// Returns the orientation of a marker of the matrix for the lookup tables.
+	static int getOrientation(PackedGenotypeMatrix block, int marker, String referenceAllele) {
+		if (referenceAllele == null)
+			referenceAllele = block.getFirstAllele(marker);
+		if (referenceAllele == null)
+			return 2; // Every call is missing, so it doesn't matter.
+		if (referenceAllele.equals(block.getFirstAllele(marker)))
+			return 0;
+		if (referenceAllele.equals(block.getSecondAllele(marker)))
+			return 1;
+		return 2;
+	}
+
+	// Checks a block and its reference-allele table.
+	static void checkBlock(PackedGenotypeMatrix block, String[] referenceAlleles) {
+		if (block == null)
+			throw new NullPointerException("block");
+		if (referenceAlleles != null && referenceAlleles.length != block.getNumberOfMarkers())
+			throw new IllegalArgumentException(String.valueOf(referenceAlleles.length));
+	}
+
+	// Returns the reference and variant alleles, either of which may be null.
+	static String[] findAlleles(MarkerGenotypes genotypes) {
+		String[] alleles = new String[2];
+		for (int i = 0, n = genotypes.getNumberOfSamples(); i < n && alleles[1] == null; i++) {
+			add(alleles, genotypes.getAllele1(i));
+			add(alleles, genotypes.getAllele2(i));
+		}
+		return alleles;
+	}
+
+	private static void add(String[] alleles, String allele) {
+		if (allele == null)
+			return;
+		if (alleles[0] == null) alleles[0] = allele;
+		else if (alleles[1] == null && !alleles[0].equals(allele)) alleles[1] = allele;
+	}
+
+	// Returns the number of copies of the reference allele, or MISSING.
+	static int getValue(String referenceAllele, String a1, String a2) {
+		if (a1 == null && a2 == null)
+			return MISSING;
+		if (a1 == null || a2 == null) // Half-missing. What to do?
+			throw new IllegalArgumentException(a1 + " " + a2);
+		int count = 0;
+		if (referenceAllele.equals(a1)) count++;
+		if (referenceAllele.equals(a2)) count++;
+		return count;
+	}
+
+	// Collects the genotypes of the given samples at the SNP.
+	static MarkerGenotypes getMarkerGenotypes(SNP snp, List<Sample> samples) {
+		int n = samples.size();
+		String[] alleles1 = new String[n], alleles2 = new String[n];
+		for (int i = 0; i < n; i++) {
+			Sample sample = samples.get(i);
+			if (sample.existsGenotype(snp)) {
+				Sample.Genotype genotype = sample.getGenotype(snp);
+				alleles1[i] = genotype.getAllele1();
+				alleles2[i] = genotype.getAllele2();
+			}
+		}
+		return new DefaultMarkerGenotypes(snp, null, alleles1, alleles2);
+	}
+}
@@ -0,0 +1,48 @@
+package edu.uab.ssg.io.eigenstrat;
+
+import edu.uab.ssg.model.snp.Sex;
+import java.io.*;
+
+/**
+ * A writer for the EIGENSTRAT .ind file format, one line per sample with the
+ * sample ID, sex (M, F or U for unknown) and a case/control status or
+ * population label. A missing label is written as ???.
+ *
+ * @author Jelai Wang
+ */
+public final class INDWriter {
+	private static final char DELIMITER = '\t';
+	private static final char EOL = '\n';
+	private static final String MISSING_LABEL = "???";
+
+	private BufferedWriter writer;
+
+	public INDWriter(OutputStream out) {
+		if (out == null)
+			throw new NullPointerException("out");
+		this.writer = new BufferedWriter(new OutputStreamWriter(out));
+	}
+
+	public void close() throws IOException {
+		writer.flush();
+		writer.close();
+	}
+
+	/**
+	 * Writes a sample.
+	 * @param sex The sex, or null if unknown.
+	 * @param label The case/control status or population label, or null if unknown.
+	 */
+	public void write(String sampleID, Sex sex, String label) throws IOException {
+		if (sampleID == null)
+			throw new NullPointerException("sampleID");
+		if (sampleID.length() == 0 || sampleID.indexOf(' ') >= 0 || sampleID.indexOf(DELIMITER) >= 0)
+			throw new IllegalArgumentException(sampleID);
+		StringBuilder builder = new StringBuilder();
+		builder.append(sampleID);
+		builder.append(DELIMITER).append(sex == Sex.MALE ? 'M' : (sex == Sex.FEMALE ? 'F' : 'U'));
+		builder.append(DELIMITER).append(label != null ? label : MISSING_LABEL);
+		builder.append(EOL);
+		writer.write(builder.toString());
+	}
+}
@@ -0,0 +1,177 @@
+package edu.uab.ssg.io.eigenstrat;
+
+import edu.uab.ssg.model.snp.*;
+import java.util.*;
+import java.io.*;
+
+/**
+ * A writer for the EIGENSOFT PACKEDANCESTRYMAP genotype file format, the
+ * binary form of the EIGENSTRAT .geno file.
+ *
+ * <p>The file is a sequence of fixed-length records, each at least 48 bytes
+ * and long enough for two bits per sample. The first record is a header
+ * of the form <tt>GENO &lt;samples&gt; &lt;SNPs&gt; &lt;sample hash&gt;
+ * &lt;SNP hash&gt;</tt>, padded with zero bytes, which EIGENSOFT checks
+ * against the .ind and .snp files. Each following record holds the values
+ * of one SNP, four samples per byte with the first sample in the high bits:
+ * the number of copies of the reference allele, or 3 for missing data.
+ * Since the header counts the SNPs, they are given to the constructor and
+ * must be written in that order.</p>
+ *
+ * @author Jelai Wang
+ */
+public final class PackedGENOWriter {
+	private static final int MIN_RECORD_LENGTH = 48;
+	private static final int MISSING_VALUE = 3;
+
+	private OutputStream out;
+	private List<SNP> snps;
+	private int numberOfSamples;
+	private byte[] record;
+	private int count = 0;
+
+	/**
+	 * Constructs the writer and writes the header.
+	 * @param sampleIDs The sample IDs, as written to the .ind file.
+	 * @param snps The SNPs, as written to the .snp file, in the order they will be written.
+	 */
+	public PackedGENOWriter(OutputStream out, List<String> sampleIDs, List<SNP> snps) throws IOException {
+		if (out == null)
+			throw new NullPointerException("out");
+		if (sampleIDs == null)
+			throw new NullPointerException("sampleIDs");
+		if (snps == null)
+			throw new NullPointerException("snps");
+		this.out = new BufferedOutputStream(out, 1 << 16);
+		this.snps = new ArrayList<SNP>(snps);
+		this.numberOfSamples = sampleIDs.size();
+		this.record = new byte[getRecordLength(numberOfSamples)];
+		List<String> snpIDs = new ArrayList<String>(snps.size());
+		for (int i = 0, n = snps.size(); i < n; i++) {
+			snpIDs.add(snps.get(i).getName());
+		}
+		String header = "GENO " + pad(numberOfSamples) + " " + pad(snps.size()) + " " + Integer.toHexString(hash(sampleIDs)) + " " + Integer.toHexString(hash(snpIDs));
+		byte[] bytes = header.getBytes("US-ASCII");
+		if (bytes.length >= record.length)
+			throw new IllegalArgumentException(header);
+		System.arraycopy(bytes, 0, record, 0, bytes.length);
+		this.out.write(record);
+	}
+
+	// Mimics the %7d format of the header.
+	private static String pad(int value) {
+		String s = String.valueOf(value);
+		while (s.length() < 7) s = " " + s;
+		return s;
+	}
+
+	/**
+	 * Returns the length of a record, in bytes, for the given number of samples.
+	 */
+	static int getRecordLength(int numberOfSamples) {
+		return Math.max(MIN_RECORD_LENGTH, (numberOfSamples * 2 + 7) / 8);
+	}
+
+	/**
+	 * Returns the EIGENSOFT hash of a list of IDs, as written to the header.
+	 */
+	public static int hash(List<String> ids) {
+		if (ids == null)
+			throw new NullPointerException("ids");
+		int hash = 0;
+		for (int i = 0, n = ids.size(); i < n; i++) {
+			byte[] bytes;
+			try {
+				bytes = ids.get(i).getBytes("UTF-8");
+			}
+			catch (UnsupportedEncodingException e) {
+				throw new RuntimeException(e);
+			}
+			int h = 0;
+			for (int j = 0; j < bytes.length; j++) {
+				h = h * 23 + bytes[j];
+			}
+			hash = (hash * 17) ^ h;
+		}
+		return hash;
+	}
+
+	/**
+	 * Writes the genotypes of the next SNP for the given samples.
+	 * @throws IllegalArgumentException If the SNP is not the next one given to the constructor.
+	 */
+	public void write(SNP snp, List<Sample> samples) throws IOException {
+		if (snp == null)
+			throw new NullPointerException("snp");
+		if (samples == null)
+			throw new NullPointerException("samples");
+		write(GenotypeCoder.getMarkerGenotypes(snp, samples));
+	}
+
+	/**
+	 * Writes the genotypes of the next SNP.
+	 * @throws IllegalArgumentException If the SNP is not the next one given to the constructor.
+	 */
+	public void write(MarkerGenotypes genotypes) throws IOException {
+		if (genotypes == null)
+			throw new NullPointerException("genotypes");
+		if (count == snps.size() || !snps.get(count).getName().equals(genotypes.getSNP().getName()))
+			throw new IllegalArgumentException(genotypes.getSNP().getName());
+		if (genotypes.getNumberOfSamples() != numberOfSamples)
+			throw new IllegalArgumentException(String.valueOf(genotypes.getNumberOfSamples()));
+		String referenceAllele = GenotypeCoder.findAlleles(genotypes)[0];
+		Arrays.fill(record, (byte) 0);
+		for (int i = 0; i < numberOfSamples; i++) {
+			int value = MISSING_VALUE;
+			if (referenceAllele != null) {
+				value = GenotypeCoder.getValue(referenceAllele, genotypes.getAllele1(i), genotypes.getAllele2(i));
+				if (value == GenotypeCoder.MISSING) value = MISSING_VALUE;
+			}
+			record[i >> 2] |= value << ((3 - (i & 3)) << 1);
+		}
+		out.write(record);
+		count++;
+	}
+
+	/**
+	 * Writes every SNP of a block, in order, translating each byte of packed
+	 * calls with a single table lookup.
+	 * @param referenceAlleles The reference allele of each SNP of the block,
+	 * or null to use the first allele of each SNP of the block. A null entry
+	 * also means the first allele.
+	 * @throws IllegalArgumentException If the SNPs are not the next ones given to the constructor.
+	 */
+	public void write(PackedGenotypeMatrix block, String[] referenceAlleles) throws IOException {
+		GenotypeCoder.checkBlock(block, referenceAlleles);
+		if (block.getNumberOfSamples() != numberOfSamples)
+			throw new IllegalArgumentException(String.valueOf(block.getNumberOfSamples()));
+		int numberOfBytes = (numberOfSamples + 3) / 4;
+		for (int marker = 0, n = block.getNumberOfMarkers(); marker < n; marker++) {
+			String name = block.getSNP(marker).getName();
+			if (count == snps.size() || !snps.get(count).getName().equals(name))
+				throw new IllegalArgumentException(name);
+			byte[] table = GenotypeCoder.PACKED[GenotypeCoder.getOrientation(block, marker, referenceAlleles != null ? referenceAlleles[marker] : null)];
+			Arrays.fill(record, (byte) 0);
+			long word = 0;
+			for (int i = 0; i < numberOfBytes; i++) {
+				if ((i & 7) == 0) word = block.getWord(marker, i >> 3);
+				record[i] = table[((int) (word >>> ((i & 7) << 3))) & 0xff];
+			}
+			if ((numberOfSamples & 3) != 0) // Clear the calls past the last sample.
+				record[numberOfBytes - 1] &= (byte) (0xff << ((4 - (numberOfSamples & 3)) << 1));
+			out.write(record);
+			count++;
+		}
+	}
+
+	/**
+	 * Closes the writer.
+	 * @throws IllegalStateException If fewer SNPs were written than given to the constructor.
+	 */
+	public void close() throws IOException {
+		out.flush();
+		out.close();
+		if (count != snps.size())
+			throw new IllegalStateException(count + " " + snps.size());
+	}
+}
@@ -0,0 +1,60 @@
+package edu.uab.ssg.io.eigenstrat;
+
+import edu.uab.ssg.model.snp.*;
+import java.io.*;
+
+/**
+ * A writer for the EIGENSTRAT .snp file format, one line per SNP with the
+ * SNP ID, chromosome, genetic position (written as 0.0, unknown), physical
+ * position, reference allele and variant allele. Unknown alleles are
+ * written as X. The chromosome is written without any "chr" prefix.
+ *
+ * @author Jelai Wang
+ */
+public final class SNPWriter {
+	private static final char DELIMITER = '\t';
+	private static final char EOL = '\n';
+	private static final String MISSING_ALLELE = "X";
+	private static final String UNKNOWN_GENETIC_POSITION = "0.0";
+
+	private BufferedWriter writer;
+
+	public SNPWriter(OutputStream out) {
+		if (out == null)
+			throw new NullPointerException("out");
+		this.writer = new BufferedWriter(new OutputStreamWriter(out));
+	}
+
+	public void close() throws IOException {
+		writer.flush();
+		writer.close();
+	}
+
+	/**
+	 * Writes a SNP with the given alleles, either of which may be null.
+	 */
+	public void write(SNP snp, String referenceAllele, String variantAllele) throws IOException {
+		if (snp == null)
+			throw new NullPointerException("snp");
+		StringBuilder builder = new StringBuilder();
+		builder.append(snp.getName());
+		builder.append(DELIMITER).append(Chromosomes.getCanonicalName(snp.getChromosome()));
+		builder.append(DELIMITER).append(UNKNOWN_GENETIC_POSITION);
+		builder.append(DELIMITER).append(snp.getPosition());
+		builder.append(DELIMITER).append(referenceAllele != null ? referenceAllele : MISSING_ALLELE);
+		builder.append(DELIMITER).append(variantAllele != null ? variantAllele : MISSING_ALLELE);
+		builder.append(EOL);
+		writer.write(builder.toString());
+	}
+
+	/**
+	 * Writes the SNP of the given genotypes, with the reference allele the
+	 * .geno writers count for them.
+	 */
+	public void write(MarkerGenotypes genotypes) throws IOException {
+		if (genotypes == null)
+			throw new NullPointerException("genotypes");
+		String[] alleles = GenotypeCoder.findAlleles(genotypes);
+		write(genotypes.getSNP(), alleles[0], alleles[1]);
+	}
+}
@@ -1,8 +1,11 @@
 package edu.uab.ssg.io.ent;
 
 import edu.uab.ssg.model.snp.*;
+import edu.uab.ssg.util.OrderedBatchWriter;
+import edu.uab.ssg.util.OrderedExecutor;
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.*;
 
 /**
  * A writer for the ENT <a href="http://dna.engr.uconn.edu/~software/ent/">http://dna.engr.uconn.edu/~software/ent/</a> input file format.
@@ -48,10 +51,15 @@ import java.util.*;
  * @author Jelai Wang
  */
 public final class ENTWriter {
-	private static final String DELIMITER = " ";
-	private static final String EOL = "\n";
-	private static final String MISSING_VALUE = "0";
-	private static final String MISSING_GENOTYPE = "?";
+	private static final byte DELIMITER = ' ';
+	private static final byte EOL = '\n';
+	private static final byte MISSING_VALUE = '0';
+	private static final int ROWS_PER_BATCH = 64;
+	// Indexed by whether the first allele of a SNP is the minor allele and then by PackedGenotypeMatrix code, the ENT genotype.
+	private static final byte[] GENOTYPES = {
+		'0', '2', '1', '?', // First allele major: homozygous major, heterozygous, homozygous minor, missing.
+		'1', '2', '0', '?', // First allele minor.
+	};
 
 	/**
 	 * Constructs the writer.
@@ -62,6 +70,7 @@ public final class ENTWriter {
 	/**
 	 * Writes the genotypes for the given samples in a study population 
 	 * to the output stream in the ENT input file format.
+	 * The output stream is closed when done.
 	 */
 	public void write(List<Sample> samples, List<SNP> snps, OutputStream out) throws IOException {
 		if (samples == null)
@@ -70,111 +79,125 @@ public final class ENTWriter {
 			throw new NullPointerException("snps");
 		if (out == null)
 			throw new NullPointerException("out");
-		BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(out));
-		// Number of individuals.
-		writer.write(String.valueOf(samples.size()));
-		writer.write(DELIMITER);
-		// Number of SNPs.
-		writer.write(String.valueOf(snps.size()));
-		writer.write(EOL);
+		// Gather the genotypes into columns, probing each sample once per SNP.
+		PackedGenotypeMatrix matrix = PackedGenotypeMatrix.read(new SampleGenotypeSource(snps, samples));
+		write(matrix, out, 1);
+	}
 
-		Map<SNP, AlleleCounter> snp2counter = mapSNP2Counter(snps, samples);
-		String HOMOZYGOUS_MAJOR = "0";
-		String HOMOZYGOUS_MINOR = "1";
-		String HETEROZYGOUS = "2";
-		for (Iterator<Sample> it1 = samples.iterator(); it1.hasNext(); ) {
-			Sample sample = it1.next();
-			StringBuilder builder = new StringBuilder();
-			builder.append(sample.getName());
-			builder.append(DELIMITER).append(MISSING_VALUE); // Sex.
-			builder.append(DELIMITER).append(MISSING_VALUE); // parent 1 id.
-			builder.append(DELIMITER).append(MISSING_VALUE); // parent 2 id.
-			builder.append(DELIMITER);
+	/**
+	 * Writes the genotypes of the given matrix to the output stream in the
+	 * ENT input file format, one line per sample. The output stream is
+	 * closed when done.
+	 *
+	 * <p>The minor allele of each SNP is found first, in parallel across
+	 * SNPs, and kept as one byte per SNP. Each line is then encoded with a
+	 * table lookup per call into a reusable byte buffer. Lines are encoded
+	 * in batches on the thread pool and written in order.</p>
+	 *
+	 * <p>The minor allele is the less frequent allele. If both alleles are
+	 * equally frequent, the allele that comes later in alphabetical order is
+	 * taken as the minor allele, so the output does not depend on hash
+	 * ordering.</p>
+	 * @param numberOfThreads The number of threads for counting alleles and encoding lines.
+	 */
+	public void write(final PackedGenotypeMatrix matrix, OutputStream out, int numberOfThreads) throws IOException {
+		if (matrix == null)
+			throw new NullPointerException("matrix");
+		if (out == null)
+			throw new NullPointerException("out");
+		if (numberOfThreads < 1)
+			throw new IllegalArgumentException(String.valueOf(numberOfThreads));
+		OutputStream output = new BufferedOutputStream(out, 1 << 16);
+		int numberOfSamples = matrix.getNumberOfSamples();
+		output.write(ascii(numberOfSamples + " " + matrix.getNumberOfMarkers()));
+		output.write(EOL);
 
-			for (Iterator<SNP> it2 = snps.iterator(); it2.hasNext(); ) {
-				SNP snp = it2.next();
-				AlleleCounter counter = snp2counter.get(snp);
-				Set<String> alleles = counter.getAlleles();
-				if (sample.existsGenotype(snp)) {
-					Sample.Genotype genotype = sample.getGenotype(snp);
-					String a1 = genotype.getAllele1();
-					String a2 = genotype.getAllele2();
-					if (a1 == null && a2 == null) {
-						builder.append(MISSING_GENOTYPE);
-					}
-					else if (counter.existsMinorAllele()) {
-						String minorAllele = counter.getMinorAllele();
-						if (!a1.equals(a2)) {
-							builder.append(HETEROZYGOUS);
-						}
-						else if (a1.equals(a2) && a1.equals(minorAllele)) {
-							builder.append(HOMOZYGOUS_MINOR);
-						}
-						else if (a1.equals(a2) && !a1.equals(minorAllele)) {
-							builder.append(HOMOZYGOUS_MAJOR);
-						}
-						else { // This should be unreachable!!
-							throw new RuntimeException(genotype.toString());
-						}
-					}
-					else if (!counter.existsMinorAllele() && (alleles.size() == 1)) { // Monomorphic.
-						builder.append(HOMOZYGOUS_MAJOR);
-					}
-					else if (!counter.existsMinorAllele() && (alleles.size() == 2)) { // Polymorphic, but equal numbers of each allele in the population.
-						Iterator<String> it = alleles.iterator();
-						String allele = it.next();
-						if (!a1.equals(a2)) {
-							builder.append(HETEROZYGOUS);
-						}
-						else if (a1.equals(a2) && a1.equals(allele)) {
-							builder.append(HOMOZYGOUS_MINOR);
-						}
-						else if (a1.equals(a2) && !a1.equals(allele)) {
-							builder.append(HOMOZYGOUS_MAJOR);
-						}
-						else { // This should be unreachable!!
-							throw new RuntimeException(genotype.toString());
-						}
-					}
-					else { // This can be reached with allele total > 2, but we haven't thought about handling tri-alleles yet.
-						throw new RuntimeException(genotype.toString());
-					}
+		ExecutorService executor = Executors.newFixedThreadPool(numberOfThreads);
+		try {
+			final byte[] orientations = findMinorAlleles(matrix, executor, numberOfThreads);
+			new OrderedBatchWriter(output).write(new OrderedBatchWriter.Encoder() {
+				public void encode(int from, int to, OrderedBatchWriter.Batch batch) throws IOException {
+					encodeRows(matrix, orientations, from, to, batch);
 				}
-				else { // Untyped.
-					builder.append(MISSING_GENOTYPE);
+			}, numberOfSamples, ROWS_PER_BATCH, executor, numberOfThreads * 2);
+		}
+		finally {
+			executor.shutdownNow();
+		}
+		output.flush();
+		output.close();
+	}
+
+	// Returns one byte per SNP, 1 if its first allele is the minor allele and 0 otherwise.
+	private static byte[] findMinorAlleles(final PackedGenotypeMatrix matrix, ExecutorService executor, int numberOfThreads) throws IOException {
+		final byte[] orientations = new byte[matrix.getNumberOfMarkers()];
+		int shardSize = Math.max(1, (orientations.length + numberOfThreads - 1) / numberOfThreads);
+		OrderedExecutor<Object> shards = new OrderedExecutor<Object>(executor, numberOfThreads, new OrderedExecutor.ResultHandler<Object>() {
+			public void handleResult(Object result) {
+			}
+		});
+		for (int start = 0; start < orientations.length; start += shardSize) {
+			final int from = start, to = Math.min(start + shardSize, orientations.length);
+			shards.submit(new Callable<Object>() {
+				public Object call() {
+					for (int i = from; i < to; i++) {
+						orientations[i] = (byte) (isFirstAlleleMinor(matrix, i) ? 1 : 0);
+					}
+					return null;
 				}
+			});
+		}
+		shards.finish();
+		return orientations;
+	}
+
+	private static boolean isFirstAlleleMinor(PackedGenotypeMatrix matrix, int marker) {
+		String allele1 = matrix.getFirstAllele(marker), allele2 = matrix.getSecondAllele(marker);
+		if (allele2 == null) // Monomorphic, or no data at all.
+			return false;
+		int[] counts = new int[4];
+		int numberOfSamples = matrix.getNumberOfSamples();
+		for (int w = 0, n = (numberOfSamples + PackedGenotypeMatrix.CALLS_PER_WORD - 1) / PackedGenotypeMatrix.CALLS_PER_WORD; w < n; w++) {
+			long word = matrix.getWord(marker, w);
+			int calls = Math.min(PackedGenotypeMatrix.CALLS_PER_WORD, numberOfSamples - w * PackedGenotypeMatrix.CALLS_PER_WORD);
+			for (int k = 0; k < calls; k++) {
+				counts[(int) (word >>> (k << 1)) & 3]++;
 			}
-			writer.write(builder.toString());
-			writer.write(EOL);
 		}
-		writer.flush();
-		writer.close();
+		int count1 = 2 * counts[PackedGenotypeMatrix.HOMOZYGOUS_1] + counts[PackedGenotypeMatrix.HETEROZYGOUS];
+		int count2 = 2 * counts[PackedGenotypeMatrix.HOMOZYGOUS_2] + counts[PackedGenotypeMatrix.HETEROZYGOUS];
+		if (count1 != count2)
+			return count1 < count2;
+		return allele1.compareTo(allele2) > 0;
 	}
 
-	private Map<SNP, AlleleCounter> mapSNP2Counter(List<SNP> snps, List<Sample> samples) {
-		Map<SNP, AlleleCounter> map = new LinkedHashMap<SNP, AlleleCounter>();
-		for (Iterator<SNP> it1 = snps.iterator(); it1.hasNext(); ) {
-			SNP snp = it1.next();
-			AlleleCounter counter = map.get(snp);
-			if (counter == null) {
-				counter = new AlleleCounter();
-				map.put(snp, counter);
+	// Encodes the lines of the given samples into the batch.
+	private static void encodeRows(PackedGenotypeMatrix matrix, byte[] orientations, int from, int to, OrderedBatchWriter.Batch batch) throws IOException {
+		int numberOfMarkers = orientations.length;
+		List<String> sampleNames = matrix.getSampleNames();
+		for (int s = from; s < to; s++) {
+			byte[] name = ascii(sampleNames.get(s));
+			batch.ensureCapacity(name.length + 7 + numberOfMarkers + 1);
+			byte[] buffer = batch.getBytes();
+			int length = batch.getLength();
+			System.arraycopy(name, 0, buffer, length, name.length);
+			length += name.length;
+			for (int i = 0; i < 3; i++) { // Sex, parent 1 id, parent 2 id.
+				buffer[length++] = DELIMITER;
+				buffer[length++] = MISSING_VALUE;
 			}
-			for (Iterator<Sample> it2 = samples.iterator(); it2.hasNext(); ) {
-				Sample sample = it2.next();
-				if (sample.existsGenotype(snp)) {
-					Sample.Genotype genotype = sample.getGenotype(snp);
-					String a1 = genotype.getAllele1();
-					String a2 = genotype.getAllele2();
-					counter.addAllele(a1);
-					counter.addAllele(a2);
-				}
-				else { // Tally missing values.
-					counter.addAllele(null);
-					counter.addAllele(null);
-				}
+			buffer[length++] = DELIMITER;
+			int word = s / PackedGenotypeMatrix.CALLS_PER_WORD, shift = (s % PackedGenotypeMatrix.CALLS_PER_WORD) << 1;
+			for (int m = 0; m < numberOfMarkers; m++) {
+				int code = (int) (matrix.getWord(m, word) >>> shift) & 3;
+				buffer[length++] = GENOTYPES[(orientations[m] << 2) | code];
 			}
+			buffer[length++] = EOL;
+			batch.setLength(length);
 		}
-		return map;
+	}
+
+	private static byte[] ascii(String s) throws UnsupportedEncodingException {
+		return s.getBytes("US-ASCII");
 	}
 }
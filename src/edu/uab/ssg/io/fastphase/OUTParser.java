@@ -1,5 +1,6 @@
 package edu.uab.ssg.io.fastphase;
 
+import edu.uab.ssg.model.snp.Util;
 import java.util.*;
 import java.io.*;
 import java.util.regex.*;
@@ -34,9 +35,19 @@ import java.util.regex.*;
  *
  * This implementation parses the sample records between the BEGIN GENOTYPES and END GENTOTYPES sections of the file format and ignores all other lines. Each sample record consists of three lines: <i>a sample line</i> (with sample ID and subpop label), <i>a line containing alleles from the first haplotype of the sample</i>, and <i>a line containing alleles from the second haplotype of the sample</i>. In this file format, the separator for the fields of the haplotype lines is a single space character.
  *
+ * <p>fastPHASE writes each allele as a single character, and the haplotype
+ * lines are decoded in one pass into arrays of ASCII allele codes; a record
+ * with a longer allele is reported as badly formatted. The codes can be
+ * streamed straight into a <code>PhasedHaplotypeMatrix</code> from the
+ * record listener. A file that ends before BEGIN GENOTYPES or END GENOTYPES
+ * is parsed up to its end, and an incomplete last record is reported as
+ * badly formatted.</p>
+ *
  * @author Jelai Wang
  */
 public final class OUTParser {
+	private static final Pattern SAMPLE_LINE_PATTERN = Pattern.compile("(\\w+)\\s+# subpop. label: (\\w+)");
+
 	/**
 	 * Constructs the parser.
 	 */
@@ -90,6 +101,18 @@ public final class OUTParser {
 		 * Returns the allele at the given SNP index on the second haplotype.
 		 */
 		String getAllele2At(int index);
+
+		/**
+		 * Returns the ASCII code of the allele at each SNP on the first
+		 * haplotype. The array belongs to the record and must not be modified.
+		 */
+		byte[] getHaplotype1();
+
+		/**
+		 * Returns the ASCII code of the allele at each SNP on the second
+		 * haplotype. The array belongs to the record and must not be modified.
+		 */
+		byte[] getHaplotype2();
 	}
 
 	/**
@@ -106,11 +129,12 @@ public final class OUTParser {
 			throw new NullPointerException("listener");
 		BufferedReader reader = new BufferedReader(new InputStreamReader(in));
 		// Find the BEGIN GENOTYPES section.
-		while (!"BEGIN GENOTYPES".equals(reader.readLine())) {
+		String line = null;
+		while ((line = reader.readLine()) != null && !"BEGIN GENOTYPES".equals(line)) {
 		}
 		// Process the rest of the rows, three lines at a time.
 		String sampleLine = null;
-		while (!"END GENOTYPES".equals(sampleLine = reader.readLine())) {
+		while (line != null && (sampleLine = reader.readLine()) != null && !"END GENOTYPES".equals(sampleLine)) {
 			String haplotype1Line = reader.readLine();
 			String haplotype2Line = reader.readLine();
 
@@ -120,6 +144,8 @@ public final class OUTParser {
 			}
 			catch (RuntimeException e) {
 				listener.handleBadRecordFormat(sampleLine, haplotype1Line, haplotype2Line);
+				if (haplotype2Line == null) // The file is truncated.
+					break;
 				continue;
 			}
 			listener.handleParsedRecord(record);
@@ -127,10 +153,10 @@ public final class OUTParser {
 		reader.close();
 	}
 
-	private class ParsedSampleRecord implements SampleRecord {
+	private static final class ParsedSampleRecord implements SampleRecord {
 		private String sampleLine, haplotype1Line, haplotype2Line;
 		private String sampleID, subpopLabel;
-		private List<String> a1, a2;
+		private byte[] a1, a2;
 
 		private ParsedSampleRecord(String sampleLine, String haplotype1Line, String haplotype2Line) {
 			if (sampleLine == null)
@@ -143,8 +169,7 @@ public final class OUTParser {
 			this.haplotype1Line = haplotype1Line;
 			this.haplotype2Line = haplotype2Line;
 			// Pick apart the sample line for the identifier and subpop label.
-			Pattern sampleLinePattern = Pattern.compile("(\\w+)\\s+# subpop. label: (\\w+)");
-			Matcher matcher = sampleLinePattern.matcher(sampleLine);
+			Matcher matcher = SAMPLE_LINE_PATTERN.matcher(sampleLine);
 			if (matcher.find()) {
 				this.sampleID = matcher.group(1);
 				this.subpopLabel = matcher.group(2);
@@ -153,27 +178,41 @@ public final class OUTParser {
 				throw new IllegalArgumentException(sampleLine);
 			}
 			// Parse the haplotype lines.
-			this.a1 = tokenizeHaplotypeLine(haplotype1Line);
-			this.a2 = tokenizeHaplotypeLine(haplotype2Line);
-			if (a1.size() != a2.size()) // LOOK!!
-				throw new IllegalArgumentException(a1.size() + " " + a2.size());
+			this.a1 = decodeHaplotypeLine(haplotype1Line);
+			this.a2 = decodeHaplotypeLine(haplotype2Line);
+			if (a1.length != a2.length) // LOOK!!
+				throw new IllegalArgumentException(a1.length + " " + a2.length);
 		}
 
-		// Tokenizing the haplotype line with StringTokenizer is about 35% faster than String.split().
-		private List<String> tokenizeHaplotypeLine(String haplotypeLine) {
-			List<String> list = new ArrayList<String>();
-			StringTokenizer tokenizer = new StringTokenizer(haplotypeLine);
-			while (tokenizer.hasMoreTokens()) {
-				list.add(tokenizer.nextToken());
+		// Decodes the whitespace-separated single-character alleles of a haplotype line.
+		private static byte[] decodeHaplotypeLine(String haplotypeLine) {
+			int length = haplotypeLine.length();
+			byte[] alleles = new byte[(length + 1) / 2];
+			int count = 0;
+			boolean inToken = false;
+			for (int i = 0; i < length; i++) {
+				char ch = haplotypeLine.charAt(i);
+				if (ch == ' ' || ch == '\t') {
+					inToken = false;
+				}
+				else if (inToken || ch >= 0x80) {
+					throw new IllegalArgumentException(String.valueOf(i));
+				}
+				else {
+					alleles[count++] = (byte) ch;
+					inToken = true;
+				}
 			}
-			return list;
+			return count == alleles.length ? alleles : Arrays.copyOf(alleles, count);
 		}
 
 		public String getSampleID() { return sampleID; }
 		public String getSubpopLabel() { return subpopLabel; }
-		public int getNumberOfSNPs() { return a1.size(); }
-		public String getAllele1At(int index) { return a1.get(index); }
-		public String getAllele2At(int index) { return a2.get(index); }
+		public int getNumberOfSNPs() { return a1.length; }
+		public String getAllele1At(int index) { return Util.getAllele(a1[index]); }
+		public String getAllele2At(int index) { return Util.getAllele(a2[index]); }
+		public byte[] getHaplotype1() { return a1; }
+		public byte[] getHaplotype2() { return a2; }
 
 		public String toString() {
 			String EOL = "\n";
@@ -1,5 +1,6 @@
 package edu.uab.ssg.io.hapmap;
 
+import edu.uab.ssg.io.Selection;
 import java.util.*;
 import java.io.*;
 
@@ -52,8 +53,24 @@ public final class GenotypeFileParser {
 	 * is passed to the user-supplied record listener.
 	 */
 	public void parse(InputStream in, RecordListener listener) throws IOException {
+		parse(in, Selection.ALL, listener);
+	}
+
+	/**
+	 * Parses the input stream for the genotype records of the selected
+	 * samples at the selected SNPs. SNPs are selected by rs# identifier,
+	 * chromosome and position; the genotypes of a SNP that is not selected
+	 * are not read.
+	 * @param in The input stream, typically a file input stream, of the
+	 * file to be parsed.
+	 * @param listener As the input stream is parsed, each genotype record
+	 * is passed to the user-supplied record listener.
+	 */
+	public void parse(InputStream in, Selection selection, RecordListener listener) throws IOException {
 		if (in == null)
 			throw new NullPointerException("in");
+		if (selection == null)
+			throw new NullPointerException("selection");
 		if (listener == null)
 			throw new NullPointerException("listener");
 		BufferedReader reader = new BufferedReader(new InputStreamReader(in));
@@ -79,11 +96,19 @@ public final class GenotypeFileParser {
 			throw new RuntimeException(header.length + " " + expectedNumberOfTokens);
 		}
 
+		Selection.Columns columns = selection.selectColumns(sampleNames, 11, DELIMITER.charAt(0), false);
+		List<String> selectedSampleNames = columns.select(sampleNames);
 		int offset = 11; // Index offset to the beginning of the genotype calls.
 		String line = null;
 		while ((line = reader.readLine()) != null) {
-			String[] tokens = line.split(DELIMITER, -1);
-			if (tokens.length != expectedNumberOfTokens) {
+			String[] tokens = columns.createFields();
+			try {
+				int end = columns.readLeadingFields(line, tokens);
+				if (!selection.selectsAllMarkers() && !selection.isMarkerSelected(tokens[0], tokens[2], Integer.parseInt(tokens[3])))
+					continue;
+				columns.readSelectedFields(line, end, tokens);
+			}
+			catch (IllegalArgumentException e) {
 				listener.handleBadRecordFormat(line);
 				continue;
 			}
@@ -95,8 +120,8 @@ public final class GenotypeFileParser {
 			String strand = tokens[4];
 			String assemblyVersion = tokens[5];
 
-			for (int i = 0, n = sampleNames.size(); i < n; i++) {
-				String sampleID = sampleNames.get(i);
+			for (int i = 0, n = selectedSampleNames.size(); i < n; i++) {
+				String sampleID = selectedSampleNames.get(i);
 				String genotype = tokens[i + offset];
 				if (genotype.length() != 2) {
 					listener.handleBadRecordFormat(line);
@@ -1,5 +1,6 @@
 package edu.uab.ssg.io.hapmap;
 
+import edu.uab.ssg.io.Selection;
 import java.util.*;
 import java.io.*;
 
@@ -38,9 +39,26 @@ public final class HaplotypeFileParser {
 	 * @param listener As the input stream is parsed, each SNP record
 	 * is passed to the user-supplied record listener.
 	 */
-public void parse(InputStream in, RecordListener listener) throws IOException {
+	public void parse(InputStream in, RecordListener listener) throws IOException {
+		parse(in, Selection.ALL, listener);
+	}
+
+	/**
+	 * Parses the input stream for the "SNP x haplotype" records of the
+	 * selected SNPs, with the haplotypes of the selected samples only.
+	 * Samples are selected by IID, without the _A or _B suffix of the
+	 * header, and SNPs by name and position, the file having no chromosome
+	 * column. The haplotypes of a SNP that is not selected are not read.
+	 * @param in The input stream, typically a file input stream, of the
+	 * file to be parsed.
+	 * @param listener As the input stream is parsed, each SNP record
+	 * is passed to the user-supplied record listener.
+	 */
+	public void parse(InputStream in, Selection selection, RecordListener listener) throws IOException {
 		if (in == null)
 			throw new NullPointerException("in");
+		if (selection == null)
+			throw new NullPointerException("selection");
 		if (listener == null)
 			throw new NullPointerException("listener");
 		BufferedReader reader = new BufferedReader(new InputStreamReader(in));
@@ -55,11 +73,25 @@ public void parse(InputStream in, RecordListener listener) throws IOException {
 		if (sampleNames.size() % 2 != 0) // We expect pairs of sample names.
 			throw new IllegalArgumentException(sampleNames.toString());
 
+		List<String> iids = new ArrayList<String>(sampleNames.size());
+		for (int i = 0, n = sampleNames.size(); i < n; i++) {
+			String sampleName = sampleNames.get(i);
+			int index = sampleName.lastIndexOf('_');
+			iids.add(index < 0 ? sampleName : sampleName.substring(0, index));
+		}
+		Selection.Columns columns = selection.selectColumns(iids, 2, ' ', true);
+		List<String> selectedSampleNames = columns.select(sampleNames);
+
 		String line = null;
 		while ((line = reader.readLine()) != null) {
 			SNPRecord record = null;
 			try {
-				record = new ParsedSNPRecord(line, sampleNames);
+				String[] fields = columns.createFields();
+				int position = columns.readLeadingFields(line, fields);
+				if (!selection.selectsAllMarkers() && !selection.isMarkerSelected(fields[0], null, Integer.parseInt(fields[1])))
+					continue;
+				columns.readSelectedFields(line, position, fields);
+				record = new ParsedSNPRecord(line, fields, selectedSampleNames);
 			}
 			catch (RuntimeException e) {
 				listener.handleBadRecordFormat(line);
@@ -137,23 +169,19 @@ public void parse(InputStream in, RecordListener listener) throws IOException {
 		private int position;
 		private Map<String, String> sampleNameToAllele;
 
-		private ParsedSNPRecord(String line, List<String> sampleNames) {
+		private ParsedSNPRecord(String line, String[] tokens, List<String> sampleNames) {
 			if (line == null)
 				throw new NullPointerException("line");
 			this.line = line;
 			this.sampleNameToAllele = new LinkedHashMap<String, String>();
 
-			StringTokenizer tokenizer = new StringTokenizer(line);
-			if (tokenizer.countTokens() != sampleNames.size() + 2)
+			if (tokens.length != sampleNames.size() + 2)
 				throw new IllegalArgumentException(line);
-			this.name = tokenizer.nextToken();
-			this.position = Integer.parseInt(tokenizer.nextToken());
-
-			int index = 0;
-			while (tokenizer.hasMoreTokens()) {
-				String allele = tokenizer.nextToken();
-				String sampleName = sampleNames.get(index++);
-				sampleNameToAllele.put(sampleName, allele);
+			this.name = tokens[0];
+			this.position = Integer.parseInt(tokens[1]);
+
+			for (int i = 0, n = sampleNames.size(); i < n; i++) {
+				sampleNameToAllele.put(sampleNames.get(i), tokens[i + 2]);
 			}
 		}
 
@@ -1,6 +1,7 @@
 package edu.uab.ssg.io.hyperlasso;
 
 import edu.uab.ssg.model.snp.*;
+import edu.uab.ssg.util.OrderedBatchWriter;
 import java.io.*;
 import java.util.*;
 
@@ -8,14 +9,25 @@ import java.util.*;
  * A writer for the HyperLasso DAT file format described in <a href="http://www.ebi.ac.uk/projects/BARGEN/download/HyperLasso/readme.txt">this README</a>.
  * More information is available on <a href="http://www.ebi.ac.uk/projects/BARGEN/">the BARGEN home page</a>.
  *
+ * <p>Each genotype is coded as the number of copies of an allele of
+ * interest. Samples can be written one at a time, or all at once from a
+ * <code>PackedGenotypeMatrix</code>. In the latter case the coding of each
+ * SNP is worked out once, and batches of rows are encoded straight to
+ * bytes in parallel, with a table lookup per call, and written in order by
+ * an <code>OrderedBatchWriter</code>.</p>
+ *
  * @author Jelai Wang
  */
 public final class DATWriter {
 	private static final String FIELD_DELIMITER = "\t";
 	private static final String EOL = "\n";
 	private static final String MISSING_VALUE = "NA"; // Can also be 9 or -1.
+	private static final int ROWS_PER_BATCH = 16;
+	// Indexed by whether the allele of interest is the first allele of the marker, the second, or neither, and then by PackedGenotypeMatrix code, the count; -1 is missing.
+	private static final byte[][] COUNTS = { { 2, 1, 0, -1 }, { 0, 1, 2, -1 }, { 0, 0, 0, -1 } };
 
 	private List<SNP> snps;
+	private OutputStream out;
 	private Writer writer;
 	// Map from SNP to allele of interest (for genotype encoding purposes).
 	private Map<SNP, String> snp2allele = new LinkedHashMap<SNP, String>();
@@ -29,7 +41,8 @@ public final class DATWriter {
 		if (out == null)
 			throw new NullPointerException("out");
 		this.snps = new ArrayList<SNP>(snps);
-		this.writer = new BufferedWriter(new OutputStreamWriter(out));
+		this.out = new BufferedOutputStream(out, 1 << 16);
+		this.writer = new BufferedWriter(new OutputStreamWriter(this.out));
 	}
 
 	/**
@@ -89,6 +102,65 @@ public final class DATWriter {
 		writer.write(EOL);
 	}
 
+	/**
+	 * Writes the genotypes of every sample of the matrix, one row per
+	 * sample, encoding rows in parallel.
+	 * @param matrix The genotypes, with the SNPs given to the constructor as its markers, in order.
+	 * @param alleles The allele of interest of each marker, or null to use
+	 * the first allele of each marker. A null entry also means the first allele.
+	 * @param numberOfThreads The number of threads for encoding rows.
+	 * @throws IllegalArgumentException If the markers of the matrix are not the SNPs given to the constructor.
+	 */
+	public void write(final PackedGenotypeMatrix matrix, String[] alleles, int numberOfThreads) throws IOException {
+		if (matrix == null)
+			throw new NullPointerException("matrix");
+		if (numberOfThreads < 1)
+			throw new IllegalArgumentException(String.valueOf(numberOfThreads));
+		int numberOfMarkers = matrix.getNumberOfMarkers();
+		if (numberOfMarkers != snps.size())
+			throw new IllegalArgumentException(String.valueOf(numberOfMarkers));
+		if (alleles != null && alleles.length != numberOfMarkers)
+			throw new IllegalArgumentException(String.valueOf(alleles.length));
+		// Work out the coding of each SNP once.
+		final byte[][] codings = new byte[numberOfMarkers][];
+		for (int i = 0; i < numberOfMarkers; i++) {
+			if (!snps.get(i).getName().equals(matrix.getSNP(i).getName()))
+				throw new IllegalArgumentException(matrix.getSNP(i).getName());
+			String allele = alleles != null && alleles[i] != null ? alleles[i] : matrix.getFirstAllele(i);
+			codings[i] = COUNTS[allele == null || allele.equals(matrix.getFirstAllele(i)) ? 0 : (allele.equals(matrix.getSecondAllele(i)) ? 1 : 2)];
+		}
+
+		writer.flush(); // The rows go straight to the output stream, after anything written before.
+		new OrderedBatchWriter(out).write(new OrderedBatchWriter.Encoder() {
+			public void encode(int from, int to, OrderedBatchWriter.Batch batch) {
+				encodeRows(matrix, codings, from, to, batch);
+			}
+		}, matrix.getNumberOfSamples(), ROWS_PER_BATCH, numberOfThreads);
+	}
+
+	private static void encodeRows(PackedGenotypeMatrix matrix, byte[][] codings, int from, int to, OrderedBatchWriter.Batch batch) {
+		int numberOfMarkers = codings.length;
+		batch.ensureCapacity((to - from) * (3 * numberOfMarkers + 1)); // At most "NA" and a delimiter per call.
+		byte[] buffer = batch.getBytes();
+		int length = batch.getLength();
+		for (int s = from; s < to; s++) {
+			int word = s / PackedGenotypeMatrix.CALLS_PER_WORD, shift = (s % PackedGenotypeMatrix.CALLS_PER_WORD) << 1;
+			for (int m = 0; m < numberOfMarkers; m++) {
+				if (m > 0) buffer[length++] = '\t';
+				int count = codings[m][(int) (matrix.getWord(m, word) >>> shift) & 3];
+				if (count < 0) {
+					buffer[length++] = 'N';
+					buffer[length++] = 'A';
+				}
+				else {
+					buffer[length++] = (byte) ('0' + count);
+				}
+			}
+			buffer[length++] = '\n';
+		}
+		batch.setLength(length);
+	}
+
 	/**
 	 * Closes the writer.
 	 */
@@ -0,0 +1,127 @@
+package edu.uab.ssg.io.mach;
+
+import java.io.*;
+
+/**
+ * A parser for the DOSE output file format from <a href="http://www.sph.umich.edu/csg/abecasis/MaCH/">MACH</a>.
+ *
+ * In other words, this is a parser for the output file with extension ".dose" containing the imputed dosage of each marker for each individual, the expected number of copies of the first allele given in the ".mlinfo" file. For example:
+ *
+ * <p><tt>
+ * FAM1-&gt;IND1 DOSE 1.998 0.002 2.000 1.013<br/>
+ * FAM2-&gt;IND1 DOSE 0.999 0.000 1.974 2.000<br/>
+ * ...
+ * </tt></p>
+ *
+ * <p>Each line is decoded in a single pass into a primitive float array,
+ * since a line may hold millions of dosages. The records can be kept in
+ * a <code>HalfFloatCacheWriter</code> for later runs.</p>
+ *
+ * @author Jelai Wang
+ */
+public final class DOSEParser {
+	/**
+	 * Constructs the parser.
+	 */
+	public DOSEParser() {
+	}
+
+	/**
+	 * A listener for handling parsed individual records and problems due to
+	 * bad record formatting.
+	 */
+	public interface RecordListener {
+		/**
+		 * Handles successfully parsed individual record.
+		 */
+		void handleParsedRecord(IndividualRecord record);
+
+		/**
+		 * Handles input that could not be parsed due to a formatting problem.
+		 * @param line The line of text that could not be parsed.
+		 */
+		void handleBadRecordFormat(String line);
+	}
+
+	/**
+	 * An individual record.
+	 */
+	public interface IndividualRecord {
+		/**
+		 * Returns the family ID.
+		 */
+		public String getFamilyID();
+
+		/**
+		 * Returns the individual ID.
+		 */
+		public String getIndividualID();
+
+		/**
+		 * Returns the number of markers.
+		 */
+		public int getNumberOfMarkers();
+
+		/**
+		 * Returns the dosage of the marker at the given index.
+		 */
+		public float getDose(int index);
+
+		/**
+		 * Returns the dosages of every marker. The array belongs to the
+		 * record and must not be modified.
+		 */
+		public float[] getDoses();
+	}
+
+	/**
+	 * Parses the input stream for individual records.
+	 * @param in The input stream, typically a file input stream, of the
+	 * file to be parsed.
+	 * @param listener As the input stream is parsed, each individual record
+	 * is passed to the user-supplied record listener.
+	 */
+	public void parse(InputStream in, RecordListener listener) throws IOException {
+		if (in == null)
+			throw new NullPointerException("in");
+		if (listener == null)
+			throw new NullPointerException("listener");
+		BufferedReader reader = new BufferedReader(new InputStreamReader(in), 1 << 16);
+		String line = null;
+		while ((line = reader.readLine()) != null) {
+			IndividualRecord record = null;
+			try {
+				record = new ParsedIndividualRecord(line);
+			}
+			catch (RuntimeException e) {
+				listener.handleBadRecordFormat(line);
+				continue;
+			}
+			listener.handleParsedRecord(record);
+		}
+		reader.close();
+	}
+
+	private static final class ParsedIndividualRecord implements IndividualRecord {
+		private String familyID, individualID;
+		private float[] doses;
+
+		private ParsedIndividualRecord(String line) {
+			Fields fields = new Fields(line);
+			String[] ids = fields.nextHeader("DOSE");
+			this.familyID = ids[0];
+			this.individualID = ids[1];
+			this.doses = fields.remainingFloats();
+			if (doses.length == 0) // Expect at least one dosage.
+				throw new IllegalArgumentException(line);
+		}
+
+		public String getFamilyID() { return familyID; }
+		public String getIndividualID() { return individualID; }
+		public int getNumberOfMarkers() { return doses.length; }
+		public float getDose(int index) { return doses[index]; }
+		public float[] getDoses() { return doses; }
+
+		public String toString() { return familyID + "->" + individualID; }
+	}
+}
@@ -0,0 +1,126 @@
+package edu.uab.ssg.io.mach;
+
+import java.util.*;
+
+/**
+ * Splits the lines of the MACH per-individual files, which start with a
+ * <tt>FAMILY-&gt;INDIVIDUAL</tt> identifier and a type label and continue
+ * with one field per marker, often millions of them. Fields are found by
+ * scanning the line once rather than by tokenizing it into strings.
+ *
+ * @author Jelai Wang
+ */
+final class Fields {
+	private static final double[] POWERS_OF_TEN = new double[19];
+
+	static {
+		POWERS_OF_TEN[0] = 1.0;
+		for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+			POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10.0;
+		}
+	}
+
+	private String line;
+	private int position = 0;
+	private int start, end; // Of the current field.
+
+	Fields(String line) {
+		if (line == null)
+			throw new NullPointerException("line");
+		this.line = line;
+	}
+
+	/**
+	 * Moves to the next field, returning false at the end of the line.
+	 */
+	boolean next() {
+		int length = line.length();
+		while (position < length && isWhitespace(line.charAt(position))) position++;
+		if (position == length)
+			return false;
+		start = position;
+		while (position < length && !isWhitespace(line.charAt(position))) position++;
+		end = position;
+		return true;
+	}
+
+	private static boolean isWhitespace(char ch) {
+		return ch == ' ' || ch == '\t';
+	}
+
+	/**
+	 * Returns the current field.
+	 */
+	String get() { return line.substring(start, end); }
+
+	/**
+	 * Returns the length of the current field.
+	 */
+	int length() { return end - start; }
+
+	/**
+	 * Returns a character of the current field.
+	 */
+	char charAt(int index) { return line.charAt(start + index); }
+
+	/**
+	 * Moves to the next two fields, the identifier and the type label, and
+	 * returns the family and individual IDs.
+	 * @throws IllegalArgumentException If the identifier is not of the form FAMILY-&gt;INDIVIDUAL or the label is not the expected one.
+	 */
+	String[] nextHeader(String label) {
+		if (!next())
+			throw new IllegalArgumentException(line);
+		String[] ids = get().split("->");
+		if (ids.length != 2)
+			throw new IllegalArgumentException(line);
+		if (!next() || !label.equals(get()))
+			throw new IllegalArgumentException(line);
+		return ids;
+	}
+
+	/**
+	 * Parses the remaining fields as numbers.
+	 * @throws IllegalArgumentException If a field is not a number.
+	 */
+	float[] remainingFloats() {
+		float[] values = new float[Math.max(16, (line.length() - position) / 2)];
+		int count = 0;
+		while (next()) {
+			if (count == values.length)
+				values = Arrays.copyOf(values, count * 2);
+			values[count++] = parseFloat();
+		}
+		return count == values.length ? values : Arrays.copyOf(values, count);
+	}
+
+	// Plain decimals like 1.998 are converted directly; anything else is left to Float.parseFloat.
+	private float parseFloat() {
+		int i = start;
+		boolean negative = false;
+		if (line.charAt(i) == '-' || line.charAt(i) == '+') {
+			negative = line.charAt(i) == '-';
+			i++;
+		}
+		long mantissa = 0;
+		int digits = 0, scale = -1;
+		for (; i < end; i++) {
+			char ch = line.charAt(i);
+			if (ch >= '0' && ch <= '9') {
+				mantissa = mantissa * 10 + (ch - '0');
+				digits++;
+				if (scale >= 0) scale++;
+			}
+			else if (ch == '.' && scale < 0) {
+				scale = 0;
+			}
+			else {
+				break;
+			}
+		}
+		if (i < end || digits == 0 || digits >= POWERS_OF_TEN.length)
+			return Float.parseFloat(get()); // Throws NumberFormatException, an IllegalArgumentException, if it is not a number.
+		double value = scale > 0 ? mantissa / POWERS_OF_TEN[scale] : mantissa;
+		return (float) (negative ? -value : value);
+	}
+}
@@ -1,5 +1,6 @@
 package edu.uab.ssg.io.mach;
 
+import edu.uab.ssg.model.snp.Util;
 import java.io.*;
 import java.util.*;
 
@@ -22,6 +23,10 @@ import java.util.*;
  * ...
  * </tt></p>
  *
+ * <p>Each genotype is kept as the ASCII codes of its two single-character
+ * alleles in two byte arrays, read through the index accessors of the
+ * record.</p>
+ *
  * @author Jelai Wang
  */
 public final class GENOParser {
@@ -63,12 +68,38 @@ public final class GENOParser {
 		public String getIndividualID();
 
 		/**
-		 * Returns the genotypes as a list of strings.
+		 * Returns the genotypes as a list of strings. A new list is built
+		 * on every call; prefer the index accessors.
 		 * @return A list of strings. Each string represents a genotype as
 		 * formatted by the MACH program, typically using the '/' character
 		 * as the separator (e.g. A/T, G/G).
 		 */
 		public List<String> getGenotypes();
+
+		/**
+		 * Returns the number of genotypes.
+		 */
+		public int getNumberOfGenotypes();
+
+		/**
+		 * Returns the first allele of the genotype at the given index.
+		 */
+		public String getAllele1(int index);
+
+		/**
+		 * Returns the second allele of the genotype at the given index.
+		 */
+		public String getAllele2(int index);
+
+		/**
+		 * Returns the ASCII code of the first allele of the genotype at the given index.
+		 */
+		public byte getAllele1Code(int index);
+
+		/**
+		 * Returns the ASCII code of the second allele of the genotype at the given index.
+		 */
+		public byte getAllele2Code(int index);
 	}
 
 	/**
@@ -99,39 +130,54 @@ public final class GENOParser {
 		reader.close();
 	}
 
-	private class ParsedIndividualRecord implements IndividualRecord {
+	private static final class ParsedIndividualRecord implements IndividualRecord {
 		private String line;
 		private String familyID, individualID;
-		private List<String> genotypes = new ArrayList<String>();
+		private byte[] alleles1, alleles2;
 
 		private ParsedIndividualRecord(String line) {
 			if (line == null)
 				throw new NullPointerException("line");
 			this.line = line;
 
-			StringTokenizer tokenizer = new StringTokenizer(line);
-			if (tokenizer.countTokens() < 3) // Expect at least one genotype.
-				throw new IllegalArgumentException(line);
-			String[] tmp = tokenizer.nextToken().split("->");
-			if (tmp.length != 2)
-				throw new IllegalArgumentException(line);
-			this.familyID = tmp[0];
-			this.individualID = tmp[1];
-			String GENO = tokenizer.nextToken(); // Hard-coded constant "GENO".
-			if (!"GENO".equals(GENO))
-				throw new IllegalArgumentException(GENO + "," + line);
-			while (tokenizer.hasMoreTokens()) {
-				String genotype = tokenizer.nextToken();
-				if (genotype.length() == 3 && genotype.charAt(1) == '/')
-					genotypes.add(genotype);
-				else
-					throw new IllegalArgumentException(genotype + "," + line);
+			Fields fields = new Fields(line);
+			String[] ids = fields.nextHeader("GENO"); // Hard-coded constant "GENO".
+			this.familyID = ids[0];
+			this.individualID = ids[1];
+			byte[] a1 = new byte[Math.max(16, line.length() / 4)], a2 = new byte[a1.length];
+			int count = 0;
+			while (fields.next()) {
+				if (fields.length() != 3 || fields.charAt(1) != '/' || fields.charAt(0) >= 0x80 || fields.charAt(2) >= 0x80)
+					throw new IllegalArgumentException(fields.get() + "," + line);
+				if (count == a1.length) {
+					a1 = Arrays.copyOf(a1, count * 2);
+					a2 = Arrays.copyOf(a2, count * 2);
+				}
+				a1[count] = (byte) fields.charAt(0);
+				a2[count++] = (byte) fields.charAt(2);
 			}
+			if (count == 0) // Expect at least one genotype.
+				throw new IllegalArgumentException(line);
+			this.alleles1 = Arrays.copyOf(a1, count);
+			this.alleles2 = Arrays.copyOf(a2, count);
 		}
 
 		public String getFamilyID() { return familyID; }
 		public String getIndividualID() { return individualID; }
-		public List<String> getGenotypes() { return new ArrayList<String>(genotypes); }
+
+		public List<String> getGenotypes() {
+			List<String> genotypes = new ArrayList<String>(alleles1.length);
+			for (int i = 0; i < alleles1.length; i++) {
+				genotypes.add(getAllele1(i) + "/" + getAllele2(i));
+			}
+			return genotypes;
+		}
+
+		public int getNumberOfGenotypes() { return alleles1.length; }
+		public String getAllele1(int index) { return Util.getAllele(alleles1[index]); }
+		public String getAllele2(int index) { return Util.getAllele(alleles2[index]); }
+		public byte getAllele1Code(int index) { return alleles1[index]; }
+		public byte getAllele2Code(int index) { return alleles2[index]; }
 
 		public String toString() { return line; }
 	}
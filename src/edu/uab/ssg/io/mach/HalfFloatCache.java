@@ -0,0 +1,161 @@
+package edu.uab.ssg.io.mach;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A cache file of rows of half-precision floats, as written by
+ * <code>HalfFloatCacheWriter</code>, read without parsing any text.
+ *
+ * <p>Rows are read with positional reads on the file channel, so any row
+ * can be read in any order, from several threads at once, and the file
+ * may be larger than can be mapped into memory.</p>
+ *
+ * @author Jelai Wang
+ */
+public final class HalfFloatCache {
+	static final int MAGIC = 0x48463136; // "HF16"
+	private static final int HEADER_LENGTH = 8;
+
+	private RandomAccessFile file;
+	private FileChannel channel;
+	private int numberOfColumns, numberOfRows;
+
+	private HalfFloatCache(RandomAccessFile file, int numberOfColumns, int numberOfRows) {
+		this.file = file;
+		this.channel = file.getChannel();
+		this.numberOfColumns = numberOfColumns;
+		this.numberOfRows = numberOfRows;
+	}
+
+	/**
+	 * Opens a cache file.
+	 * @throws IOException If the file is not a cache file.
+	 */
+	public static HalfFloatCache open(File file) throws IOException {
+		if (file == null)
+			throw new NullPointerException("file");
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			if (raf.length() < HEADER_LENGTH || raf.readInt() != MAGIC)
+				throw new IOException("Not a half-float cache: " + file);
+			int numberOfColumns = raf.readInt();
+			long rowLength = 2L * numberOfColumns;
+			long numberOfRows = rowLength == 0 ? 0 : (raf.length() - HEADER_LENGTH) / rowLength;
+			if (numberOfColumns < 0 || numberOfRows > Integer.MAX_VALUE || (rowLength > 0 && (raf.length() - HEADER_LENGTH) % rowLength != 0))
+				throw new IOException("Truncated half-float cache: " + file);
+			return new HalfFloatCache(raf, numberOfColumns, (int) numberOfRows);
+		}
+		catch (IOException e) {
+			raf.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Returns the number of rows.
+	 */
+	public int getNumberOfRows() { return numberOfRows; }
+
+	/**
+	 * Returns the number of values in each row.
+	 */
+	public int getNumberOfColumns() { return numberOfColumns; }
+
+	/**
+	 * Reads a row into the given array, which must hold a whole row.
+	 */
+	public void read(int row, float[] values) throws IOException {
+		if (values == null)
+			throw new NullPointerException("values");
+		if (values.length < numberOfColumns)
+			throw new IllegalArgumentException(String.valueOf(values.length));
+		ByteBuffer buffer = ByteBuffer.allocate(2 * numberOfColumns);
+		readFully(buffer, getOffset(row, 0));
+		for (int i = 0; i < numberOfColumns; i++) {
+			values[i] = toFloat(buffer.getShort());
+		}
+	}
+
+	/**
+	 * Returns a single value.
+	 */
+	public float get(int row, int column) throws IOException {
+		if (column < 0 || column >= numberOfColumns)
+			throw new IndexOutOfBoundsException(String.valueOf(column));
+		ByteBuffer buffer = ByteBuffer.allocate(2);
+		readFully(buffer, getOffset(row, column));
+		return toFloat(buffer.getShort());
+	}
+
+	private long getOffset(int row, int column) {
+		if (row < 0 || row >= numberOfRows)
+			throw new IndexOutOfBoundsException(String.valueOf(row));
+		return HEADER_LENGTH + 2L * ((long) row * numberOfColumns + column);
+	}
+
+	private void readFully(ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			int n = channel.read(buffer, position + buffer.position());
+			if (n < 0)
+				throw new EOFException();
+		}
+		buffer.flip();
+	}
+
+	/**
+	 * Closes the cache file.
+	 */
+	public void close() throws IOException {
+		file.close();
+	}
+
+	/**
+	 * Converts a float to the nearest half-precision float, rounding ties
+	 * to even. Values too large become infinity and values too small zero.
+	 */
+	static short toHalf(float value) {
+		int bits = Float.floatToIntBits(value);
+		int sign = (bits >>> 16) & 0x8000;
+		int exponent = (bits >>> 23) & 0xff;
+		int mantissa = bits & 0x7fffff;
+		if (exponent == 0xff) // Infinity or NaN.
+			return (short) (sign | 0x7c00 | (mantissa != 0 ? 0x200 : 0));
+		exponent = exponent - 127 + 15;
+		if (exponent >= 0x1f)
+			return (short) (sign | 0x7c00);
+		int half, shift;
+		if (exponent <= 0) { // Subnormal, or zero.
+			if (exponent < -10)
+				return (short) sign;
+			mantissa |= 0x800000;
+			shift = 14 - exponent;
+			half = mantissa >>> shift;
+		}
+		else {
+			shift = 13;
+			half = (exponent << 10) | (mantissa >>> shift);
+		}
+		int remainder = mantissa & ((1 << shift) - 1), midpoint = 1 << (shift - 1);
+		if (remainder > midpoint || (remainder == midpoint && (half & 1) != 0))
+			half++; // A carry into the exponent is still the right answer.
+		return (short) (sign | half);
+	}
+
+	/**
+	 * Converts a half-precision float to a float, exactly.
+	 */
+	static float toFloat(short half) {
+		int sign = (half & 0x8000) << 16;
+		int exponent = (half >>> 10) & 0x1f;
+		int mantissa = half & 0x3ff;
+		if (exponent == 0x1f)
+			return Float.intBitsToFloat(sign | 0x7f800000 | (mantissa << 13));
+		if (exponent == 0) { // Subnormal, or zero.
+			float value = mantissa / 16777216f; // 2^24
+			return sign != 0 ? -value : value;
+		}
+		return Float.intBitsToFloat(sign | ((exponent + 112) << 23) | (mantissa << 13));
+	}
+}
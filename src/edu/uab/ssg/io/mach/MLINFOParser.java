@@ -0,0 +1,161 @@
+package edu.uab.ssg.io.mach;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * A parser for the MLINFO output file format from <a href="http://www.sph.umich.edu/csg/abecasis/MaCH/">MACH</a>.
+ *
+ * In other words, this is a parser for the output file with extension ".mlinfo" describing each imputed marker, in the same order as the columns of the ".dose" and ".mlprob" files. For example:
+ *
+ * <p><tt>
+ * SNP Al1 Al2 Freq1 MAF Quality Rsq<br/>
+ * rs1 C A 0.9612 0.0388 0.9603 0.7816<br/>
+ * rs2 G A 0.7301 0.2699 0.9153 0.8407<br/>
+ * ...
+ * </tt></p>
+ *
+ * <p>The columns are found by name in the header line, so later versions
+ * with more columns, or with <tt>AvgCall</tt> in place of
+ * <tt>Quality</tt>, are also accepted.</p>
+ *
+ * @author Jelai Wang
+ */
+public final class MLINFOParser {
+	private static final String[] COLUMNS = { "SNP", "Al1", "Al2", "Freq1", "MAF", "Quality", "Rsq" };
+
+	/**
+	 * Constructs the parser.
+	 */
+	public MLINFOParser() {
+	}
+
+	/**
+	 * A listener for handling parsed marker records and problems due to
+	 * bad record formatting.
+	 */
+	public interface RecordListener {
+		/**
+		 * Handles successfully parsed marker record.
+		 */
+		void handleParsedRecord(MarkerRecord record);
+
+		/**
+		 * Handles input that could not be parsed due to a formatting problem.
+		 * @param line The line of text that could not be parsed.
+		 */
+		void handleBadRecordFormat(String line);
+	}
+
+	/**
+	 * A marker record.
+	 */
+	public interface MarkerRecord {
+		/**
+		 * Returns the SNP name.
+		 */
+		public String getSNP();
+
+		/**
+		 * Returns the first allele, the one counted by the dosages.
+		 */
+		public String getAllele1();
+
+		/**
+		 * Returns the second allele.
+		 */
+		public String getAllele2();
+
+		/**
+		 * Returns the frequency of the first allele.
+		 */
+		public float getFrequency1();
+
+		/**
+		 * Returns the minor allele frequency.
+		 */
+		public float getMAF();
+
+		/**
+		 * Returns the average posterior probability of the most likely genotype.
+		 */
+		public float getQuality();
+
+		/**
+		 * Returns the estimated r-squared between imputed and true genotypes.
+		 */
+		public float getRsq();
+	}
+
+	/**
+	 * Parses the input stream for marker records.
+	 * @param in The input stream, typically a file input stream, of the
+	 * file to be parsed.
+	 * @param listener As the input stream is parsed, each marker record
+	 * is passed to the user-supplied record listener.
+	 * @throws IOException If the header line is missing a column.
+	 */
+	public void parse(InputStream in, RecordListener listener) throws IOException {
+		if (in == null)
+			throw new NullPointerException("in");
+		if (listener == null)
+			throw new NullPointerException("listener");
+		BufferedReader reader = new BufferedReader(new InputStreamReader(in));
+		String line = reader.readLine();
+		if (line == null) {
+			reader.close();
+			return;
+		}
+		List<String> header = Arrays.asList(line.trim().split("\\s+"));
+		int[] columns = new int[COLUMNS.length];
+		for (int i = 0; i < COLUMNS.length; i++) {
+			columns[i] = header.indexOf(COLUMNS[i]);
+			if (columns[i] < 0 && "Quality".equals(COLUMNS[i]))
+				columns[i] = header.indexOf("AvgCall");
+			if (columns[i] < 0)
+				throw new IOException(line);
+		}
+		while ((line = reader.readLine()) != null) {
+			MarkerRecord record = null;
+			try {
+				record = new ParsedMarkerRecord(line, columns);
+			}
+			catch (RuntimeException e) {
+				listener.handleBadRecordFormat(line);
+				continue;
+			}
+			listener.handleParsedRecord(record);
+		}
+		reader.close();
+	}
+
+	private static final class ParsedMarkerRecord implements MarkerRecord {
+		private String line;
+		private String snp, allele1, allele2;
+		private float frequency1, maf, quality, rsq;
+
+		private ParsedMarkerRecord(String line, int[] columns) {
+			if (line == null)
+				throw new NullPointerException("line");
+			this.line = line;
+			String[] tokens = line.trim().split("\\s+");
+			this.snp = tokens[columns[0]];
+			this.allele1 = tokens[columns[1]];
+			this.allele2 = tokens[columns[2]];
+			this.frequency1 = Float.parseFloat(tokens[columns[3]]);
+			this.maf = Float.parseFloat(tokens[columns[4]]);
+			this.quality = Float.parseFloat(tokens[columns[5]]);
+			this.rsq = Float.parseFloat(tokens[columns[6]]);
+		}
+
+		public String getSNP() { return snp; }
+		public String getAllele1() { return allele1; }
+		public String getAllele2() { return allele2; }
+		public float getFrequency1() { return frequency1; }
+		public float getMAF() { return maf; }
+		public float getQuality() { return quality; }
+		public float getRsq() { return rsq; }
+
+		public String toString() { return line; }
+	}
+}
@@ -0,0 +1,133 @@
+package edu.uab.ssg.io.mach;
+
+import java.io.*;
+
+/**
+ * A parser for the MLPROB output file format from <a href="http://www.sph.umich.edu/csg/abecasis/MaCH/">MACH</a>.
+ *
+ * In other words, this is a parser for the output file with extension ".mlprob" containing two imputed genotype probabilities for each marker and individual: the probability of being homozygous for the first allele given in the ".mlinfo" file, and of being heterozygous. For example:
+ *
+ * <p><tt>
+ * FAM1-&gt;IND1 ML_PROB 0.998 0.002 0.000 0.002 1.000 0.000<br/>
+ * FAM2-&gt;IND1 ML_PROB 0.012 0.975 0.000 0.000 0.974 0.026<br/>
+ * ...
+ * </tt></p>
+ *
+ * <p>Each line is decoded in a single pass into a primitive float array,
+ * since a line may hold millions of probabilities. The records can be
+ * kept in a <code>HalfFloatCacheWriter</code> for later runs.</p>
+ *
+ * @author Jelai Wang
+ */
+public final class MLPROBParser {
+	/**
+	 * Constructs the parser.
+	 */
+	public MLPROBParser() {
+	}
+
+	/**
+	 * A listener for handling parsed individual records and problems due to
+	 * bad record formatting.
+	 */
+	public interface RecordListener {
+		/**
+		 * Handles successfully parsed individual record.
+		 */
+		void handleParsedRecord(IndividualRecord record);
+
+		/**
+		 * Handles input that could not be parsed due to a formatting problem.
+		 * @param line The line of text that could not be parsed.
+		 */
+		void handleBadRecordFormat(String line);
+	}
+
+	/**
+	 * An individual record.
+	 */
+	public interface IndividualRecord {
+		/**
+		 * Returns the family ID.
+		 */
+		public String getFamilyID();
+
+		/**
+		 * Returns the individual ID.
+		 */
+		public String getIndividualID();
+
+		/**
+		 * Returns the number of markers.
+		 */
+		public int getNumberOfMarkers();
+
+		/**
+		 * Returns the probability of being homozygous for the first allele of the marker at the given index.
+		 */
+		public float getHomozygousProbability(int index);
+
+		/**
+		 * Returns the probability of being heterozygous at the marker at the given index.
+		 */
+		public float getHeterozygousProbability(int index);
+
+		/**
+		 * Returns the probabilities as read, two per marker. The array
+		 * belongs to the record and must not be modified.
+		 */
+		public float[] getProbabilities();
+	}
+
+	/**
+	 * Parses the input stream for individual records.
+	 * @param in The input stream, typically a file input stream, of the
+	 * file to be parsed.
+	 * @param listener As the input stream is parsed, each individual record
+	 * is passed to the user-supplied record listener.
+	 */
+	public void parse(InputStream in, RecordListener listener) throws IOException {
+		if (in == null)
+			throw new NullPointerException("in");
+		if (listener == null)
+			throw new NullPointerException("listener");
+		BufferedReader reader = new BufferedReader(new InputStreamReader(in), 1 << 16);
+		String line = null;
+		while ((line = reader.readLine()) != null) {
+			IndividualRecord record = null;
+			try {
+				record = new ParsedIndividualRecord(line);
+			}
+			catch (RuntimeException e) {
+				listener.handleBadRecordFormat(line);
+				continue;
+			}
+			listener.handleParsedRecord(record);
+		}
+		reader.close();
+	}
+
+	private static final class ParsedIndividualRecord implements IndividualRecord {
+		private String familyID, individualID;
+		private float[] probabilities;
+
+		private ParsedIndividualRecord(String line) {
+			Fields fields = new Fields(line);
+			String[] ids = fields.nextHeader("ML_PROB");
+			this.familyID = ids[0];
+			this.individualID = ids[1];
+			this.probabilities = fields.remainingFloats();
+			if (probabilities.length == 0 || probabilities.length % 2 != 0) // Expect two probabilities per marker.
+				throw new IllegalArgumentException(line);
+		}
+
+		public String getFamilyID() { return familyID; }
+		public String getIndividualID() { return individualID; }
+		public int getNumberOfMarkers() { return probabilities.length / 2; }
+		public float getHomozygousProbability(int index) { return probabilities[2 * index]; }
+		public float getHeterozygousProbability(int index) { return probabilities[2 * index + 1]; }
+		public float[] getProbabilities() { return probabilities; }
+
+		public String toString() { return familyID + "->" + individualID; }
+	}
+}
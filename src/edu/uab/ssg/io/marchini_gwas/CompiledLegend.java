@@ -0,0 +1,152 @@
+package edu.uab.ssg.io.marchini_gwas;
+
+import edu.uab.ssg.model.snp.*;
+import java.io.*;
+import java.util.*;
+
+/**
+ * A legend with the alleles of every SNP resolved once into arrays, for
+ * writers that recode many samples against the same legend.
+ *
+ * <p>A legend such as the one built by <code>LegendBuilder</code> may work
+ * out allele 0 and 1 anew on every call. Compiling it asks once per SNP,
+ * after which the alleles are read by SNP index, and single-character
+ * alleles also as ASCII codes for recoding haplotypes byte by byte.</p>
+ *
+ * @author Jelai Wang
+ */
+public final class CompiledLegend implements Legend, LegendRows {
+	private List<SNP> snps;
+	private Map<SNP, Integer> snp2index = new HashMap<SNP, Integer>();
+	private String[] alleles0, alleles1;
+	private byte[] codes0, codes1;
+
+	private CompiledLegend(List<SNP> snps, String[] alleles0, String[] alleles1) {
+		this.snps = Collections.unmodifiableList(snps);
+		this.alleles0 = alleles0;
+		this.alleles1 = alleles1;
+		this.codes0 = new byte[snps.size()];
+		this.codes1 = new byte[snps.size()];
+		for (int i = 0, n = snps.size(); i < n; i++) {
+			snp2index.put(snps.get(i), Integer.valueOf(i));
+			codes0[i] = toCode(alleles0[i]);
+			codes1[i] = toCode(alleles1[i]);
+		}
+	}
+
+	private static byte toCode(String allele) {
+		if (allele != null && allele.length() == 1 && allele.charAt(0) > 0 && allele.charAt(0) < 0x80)
+			return (byte) allele.charAt(0);
+		return 0;
+	}
+
+	/**
+	 * Compiles the given legend, asking it for the alleles of each SNP once.
+	 * A compiled legend is returned as is.
+	 */
+	public static CompiledLegend compile(Legend legend) {
+		if (legend == null)
+			throw new NullPointerException("legend");
+		if (legend instanceof CompiledLegend)
+			return (CompiledLegend) legend;
+		List<SNP> snps = new ArrayList<SNP>(legend.getSNPs());
+		String[] alleles0 = new String[snps.size()], alleles1 = new String[snps.size()];
+		if (legend instanceof LegendRows) { // Keep the alleles of rows that share a SNP.
+			LegendRows rows = (LegendRows) legend;
+			for (int i = 0, n = snps.size(); i < n; i++) {
+				alleles0[i] = rows.getAllele0(i);
+				alleles1[i] = rows.getAllele1(i);
+			}
+		}
+		else {
+			for (int i = 0, n = snps.size(); i < n; i++) {
+				alleles0[i] = legend.getAllele0(snps.get(i));
+				alleles1[i] = legend.getAllele1(snps.get(i));
+			}
+		}
+		return new CompiledLegend(snps, alleles0, alleles1);
+	}
+
+	public List<SNP> getSNPs() { return new ArrayList<SNP>(snps); }
+
+	/**
+	 * Returns the number of SNPs.
+	 */
+	public int getNumberOfSNPs() { return snps.size(); }
+
+	/**
+	 * Returns the SNP at the given index.
+	 */
+	public SNP getSNP(int index) { return snps.get(index); }
+
+	/**
+	 * Returns the name of the SNP at the given index.
+	 */
+	public String getName(int index) { return snps.get(index).getName(); }
+
+	/**
+	 * Returns the position of the SNP at the given index.
+	 */
+	public int getPosition(int index) { return snps.get(index).getPosition(); }
+
+	/**
+	 * Returns the index of the given SNP, or -1 if it is not in this legend.
+	 */
+	public int indexOf(SNP snp) {
+		if (snp == null)
+			throw new NullPointerException("snp");
+		Integer index = snp2index.get(snp);
+		return index != null ? index.intValue() : -1;
+	}
+
+	public String getAllele0(SNP snp) {
+		int index = indexOf(snp);
+		return index >= 0 ? alleles0[index] : null;
+	}
+
+	public String getAllele1(SNP snp) {
+		int index = indexOf(snp);
+		return index >= 0 ? alleles1[index] : null;
+	}
+
+	/**
+	 * Returns the allele coded as allele 0 at the SNP with the given index.
+	 */
+	public String getAllele0(int index) { return alleles0[index]; }
+
+	/**
+	 * Returns the allele coded as allele 1 at the SNP with the given index.
+	 */
+	public String getAllele1(int index) { return alleles1[index]; }
+
+	/**
+	 * Returns the ASCII code of allele 0 at the SNP with the given index, or
+	 * zero if the allele is missing or longer than one character.
+	 */
+	public byte getAllele0Code(int index) { return codes0[index]; }
+
+	/**
+	 * Returns the ASCII code of allele 1 at the SNP with the given index, or
+	 * zero if the allele is missing or longer than one character.
+	 */
+	public byte getAllele1Code(int index) { return codes1[index]; }
+
+	public void write(OutputStream out) throws IOException {
+		writeTo(out, 1);
+	}
+
+	/**
+	 * Writes this legend to the given output stream, one batch of rows at a
+	 * time, without building the whole legend in memory. The batches are
+	 * encoded on a pool of the given number of threads and written in
+	 * order, as UTF-8. The output stream is closed when done.
+	 */
+	public void writeTo(OutputStream out, int numberOfThreads) throws IOException {
+		LegendWriter.write(this, out, numberOfThreads);
+	}
+
+	/**
+	 * Returns a tabular string representation of this legend.
+	 */
+	public String toString() { return LegendWriter.toString(this); }
+}
@@ -0,0 +1,207 @@
+package edu.uab.ssg.io.marchini_gwas;
+
+import edu.uab.ssg.model.snp.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * A builder for Legend implementations that counts alleles in bulk and may
+ * be called from several threads at once, for example from the listeners
+ * of parsers reading a cohort in parallel.
+ *
+ * <p>The SNPs are fixed when the builder is constructed and addressed by
+ * index, and alleles are given as ASCII codes, zero for missing data, either
+ * as a whole column of one SNP or as a whole row of one haplotype. Counts
+ * are kept in primitive arrays, split into shards of consecutive SNPs with
+ * a lock each, so threads counting different parts of the genome do not
+ * wait for each other and a row takes each lock once.</p>
+ *
+ * <p>The legends created are the same as those of <code>LegendBuilder</code>
+ * for the same alleles, with the SNPs in the order given to the
+ * constructor. SNPs for which nothing was counted are left out.</p>
+ *
+ * @author Jelai Wang
+ */
+public final class ConcurrentLegendBuilder {
+	private static final int SHARD_SIZE = 4096;
+
+	private List<SNP> snps;
+	private Object[] locks;
+	private byte[] alleles1, alleles2;
+	private int[] counts1, counts2, missingCounts;
+	private ConcurrentMap<Integer, Set<String>> badsnps = new ConcurrentHashMap<Integer, Set<String>>();
+
+	/**
+	 * Constructs the builder.
+	 * @param snps The SNPs, addressed by their index in this list.
+	 */
+	public ConcurrentLegendBuilder(List<SNP> snps) {
+		if (snps == null)
+			throw new NullPointerException("snps");
+		this.snps = new ArrayList<SNP>(snps);
+		int n = snps.size();
+		this.locks = new Object[(n + SHARD_SIZE - 1) / SHARD_SIZE];
+		for (int i = 0; i < locks.length; i++) {
+			locks[i] = new Object();
+		}
+		this.alleles1 = new byte[n];
+		this.alleles2 = new byte[n];
+		this.counts1 = new int[n];
+		this.counts2 = new int[n];
+		this.missingCounts = new int[n];
+	}
+
+	/**
+	 * Counts the alleles of one SNP across samples.
+	 * @param codes The ASCII code of each allele, or zero for missing data.
+	 */
+	public void countAlleles(int markerIndex, byte[] codes) {
+		if (codes == null)
+			throw new NullPointerException("codes");
+		if (markerIndex < 0 || markerIndex >= snps.size())
+			throw new IndexOutOfBoundsException(String.valueOf(markerIndex));
+		synchronized (locks[markerIndex / SHARD_SIZE]) {
+			for (int i = 0; i < codes.length; i++) {
+				count(markerIndex, codes[i]);
+			}
+		}
+	}
+
+	/**
+	 * Counts the alleles of one haplotype across SNPs.
+	 * @param codes The ASCII code of the allele at each SNP, or zero for missing data.
+	 */
+	public void countHaplotype(byte[] codes) {
+		if (codes == null)
+			throw new NullPointerException("codes");
+		if (codes.length != snps.size())
+			throw new IllegalArgumentException(String.valueOf(codes.length));
+		for (int shard = 0; shard < locks.length; shard++) {
+			int from = shard * SHARD_SIZE, to = Math.min(from + SHARD_SIZE, codes.length);
+			synchronized (locks[shard]) {
+				for (int i = from; i < to; i++) {
+					count(i, codes[i]);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Counts the alleles of one sample across SNPs, both haplotypes.
+	 */
+	public void countSample(byte[] alleles1, byte[] alleles2) {
+		if (alleles1 == null)
+			throw new NullPointerException("alleles1");
+		if (alleles2 == null)
+			throw new NullPointerException("alleles2");
+		if (alleles1.length != snps.size())
+			throw new IllegalArgumentException(String.valueOf(alleles1.length));
+		if (alleles2.length != snps.size())
+			throw new IllegalArgumentException(String.valueOf(alleles2.length));
+		for (int shard = 0; shard < locks.length; shard++) {
+			int from = shard * SHARD_SIZE, to = Math.min(from + SHARD_SIZE, alleles1.length);
+			synchronized (locks[shard]) {
+				for (int i = from; i < to; i++) {
+					count(i, alleles1[i]);
+					count(i, alleles2[i]);
+				}
+			}
+		}
+	}
+
+	// Called with the lock of the shard of the marker held.
+	private void count(int marker, byte code) {
+		if (code == 0) {
+			missingCounts[marker]++;
+		}
+		else if (code == alleles1[marker]) {
+			counts1[marker]++;
+		}
+		else if (code == alleles2[marker]) {
+			counts2[marker]++;
+		}
+		else if (alleles1[marker] == 0) {
+			alleles1[marker] = code;
+			counts1[marker]++;
+		}
+		else if (alleles2[marker] == 0) {
+			alleles2[marker] = code;
+			counts2[marker]++;
+		}
+		else { // This SNP is no longer biallelic.
+			Integer key = Integer.valueOf(marker);
+			Set<String> alleles = badsnps.get(key);
+			if (alleles == null) {
+				alleles = new HashSet<String>();
+				alleles.add(toAllele(alleles1[marker]));
+				alleles.add(toAllele(alleles2[marker]));
+				badsnps.put(key, alleles);
+			}
+			alleles.add(toAllele(code));
+		}
+	}
+
+	private static String toAllele(byte code) {
+		return String.valueOf((char) code);
+	}
+
+	/**
+	 * Creates legend that recodes alleles to 0 or 1 based on the minor allele.
+	 */
+	public Legend createMinorAlleleLegend() {
+		return new MinorAlleleLegend(mapSNP2Counter());
+	}
+
+	/**
+	 * Creates legend that recodes alleles to 0 or 1 based on the haplotype of a given reference sample.
+	 */
+	public Legend createReferenceSampleLegend(Sample referenceSample) {
+		return new ReferenceSampleLegend(referenceSample, mapSNP2Counter());
+	}
+
+	// Merges the shards into allele counters of the good SNPs.
+	private Map<SNP, AlleleCounter> mapSNP2Counter() {
+		Map<SNP, AlleleCounter> map = new LinkedHashMap<SNP, AlleleCounter>();
+		for (int shard = 0; shard < locks.length; shard++) {
+			int from = shard * SHARD_SIZE, to = Math.min(from + SHARD_SIZE, snps.size());
+			synchronized (locks[shard]) {
+				for (int i = from; i < to; i++) {
+					if (badsnps.containsKey(Integer.valueOf(i)) || (alleles1[i] == 0 && missingCounts[i] == 0))
+						continue;
+					AlleleCounter counter = new AlleleCounter();
+					if (alleles1[i] != 0) counter.addAllele(toAllele(alleles1[i]), counts1[i]);
+					if (alleles2[i] != 0) counter.addAllele(toAllele(alleles2[i]), counts2[i]);
+					counter.addAllele(null, missingCounts[i]);
+					map.put(snps.get(i), counter);
+				}
+			}
+		}
+		return map;
+	}
+
+	/**
+	 * Returns a list of SNPs that are not monomorphic or biallelic.
+	 * These SNPs are not part of the legend because the recoding of alleles
+	 * to 0 or 1 is only defined for monomorphic or biallelic SNPs.
+	 */
+	public List<SNP> getBadSNPs() {
+		List<SNP> list = new ArrayList<SNP>();
+		for (int i = 0, n = snps.size(); i < n; i++) {
+			if (badsnps.containsKey(Integer.valueOf(i)))
+				list.add(snps.get(i));
+		}
+		return list;
+	}
+
+	/**
+	 * For a SNP that is not monomorphic or biallelic, return the set of observed alleles for troubleshooting purposes.
+	 */
+	public Set<String> getAllelesForBadSNP(int markerIndex) {
+		Set<String> alleles = badsnps.get(Integer.valueOf(markerIndex));
+		if (alleles == null)
+			throw new IllegalArgumentException(String.valueOf(markerIndex));
+		synchronized (locks[markerIndex / SHARD_SIZE]) {
+			return new HashSet<String>(alleles);
+		}
+	}
+}
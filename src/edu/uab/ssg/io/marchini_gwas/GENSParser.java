@@ -99,6 +99,13 @@ public final class GENSParser {
 		 * Returns the list of genotype probabilities corresponding to the sequence of samples in the sample file.
 		 */
 		List<GenotypeProbabilities> getGenotypeProbabilities();
+
+		/**
+		 * Returns the genotype probabilities as one array of AA, AB and BB
+		 * triples in the sequence of samples in the sample file, for bulk
+		 * processing.
+		 */
+		double[] getProbabilities();
 	}
 
 	/**
@@ -142,13 +149,23 @@ public final class GENSParser {
 		String getAllele2();
 	}
 
+	/**
+	 * Returns the genotype probabilities of the record, without the copy
+	 * made by <code>getProbabilities</code> if the record was parsed here.
+	 * The array must not be modified.
+	 */
+	static double[] getProbabilitiesUncopied(GenotypeRecord record) {
+		return record instanceof ParsedGenotypeRecord ? ((ParsedGenotypeRecord) record).probs : record.getProbabilities();
+	}
+
 	private class ParsedGenotypeRecord implements GenotypeRecord {
 		private String line;
 		private String chr;
 		private String snp;
 		private int position;
 		private String alleleA, alleleB;
-		private List<GenotypeProbabilities> probs;
+		private double[] probs;
+		private Genotype genotypeAA, genotypeAB, genotypeBB; // Shared by the samples.
 
 		private ParsedGenotypeRecord(String line) {
 			if (line == null)
@@ -163,13 +180,17 @@ public final class GENSParser {
 				throw new IllegalArgumentException(String.valueOf(position));
 			this.alleleA = tokens[3];
 			this.alleleB = tokens[4];
+			this.genotypeAA = new DefaultGenotype(alleleA, alleleA);
+			this.genotypeAB = new DefaultGenotype(alleleA, alleleB);
+			this.genotypeBB = new DefaultGenotype(alleleB, alleleB);
 			// Check that the genotype probabilities come in sets of three.
-			int numOfSamples = tokens.length - 5 / 3;
 			if ((tokens.length - 5) % 3 != 0)
 				throw new IllegalArgumentException("THE NUMBER OF GENOTYPE PROBABILITIES IS NOT EVENLY DIVISIBLE BY 3: " + line);
-			probs = new ArrayList<GenotypeProbabilities>(numOfSamples);
-			for (int i = 5; i < tokens.length; i+=3) {
-				probs.add(new ParsedGenotypeProbabilities(tokens[i], tokens[i+1], tokens[i+2]));
+			probs = new double[tokens.length - 5];
+			for (int i = 0; i < probs.length; i++) {
+				probs[i] = Double.parseDouble(tokens[i + 5]);
+				if (probs[i] < 0. || probs[i] > 1.)
+					throw new IllegalArgumentException(tokens[i + 5]);
 			}
 		}
 
@@ -178,29 +199,25 @@ public final class GENSParser {
 		public int getPosition() { return position; }
 		public String getAlleleA() { return alleleA; }
 		public String getAlleleB() { return alleleB; }
-		public List<GenotypeProbabilities> getGenotypeProbabilities() { return new ArrayList<GenotypeProbabilities>(probs); }
+		public List<GenotypeProbabilities> getGenotypeProbabilities() {
+			List<GenotypeProbabilities> list = new ArrayList<GenotypeProbabilities>(probs.length / 3);
+			for (int i = 0; i < probs.length; i += 3) {
+				list.add(new ParsedGenotypeProbabilities(probs[i], probs[i + 1], probs[i + 2]));
+			}
+			return list;
+		}
+
+		public double[] getProbabilities() { return probs.clone(); }
 
 		public String toString() { return line; }
 
 		private class ParsedGenotypeProbabilities implements GenotypeProbabilities {
 			private double probAA, probAB, probBB;
 
-			private ParsedGenotypeProbabilities(String probAA, String probAB, String probBB) {
-				if (probAA == null) 
-					throw new NullPointerException("probAA");
-				if (probAB == null) 
-					throw new NullPointerException("probAB");
-				if (probBB == null) 
-					throw new NullPointerException("probBB");
-				this.probAA = Double.parseDouble(probAA);
-				if (this.probAA < 0. || this.probAA > 1.)
-					throw new IllegalArgumentException(probAA);
-				this.probAB = Double.parseDouble(probAB);
-				if (this.probAB < 0. || this.probAB > 1.)
-					throw new IllegalArgumentException(probAB);
-				this.probBB = Double.parseDouble(probBB);
-				if (this.probBB < 0. || this.probBB > 1.)
-					throw new IllegalArgumentException(probBB);
+			private ParsedGenotypeProbabilities(double probAA, double probAB, double probBB) {
+				this.probAA = probAA;
+				this.probAB = probAB;
+				this.probBB = probBB;
 			}
 
 			public double getProbAA() { return probAA; }
@@ -212,13 +229,13 @@ public final class GENSParser {
 					throw new IllegalArgumentException(String.valueOf(threshold));
 				}
 				if (probAA > probAB && probAA > probBB && probAA > threshold) { // AA.
-					return new DefaultGenotype(alleleA, alleleA);
+					return genotypeAA;
 				}
 				else if (probAB > probAA && probAB > probBB && probAB > threshold) { // AB.
-					return new DefaultGenotype(alleleA, alleleB);
+					return genotypeAB;
 				}
 				else if (probBB > probAA && probBB > probAB && probBB > threshold) { // BB.
-					return new DefaultGenotype(alleleB, alleleB);
+					return genotypeBB;
 				}
 				return null;
 			}
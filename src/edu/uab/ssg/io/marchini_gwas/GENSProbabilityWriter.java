@@ -0,0 +1,215 @@
+package edu.uab.ssg.io.marchini_gwas;
+
+import edu.uab.ssg.model.snp.*;
+import edu.uab.ssg.util.OrderedBatchWriter;
+import java.io.*;
+import java.util.*;
+
+/**
+ * A writer for the genotype file format described at <a href="http://www.stats.ox.ac.uk/~marchini/software/gwas/file_format.html">http://www.stats.ox.ac.uk/~marchini/software/gwas/file_format.html</a>
+ * that writes genotype probabilities as given, for example those of imputed
+ * data read by <code>GENSParser</code>, rather than hard calls.
+ *
+ * <p>The probabilities of a SNP are given as one primitive array of AA, AB
+ * and BB triples, one triple per sample, and a block of SNPs as one array
+ * of consecutive SNPs. Each probability is rounded to a fixed number of
+ * decimal places and written with its digits computed directly, as
+ * <tt>0</tt> or <tt>1</tt> if it rounds to either and otherwise with
+ * exactly that many decimal places, as IMPUTE does: <tt>0.230</tt>.
+ * Fewer decimal places make smaller files. The SNPs of a block are
+ * formatted in batches on a thread pool and written in order by an
+ * <code>OrderedBatchWriter</code>.</p>
+ *
+ * <p>The field delimiter is the space character and the line separator is the newline character.</p>
+ *
+ * @author Jelai Wang
+ */
+public final class GENSProbabilityWriter {
+	/**
+	 * The number of decimal places written by IMPUTE.
+	 */
+	public static final int DEFAULT_PRECISION = 3;
+
+	private static final int MAX_PRECISION = 9;
+	private static final int SNPS_PER_BATCH = 16;
+	private static final byte DELIMITER = ' ';
+	private static final byte EOL = '\n';
+
+	private int numberOfSamples, precision;
+	private long scale;
+	private OutputStream out;
+	private OrderedBatchWriter writer;
+
+	/**
+	 * Constructs the writer.
+	 * @param numberOfSamples The number of samples, a third of the number of probabilities of each SNP.
+	 * @param precision The number of decimal places, from 1 to 9.
+	 */
+	public GENSProbabilityWriter(int numberOfSamples, int precision, OutputStream out) {
+		if (numberOfSamples < 0)
+			throw new IllegalArgumentException(String.valueOf(numberOfSamples));
+		if (precision < 1 || precision > MAX_PRECISION)
+			throw new IllegalArgumentException(String.valueOf(precision));
+		if (out == null)
+			throw new NullPointerException("out");
+		this.numberOfSamples = numberOfSamples;
+		this.precision = precision;
+		this.scale = 1;
+		for (int i = 0; i < precision; i++) {
+			scale *= 10;
+		}
+		this.out = new BufferedOutputStream(out, 1 << 16);
+		this.writer = new OrderedBatchWriter(this.out);
+	}
+
+	/**
+	 * Closes the writer.
+	 */
+	public void close() throws IOException {
+		out.flush();
+		out.close();
+	}
+
+	/**
+	 * Writes a record for the given SNP.
+	 * @param probabilities The AA, AB and BB probabilities of each sample, in order.
+	 * @throws IllegalArgumentException If there are not three probabilities per sample, or a probability is not between 0 and 1.
+	 */
+	public void write(SNP snp, String alleleA, String alleleB, double[] probabilities) throws IOException {
+		if (probabilities == null)
+			throw new NullPointerException("probabilities");
+		write(Collections.singletonList(snp), new String[] { alleleA }, new String[] { alleleB }, probabilities, null, 1);
+	}
+
+	/**
+	 * Writes a record for the given SNP.
+	 * @param probabilities The AA, AB and BB probabilities of each sample, in order.
+	 * @throws IllegalArgumentException If there are not three probabilities per sample, or a probability is not between 0 and 1.
+	 */
+	public void write(SNP snp, String alleleA, String alleleB, float[] probabilities) throws IOException {
+		if (probabilities == null)
+			throw new NullPointerException("probabilities");
+		write(Collections.singletonList(snp), new String[] { alleleA }, new String[] { alleleB }, null, probabilities, 1);
+	}
+
+	/**
+	 * Writes a parsed genotype record, for example to round its probabilities.
+	 */
+	public void write(GENSParser.GenotypeRecord record) throws IOException {
+		if (record == null)
+			throw new NullPointerException("record");
+		SNP snp = new DefaultSNP(record.getName(), record.getChromosome(), record.getPosition());
+		write(snp, record.getAlleleA(), record.getAlleleB(), record.getProbabilities());
+	}
+
+	/**
+	 * Writes the records of a block of SNPs.
+	 * @param probabilities The probabilities of each SNP in turn, each as for a single SNP.
+	 * @param numberOfThreads The number of threads for formatting records.
+	 * @throws IllegalArgumentException If there are not three probabilities per sample and SNP, or a probability is not between 0 and 1.
+	 */
+	public void write(List<SNP> snps, String[] allelesA, String[] allelesB, double[] probabilities, int numberOfThreads) throws IOException {
+		if (probabilities == null)
+			throw new NullPointerException("probabilities");
+		write(snps, allelesA, allelesB, probabilities, null, numberOfThreads);
+	}
+
+	/**
+	 * Writes the records of a block of SNPs.
+	 * @param probabilities The probabilities of each SNP in turn, each as for a single SNP.
+	 * @param numberOfThreads The number of threads for formatting records.
+	 * @throws IllegalArgumentException If there are not three probabilities per sample and SNP, or a probability is not between 0 and 1.
+	 */
+	public void write(List<SNP> snps, String[] allelesA, String[] allelesB, float[] probabilities, int numberOfThreads) throws IOException {
+		if (probabilities == null)
+			throw new NullPointerException("probabilities");
+		write(snps, allelesA, allelesB, null, probabilities, numberOfThreads);
+	}
+
+	// Exactly one of doubles and floats is not null.
+	private void write(final List<SNP> snps, final String[] allelesA, final String[] allelesB, final double[] doubles, final float[] floats, int numberOfThreads) throws IOException {
+		if (snps == null)
+			throw new NullPointerException("snps");
+		if (allelesA == null)
+			throw new NullPointerException("allelesA");
+		if (allelesB == null)
+			throw new NullPointerException("allelesB");
+		if (numberOfThreads < 1)
+			throw new IllegalArgumentException(String.valueOf(numberOfThreads));
+		int n = snps.size();
+		if (allelesA.length != n)
+			throw new IllegalArgumentException(String.valueOf(allelesA.length));
+		if (allelesB.length != n)
+			throw new IllegalArgumentException(String.valueOf(allelesB.length));
+		int length = doubles != null ? doubles.length : floats.length;
+		if (length != (long) n * numberOfSamples * 3)
+			throw new IllegalArgumentException(String.valueOf(length));
+		for (int i = 0; i < n; i++) {
+			if (snps.get(i) == null)
+				throw new NullPointerException("snp");
+			if (allelesA[i] == null)
+				throw new NullPointerException("alleleA");
+			if (allelesB[i] == null)
+				throw new NullPointerException("alleleB");
+		}
+		// Check every probability first, so a bad one never leaves part of the block written.
+		for (int i = 0; i < length; i++) {
+			double probability = doubles != null ? doubles[i] : floats[i];
+			if (!(probability >= 0. && probability <= 1.)) // Also catches NaN.
+				throw new IllegalArgumentException(String.valueOf(probability));
+		}
+		writer.write(new OrderedBatchWriter.Encoder() {
+			public void encode(int from, int to, OrderedBatchWriter.Batch batch) throws IOException {
+				format(snps, allelesA, allelesB, doubles, floats, from, to, batch);
+			}
+		}, n, SNPS_PER_BATCH, numberOfThreads);
+	}
+
+	// Formats the records of the given SNPs into the batch.
+	private void format(List<SNP> snps, String[] allelesA, String[] allelesB, double[] doubles, float[] floats, int from, int to, OrderedBatchWriter.Batch batch) throws IOException {
+		int valuesPerSNP = numberOfSamples * 3;
+		for (int i = from; i < to; i++) {
+			SNP snp = snps.get(i);
+			batch.append(snp.getChromosome());
+			batch.append(DELIMITER);
+			batch.append(snp.getName());
+			batch.append(DELIMITER);
+			batch.append(Integer.toString(snp.getPosition()));
+			batch.append(DELIMITER);
+			batch.append(allelesA[i]);
+			batch.append(DELIMITER);
+			batch.append(allelesB[i]);
+			batch.ensureCapacity(valuesPerSNP * (precision + 3) + 1);
+			byte[] bytes = batch.getBytes();
+			int length = batch.getLength();
+			for (int j = i * valuesPerSNP, end = j + valuesPerSNP; j < end; j++) {
+				bytes[length++] = DELIMITER;
+				length = appendProbability(bytes, length, doubles != null ? doubles[j] : floats[j]);
+			}
+			bytes[length++] = EOL;
+			batch.setLength(length);
+		}
+	}
+
+	// Puts the probability, already checked to be between 0 and 1, rounded to the precision at the given offset, returning the new end; the caller ensures room for precision + 2 bytes.
+	private int appendProbability(byte[] bytes, int length, double probability) {
+		long units = Math.round(probability * scale);
+		if (units == 0) {
+			bytes[length++] = '0';
+		}
+		else if (units == scale) {
+			bytes[length++] = '1';
+		}
+		else {
+			bytes[length++] = '0';
+			bytes[length++] = '.';
+			int end = length + precision;
+			for (int k = end - 1; k >= length; k--) {
+				bytes[k] = (byte) ('0' + units % 10);
+				units /= 10;
+			}
+			length = end;
+		}
+		return length;
+	}
+}
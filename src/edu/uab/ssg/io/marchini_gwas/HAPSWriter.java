@@ -19,12 +19,25 @@ import java.io.*;
  *
  * Alleles are recoded to 0 or 1 according to the user-supplied legend. The field delimiter is the space character. Missing data are coded as the hyphen character (dash).
  *
+ * <p>Besides writing a set of samples at once, the writer can be constructed
+ * with a legend and then given one sample at a time, either as a
+ * <code>Sample</code> or as a pair of phased haplotypes of ASCII allele
+ * codes, for example from <code>edu.uab.ssg.io.fastphase.OUTParser</code>.
+ * The legend is compiled once, and each pair of haplotype lines is encoded
+ * straight into reusable byte buffers, so reference panels of any number
+ * of haplotypes can be written in constant memory.</p>
+ *
  * @author Jelai Wang
  */
 public final class HAPSWriter {
-	private static final char DELIMITER = ' ';
-	private static final char MISSING = '-';
-	private static final String EOL = "\n";
+	private static final byte DELIMITER = ' ';
+	private static final byte MISSING = '-';
+	private static final byte EOL = '\n';
+
+	private CompiledLegend legend;
+	private List<SNP> snps;
+	private OutputStream out;
+	private byte[] line1, line2;
 
 	/**
 	 * Constructs the writer.
@@ -32,6 +45,27 @@ public final class HAPSWriter {
 	public HAPSWriter() {
 	}
 
+	/**
+	 * Constructs a writer for samples given one at a time.
+	 * @param legend The legend contains the mapping of alleles at a biallelic SNP to 0 or 1.
+	 */
+	public HAPSWriter(Legend legend, OutputStream out) {
+		if (legend == null)
+			throw new NullPointerException("legend");
+		if (out == null)
+			throw new NullPointerException("out");
+		this.legend = CompiledLegend.compile(legend);
+		this.snps = this.legend.getSNPs();
+		this.out = new BufferedOutputStream(out, 1 << 16);
+		int length = Math.max(1, 2 * snps.size()); // An allele and a delimiter or line end per SNP.
+		this.line1 = new byte[length];
+		this.line2 = new byte[length];
+		line1[length - 1] = line2[length - 1] = EOL;
+		for (int i = 1; i < length - 1; i += 2) {
+			line1[i] = line2[i] = DELIMITER;
+		}
+	}
+
 	/**
 	 * Writes the samples to the output stream in the HAPS file format, recoding alleles to 0 or 1 according to the legend.
 	 * @param samples The samples to write to the output stream.
@@ -45,44 +79,98 @@ public final class HAPSWriter {
 			throw new NullPointerException("legend");
 		if (out == null)
 			throw new NullPointerException("out");
-		BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(out));
-		List<SNP> snps = legend.getSNPs();
-		for (Iterator<Sample> it1 = samples.iterator(); it1.hasNext(); ) {
-			Sample sample = it1.next();
-			StringBuilder haplotype1 = new StringBuilder();
-			StringBuilder haplotype2 = new StringBuilder();
+		HAPSWriter writer = new HAPSWriter(legend, out);
+		for (Iterator<Sample> it = samples.iterator(); it.hasNext(); ) {
+			writer.write(it.next());
+		}
+		writer.close();
+	}
 
-			for (Iterator<SNP> it2 = snps.iterator(); it2.hasNext(); ) {
-				SNP snp = it2.next();
-				if (sample.existsGenotype(snp)) {
-					Sample.Genotype genotype = sample.getGenotype(snp);
-					String a1 = recode(legend, snp, genotype.getAllele1());
-					String a2 = recode(legend, snp, genotype.getAllele2());
-					haplotype1.append(DELIMITER).append(a1);
-					haplotype2.append(DELIMITER).append(a2);
-				}
-				else {
-					haplotype1.append(DELIMITER).append(MISSING);
-					haplotype2.append(DELIMITER).append(MISSING);
-				}
+	/**
+	 * Writes the two haplotypes of the next sample.
+	 * @throws IllegalStateException If the writer was not constructed with a legend.
+	 */
+	public void write(Sample sample) throws IOException {
+		if (sample == null)
+			throw new NullPointerException("sample");
+		checkState();
+		for (int i = 0, n = snps.size(); i < n; i++) {
+			SNP snp = snps.get(i);
+			if (sample.existsGenotype(snp)) {
+				Sample.Genotype genotype = sample.getGenotype(snp);
+				line1[2 * i] = recode(i, genotype.getAllele1());
+				line2[2 * i] = recode(i, genotype.getAllele2());
+			}
+			else {
+				line1[2 * i] = line2[2 * i] = MISSING;
 			}
+		}
+		writeLines();
+	}
 
-			writer.write(haplotype1.toString().trim()); writer.write(EOL);
-			writer.write(haplotype2.toString().trim()); writer.write(EOL);
+	/**
+	 * Writes the two haplotypes of the next sample, given as the ASCII code of
+	 * the allele at each SNP of the legend, in order, or zero for missing
+	 * data. Only single-character alleles of the legend can be matched.
+	 * @throws IllegalStateException If the writer was not constructed with a legend.
+	 */
+	public void write(byte[] haplotype1, byte[] haplotype2) throws IOException {
+		if (haplotype1 == null)
+			throw new NullPointerException("haplotype1");
+		if (haplotype2 == null)
+			throw new NullPointerException("haplotype2");
+		checkState();
+		if (haplotype1.length != snps.size())
+			throw new IllegalArgumentException(String.valueOf(haplotype1.length));
+		if (haplotype2.length != snps.size())
+			throw new IllegalArgumentException(String.valueOf(haplotype2.length));
+		for (int i = 0; i < haplotype1.length; i++) {
+			line1[2 * i] = recode(i, haplotype1[i]);
+			line2[2 * i] = recode(i, haplotype2[i]);
 		}
-		writer.flush();
-		writer.close();
+		writeLines();
+	}
+
+	/**
+	 * Closes the writer.
+	 * @throws IllegalStateException If the writer was not constructed with a legend.
+	 */
+	public void close() throws IOException {
+		checkState();
+		out.flush();
+		out.close();
+	}
+
+	private void checkState() {
+		if (legend == null)
+			throw new IllegalStateException();
+	}
+
+	private void writeLines() throws IOException {
+		out.write(line1);
+		out.write(line2);
 	}
 
 	// Recode allele to 0 or 1 using legend.
-	/* package private */ String recode(Legend legend, SNP snp, String allele) {
+	private byte recode(int index, String allele) {
 		if (allele == null)
-			return String.valueOf(MISSING);
-		else if (allele.equals(legend.getAllele0(snp)))
-			return "0";
-		else if (allele.equals(legend.getAllele1(snp)))
-			return "1";
+			return MISSING;
+		else if (allele.equals(legend.getAllele0(index)))
+			return '0';
+		else if (allele.equals(legend.getAllele1(index)))
+			return '1';
+		else
+			throw new RuntimeException(snps.get(index) + "\t" + allele);
+	}
+
+	private byte recode(int index, byte allele) {
+		if (allele == 0)
+			return MISSING;
+		else if (allele == legend.getAllele0Code(index))
+			return '0';
+		else if (allele == legend.getAllele1Code(index))
+			return '1';
 		else
-			throw new RuntimeException(snp + "\t" + allele);
+			throw new RuntimeException(snps.get(index) + "\t" + (char) allele);
 	}
 }
@@ -0,0 +1,176 @@
+package edu.uab.ssg.io.marchini_gwas;
+
+import edu.uab.ssg.model.snp.*;
+import java.util.*;
+
+/**
+ * Converts genotype probabilities, such as those of imputed data read by
+ * <code>GENSParser</code>, into hard calls packed two bits per call, and
+ * computes quality metrics of each SNP in the same pass.
+ *
+ * <p>A sample is called with the genotype whose probability is greater
+ * than those of the other two genotypes and than the threshold, as by
+ * <code>GENSParser.GenotypeProbabilities.getGenotype</code>, and is
+ * otherwise missing. The calls of each SNP are appended to a
+ * <code>PackedGenotypeMatrix</code> with allele A as the first allele and
+ * allele B as the second, from which quality control and export to other
+ * formats can proceed without going back to the probabilities. As with
+ * <code>PackedGenotypeMatrix.add(MarkerGenotypes)</code>, the second
+ * allele is null if no call carries allele B, and both are null if every
+ * call is missing.</p>
+ *
+ * <p>The metrics are the call rate at the threshold, the expected and the
+ * called dosage of allele B, and the IMPUTE information measure, which is
+ * 1 minus the ratio of the mean variance of the dosage of a sample, given
+ * its probabilities, to the variance under Hardy-Weinberg equilibrium at
+ * the expected allele frequency. A sample whose probabilities are all zero
+ * is taken as missing and left out of the dosages and information measure.</p>
+ *
+ * @author Jelai Wang
+ */
+public final class HardCallConverter {
+	private double threshold;
+	private PackedGenotypeMatrix matrix;
+	private List<SNPMetrics> metrics = new ArrayList<SNPMetrics>();
+	private long[] words;
+
+	/**
+	 * Constructs the converter.
+	 * @param sampleNames The names of the samples, in the order of their probabilities.
+	 * @param threshold The probability a genotype must exceed to be called, between 0 and 1.
+	 */
+	public HardCallConverter(List<String> sampleNames, double threshold) {
+		if (sampleNames == null)
+			throw new NullPointerException("sampleNames");
+		if (!(threshold >= 0. && threshold <= 1.))
+			throw new IllegalArgumentException(String.valueOf(threshold));
+		this.threshold = threshold;
+		this.matrix = new PackedGenotypeMatrix(sampleNames);
+		this.words = new long[(sampleNames.size() + PackedGenotypeMatrix.CALLS_PER_WORD - 1) / PackedGenotypeMatrix.CALLS_PER_WORD];
+	}
+
+	/**
+	 * Converts a parsed genotype record, returning the metrics of its SNP.
+	 */
+	public SNPMetrics add(GENSParser.GenotypeRecord record) {
+		if (record == null)
+			throw new NullPointerException("record");
+		SNP snp = new DefaultSNP(record.getName(), record.getChromosome(), record.getPosition());
+		return add(snp, record.getAlleleA(), record.getAlleleB(), GENSParser.getProbabilitiesUncopied(record));
+	}
+
+	/**
+	 * Converts the genotype probabilities of a SNP, returning its metrics.
+	 * @param probabilities The AA, AB and BB probabilities of each sample, in order.
+	 * @throws IllegalArgumentException If there are not three probabilities per sample.
+	 */
+	public SNPMetrics add(SNP snp, String alleleA, String alleleB, double[] probabilities) {
+		if (snp == null)
+			throw new NullPointerException("snp");
+		if (alleleA == null)
+			throw new NullPointerException("alleleA");
+		if (alleleB == null)
+			throw new NullPointerException("alleleB");
+		if (probabilities == null)
+			throw new NullPointerException("probabilities");
+		int numberOfSamples = matrix.getNumberOfSamples();
+		if (probabilities.length != numberOfSamples * 3)
+			throw new IllegalArgumentException(String.valueOf(probabilities.length));
+		Arrays.fill(words, 0L);
+		int called = 0, present = 0, calledDosage = 0;
+		boolean carriesB = false;
+		double dosage = 0., variance = 0.;
+		for (int s = 0, i = 0; s < numberOfSamples; s++, i += 3) {
+			double pAA = probabilities[i], pAB = probabilities[i + 1], pBB = probabilities[i + 2];
+			int code = PackedGenotypeMatrix.MISSING;
+			if (pAA > pAB && pAA > pBB && pAA > threshold) code = PackedGenotypeMatrix.HOMOZYGOUS_1;
+			else if (pAB > pAA && pAB > pBB && pAB > threshold) code = PackedGenotypeMatrix.HETEROZYGOUS;
+			else if (pBB > pAA && pBB > pAB && pBB > threshold) code = PackedGenotypeMatrix.HOMOZYGOUS_2;
+			if (code != PackedGenotypeMatrix.MISSING) {
+				called++;
+				calledDosage += code; // The code counts copies of allele B.
+				if (code != PackedGenotypeMatrix.HOMOZYGOUS_1) carriesB = true;
+			}
+			words[s / PackedGenotypeMatrix.CALLS_PER_WORD] |= (long) code << ((s % PackedGenotypeMatrix.CALLS_PER_WORD) << 1);
+			if (pAA + pAB + pBB > 0.) {
+				double e = pAB + 2. * pBB;
+				present++;
+				dosage += e;
+				variance += pAB + 4. * pBB - e * e;
+			}
+		}
+		// As for a monomorphic marker in PackedGenotypeMatrix.add(MarkerGenotypes), leave out allele B if no call carries it.
+		matrix.add(snp, null, called > 0 ? alleleA : null, carriesB ? alleleB : null, words);
+
+		double expectedDosage = present > 0 ? dosage / present : Double.NaN;
+		double theta = expectedDosage / 2.;
+		double info = Double.NaN;
+		if (present > 0)
+			info = theta > 0. && theta < 1. ? 1. - variance / (2. * present * theta * (1. - theta)) : 1.;
+		SNPMetrics result = new DefaultSNPMetrics(snp, numberOfSamples > 0 ? (double) called / numberOfSamples : Double.NaN, expectedDosage, called > 0 ? (double) calledDosage / called : Double.NaN, info);
+		metrics.add(result);
+		return result;
+	}
+
+	/**
+	 * Returns the hard calls of the SNPs converted so far, in order.
+	 */
+	public PackedGenotypeMatrix getMatrix() { return matrix; }
+
+	/**
+	 * Returns the metrics of the SNPs converted so far, in order.
+	 */
+	public List<SNPMetrics> getMetrics() { return Collections.unmodifiableList(metrics); }
+
+	/**
+	 * Quality metrics of a converted SNP.
+	 */
+	public interface SNPMetrics {
+		/**
+		 * Returns the SNP.
+		 */
+		SNP getSNP();
+
+		/**
+		 * Returns the fraction of samples called at the threshold.
+		 */
+		double getCallRate();
+
+		/**
+		 * Returns the mean expected number of copies of allele B, over the
+		 * samples that are not missing, or NaN if every sample is missing.
+		 */
+		double getExpectedDosage();
+
+		/**
+		 * Returns the mean number of copies of allele B in the hard calls,
+		 * over the called samples, or NaN if no sample is called.
+		 */
+		double getCalledDosage();
+
+		/**
+		 * Returns the IMPUTE information measure, 1 for a SNP whose expected
+		 * allele frequency is 0 or 1, or NaN if every sample is missing.
+		 */
+		double getInfo();
+	}
+
+	private static final class DefaultSNPMetrics implements SNPMetrics {
+		private SNP snp;
+		private double callRate, expectedDosage, calledDosage, info;
+
+		private DefaultSNPMetrics(SNP snp, double callRate, double expectedDosage, double calledDosage, double info) {
+			this.snp = snp;
+			this.callRate = callRate;
+			this.expectedDosage = expectedDosage;
+			this.calledDosage = calledDosage;
+			this.info = info;
+		}
+
+		public SNP getSNP() { return snp; }
+		public double getCallRate() { return callRate; }
+		public double getExpectedDosage() { return expectedDosage; }
+		public double getCalledDosage() { return calledDosage; }
+		public double getInfo() { return info; }
+	}
+}
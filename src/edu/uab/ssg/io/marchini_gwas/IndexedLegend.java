@@ -0,0 +1,334 @@
+package edu.uab.ssg.io.marchini_gwas;
+
+import edu.uab.ssg.model.snp.*;
+import java.io.*;
+import java.util.*;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * A file-based Legend implementation for large legends of a single
+ * chromosome, such as those of the IMPUTE2 reference panels, with lookup
+ * of SNPs by name and by position.
+ *
+ * <p>The legend format carries no chromosome, so it is given when the
+ * legend is read. Besides the <tt>rs position a0 a1</tt> header of HapGen
+ * legends, the <tt>id position a0 a1</tt> header of IMPUTE2 legends is
+ * accepted, and columns after a1 are ignored. A gzipped legend is detected
+ * and decompressed on the fly.</p>
+ *
+ * <p>SNPs are stored in file order in parallel arrays of names, positions
+ * and alleles, with single-character alleles held as ASCII codes. A SNP is
+ * found by name, or by position on this chromosome, through two
+ * open-addressing tables of row indexes that probe the name and position
+ * arrays themselves, so an index costs a few ints per SNP rather than
+ * boxed hash entries. SNPs shared by the name or the position are
+ * resolved to the first one in the legend. The legend is written one line at a time.</p>
+ *
+ * @author Jelai Wang
+ */
+public final class IndexedLegend implements Legend, LegendRows {
+	private static final String MISSING_VALUE = "-";
+	private static final byte LONG_ALLELE = (byte) 0xff; // Code of an allele longer than one character.
+
+	private String chromosome;
+	private int numberOfSNPs = 0;
+	private String[] names = new String[1024];
+	private int[] positions = new int[1024];
+	private byte[] codes0 = new byte[1024], codes1 = new byte[1024];
+	private Map<Integer, String> longAlleles0 = new HashMap<Integer, String>(), longAlleles1 = new HashMap<Integer, String>();
+	// Open-addressing tables, with linear probing, of row index + 1 by name and by position; zero marks an empty slot.
+	private int[] nameTable, positionTable;
+
+	/**
+	 * Constructs the legend from a user-supplied input stream, which may be gzipped.
+	 * @param in The input stream, usually a FileInputStream, from which to construct this legend.
+	 * @param chromosome The chromosome of the SNPs of this legend.
+	 */
+	public IndexedLegend(InputStream in, String chromosome) throws IOException {
+		if (in == null)
+			throw new NullPointerException("in");
+		if (chromosome == null)
+			throw new NullPointerException("chromosome");
+		this.chromosome = chromosome;
+		BufferedReader reader = new BufferedReader(new InputStreamReader(decompress(in)), 1 << 16);
+		// Header.
+		String line = reader.readLine();
+		if (line == null)
+			throw new IllegalArgumentException("No header.");
+		String[] header = line.split("[ \t]+");
+		if (header.length < 4)
+			throw new IllegalArgumentException(Arrays.asList(header).toString());
+		if (!"rs".equals(header[0]) && !"id".equals(header[0]))
+			throw new IllegalArgumentException(header[0]);
+		if (!"position".equals(header[1]))
+			throw new IllegalArgumentException(header[1]);
+		// Rest of lines.
+		int[] bounds = new int[8];
+		while ((line = reader.readLine()) != null) {
+			if (line.length() == 0)
+				continue;
+			if (split(line, bounds) < 4)
+				throw new IllegalArgumentException(line);
+			add(line.substring(bounds[0], bounds[1]), parsePosition(line, bounds[2], bounds[3]), line.substring(bounds[4], bounds[5]), line.substring(bounds[6], bounds[7]));
+		}
+		reader.close();
+		names = Arrays.copyOf(names, numberOfSNPs);
+		positions = Arrays.copyOf(positions, numberOfSNPs);
+		codes0 = Arrays.copyOf(codes0, numberOfSNPs);
+		codes1 = Arrays.copyOf(codes1, numberOfSNPs);
+		buildIndexes();
+	}
+
+	// Wraps the stream in a GZIPInputStream if it starts with the gzip magic number.
+	private static InputStream decompress(InputStream in) throws IOException {
+		BufferedInputStream buffered = new BufferedInputStream(in, 1 << 16);
+		buffered.mark(2);
+		int b1 = buffered.read(), b2 = buffered.read();
+		buffered.reset();
+		if (b1 == 0x1f && b2 == 0x8b)
+			return new GZIPInputStream(buffered, 1 << 16);
+		return buffered;
+	}
+
+	// Finds the start and end of the first four fields, returning how many were found.
+	private static int split(String line, int[] bounds) {
+		int length = line.length(), position = 0, count = 0;
+		while (count < 4) {
+			while (position < length && isWhitespace(line.charAt(position))) position++;
+			if (position == length)
+				break;
+			bounds[2 * count] = position;
+			while (position < length && !isWhitespace(line.charAt(position))) position++;
+			bounds[2 * count + 1] = position;
+			count++;
+		}
+		return count;
+	}
+
+	private static boolean isWhitespace(char ch) {
+		return ch == ' ' || ch == '\t';
+	}
+
+	private static int parsePosition(String line, int start, int end) {
+		if (end - start > 9)
+			return Integer.parseInt(line.substring(start, end));
+		int value = 0;
+		for (int i = start; i < end; i++) {
+			char ch = line.charAt(i);
+			if (ch < '0' || ch > '9')
+				throw new NumberFormatException(line.substring(start, end));
+			value = value * 10 + (ch - '0');
+		}
+		return value;
+	}
+
+	private void add(String name, int position, String a0, String a1) {
+		if (numberOfSNPs == names.length) {
+			int capacity = numberOfSNPs * 2;
+			names = Arrays.copyOf(names, capacity);
+			positions = Arrays.copyOf(positions, capacity);
+			codes0 = Arrays.copyOf(codes0, capacity);
+			codes1 = Arrays.copyOf(codes1, capacity);
+		}
+		int index = numberOfSNPs++;
+		names[index] = name;
+		positions[index] = position;
+		codes0[index] = encode(index, a0, longAlleles0);
+		codes1[index] = encode(index, a1, longAlleles1);
+	}
+
+	private void buildIndexes() {
+		int capacity = 4; // A power of two at least twice the number of SNPs.
+		while (capacity < numberOfSNPs * 2) capacity <<= 1;
+		nameTable = new int[capacity];
+		positionTable = new int[capacity];
+		for (int i = 0; i < numberOfSNPs; i++) {
+			int slot = findName(names[i]);
+			if (nameTable[slot] == 0) nameTable[slot] = i + 1; // The first SNP with the name wins.
+			slot = findPosition(positions[i]);
+			if (positionTable[slot] == 0) positionTable[slot] = i + 1;
+		}
+	}
+
+	// Returns the slot of the name, or the empty slot where it would go.
+	private int findName(String name) {
+		int mask = nameTable.length - 1;
+		int slot = mix(name.hashCode()) & mask;
+		while (nameTable[slot] != 0 && !names[nameTable[slot] - 1].equals(name)) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	// Returns the slot of the position, or the empty slot where it would go.
+	private int findPosition(int position) {
+		int mask = positionTable.length - 1;
+		int slot = mix(position) & mask;
+		while (positionTable[slot] != 0 && positions[positionTable[slot] - 1] != position) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	// Spreads the bits of a hash code, so that nearby positions do not fill runs of slots.
+	private static int mix(int h) {
+		h *= 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	private static byte encode(int index, String allele, Map<Integer, String> longAlleles) {
+		if (MISSING_VALUE.equals(allele))
+			return 0;
+		if (allele.length() == 1 && allele.charAt(0) > 0 && allele.charAt(0) < 0x80)
+			return (byte) allele.charAt(0);
+		longAlleles.put(Integer.valueOf(index), allele);
+		return LONG_ALLELE;
+	}
+
+	private static String decode(int index, byte code, Map<Integer, String> longAlleles) {
+		if (code == LONG_ALLELE)
+			return longAlleles.get(Integer.valueOf(index));
+		return Util.getAllele(code); // Null for missing data.
+	}
+
+	/**
+	 * Returns the chromosome of the SNPs of this legend.
+	 */
+	public String getChromosome() { return chromosome; }
+
+	/**
+	 * Returns the number of SNPs.
+	 */
+	public int getNumberOfSNPs() { return numberOfSNPs; }
+
+	/**
+	 * Returns the SNP at the given index.
+	 */
+	public SNP getSNP(int index) {
+		checkIndex(index);
+		return new DefaultSNP(names[index], chromosome, positions[index]);
+	}
+
+	/**
+	 * Returns the name of the SNP at the given index.
+	 */
+	public String getName(int index) {
+		checkIndex(index);
+		return names[index];
+	}
+
+	/**
+	 * Returns the position of the SNP at the given index.
+	 */
+	public int getPosition(int index) {
+		checkIndex(index);
+		return positions[index];
+	}
+
+	/**
+	 * Returns the index of the first SNP with the given name, or -1 if there is none.
+	 */
+	public int indexOf(String name) {
+		if (name == null)
+			throw new NullPointerException("name");
+		return nameTable[findName(name)] - 1;
+	}
+
+	/**
+	 * Returns the index of the first SNP at the given position, or -1 if there is none.
+	 */
+	public int indexOfPosition(int position) {
+		return positionTable[findPosition(position)] - 1;
+	}
+
+	/**
+	 * Returns the index of the given SNP, matched by name and position, or
+	 * failing that by chromosome and position, or -1 if it is not in this legend.
+	 */
+	public int indexOf(SNP snp) {
+		if (snp == null)
+			throw new NullPointerException("snp");
+		int index = indexOf(snp.getName());
+		if (index >= 0 && positions[index] == snp.getPosition())
+			return index;
+		if (chromosome.equals(snp.getChromosome()))
+			return indexOfPosition(snp.getPosition());
+		return -1;
+	}
+
+	public List<SNP> getSNPs() {
+		List<SNP> snps = new ArrayList<SNP>(numberOfSNPs);
+		for (int i = 0; i < numberOfSNPs; i++) {
+			snps.add(new DefaultSNP(names[i], chromosome, positions[i]));
+		}
+		return snps;
+	}
+
+	public String getAllele0(SNP snp) {
+		int index = indexOf(snp);
+		return index >= 0 ? decode(index, codes0[index], longAlleles0) : null;
+	}
+
+	public String getAllele1(SNP snp) {
+		int index = indexOf(snp);
+		return index >= 0 ? decode(index, codes1[index], longAlleles1) : null;
+	}
+
+	/**
+	 * Returns the allele coded as allele 0 at the SNP with the given index.
+	 */
+	public String getAllele0(int index) {
+		checkIndex(index);
+		return decode(index, codes0[index], longAlleles0);
+	}
+
+	/**
+	 * Returns the allele coded as allele 1 at the SNP with the given index.
+	 */
+	public String getAllele1(int index) {
+		checkIndex(index);
+		return decode(index, codes1[index], longAlleles1);
+	}
+
+	/**
+	 * Returns the ASCII code of allele 0 at the SNP with the given index, or
+	 * zero if the allele is missing or longer than one character.
+	 */
+	public byte getAllele0Code(int index) {
+		checkIndex(index);
+		return codes0[index] == LONG_ALLELE ? 0 : codes0[index];
+	}
+
+	/**
+	 * Returns the ASCII code of allele 1 at the SNP with the given index, or
+	 * zero if the allele is missing or longer than one character.
+	 */
+	public byte getAllele1Code(int index) {
+		checkIndex(index);
+		return codes1[index] == LONG_ALLELE ? 0 : codes1[index];
+	}
+
+	private void checkIndex(int index) {
+		if (index < 0 || index >= numberOfSNPs)
+			throw new IndexOutOfBoundsException(String.valueOf(index));
+	}
+
+	public void write(OutputStream out) throws IOException {
+		writeTo(out, 1);
+	}
+
+	/**
+	 * Writes this legend to the given output stream, one batch of rows at a
+	 * time, without building the whole legend in memory. The batches are
+	 * encoded on a pool of the given number of threads and written in
+	 * order, as UTF-8. The output stream is closed when done.
+	 */
+	public void writeTo(OutputStream out, int numberOfThreads) throws IOException {
+		LegendWriter.write(this, out, numberOfThreads);
+	}
+
+	/**
+	 * Returns a tabular string representation of this legend.
+	 */
+	public String toString() { return LegendWriter.toString(this); }
+}
@@ -43,7 +43,8 @@ public interface Legend {
 	String getAllele1(SNP snp);
 
 	/**
-	 * Writes this legend to the given output stream.
+	 * Writes this legend to the given output stream, encoded as UTF-8
+	 * whatever the platform's default charset.
 	 */
 	void write(OutputStream out) throws IOException;
 }
@@ -73,44 +73,21 @@ public final class LegendFile implements Legend {
 	public List<SNP> getSNPs() { return new ArrayList<SNP>(map.keySet()); }
 
 	public void write(OutputStream out) throws IOException {
-		if (out == null)
-			throw new NullPointerException("out");
-		BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(out));
-		writer.write(toString());
-		writer.flush();
-		writer.close();
+		writeTo(out, 1);
 	}
 
 	/**
-	 * Returns a tabular string representation of this legend.
+	 * Writes this legend to the given output stream, one batch of rows at a
+	 * time, without building the whole legend in memory. The batches are
+	 * encoded on a pool of the given number of threads and written in
+	 * order, as UTF-8. The output stream is closed when done.
 	 */
-	public String toString() {
-		char DELIMITER = ' ';
-	   	String EOL = "\n";
-	   	String MISSING = "-";
-
-		StringBuilder builder = new StringBuilder();
-		// Create header.
-		builder.append("rs");
-		builder.append(DELIMITER).append("position");
-		builder.append(DELIMITER).append("a0");
-		builder.append(DELIMITER).append("a1");
-		builder.append(EOL);
-		// Create the rest.
-		List<SNP> snps = getSNPs();
-		for (Iterator<SNP> it = snps.iterator(); it.hasNext(); ) {
-			SNP snp = it.next();
-			String a0 = getAllele0(snp);
-			if (a0 == null) a0 = MISSING;
-			String a1 = getAllele1(snp);
-			if (a1 == null) a1 = MISSING;
-
-			builder.append(snp.getName());
-			builder.append(DELIMITER).append(snp.getPosition());
-			builder.append(DELIMITER).append(a0);
-			builder.append(DELIMITER).append(a1);
-			builder.append(EOL);
-		}
-		return builder.toString();
+	public void writeTo(OutputStream out, int numberOfThreads) throws IOException {
+		LegendWriter.write(this, out, numberOfThreads);
 	}
+
+	/**
+	 * Returns a tabular string representation of this legend.
+	 */
+	public String toString() { return LegendWriter.toString(this); }
 }
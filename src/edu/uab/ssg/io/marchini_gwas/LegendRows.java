@@ -0,0 +1,36 @@
+package edu.uab.ssg.io.marchini_gwas;
+
+/**
+ * The rows of a legend, read by row index, for legends that keep their
+ * alleles per row rather than per SNP. Rows that share a name and position,
+ * as at the multi-allelic sites of IMPUTE2 reference panels, keep their own
+ * alleles, which a lookup by SNP cannot tell apart.
+ *
+ * @author Jelai Wang
+ */
+/* package private */ interface LegendRows {
+	/**
+	 * Returns the number of rows.
+	 */
+	int getNumberOfSNPs();
+
+	/**
+	 * Returns the SNP name of the given row.
+	 */
+	String getName(int index);
+
+	/**
+	 * Returns the position of the given row.
+	 */
+	int getPosition(int index);
+
+	/**
+	 * Returns allele 0 of the given row, or null if it is missing.
+	 */
+	String getAllele0(int index);
+
+	/**
+	 * Returns allele 1 of the given row, or null if it is missing.
+	 */
+	String getAllele1(int index);
+}
@@ -0,0 +1,105 @@
+package edu.uab.ssg.io.marchini_gwas;
+
+import edu.uab.ssg.model.snp.*;
+import edu.uab.ssg.util.OrderedBatchWriter;
+import java.io.*;
+import java.util.*;
+
+/**
+ * Writes any legend in the legend file format, one batch of rows at a time,
+ * for the <code>write</code> and <code>writeTo</code> methods of the Legend
+ * implementations.
+ *
+ * <p>The rows of a batch are encoded into a reusable byte buffer, so the
+ * legend is never held as one string. A legend that keeps its alleles per
+ * row (see <code>LegendRows</code>) is read by row index; any other legend
+ * is read through its list of SNPs, with the alleles of each SNP looked up
+ * through the legend. With more than one thread, batches are encoded on a
+ * thread pool and written in order by an <code>OrderedBatchWriter</code>.</p>
+ *
+ * <p>The legend is written as UTF-8. The implementations used to write
+ * through an <code>OutputStreamWriter</code> in the platform's default
+ * charset; the output is the same for the ASCII names and alleles of
+ * legend files in practice.</p>
+ *
+ * @author Jelai Wang
+ */
+/* package private */ final class LegendWriter {
+	private static final int SNPS_PER_BATCH = 4096;
+	private static final byte DELIMITER = ' ';
+	private static final byte EOL = '\n';
+	private static final byte MISSING = '-';
+	private static final byte[] HEADER = { 'r', 's', ' ', 'p', 'o', 's', 'i', 't', 'i', 'o', 'n', ' ', 'a', '0', ' ', 'a', '1', '\n' };
+
+	private LegendWriter() {
+	}
+
+	/**
+	 * Writes the legend to the output stream, which is closed when done.
+	 * @param numberOfThreads The number of threads for resolving and encoding rows.
+	 */
+	static void write(Legend legend, OutputStream out, int numberOfThreads) throws IOException {
+		if (legend == null)
+			throw new NullPointerException("legend");
+		if (out == null)
+			throw new NullPointerException("out");
+		if (numberOfThreads < 1)
+			throw new IllegalArgumentException(String.valueOf(numberOfThreads));
+		OutputStream output = new BufferedOutputStream(out, 1 << 16);
+		output.write(HEADER);
+		final LegendRows rows = legend instanceof LegendRows ? (LegendRows) legend : new SNPRows(legend);
+		new OrderedBatchWriter(output).write(new OrderedBatchWriter.Encoder() {
+			public void encode(int from, int to, OrderedBatchWriter.Batch batch) throws IOException {
+				LegendWriter.encode(rows, from, to, batch);
+			}
+		}, rows.getNumberOfSNPs(), SNPS_PER_BATCH, numberOfThreads);
+		output.flush();
+		output.close();
+	}
+
+	/**
+	 * Returns the legend in the legend file format.
+	 */
+	static String toString(Legend legend) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try {
+			write(legend, out, 1);
+			return out.toString("UTF-8");
+		}
+		catch (IOException e) { // Impossible for a ByteArrayOutputStream.
+			throw new RuntimeException(e);
+		}
+	}
+
+	// Encodes the given rows into the batch.
+	private static void encode(LegendRows rows, int from, int to, OrderedBatchWriter.Batch batch) throws IOException {
+		for (int i = from; i < to; i++) {
+			String a0 = rows.getAllele0(i), a1 = rows.getAllele1(i);
+			batch.append(rows.getName(i));
+			batch.append(DELIMITER);
+			batch.append(Integer.toString(rows.getPosition(i)));
+			batch.append(DELIMITER);
+			if (a0 != null) batch.append(a0); else batch.append(MISSING);
+			batch.append(DELIMITER);
+			if (a1 != null) batch.append(a1); else batch.append(MISSING);
+			batch.append(EOL);
+		}
+	}
+
+	// The rows of a legend that is read by SNP.
+	private static final class SNPRows implements LegendRows {
+		private Legend legend;
+		private List<SNP> snps;
+
+		private SNPRows(Legend legend) {
+			this.legend = legend;
+			this.snps = legend.getSNPs();
+		}
+
+		public int getNumberOfSNPs() { return snps.size(); }
+		public String getName(int index) { return snps.get(index).getName(); }
+		public int getPosition(int index) { return snps.get(index).getPosition(); }
+		public String getAllele0(int index) { return legend.getAllele0(snps.get(index)); }
+		public String getAllele1(int index) { return legend.getAllele1(snps.get(index)); }
+	}
+}
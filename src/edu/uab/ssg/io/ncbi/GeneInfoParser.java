@@ -1,8 +1,7 @@
 package edu.uab.ssg.io.ncbi;
 
+import edu.uab.ssg.io.ByteLineReader;
 import java.io.InputStream;
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
 import java.io.IOException;
 import java.util.List;
 import java.util.ArrayList;
@@ -20,14 +19,27 @@ import java.util.Collections;
  *	</tt></p>
  *	<p>The gene_info file format is described at <a href="ftp://ftp.ncbi.nih.gov/gene/DATA/README">ftp://ftp.ncbi.nih.gov/gene/DATA/README</a>. A locally cached version is <a href="doc-files/README">available here</a>. This parser should also work for the species-specific extractions of gene_info available at, for example, <a href="ftp://ftp.ncbi.nih.gov/gene/DATA/GENE_INFO/Mammalia/">ftp://ftp.ncbi.nih.gov/gene/DATA/GENE_INFO/Mammalia/</a>.</p>
  * 	
- * 	<p>The field delimiter is a tab character. The dash character, '-', indicates that a value is not available, and will be returned as null in this API. For certain fields, like synonyms and dbXrefs, multiple values are concatenated with a pipe character, '|', as the delimiter. These values will be parsed and returned as a list.</p>
+ * 	<p>The field delimiter is a tab character. The dash character, '-', indicates that a value is not available, and will be returned as null in this API. For certain fields, like synonyms and dbXrefs, multiple values are concatenated with a pipe character, '|', as the delimiter. These values will be parsed, the first time they are asked for, and returned as a list.</p>
+ *
+ *	<p>The full gene_info file covers every organism and is far too large to hold in memory. The streaming <code>parse</code> method hands records to a listener one at a time and applies a <code>ByteLineReader.LineFilter</code> to the raw fields of each line first, so lines rejected by, for example, <code>createTaxIDFilter("9606")</code> are skipped without being tokenised into strings.</p>
  *
  *	@author Jelai Wang
  */
 public final class GeneInfoParser {
-	private static final String DELIMITER = "\t";
+	private static final char DELIMITER = '\t';
 	private static final String NOT_AVAILABLE = "-";
 	private static final String PIPE_DELIMITER = "\\|";
+	private static final int NUMBER_OF_FIELDS = 15;
+
+	/**
+	 *	The zero-based index of the tax_id field.
+	 */
+	public static final int TAX_ID_FIELD = 0;
+
+	/**
+	 *	The zero-based index of the type_of_gene field.
+	 */
+	public static final int TYPE_OF_GENE_FIELD = 9;
 
 	/**
 	 *	Constructs the parser.
@@ -41,43 +53,78 @@ public final class GeneInfoParser {
 	public List<Record> parse(InputStream in) throws IOException {
 		if (in == null)
 			throw new NullPointerException("in");
-		List<Record> list = new ArrayList<Record>();
-		BufferedReader reader = new BufferedReader(new InputStreamReader(in));
-		String line = null;
-		while ((line = reader.readLine()) != null) {
+		final List<Record> list = new ArrayList<Record>();
+		parse(in, ByteLineReader.ACCEPT_ALL, new RecordListener() {
+			public void handleParsedRecord(Record record) {
+				list.add(record);
+			}
+
+			public void handleBadRecordFormat(String line) {
+				System.err.println("Ignoring line with " + line.split(String.valueOf(DELIMITER), -1).length + " tokens: " + line);
+			}
+		});
+		return list;
+	}
+
+	/**
+	 *	Parses the input stream for gene info records, passing those whose raw fields are accepted by the filter to the listener.
+	 *	Comment lines are skipped, and lines without the expected number of fields are passed to the listener as bad records before the filter is applied.
+	 */
+	public void parse(InputStream in, ByteLineReader.LineFilter filter, RecordListener listener) throws IOException {
+		if (in == null)
+			throw new NullPointerException("in");
+		if (filter == null)
+			throw new NullPointerException("filter");
+		if (listener == null)
+			throw new NullPointerException("listener");
+		ByteLineReader reader = new ByteLineReader(in, DELIMITER);
+		while (reader.readLine()) {
 			// Skip comments.
-			if (line.startsWith("#")) continue;
-			String[] tmp = line.split(DELIMITER, -1);
-			if (tmp.length != 15) {
-				System.err.println("Ignoring line with " + tmp.length + " tokens: " + line);
+			if (reader.startsWith('#')) continue;
+			if (reader.getNumberOfFields() != NUMBER_OF_FIELDS) {
+				listener.handleBadRecordFormat(reader.getLine());
 				continue;
 			}
-			// Replace values coded as "-" with null.
+			if (!filter.acceptLine(reader)) continue;
+			String[] tmp = new String[NUMBER_OF_FIELDS];
 			for (int i = 0; i < tmp.length; i++) {
+				tmp[i] = reader.getField(i);
+				// Replace values coded as "-" with null.
 				if (NOT_AVAILABLE.equals(tmp[i])) tmp[i] = null;
 			}
-
-			String taxID = tmp[0];
-			String geneID = tmp[1];
-			String symbol = tmp[2];
-			String locusTag = tmp[3];
-			String synonyms = tmp[4];
-			String dbXrefs = tmp[5];
-			String chromosome = tmp[6];
-			String mapLocation = tmp[7];
-			String description = tmp[8];
-			String typeOfGene = tmp[9];
-			String symbolFromNomenclatureAuthority = tmp[10];
-			String fullNameFromNomenclatureAuthority = tmp[11];
-			String nomenclatureStatus = tmp[12];
-			String otherDesignations = tmp[13];
-			String modificationDate = tmp[14];
-
-			DefaultRecord record = new DefaultRecord(line, taxID, geneID, symbol, locusTag, synonyms, dbXrefs, chromosome, mapLocation, description, typeOfGene, symbolFromNomenclatureAuthority, fullNameFromNomenclatureAuthority, nomenclatureStatus, otherDesignations, modificationDate);
-			list.add(record);
+			listener.handleParsedRecord(new DefaultRecord(reader.getLine(), tmp));
 		}
 		reader.close();
-		return list;
+	}
+
+	/**
+	 *	Returns a filter that accepts records of the given tax IDs, e.g. 9606 for Homo sapiens.
+	 */
+	public static ByteLineReader.LineFilter createTaxIDFilter(String... taxIDs) {
+		return ByteLineReader.createFieldFilter(TAX_ID_FIELD, taxIDs);
+	}
+
+	/**
+	 *	Returns a filter that accepts records of the given gene types, e.g. protein-coding.
+	 */
+	public static ByteLineReader.LineFilter createTypeOfGeneFilter(String... typesOfGene) {
+		return ByteLineReader.createFieldFilter(TYPE_OF_GENE_FIELD, typesOfGene);
+	}
+
+	/**
+	 *	A listener for handling parsed gene info records and problems due to bad record formatting.
+	 */
+	public interface RecordListener {
+		/**
+		 *	Handles a successfully parsed gene info record.
+		 */
+		void handleParsedRecord(Record record);
+
+		/**
+		 *	Handles input that could not be parsed due to a formatting problem.
+		 *	@param line The line of text that could not be parsed.
+		 */
+		void handleBadRecordFormat(String line);
 	}
 
 	/**
@@ -161,35 +208,36 @@ public final class GeneInfoParser {
 		String getModificationDate();
 	}
 
-	private class DefaultRecord implements Record {
+	private static class DefaultRecord implements Record {
 		private String line;
 		private String taxID, geneID, symbol, locusTag;
-		private List<String> synonyms, dbXrefs;
+		private String synonymsText, dbXrefsText;
+		private volatile List<String> synonyms, dbXrefs;
 		private String chromosome, mapLocation;
 		private String description, typeOfGene;
 		private String symbolFromNomenclatureAuthority, fullNameFromNomenclatureAuthority, nomenclatureStatus;
 		private String otherDesignations, modificationDate;
 
-		private DefaultRecord(String line, String taxID, String geneID, String symbol, String locusTag, String synonyms, String dbXrefs, String chromosome, String mapLocation, String description, String typeOfGene, String symbolFromNomenclatureAuthority, String fullNameFromNomenclatureAuthority, String nomenclatureStatus, String otherDesignations, String modificationDate) {
+		private DefaultRecord(String line, String[] tmp) {
 			this.line = line;
-			this.taxID = taxID;
-			this.geneID = geneID;
-			this.symbol = symbol;
-			this.locusTag = locusTag;
-			this.synonyms = parsePipeDelimitedText(synonyms);
-			this.dbXrefs = parsePipeDelimitedText(dbXrefs);
-			this.chromosome = chromosome;
-			this.mapLocation = mapLocation;
-			this.description = description;
-			this.typeOfGene = typeOfGene;
-			this.symbolFromNomenclatureAuthority = symbolFromNomenclatureAuthority;
-			this.fullNameFromNomenclatureAuthority = fullNameFromNomenclatureAuthority;
-			this.nomenclatureStatus = nomenclatureStatus;
-			this.otherDesignations = otherDesignations;
-			this.modificationDate = modificationDate;
+			this.taxID = tmp[0];
+			this.geneID = tmp[1];
+			this.symbol = tmp[2];
+			this.locusTag = tmp[3];
+			this.synonymsText = tmp[4];
+			this.dbXrefsText = tmp[5];
+			this.chromosome = tmp[6];
+			this.mapLocation = tmp[7];
+			this.description = tmp[8];
+			this.typeOfGene = tmp[9];
+			this.symbolFromNomenclatureAuthority = tmp[10];
+			this.fullNameFromNomenclatureAuthority = tmp[11];
+			this.nomenclatureStatus = tmp[12];
+			this.otherDesignations = tmp[13];
+			this.modificationDate = tmp[14];
 		}
 
-		private List<String> parsePipeDelimitedText(String text) {
+		private static List<String> parsePipeDelimitedText(String text) {
 			List<String> list = new ArrayList<String>();
 			if (text != null) { // See NOT_AVAILABLE named constant.
 				String[] tmp = text.split(PIPE_DELIMITER);
@@ -197,15 +245,25 @@ public final class GeneInfoParser {
 					list.add(tmp[i]);
 				}
 			}
-			return list;
+			return Collections.unmodifiableList(list);
 		}
 
 		public String getTaxID() { return taxID; }
 		public String getGeneID() { return geneID; }
 		public String getSymbol() { return symbol; }
 		public String getLocusTag() { return locusTag; }
-		public List<String> getSynonyms() { return Collections.unmodifiableList(synonyms); }
-		public List<String> getdbXrefs() { return Collections.unmodifiableList(dbXrefs); }
+
+		// Parsed on first use; a race only means parsing the same text twice.
+		public List<String> getSynonyms() {
+			if (synonyms == null) synonyms = parsePipeDelimitedText(synonymsText);
+			return synonyms;
+		}
+
+		public List<String> getdbXrefs() {
+			if (dbXrefs == null) dbXrefs = parsePipeDelimitedText(dbXrefsText);
+			return dbXrefs;
+		}
+
 		public String getChromosome() { return chromosome; }
 		public String getMapLocation() { return mapLocation; }
 		public String getDescription() { return description; }
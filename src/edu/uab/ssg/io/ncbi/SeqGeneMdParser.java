@@ -1,8 +1,7 @@
 package edu.uab.ssg.io.ncbi;
 
+import edu.uab.ssg.io.ByteLineReader;
 import java.io.InputStream;
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
 import java.io.IOException;
 import java.util.List;
 import java.util.ArrayList;
@@ -21,11 +20,39 @@ import java.util.Collections;
  *	</tt></p>
  * 	<p>The field delimiter is a tab character. The dash character, '-', and sometimes the empty string, in fields like transcript and evidence code, indicates that a value is not available.</p>
  *
+ *	<p>The streaming <code>parse</code> method applies a <code>ByteLineReader.LineFilter</code>, such as one from <code>createFeatureFilter</code> or <code>createRegionFilter</code>, to the raw fields of each line before a record is created, and hands the accepted records to a listener one chromosome at a time.</p>
+ *
  *	@author Jelai Wang
  */
 public final class SeqGeneMdParser {
-	private static final String DELIMITER = "\t";
+	private static final char DELIMITER = '\t';
 	private static final String NOT_AVAILABLE = "-";
+	private static final int NUMBER_OF_FIELDS = 15;
+
+	/**
+	 *	The zero-based index of the chromosome field.
+	 */
+	public static final int CHROMOSOME_FIELD = 1;
+
+	/**
+	 *	The zero-based index of the chr_start field.
+	 */
+	public static final int CHR_START_FIELD = 2;
+
+	/**
+	 *	The zero-based index of the chr_stop field.
+	 */
+	public static final int CHR_STOP_FIELD = 3;
+
+	/**
+	 *	The zero-based index of the feature_type field.
+	 */
+	public static final int FEATURE_TYPE_FIELD = 11;
+
+	/**
+	 *	The zero-based index of the group_label field.
+	 */
+	public static final int GROUP_LABEL_FIELD = 12;
 
 	/**
 	 *	Constructs the parser.
@@ -47,44 +74,143 @@ public final class SeqGeneMdParser {
 	/**
 	 *	Parses the input stream for gene info records that meet the filtering criteria.
 	 */
-	public List<Record> parse(InputStream in, RecordFilter recordFilter) throws IOException {
+	public List<Record> parse(InputStream in, final RecordFilter recordFilter) throws IOException {
 		if (in == null)
 			throw new NullPointerException("in");
 		if (recordFilter == null)
 			throw new NullPointerException("recordFilter");
-		List<Record> list = new ArrayList<Record>();
-		BufferedReader reader = new BufferedReader(new InputStreamReader(in));
-		String line = null;
-		while ((line = reader.readLine()) != null) {
+		final List<Record> list = new ArrayList<Record>();
+		readRecords(in, ByteLineReader.ACCEPT_ALL, new RecordHandler() {
+			public void handleRecord(Record record) {
+				if (recordFilter.acceptRecord(record)) list.add(record);
+			}
+
+			public void handleBadRecordFormat(String line) {
+				System.err.println("Ignoring line with " + line.split(String.valueOf(DELIMITER), -1).length + " tokens: " + line);
+			}
+		});
+		return list;
+	}
+
+	/**
+	 *	Parses the input stream for records whose raw fields are accepted by the filter, passing them to the listener grouped by chromosome.
+	 *	A group holds a run of consecutive accepted records on the same chromosome, so a chromosome whose records are not contiguous in the input is delivered in more than one group.
+	 *	Comment lines are skipped, and lines that cannot be parsed are passed to the listener as bad records.
+	 */
+	public void parse(InputStream in, ByteLineReader.LineFilter filter, ChromosomeListener listener) throws IOException {
+		if (in == null)
+			throw new NullPointerException("in");
+		if (filter == null)
+			throw new NullPointerException("filter");
+		if (listener == null)
+			throw new NullPointerException("listener");
+		ChromosomeGrouper grouper = new ChromosomeGrouper(listener);
+		readRecords(in, filter, grouper);
+		grouper.finish();
+	}
+
+	// Reads the records accepted by the filter, handing each to the handler as soon as it is created.
+	private void readRecords(InputStream in, ByteLineReader.LineFilter filter, RecordHandler handler) throws IOException {
+		ByteLineReader reader = new ByteLineReader(in, DELIMITER);
+		while (reader.readLine()) {
 			// Skip comments.
-			if (line.startsWith("#")) continue;
-			String[] tmp = line.split(DELIMITER, -1);
-			if (tmp.length != 15) {
-				System.err.println("Ignoring line with " + tmp.length + " tokens: " + line);
+			if (reader.startsWith('#')) continue;
+			if (reader.getNumberOfFields() != NUMBER_OF_FIELDS) {
+				handler.handleBadRecordFormat(reader.getLine());
 				continue;
 			}
-
-			String taxID = tmp[0];
-			String chromosome = tmp[1];
-			int chrStart = Integer.parseInt(tmp[2]);
-			int chrStop = Integer.parseInt(tmp[3]);
-			String chrOrient = tmp[4];
-			String contig = tmp[5];
-			int ctgStart = Integer.parseInt(tmp[6]);
-			int ctgStop = Integer.parseInt(tmp[7]);
-			String ctgOrient = tmp[8];
-			String featureName = tmp[9];
-			String featureID = tmp[10];
-			String featureType = tmp[11];
-			String groupLabel = tmp[12];
-			String transcript = tmp[13];
-			String evidenceCode = tmp[14];
-
-			DefaultRecord record = new DefaultRecord(line, taxID, chromosome, chrStart, chrStop, chrOrient, contig, ctgStart, ctgStop, ctgOrient, featureName, featureID, featureType, groupLabel, transcript, evidenceCode);
-			if (recordFilter.acceptRecord(record)) list.add(record);
+			DefaultRecord record = null;
+			try {
+				if (!filter.acceptLine(reader)) continue;
+				record = new DefaultRecord(reader);
+			}
+			catch (RuntimeException e) {
+				handler.handleBadRecordFormat(reader.getLine());
+				continue;
+			}
+			handler.handleRecord(record);
 		}
 		reader.close();
-		return list;
+	}
+
+	private interface RecordHandler {
+		void handleRecord(Record record);
+		void handleBadRecordFormat(String line);
+	}
+
+	// Collects runs of consecutive records on the same chromosome for a listener.
+	private static final class ChromosomeGrouper implements RecordHandler {
+		private ChromosomeListener listener;
+		private List<Record> group = new ArrayList<Record>();
+		private String chromosome = null;
+
+		private ChromosomeGrouper(ChromosomeListener listener) {
+			this.listener = listener;
+		}
+
+		public void handleRecord(Record record) {
+			if (chromosome != null && !chromosome.equals(record.getChromosome())) {
+				listener.handleChromosome(chromosome, Collections.unmodifiableList(group));
+				group = new ArrayList<Record>();
+			}
+			chromosome = record.getChromosome();
+			group.add(record);
+		}
+
+		public void handleBadRecordFormat(String line) {
+			listener.handleBadRecordFormat(line);
+		}
+
+		private void finish() {
+			if (chromosome != null) {
+				listener.handleChromosome(chromosome, Collections.unmodifiableList(group));
+			}
+		}
+	}
+
+	/**
+	 *	Returns a filter that accepts records of the given feature type, e.g. GENE, and group label, e.g. GRCh37.p2-Primary Assembly.
+	 */
+	public static ByteLineReader.LineFilter createFeatureFilter(String featureType, String groupLabel) {
+		return ByteLineReader.and(ByteLineReader.createFieldFilter(FEATURE_TYPE_FIELD, featureType), ByteLineReader.createFieldFilter(GROUP_LABEL_FIELD, groupLabel));
+	}
+
+	/**
+	 *	Returns a filter that accepts records on the given chromosomes.
+	 */
+	public static ByteLineReader.LineFilter createChromosomeFilter(String... chromosomes) {
+		return ByteLineReader.createFieldFilter(CHROMOSOME_FIELD, chromosomes);
+	}
+
+	/**
+	 *	Returns a filter that accepts records on the given chromosome whose chr start and stop boundaries overlap the given one-based, inclusive region.
+	 */
+	public static ByteLineReader.LineFilter createRegionFilter(String chromosome, final int start, final int stop) {
+		if (start > stop)
+			throw new IllegalArgumentException(start + " " + stop);
+		final ByteLineReader.LineFilter chromosomeFilter = createChromosomeFilter(chromosome);
+		return new ByteLineReader.LineFilter() {
+			public boolean acceptLine(ByteLineReader reader) {
+				if (!chromosomeFilter.acceptLine(reader)) return false;
+				return reader.getIntField(CHR_START_FIELD) <= stop && reader.getIntField(CHR_STOP_FIELD) >= start;
+			}
+		};
+	}
+
+	/**
+	 *	A listener for handling parsed records, a chromosome at a time, and problems due to bad record formatting.
+	 */
+	public interface ChromosomeListener {
+		/**
+		 *	Handles a group of consecutive parsed records on the given chromosome.
+		 */
+		void handleChromosome(String chromosome, List<Record> records);
+
+		/**
+		 *	Handles input that could not be parsed due to a formatting problem.
+		 *	@param line The line of text that could not be parsed.
+		 */
+		void handleBadRecordFormat(String line);
 	}
 
 	/**
@@ -177,7 +303,7 @@ public final class SeqGeneMdParser {
 		String getEvidenceCode();
 	}
 
-	private class DefaultRecord implements Record {
+	private static class DefaultRecord implements Record {
 		private String line;
 		private String taxID;
 		private String chromosome, chrOrient;
@@ -187,23 +313,24 @@ public final class SeqGeneMdParser {
 		private String featureName, featureID, featureType;
 		private String groupLabel, transcript, evidenceCode;
 
-		private DefaultRecord(String line, String taxID, String chromosome, int chrStart, int chrStop, String chrOrient, String contig, int ctgStart, int ctgStop, String ctgOrient, String featureName, String featureID, String featureType, String groupLabel, String transcript, String evidenceCode) {
-			this.line = line;
-			this.taxID = taxID;
-			this.chromosome = chromosome;
-			this.chrStart = chrStart;
-			this.chrStop = chrStop;
-			this.chrOrient = chrOrient;
-			this.contig = contig;
-			this.ctgStart = ctgStart;
-			this.ctgStop = ctgStop;
-			this.ctgOrient = ctgOrient;
-			this.featureName = featureName;
-			this.featureID = featureID;
-			this.featureType = featureType;
-			this.groupLabel = groupLabel;
-			this.transcript = transcript;
-			this.evidenceCode = evidenceCode;
+		private DefaultRecord(ByteLineReader reader) {
+			// Parse the numeric fields first, so a bad line fails before any strings are made.
+			this.chrStart = reader.getIntField(2);
+			this.chrStop = reader.getIntField(3);
+			this.ctgStart = reader.getIntField(6);
+			this.ctgStop = reader.getIntField(7);
+			this.line = reader.getLine();
+			this.taxID = reader.getField(0);
+			this.chromosome = reader.getField(1);
+			this.chrOrient = reader.getField(4);
+			this.contig = reader.getField(5);
+			this.ctgOrient = reader.getField(8);
+			this.featureName = reader.getField(9);
+			this.featureID = reader.getField(10);
+			this.featureType = reader.getField(11);
+			this.groupLabel = reader.getField(12);
+			this.transcript = reader.getField(13);
+			this.evidenceCode = reader.getField(14);
 		}
 
 		public String getTaxID() { return taxID; }
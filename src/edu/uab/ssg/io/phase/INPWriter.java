@@ -30,11 +30,26 @@ import java.util.*;
  *
  * <p>The example <a href="doc-files/test.inp">test.inp</a> file from the PHASE binary package may also be helpful.</p>
  *
+ * <p>Besides writing a list of samples at once, the writer can be
+ * constructed with the SNPs and the number of samples, which is all the
+ * header needs, and then given one sample at a time, for example from a
+ * parser listener. Each pair of genotype lines is encoded straight into
+ * reusable byte buffers, so memory does not grow with the number of
+ * samples.</p>
+ *
  * @author Jelai Wang
  */
 public final class INPWriter {
-	private static final String EOL = "\n";
-	private static final String MISSING_SNP_ALLELE = "?";
+	private static final byte DELIMITER = ' ';
+	private static final byte EOL = '\n';
+	private static final byte MISSING_SNP_ALLELE = '?';
+
+	private List<SNP> snps;
+	private int numberOfSamples;
+	private OutputStream out;
+	private byte[] line1 = new byte[0], line2 = new byte[0];
+	private int length1, length2;
+	private int count = 0;
 
 	/**
 	 * Constructs the writer.
@@ -42,6 +57,40 @@ public final class INPWriter {
 	public INPWriter() {
 	}
 
+	/**
+	 * Constructs a writer for samples given one at a time and writes the header.
+	 * @param snps The SNPs, in the order they are to be written.
+	 * @param numberOfSamples The number of samples that will be written.
+	 */
+	public INPWriter(List<SNP> snps, int numberOfSamples, OutputStream out) throws IOException {
+		if (snps == null)
+			throw new NullPointerException("snps");
+		if (numberOfSamples < 0)
+			throw new IllegalArgumentException(String.valueOf(numberOfSamples));
+		if (out == null)
+			throw new NullPointerException("out");
+		this.snps = new ArrayList<SNP>(snps);
+		this.numberOfSamples = numberOfSamples;
+		this.out = new BufferedOutputStream(out, 1 << 16);
+		StringBuilder builder = new StringBuilder();
+		// Number of "individuals".
+		builder.append(numberOfSamples).append((char) EOL);
+		// Number of "loci".
+		builder.append(snps.size()).append((char) EOL);
+		// Optional line of SNP positions.
+		builder.append('P');
+		for (int i = 0, n = snps.size(); i < n; i++) {
+			builder.append((char) DELIMITER).append(snps.get(i).getPosition());
+		}
+		builder.append((char) EOL);
+		// Locus types.
+		for (int i = 0, n = snps.size(); i < n; i++) {
+			builder.append('S');
+		}
+		builder.append((char) EOL);
+		this.out.write(builder.toString().getBytes("UTF-8"));
+	}
+
 	/**
 	 * Writes the genotypes for the given samples in a study population 
 	 * to the output stream in PHASE INP format.
@@ -53,70 +102,126 @@ public final class INPWriter {
 			throw new NullPointerException("snps");
 		if (out == null)
 			throw new NullPointerException("out");
-		BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(out));
-		// Number of "individuals".
-		writer.write(String.valueOf(samples.size()));
-		writer.write(EOL);
-		// Number of "loci".
-		writer.write(String.valueOf(snps.size()));
-		writer.write(EOL);
-		// Optional line of SNP positions.
-		writer.write(createPositionLine(snps));
-		writer.write(EOL);
-		// Locus types.
-		writer.write(createLocusTypeLine(snps));
-		writer.write(EOL);
+		INPWriter writer = new INPWriter(snps, samples.size(), out);
+		for (Iterator<Sample> it = samples.iterator(); it.hasNext(); ) {
+			writer.write(it.next());
+		}
+		writer.close();
+	}
 
-		for (Iterator<Sample> it1 = samples.iterator(); it1.hasNext(); ) {
-			Sample sample = it1.next();
-			// This algorithm produces an unnecessary leading space
-			// that is later trimmed before being written out.
-			StringBuilder firstRow = new StringBuilder();
-			StringBuilder secondRow = new StringBuilder();
-			for (Iterator<SNP> it2 = snps.iterator(); it2.hasNext(); ) {
-				SNP snp = it2.next();
-				if (sample.existsGenotype(snp)) {
-					Sample.Genotype genotype = sample.getGenotype(snp);
-					String a1 = genotype.getAllele1();
-					String a2 = genotype.getAllele2();
-					firstRow.append(' ').append(a1 != null ? a1 : MISSING_SNP_ALLELE);
-					secondRow.append(' ').append(a2 != null ? a2 : MISSING_SNP_ALLELE);
-				}
-				else { // Untyped.
-					firstRow.append(' ').append(MISSING_SNP_ALLELE);
-					secondRow.append(' ').append(MISSING_SNP_ALLELE);
-				}
+	/**
+	 * Writes the genotypes of the next sample.
+	 * @throws IllegalStateException If the writer was not constructed with the SNPs, or all the declared samples have been written.
+	 */
+	public void write(Sample sample) throws IOException {
+		if (sample == null)
+			throw new NullPointerException("sample");
+		checkState();
+		length1 = length2 = 0;
+		for (int i = 0, n = snps.size(); i < n; i++) {
+			SNP snp = snps.get(i);
+			String a1 = null, a2 = null;
+			if (sample.existsGenotype(snp)) {
+				Sample.Genotype genotype = sample.getGenotype(snp);
+				a1 = genotype.getAllele1();
+				a2 = genotype.getAllele2();
 			}
+			append(i, a1, a2);
+		}
+		writeSample(sample.getName());
+	}
 
-			// Three lines are written per sample.
-			writer.write(sample.getName());
-			writer.write(EOL);
-			writer.write(firstRow.toString().trim());
-			writer.write(EOL);
-			writer.write(secondRow.toString().trim());
-			writer.write(EOL);
+	/**
+	 * Writes the genotypes of the next sample, one pair of alleles per SNP
+	 * in the order given to the constructor. A null allele is written as
+	 * missing. The arrays may be reused between calls.
+	 * @throws IllegalStateException If the writer was not constructed with the SNPs, or all the declared samples have been written.
+	 */
+	public void write(String id, String[] alleles1, String[] alleles2) throws IOException {
+		if (id == null)
+			throw new NullPointerException("id");
+		if (alleles1 == null)
+			throw new NullPointerException("alleles1");
+		if (alleles2 == null)
+			throw new NullPointerException("alleles2");
+		checkState();
+		if (alleles1.length != snps.size())
+			throw new IllegalArgumentException(String.valueOf(alleles1.length));
+		if (alleles2.length != snps.size())
+			throw new IllegalArgumentException(String.valueOf(alleles2.length));
+		length1 = length2 = 0;
+		for (int i = 0; i < alleles1.length; i++) {
+			append(i, alleles1[i], alleles2[i]);
 		}
+		writeSample(id);
+	}
 
-		writer.flush();
-		writer.close();
+	/**
+	 * Closes the writer.
+	 * @throws IllegalStateException If fewer samples were written than declared to the constructor.
+	 */
+	public void close() throws IOException {
+		if (out == null)
+			throw new IllegalStateException();
+		out.flush();
+		out.close();
+		if (count != numberOfSamples)
+			throw new IllegalStateException(count + " " + numberOfSamples);
 	}
 
-	private String createPositionLine(List<SNP> snps) {
-		StringBuilder builder = new StringBuilder();
-		builder.append("P");
-		for (Iterator<SNP> it = snps.iterator(); it.hasNext(); ) {
-			SNP snp = it.next();
-			builder.append(' ').append(snp.getPosition());
+	private void checkState() {
+		if (out == null)
+			throw new IllegalStateException();
+		if (count == numberOfSamples)
+			throw new IllegalStateException(String.valueOf(count));
+	}
+
+	private void append(int index, String a1, String a2) throws IOException {
+		if (index > 0) {
+			line1 = put(line1, length1++, DELIMITER);
+			line2 = put(line2, length2++, DELIMITER);
 		}
-		return builder.toString();
+		length1 = put(line1 = ensureCapacity(line1, length1, a1), length1, a1);
+		length2 = put(line2 = ensureCapacity(line2, length2, a2), length2, a2);
 	}
 
-	private String createLocusTypeLine(List<SNP> snps) {
-		StringBuilder builder = new StringBuilder();
-		for (Iterator<SNP> it = snps.iterator(); it.hasNext(); ) {
-			SNP snp = it.next();
-			builder.append('S');
+	private static byte[] put(byte[] buffer, int offset, byte b) {
+		if (offset == buffer.length)
+			buffer = Arrays.copyOf(buffer, Math.max(64, buffer.length * 2));
+		buffer[offset] = b;
+		return buffer;
+	}
+
+	private static byte[] ensureCapacity(byte[] buffer, int length, String allele) {
+		int needed = length + (allele == null ? 1 : allele.length() * 3); // At most three UTF-8 bytes per char.
+		if (needed > buffer.length)
+			buffer = Arrays.copyOf(buffer, Math.max(needed, buffer.length * 2));
+		return buffer;
+	}
+
+	// Encodes the allele at the offset, returning the new length.
+	private static int put(byte[] buffer, int offset, String allele) throws IOException {
+		if (allele == null) {
+			buffer[offset] = MISSING_SNP_ALLELE;
+			return offset + 1;
 		}
-		return builder.toString();
+		if (allele.length() == 1 && allele.charAt(0) < 0x80) {
+			buffer[offset] = (byte) allele.charAt(0);
+			return offset + 1;
+		}
+		byte[] bytes = allele.getBytes("UTF-8");
+		System.arraycopy(bytes, 0, buffer, offset, bytes.length);
+		return offset + bytes.length;
+	}
+
+	// Three lines are written per sample.
+	private void writeSample(String id) throws IOException {
+		out.write(id.getBytes("UTF-8"));
+		out.write(EOL);
+		out.write(line1, 0, length1);
+		out.write(EOL);
+		out.write(line2, 0, length2);
+		out.write(EOL);
+		count++;
 	}
 }
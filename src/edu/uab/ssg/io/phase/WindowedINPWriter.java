@@ -0,0 +1,255 @@
+package edu.uab.ssg.io.phase;
+
+import edu.uab.ssg.model.snp.*;
+import edu.uab.ssg.util.OrderedExecutor;
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Splits a position-sorted genotype source into overlapping windows and
+ * writes each window to its own PHASE INP file, for haplotype inference
+ * one region at a time.
+ *
+ * <p>Windows are measured in markers or in base pairs and never cross a
+ * chromosome boundary. A new window starts every <tt>size - overlap</tt>
+ * units, from the first marker of each chromosome. Empty windows are
+ * skipped, as is a window whose markers are all in the window before it,
+ * which happens at the end of a chromosome.</p>
+ *
+ * <p>The source is read once. Each marker is packed into every window it
+ * falls in, and a window is handed to the thread pool as soon as the
+ * source moves past it, so only the open windows and a bounded number of
+ * windows being written are held in memory. Window files are named
+ * <tt>&lt;prefix&gt;_&lt;chromosome&gt;_&lt;n&gt;.inp</tt>, with windows
+ * numbered from 1 on each chromosome, so the markers of a chromosome must
+ * all come together in the source.</p>
+ *
+ * <p>Markers are packed as genotype calls, so a call with only one allele
+ * known is written as missing at both alleles ("? ?"), where
+ * <code>INPWriter</code> writes the known allele ("A ?").</p>
+ *
+ * <p>A manifest of the windows is written for merging the results later,
+ * one tab-delimited line per window in order: file name, chromosome, start
+ * and end position, names of the first and last SNP, and number of SNPs.</p>
+ *
+ * @author Jelai Wang
+ */
+public final class WindowedINPWriter {
+	private static final char DELIMITER = '\t';
+	private static final char EOL = '\n';
+
+	/**
+	 * The unit of window size and overlap.
+	 */
+	// See Bloch 104 for hints on enum implementation in Java.
+	public static final class Unit {
+		/**
+		 * Windows measured in markers.
+		 */
+		public static final Unit MARKERS = new Unit("MARKERS");
+
+		/**
+		 * Windows measured in base pairs.
+		 */
+		public static final Unit BASE_PAIRS = new Unit("BASE_PAIRS");
+
+		private String name;
+
+		private Unit(String name) {
+			this.name = name;
+		}
+
+		/**
+		 * Returns a string representation for debugging purposes.
+		 */
+		public String toString() { return name; }
+	}
+
+	private int size, step;
+	private Unit unit;
+
+	/**
+	 * Constructs the writer.
+	 * @param size The size of a window.
+	 * @param overlap The overlap of consecutive windows, less than the size.
+	 */
+	public WindowedINPWriter(int size, int overlap, Unit unit) {
+		if (size < 1)
+			throw new IllegalArgumentException(String.valueOf(size));
+		if (overlap < 0 || overlap >= size)
+			throw new IllegalArgumentException(String.valueOf(overlap));
+		if (unit == null)
+			throw new NullPointerException("unit");
+		this.size = size;
+		this.step = size - overlap;
+		this.unit = unit;
+	}
+
+	/**
+	 * Writes the windows of the remaining markers of the source and the
+	 * manifest, returning the number of windows. The source is not closed;
+	 * the manifest stream is closed when done.
+	 * @param directory The directory for the window files.
+	 * @param prefix The prefix of the window file names.
+	 * @param numberOfThreads The number of window files written at a time.
+	 * @throws IllegalArgumentException If the markers of a chromosome are not together and sorted by position, or a marker has more than two alleles.
+	 */
+	public int write(GenotypeSource source, File directory, String prefix, OutputStream manifest, int numberOfThreads) throws IOException {
+		if (source == null)
+			throw new NullPointerException("source");
+		if (directory == null)
+			throw new NullPointerException("directory");
+		if (prefix == null)
+			throw new NullPointerException("prefix");
+		if (manifest == null)
+			throw new NullPointerException("manifest");
+		if (numberOfThreads < 1)
+			throw new IllegalArgumentException(String.valueOf(numberOfThreads));
+		final BufferedWriter manifestWriter = new BufferedWriter(new OutputStreamWriter(manifest));
+		List<String> sampleNames = source.getSampleNames();
+		ExecutorService executor = Executors.newFixedThreadPool(numberOfThreads);
+		Windows windows = null;
+		try {
+			windows = new Windows(new OrderedExecutor<String>(executor, numberOfThreads * 2, new OrderedExecutor.ResultHandler<String>() {
+				public void handleResult(String result) throws IOException {
+					manifestWriter.write(result);
+					manifestWriter.write(EOL);
+				}
+			}), directory, prefix);
+			LinkedList<Window> open = new LinkedList<Window>();
+			Set<String> finished = new HashSet<String>();
+			String chromosome = null;
+			int ordinal = 0, lastPosition = 0, origin = 0, numberOfWindows = 0;
+			long nextStart = 0;
+			MarkerGenotypes genotypes = null;
+			while ((genotypes = source.next()) != null) {
+				SNP snp = genotypes.getSNP();
+				if (!snp.getChromosome().equals(chromosome)) {
+					// Its window files would overwrite those already written.
+					if (!finished.add(snp.getChromosome()))
+						throw new IllegalArgumentException(snp.getName() + " " + snp.getChromosome());
+					while (!open.isEmpty()) {
+						windows.close(open.removeFirst());
+					}
+					windows.lastOrdinal = -1;
+					chromosome = snp.getChromosome();
+					ordinal = 0;
+					origin = snp.getPosition();
+					nextStart = 0;
+					numberOfWindows = 0;
+				}
+				else {
+					if (snp.getPosition() < lastPosition)
+						throw new IllegalArgumentException(snp.getName() + " " + snp.getPosition());
+					ordinal++;
+				}
+				lastPosition = snp.getPosition();
+				long coordinate = unit == Unit.MARKERS ? ordinal : (long) snp.getPosition() - origin;
+
+				// Hand over the windows this marker is past.
+				while (!open.isEmpty() && open.getFirst().start + size <= coordinate) {
+					windows.close(open.removeFirst());
+				}
+				// Open the windows this marker starts, skipping any that would be empty.
+				if (nextStart + size <= coordinate)
+					nextStart += ((coordinate - size - nextStart) / step + 1) * step;
+				while (nextStart <= coordinate) {
+					open.addLast(new Window(chromosome, ++numberOfWindows, nextStart, sampleNames));
+					nextStart += step;
+				}
+				for (Iterator<Window> it = open.iterator(); it.hasNext(); ) {
+					it.next().add(genotypes, ordinal);
+				}
+			}
+			while (!open.isEmpty()) {
+				windows.close(open.removeFirst());
+			}
+			windows.executor.finish();
+		}
+		finally {
+			executor.shutdownNow();
+		}
+		manifestWriter.flush();
+		manifestWriter.close();
+		return windows.count;
+	}
+
+	// Hands windows to the executor, dropping those contained in the window before.
+	private static final class Windows {
+		private OrderedExecutor<String> executor;
+		private File directory;
+		private String prefix;
+		private int count = 0;
+		private int lastOrdinal = -1; // Of the last window handed over on the current chromosome.
+
+		private Windows(OrderedExecutor<String> executor, File directory, String prefix) {
+			this.executor = executor;
+			this.directory = directory;
+			this.prefix = prefix;
+		}
+
+		private void close(final Window window) throws IOException {
+			if (window.lastOrdinal <= lastOrdinal)
+				return;
+			lastOrdinal = window.lastOrdinal;
+			count++;
+			executor.submit(new Callable<String>() {
+				public String call() throws IOException {
+					String name = prefix + "_" + window.chromosome + "_" + window.number + ".inp";
+					return window.writeTo(new File(directory, name), name);
+				}
+			});
+		}
+	}
+
+	private static final class Window {
+		private String chromosome;
+		private int number;
+		private long start;
+		private PackedGenotypeMatrix matrix;
+		private int lastOrdinal = -1;
+
+		private Window(String chromosome, int number, long start, List<String> sampleNames) {
+			this.chromosome = chromosome;
+			this.number = number;
+			this.start = start;
+			this.matrix = new PackedGenotypeMatrix(sampleNames);
+		}
+
+		private void add(MarkerGenotypes genotypes, int ordinal) {
+			matrix.add(genotypes);
+			lastOrdinal = ordinal;
+		}
+
+		// Writes the window file, returning its manifest line.
+		private String writeTo(File file, String name) throws IOException {
+			int numberOfMarkers = matrix.getNumberOfMarkers();
+			List<SNP> snps = new ArrayList<SNP>(numberOfMarkers);
+			for (int i = 0; i < numberOfMarkers; i++) {
+				snps.add(matrix.getSNP(i));
+			}
+			List<String> sampleNames = matrix.getSampleNames();
+			INPWriter writer = new INPWriter(snps, sampleNames.size(), new FileOutputStream(file));
+			String[] alleles1 = new String[numberOfMarkers], alleles2 = new String[numberOfMarkers];
+			for (int s = 0, n = sampleNames.size(); s < n; s++) {
+				for (int i = 0; i < numberOfMarkers; i++) {
+					alleles1[i] = matrix.getAllele1(i, s);
+					alleles2[i] = matrix.getAllele2(i, s);
+				}
+				writer.write(sampleNames.get(s), alleles1, alleles2);
+			}
+			writer.close();
+			SNP first = snps.get(0), last = snps.get(numberOfMarkers - 1);
+			StringBuilder builder = new StringBuilder();
+			builder.append(name);
+			builder.append(DELIMITER).append(chromosome);
+			builder.append(DELIMITER).append(first.getPosition());
+			builder.append(DELIMITER).append(last.getPosition());
+			builder.append(DELIMITER).append(first.getName());
+			builder.append(DELIMITER).append(last.getName());
+			builder.append(DELIMITER).append(numberOfMarkers);
+			return builder.toString();
+		}
+	}
+}
@@ -1,5 +1,6 @@
 package edu.uab.ssg.io.the1000genomes;
 
+import edu.uab.ssg.io.Selection;
 import java.util.*;
 import java.io.*;
 
@@ -57,9 +58,25 @@ public final class VCFParser {
 	 * @param listener As the input stream is parsed, each variant record
 	 * is passed to the user-supplied record listener.
 	 */
-public void parse(InputStream in, RecordListener listener) throws IOException {
+	public void parse(InputStream in, RecordListener listener) throws IOException {
+		parse(in, Selection.ALL, listener);
+	}
+
+	/**
+	 * Parses the input stream for the variant records of the selected
+	 * variants, with genotypes for the selected samples only. Variants are
+	 * selected by ID, chromosome and position; the genotype fields of a
+	 * variant that is not selected are not read.
+	 * @param in The input stream, typically a file input stream, of the
+	 * file to be parsed.
+	 * @param listener As the input stream is parsed, each variant record
+	 * is passed to the user-supplied record listener.
+	 */
+	public void parse(InputStream in, Selection selection, RecordListener listener) throws IOException {
 		if (in == null)
 			throw new NullPointerException("in");
+		if (selection == null)
+			throw new NullPointerException("selection");
 		if (listener == null)
 			throw new NullPointerException("listener");
 		BufferedReader reader = new BufferedReader(new InputStreamReader(in));
@@ -91,12 +108,19 @@ public void parse(InputStream in, RecordListener listener) throws IOException {
 		if (!"FORMAT".equals(header[8]))
 			throw new IllegalArgumentException(header[8]);
 
-		List<String> samples = Collections.unmodifiableList(Arrays.asList(header).subList(9, header.length));
+		List<String> allSamples = Arrays.asList(header).subList(9, header.length);
+		Selection.Columns columns = selection.selectColumns(allSamples, 9, DELIMITER.charAt(0), false);
+		List<String> samples = Collections.unmodifiableList(columns.select(allSamples));
 
 		while ((line = reader.readLine()) != null) {
 			VariantRecord record = null;
 			try {
-				record = new ParsedVariantRecord(line, samples);
+				String[] fields = columns.createFields();
+				int position = columns.readLeadingFields(line, fields);
+				if (!selection.selectsAllMarkers() && !selection.isMarkerSelected(fields[2], fields[0], Integer.parseInt(fields[1])))
+					continue;
+				columns.readSelectedFields(line, position, fields);
+				record = new ParsedVariantRecord(line, fields, samples);
 			}
 			catch (RuntimeException e) {
 				listener.handleBadRecordFormat(line);
@@ -181,13 +205,12 @@ public void parse(InputStream in, RecordListener listener) throws IOException {
 		private List<String> samples;
 		private Map<String, String> sample2genotype = new LinkedHashMap<String, String>();
 
-		private ParsedVariantRecord(String line, List<String> samples) {
+		private ParsedVariantRecord(String line, String[] tokens, List<String> samples) {
 			if (line == null)
 				throw new NullPointerException("line");
 			this.line = line;
 			this.samples = samples; // LOOK!!
 
-			String[] tokens = line.split(DELIMITER, -1);
 			if (tokens.length != (samples.size() + 9))
 				throw new IllegalArgumentException(line);
 			this.chr = tokens[0];
@@ -0,0 +1,680 @@
+package edu.uab.ssg.io.ucsc;
+
+import edu.uab.ssg.io.ByteLineReader;
+import edu.uab.ssg.model.snp.Chromosomes;
+import edu.uab.ssg.util.LongIntMap;
+import java.util.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.io.*;
+
+/**
+ * A compact, column-oriented table of UCSC SNP annotation records.
+ *
+ * <p>Where <code>SNPAnnotationParser</code> creates a dozen strings for
+ * every row, this table keeps one primitive array per column: chromStart
+ * and chromEnd as ints, the rs number of the name as a long, and the
+ * strand, observed, molType, class, valid, func and locType columns as
+ * codes into small dictionaries of interned values, stored as bytes or
+ * shorts when the dictionary is small enough. Lines are read as raw bytes
+ * (see <code>ByteLineReader</code>) and values already in a dictionary are
+ * recognised without creating a string, so building the table from a
+ * snpNNN.txt dump creates little garbage.</p>
+ *
+ * <p>Rows are sorted by chromosome, in natural order (see
+ * <code>Chromosomes</code>), and then by chromStart, keeping input order for
+ * ties. Names of one chromosome, such as "chr1" and "1", are merged under
+ * the first name seen, and <code>findRows</code> accepts any of them. Rows
+ * are found by binary search on position, or by a hash lookup on rs number
+ * or other name; an rs number mapped to several places is chained from its
+ * first row through <code>getNextRowWithSameName</code>.</p>
+ *
+ * <p>A table can be written to a file with <code>writeTo</code> and mapped
+ * back into memory with <code>map</code>, which reads only a small header;
+ * the columns and the rs number index are paged in from the file by the
+ * operating system as they are used.</p>
+ *
+ * @author Jelai Wang
+ */
+public final class SNPAnnotationTable {
+	private static final int MAGIC = 0x534e5054;
+	private static final int VERSION = 1;
+	private static final char DELIMITER = '\t';
+	private static final int NUMBER_OF_FIELDS = 18;
+	private static final int CHROM = 1, CHROM_START = 2, CHROM_END = 3, NAME = 4;
+	private static final int STRAND = 0, OBSERVED = 1, MOL_TYPE = 2, SNP_CLASS = 3, VALID = 4, FUNC = 5, LOC_TYPE = 6;
+	// The snpNNN.txt field of each dictionary-encoded column, indexed by the constants above.
+	private static final int[] DICTIONARY_FIELDS = { 6, 9, 10, 11, 12, 15, 16 };
+
+	private int numberOfRows;
+	private String[] chroms;
+	private int[] chromRowStarts;
+	private Map<String, Integer> chrom2index = new HashMap<String, Integer>(); // By canonical name.
+	private IntBuffer chromStarts, chromEnds, nextSameName;
+	private LongBuffer rsNumbers;
+	private Map<Integer, String> otherNames;
+	private Map<String, Integer> otherName2row = new HashMap<String, Integer>();
+	private String[][] dictionaries;
+	private Codes[] codes;
+	private LongIntMap rs2row;
+
+	private SNPAnnotationTable() {
+	}
+
+	/**
+	 * Builds a table from SNP annotation records in UCSC snpNNN.txt format.
+	 * @param listener Lines that could not be parsed are passed to the listener and left out of the table.
+	 */
+	public static SNPAnnotationTable build(InputStream in, BadRecordFormatListener listener) throws IOException {
+		if (in == null)
+			throw new NullPointerException("in");
+		if (listener == null)
+			throw new NullPointerException("listener");
+		ByteLineReader reader = new ByteLineReader(in, DELIMITER);
+		Dictionary chromDictionary = new Dictionary();
+		CodeColumn chromColumn = new CodeColumn();
+		Dictionary[] dictionaries = new Dictionary[DICTIONARY_FIELDS.length];
+		CodeColumn[] columns = new CodeColumn[DICTIONARY_FIELDS.length];
+		for (int i = 0; i < dictionaries.length; i++) {
+			dictionaries[i] = new Dictionary();
+			columns[i] = new CodeColumn();
+		}
+		int[] starts = new int[1024], ends = new int[1024];
+		long[] rs = new long[1024];
+		Map<Integer, String> otherNames = new HashMap<Integer, String>();
+		int n = 0;
+		while (reader.readLine()) {
+			int start, end;
+			long rsNumber;
+			try {
+				if (reader.getNumberOfFields() != NUMBER_OF_FIELDS)
+					throw new IllegalArgumentException(String.valueOf(reader.getNumberOfFields()));
+				start = reader.getIntField(CHROM_START);
+				end = reader.getIntField(CHROM_END);
+				rsNumber = parseRsNumber(reader);
+			}
+			catch (RuntimeException e) {
+				listener.handleBadRecordFormat(reader.getLine());
+				continue;
+			}
+			if (n == starts.length) {
+				starts = Arrays.copyOf(starts, n * 2);
+				ends = Arrays.copyOf(ends, n * 2);
+				rs = Arrays.copyOf(rs, n * 2);
+			}
+			starts[n] = start;
+			ends[n] = end;
+			rs[n] = rsNumber;
+			if (rsNumber < 0) otherNames.put(Integer.valueOf(n), reader.getField(NAME));
+			chromColumn.set(n, chromDictionary.intern(reader, CHROM));
+			for (int i = 0; i < columns.length; i++) {
+				columns[i].set(n, dictionaries[i].intern(reader, DICTIONARY_FIELDS[i]));
+			}
+			n++;
+		}
+		reader.close();
+
+		// Sort rows by natural chromosome order and position.
+		String[] chromNames = chromDictionary.toStrings();
+		int[] ordinals = Chromosomes.getOrdinals(chromNames);
+		// Merge the names of one chromosome under the first name seen.
+		int[] sameChrom = new int[chromNames.length];
+		Map<String, Integer> canonical2chrom = new HashMap<String, Integer>();
+		for (int i = 0; i < chromNames.length; i++) {
+			String canonicalName = Chromosomes.getCanonicalName(chromNames[i]);
+			Integer chrom = canonical2chrom.get(canonicalName);
+			if (chrom == null) canonical2chrom.put(canonicalName, chrom = Integer.valueOf(i));
+			sameChrom[i] = chrom.intValue();
+		}
+		long[] keys = new long[n];
+		for (int i = 0; i < n; i++) {
+			keys[i] = ((long) ordinals[chromColumn.get(i)] << 32) | (starts[i] & 0xffffffffL);
+		}
+		int[] order = sort(keys);
+		keys = null;
+
+		SNPAnnotationTable table = new SNPAnnotationTable();
+		table.numberOfRows = n;
+		int[] sortedStarts = new int[n], sortedEnds = new int[n];
+		long[] sortedRs = new long[n];
+		table.otherNames = new HashMap<Integer, String>();
+		for (int i = 0; i < n; i++) {
+			int row = order == null ? i : order[i];
+			sortedStarts[i] = starts[row];
+			sortedEnds[i] = ends[row];
+			sortedRs[i] = rs[row];
+			if (rs[row] < 0) table.putOtherName(i, otherNames.get(Integer.valueOf(row)));
+		}
+		starts = ends = null;
+		rs = null;
+		table.chromStarts = IntBuffer.wrap(sortedStarts);
+		table.chromEnds = IntBuffer.wrap(sortedEnds);
+		table.rsNumbers = LongBuffer.wrap(sortedRs);
+
+		// Chromosomes, in sorted order, and the first row of each.
+		List<String> chroms = new ArrayList<String>();
+		List<Integer> rowStarts = new ArrayList<Integer>();
+		int previous = -1;
+		for (int i = 0; i < n; i++) {
+			int chrom = sameChrom[chromColumn.get(order == null ? i : order[i])];
+			if (chrom != previous) {
+				chroms.add(chromNames[chrom]);
+				rowStarts.add(Integer.valueOf(i));
+				previous = chrom;
+			}
+		}
+		rowStarts.add(Integer.valueOf(n));
+		table.setChroms(chroms.toArray(new String[chroms.size()]), toArray(rowStarts));
+
+		table.dictionaries = new String[columns.length][];
+		table.codes = new Codes[columns.length];
+		for (int i = 0; i < columns.length; i++) {
+			table.dictionaries[i] = dictionaries[i].toStrings();
+			table.codes[i] = columns[i].sort(order, n);
+		}
+
+		// Index rs numbers, chaining rows that share one. Walk backwards so the map ends up with the first row.
+		int[] next = new int[n];
+		table.rs2row = new LongIntMap(n);
+		for (int i = n - 1; i >= 0; i--) {
+			long rsNumber = sortedRs[i];
+			next[i] = rsNumber < 0 ? -1 : table.rs2row.put(rsNumber, i);
+		}
+		table.nextSameName = IntBuffer.wrap(next);
+		return table;
+	}
+
+	private static long parseRsNumber(ByteLineReader reader) {
+		int length = reader.getFieldLength(NAME);
+		if (length < 3 || reader.getFieldByte(NAME, 0) != 'r' || reader.getFieldByte(NAME, 1) != 's' || length > 20)
+			return -1;
+		long value = 0;
+		for (int i = 2; i < length; i++) {
+			int digit = reader.getFieldByte(NAME, i) - '0';
+			if (digit < 0 || digit > 9)
+				return -1;
+			value = value * 10 + digit;
+		}
+		return value;
+	}
+
+	// Returns the stable sort order of the keys, or null if they are already sorted.
+	private static int[] sort(long[] keys) {
+		int n = keys.length;
+		boolean sorted = true;
+		for (int i = 1; i < n && sorted; i++) {
+			if (keys[i - 1] > keys[i]) sorted = false;
+		}
+		if (sorted)
+			return null;
+		int[] order = new int[n], tmp = new int[n];
+		for (int i = 0; i < n; i++) {
+			order[i] = i;
+		}
+		// Bottom-up merge sort.
+		for (int width = 1; width < n; width *= 2) {
+			for (int low = 0; low < n; low += 2 * width) {
+				int mid = Math.min(low + width, n), high = Math.min(low + 2 * width, n);
+				int i = low, j = mid, k = low;
+				while (i < mid && j < high) {
+					tmp[k++] = keys[order[j]] < keys[order[i]] ? order[j++] : order[i++];
+				}
+				while (i < mid) tmp[k++] = order[i++];
+				while (j < high) tmp[k++] = order[j++];
+			}
+			int[] swap = order;
+			order = tmp;
+			tmp = swap;
+		}
+		return order;
+	}
+
+	private static int[] toArray(List<Integer> list) {
+		int[] array = new int[list.size()];
+		for (int i = 0; i < array.length; i++) {
+			array[i] = list.get(i).intValue();
+		}
+		return array;
+	}
+
+	private void setChroms(String[] chroms, int[] chromRowStarts) {
+		this.chroms = chroms;
+		this.chromRowStarts = chromRowStarts;
+		for (int i = 0; i < chroms.length; i++) {
+			chrom2index.put(Chromosomes.getCanonicalName(chroms[i]), Integer.valueOf(i));
+		}
+	}
+
+	// Keeps the first row, in table order, of each name.
+	private void putOtherName(int row, String name) {
+		otherNames.put(Integer.valueOf(row), name);
+		Integer first = otherName2row.get(name);
+		if (first == null || first.intValue() > row)
+			otherName2row.put(name, Integer.valueOf(row));
+	}
+
+	/**
+	 * Returns the number of rows.
+	 */
+	public int getNumberOfRows() { return numberOfRows; }
+
+	/**
+	 * Returns the first row, in table order, of the given rs number, or -1 if there is none.
+	 */
+	public int findRow(long rsNumber) {
+		return rs2row.get(rsNumber);
+	}
+
+	/**
+	 * Returns the first row, in table order, with the given name, such as rs56289060, or -1 if there is none.
+	 */
+	public int findRow(String name) {
+		if (name == null)
+			throw new NullPointerException("name");
+		if (name.startsWith("rs") && name.length() > 2) {
+			try {
+				return findRow(Long.parseLong(name.substring(2)));
+			}
+			catch (NumberFormatException e) {
+				// Fall through to the names that are not rs numbers.
+			}
+		}
+		Integer row = otherName2row.get(name);
+		return row != null ? row.intValue() : -1;
+	}
+
+	/**
+	 * Returns the next row with the same rs number as the given row, or -1 if there is none.
+	 */
+	public int getNextRowWithSameName(int row) {
+		return nextSameName.get(row);
+	}
+
+	/**
+	 * Returns the rows on the given chromosome with chromStart in the given half-open interval, in table order, given any name of the chromosome, such as "chr1" or "1".
+	 * Note that chromStart is zero-based, so the SNP at one-based position p usually has chromStart p - 1.
+	 */
+	public int[] findRows(String chrom, int fromChromStart, int toChromStart) {
+		if (chrom == null)
+			throw new NullPointerException("chrom");
+		Integer index = chrom2index.get(Chromosomes.getCanonicalName(chrom));
+		if (index == null || fromChromStart >= toChromStart)
+			return new int[0];
+		int low = chromRowStarts[index.intValue()], high = chromRowStarts[index.intValue() + 1];
+		int first = lowerBound(low, high, fromChromStart);
+		int last = lowerBound(first, high, toChromStart);
+		int[] rows = new int[last - first];
+		for (int i = 0; i < rows.length; i++) {
+			rows[i] = first + i;
+		}
+		return rows;
+	}
+
+	// Returns the first row in [low, high) with chromStart >= value, or high if there is none.
+	private int lowerBound(int low, int high, int value) {
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (chromStarts.get(mid) < value) low = mid + 1;
+			else high = mid;
+		}
+		return low;
+	}
+
+	/**
+	 * Returns the chromosome of the given row.
+	 */
+	public String getChrom(int row) {
+		checkRow(row);
+		int index = Arrays.binarySearch(chromRowStarts, row);
+		if (index < 0) index = -index - 2;
+		else while (chromRowStarts[index + 1] == row) index++; // Skip empty chromosomes, if any.
+		return chroms[index];
+	}
+
+	public int getChromStart(int row) { return chromStarts.get(row); }
+	public int getChromEnd(int row) { return chromEnds.get(row); }
+
+	/**
+	 * Returns the rs number of the given row, or -1 if its name is not an rs number.
+	 */
+	public long getRsNumber(int row) { return rsNumbers.get(row); }
+
+	public String getName(int row) {
+		long rsNumber = rsNumbers.get(row);
+		return rsNumber >= 0 ? "rs" + rsNumber : otherNames.get(Integer.valueOf(row));
+	}
+
+	public String getStrand(int row) { return getValue(STRAND, row); }
+	public String getObserved(int row) { return getValue(OBSERVED, row); }
+	public String getMolType(int row) { return getValue(MOL_TYPE, row); }
+	public String getSNPClass(int row) { return getValue(SNP_CLASS, row); }
+	public String getValid(int row) { return getValue(VALID, row); }
+	public String getFunc(int row) { return getValue(FUNC, row); }
+	public String getLocType(int row) { return getValue(LOC_TYPE, row); }
+
+	private String getValue(int column, int row) {
+		return dictionaries[column][codes[column].get(row)];
+	}
+
+	private void checkRow(int row) {
+		if (row < 0 || row >= numberOfRows)
+			throw new IndexOutOfBoundsException(String.valueOf(row));
+	}
+
+	/**
+	 * Returns a view of the given row as a SNP annotation record.
+	 * Its <code>toString()</code> joins the stored fields with tabs, which is not the original line.
+	 */
+	public SNPAnnotationParser.SNPRecord getRecord(int row) {
+		checkRow(row);
+		return new RowRecord(row);
+	}
+
+	private class RowRecord implements SNPAnnotationParser.SNPRecord {
+		private int row;
+
+		private RowRecord(int row) {
+			this.row = row;
+		}
+
+		public String getChrom() { return SNPAnnotationTable.this.getChrom(row); }
+		public int getChromStart() { return SNPAnnotationTable.this.getChromStart(row); }
+		public int getChromEnd() { return SNPAnnotationTable.this.getChromEnd(row); }
+		public String getName() { return SNPAnnotationTable.this.getName(row); }
+		public String getStrand() { return SNPAnnotationTable.this.getStrand(row); }
+		public String getObserved() { return SNPAnnotationTable.this.getObserved(row); }
+		public String getMolType() { return SNPAnnotationTable.this.getMolType(row); }
+		public String getSNPClass() { return SNPAnnotationTable.this.getSNPClass(row); }
+		public String getValid() { return SNPAnnotationTable.this.getValid(row); }
+		public String getFunc() { return SNPAnnotationTable.this.getFunc(row); }
+		public String getLocType() { return SNPAnnotationTable.this.getLocType(row); }
+
+		public String toString() {
+			StringBuilder builder = new StringBuilder();
+			builder.append(getChrom()).append(DELIMITER).append(getChromStart()).append(DELIMITER).append(getChromEnd());
+			builder.append(DELIMITER).append(getName()).append(DELIMITER).append(getStrand()).append(DELIMITER).append(getObserved());
+			builder.append(DELIMITER).append(getMolType()).append(DELIMITER).append(getSNPClass()).append(DELIMITER).append(getValid());
+			builder.append(DELIMITER).append(getFunc()).append(DELIMITER).append(getLocType());
+			return builder.toString();
+		}
+	}
+
+	/**
+	 * Writes the table to the given file, for use with <code>map</code>.
+	 */
+	public void writeTo(File file) throws IOException {
+		if (file == null)
+			throw new NullPointerException("file");
+		// The header goes first, with its length, so the columns can be mapped at known offsets.
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream header = new DataOutputStream(bytes);
+		header.writeInt(numberOfRows);
+		header.writeInt(chroms.length);
+		for (int i = 0; i < chroms.length; i++) {
+			header.writeUTF(chroms[i]);
+			header.writeInt(chromRowStarts[i]);
+		}
+		for (int i = 0; i < dictionaries.length; i++) {
+			header.writeInt(dictionaries[i].length);
+			for (int j = 0; j < dictionaries[i].length; j++) {
+				header.writeUTF(dictionaries[i][j]);
+			}
+			header.writeInt(codes[i].getWidth());
+		}
+		header.writeInt(otherNames.size());
+		for (Iterator<Map.Entry<Integer, String>> it = otherNames.entrySet().iterator(); it.hasNext(); ) {
+			Map.Entry<Integer, String> entry = it.next();
+			header.writeInt(entry.getKey().intValue());
+			header.writeUTF(entry.getValue());
+		}
+		header.close();
+
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(bytes.size());
+			bytes.writeTo(out);
+			for (int i = 0; i < numberOfRows; i++) out.writeInt(chromStarts.get(i));
+			for (int i = 0; i < numberOfRows; i++) out.writeInt(chromEnds.get(i));
+			for (int i = 0; i < numberOfRows; i++) out.writeLong(rsNumbers.get(i));
+			for (int i = 0; i < numberOfRows; i++) out.writeInt(nextSameName.get(i));
+			for (int i = 0; i < codes.length; i++) {
+				codes[i].writeTo(out, numberOfRows);
+			}
+			rs2row.writeTo(out);
+		}
+		finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Maps a table previously written with <code>writeTo</code> into memory, read-only.
+	 */
+	public static SNPAnnotationTable map(File file) throws IOException {
+		if (file == null)
+			throw new NullPointerException("file");
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			ByteBuffer preamble = channel.map(FileChannel.MapMode.READ_ONLY, 0, 12);
+			if (preamble.getInt() != MAGIC)
+				throw new IOException("Not a SNP annotation table: " + file);
+			int version = preamble.getInt();
+			if (version != VERSION)
+				throw new IOException("Unsupported version " + version + ": " + file);
+			int headerLength = preamble.getInt();
+			byte[] bytes = new byte[headerLength];
+			channel.map(FileChannel.MapMode.READ_ONLY, 12, headerLength).get(bytes);
+			DataInputStream header = new DataInputStream(new ByteArrayInputStream(bytes));
+
+			SNPAnnotationTable table = new SNPAnnotationTable();
+			int n = header.readInt();
+			table.numberOfRows = n;
+			String[] chroms = new String[header.readInt()];
+			int[] chromRowStarts = new int[chroms.length + 1];
+			for (int i = 0; i < chroms.length; i++) {
+				chroms[i] = header.readUTF();
+				chromRowStarts[i] = header.readInt();
+			}
+			chromRowStarts[chroms.length] = n;
+			table.setChroms(chroms, chromRowStarts);
+			table.dictionaries = new String[DICTIONARY_FIELDS.length][];
+			int[] widths = new int[DICTIONARY_FIELDS.length];
+			for (int i = 0; i < DICTIONARY_FIELDS.length; i++) {
+				table.dictionaries[i] = new String[header.readInt()];
+				for (int j = 0; j < table.dictionaries[i].length; j++) {
+					table.dictionaries[i][j] = header.readUTF();
+				}
+				widths[i] = header.readInt();
+			}
+			table.otherNames = new HashMap<Integer, String>();
+			for (int i = 0, m = header.readInt(); i < m; i++) {
+				int row = header.readInt();
+				table.putOtherName(row, header.readUTF());
+			}
+
+			long position = 12 + headerLength;
+			table.chromStarts = map(channel, position, n * 4L).asIntBuffer();
+			position += n * 4L;
+			table.chromEnds = map(channel, position, n * 4L).asIntBuffer();
+			position += n * 4L;
+			table.rsNumbers = map(channel, position, n * 8L).asLongBuffer();
+			position += n * 8L;
+			table.nextSameName = map(channel, position, n * 4L).asIntBuffer();
+			position += n * 4L;
+			table.codes = new Codes[DICTIONARY_FIELDS.length];
+			for (int i = 0; i < widths.length; i++) {
+				table.codes[i] = Codes.wrap(map(channel, position, n * (long) widths[i]), widths[i]);
+				position += n * (long) widths[i];
+			}
+			table.rs2row = LongIntMap.map(channel, position);
+			return table;
+		}
+		finally {
+			raf.close(); // The mappings stay valid.
+		}
+	}
+
+	private static ByteBuffer map(FileChannel channel, long position, long size) throws IOException {
+		return channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+	}
+
+	/**
+	 * A listener for handling problems due to bad record formatting.
+	 */
+	public interface BadRecordFormatListener {
+		/**
+		 * Handles input that could not be parsed due to a formatting problem.
+		 * @param line The line of text that could not be parsed.
+		 */
+		void handleBadRecordFormat(String line);
+	}
+
+	// Interns raw field values, creating a string only for values not seen before.
+	private static final class Dictionary {
+		private List<byte[]> values = new ArrayList<byte[]>();
+		private int[] hashes = new int[16];
+		private int[] table = newTable(64);
+
+		private static int[] newTable(int size) {
+			int[] table = new int[size];
+			Arrays.fill(table, -1);
+			return table;
+		}
+
+		private int intern(ByteLineReader reader, int field) {
+			int hash = reader.hashField(field);
+			int mask = table.length - 1;
+			int slot = hash & mask;
+			while (table[slot] != -1) {
+				int code = table[slot];
+				if (hashes[code] == hash && reader.fieldEquals(field, values.get(code)))
+					return code;
+				slot = (slot + 1) & mask;
+			}
+			int code = values.size();
+			values.add(ByteLineReader.getBytes(reader.getField(field)));
+			if (code == hashes.length) hashes = Arrays.copyOf(hashes, code * 2);
+			hashes[code] = hash;
+			table[slot] = code;
+			if (values.size() * 2 > table.length) {
+				table = newTable(table.length * 2);
+				for (int i = 0; i < values.size(); i++) {
+					int s = hashes[i] & (table.length - 1);
+					while (table[s] != -1) s = (s + 1) & (table.length - 1);
+					table[s] = i;
+				}
+			}
+			return code;
+		}
+
+		private String[] toStrings() {
+			String[] strings = new String[values.size()];
+			for (int i = 0; i < strings.length; i++) {
+				try {
+					strings[i] = new String(values.get(i), "UTF-8");
+				}
+				catch (UnsupportedEncodingException e) {
+					throw new RuntimeException(e);
+				}
+			}
+			return strings;
+		}
+	}
+
+	// A growable column of dictionary codes, one byte wide until a code needs more.
+	private static final class CodeColumn {
+		private byte[] bytes = new byte[1024];
+		private short[] shorts;
+		private int[] ints;
+
+		private void set(int row, int code) {
+			if (ints == null && (shorts != null ? code > 0xffff : code > 0xff)) widen(code);
+			if (ints != null) {
+				if (row == ints.length) ints = Arrays.copyOf(ints, row * 2);
+				ints[row] = code;
+			}
+			else if (shorts != null) {
+				if (row == shorts.length) shorts = Arrays.copyOf(shorts, row * 2);
+				shorts[row] = (short) code;
+			}
+			else {
+				if (row == bytes.length) bytes = Arrays.copyOf(bytes, row * 2);
+				bytes[row] = (byte) code;
+			}
+		}
+
+		private void widen(int code) {
+			int length = shorts != null ? shorts.length : bytes.length;
+			int[] values = new int[length];
+			for (int i = 0; i < length; i++) values[i] = get(i);
+			if (code > 0xffff) {
+				ints = values;
+			}
+			else {
+				shorts = new short[length];
+				for (int i = 0; i < length; i++) shorts[i] = (short) values[i];
+			}
+			bytes = null;
+		}
+
+		private int get(int row) {
+			if (ints != null) return ints[row];
+			if (shorts != null) return shorts[row] & 0xffff;
+			return bytes[row] & 0xff;
+		}
+
+		private Codes sort(int[] order, int n) {
+			if (ints != null) {
+				int[] sorted = new int[n];
+				for (int i = 0; i < n; i++) sorted[i] = ints[order == null ? i : order[i]];
+				return new Codes(null, null, IntBuffer.wrap(sorted));
+			}
+			if (shorts != null) {
+				short[] sorted = new short[n];
+				for (int i = 0; i < n; i++) sorted[i] = shorts[order == null ? i : order[i]];
+				return new Codes(null, ShortBuffer.wrap(sorted), null);
+			}
+			byte[] sorted = new byte[n];
+			for (int i = 0; i < n; i++) sorted[i] = bytes[order == null ? i : order[i]];
+			return new Codes(ByteBuffer.wrap(sorted), null, null);
+		}
+	}
+
+	// A read-only column of dictionary codes, backed by an array or a mapped file.
+	private static final class Codes {
+		private ByteBuffer bytes;
+		private ShortBuffer shorts;
+		private IntBuffer ints;
+
+		private Codes(ByteBuffer bytes, ShortBuffer shorts, IntBuffer ints) {
+			this.bytes = bytes;
+			this.shorts = shorts;
+			this.ints = ints;
+		}
+
+		private static Codes wrap(ByteBuffer buffer, int width) {
+			if (width == 1) return new Codes(buffer, null, null);
+			if (width == 2) return new Codes(null, buffer.asShortBuffer(), null);
+			return new Codes(null, null, buffer.asIntBuffer());
+		}
+
+		private int getWidth() { return ints != null ? 4 : (shorts != null ? 2 : 1); }
+
+		private int get(int row) {
+			if (bytes != null) return bytes.get(row) & 0xff;
+			if (shorts != null) return shorts.get(row) & 0xffff;
+			return ints.get(row);
+		}
+
+		private void writeTo(DataOutputStream out, int n) throws IOException {
+			for (int i = 0; i < n; i++) {
+				if (bytes != null) out.writeByte(bytes.get(i));
+				else if (shorts != null) out.writeShort(shorts.get(i));
+				else out.writeInt(ints.get(i));
+			}
+		}
+	}
+}
@@ -37,6 +37,27 @@ public final class AlleleCounter {
 		frequency[0]++;
 	}
 
+	/**
+	 * Adds an allele to the count a number of times, as if
+	 * <code>addAllele</code> were called that many times.
+	 */
+	public void addAllele(String allele, int count) {
+		if (count < 0)
+			throw new IllegalArgumentException(String.valueOf(count));
+		if (count == 0)
+			return;
+		if (allele == null) {
+			missingCount += count;
+			return;
+		}
+		int[] frequency = map.get(allele);
+		if (frequency == null) {
+			frequency = new int[1];
+			map.put(allele, frequency);
+		}
+		frequency[0] += count;
+	}
+
 	/**
 	 * Returns true if the given allele has been counted at least once.
 	 */
@@ -0,0 +1,205 @@
+package edu.uab.ssg.model.snp;
+
+import java.util.*;
+
+/**
+ * A fixed table of chromosome ordinals, used to order chromosomes
+ * naturally (1, 2, ..., 22, X, Y, XY, MT) rather than lexicographically.
+ *
+ * <p>Names are matched with or without a "chr" prefix, so "chr10" and "10"
+ * share an ordinal. The PLINK numeric codes 23 (X), 24 (Y), 25 (XY) and 26
+ * (MT), as well as "M" for the mitochondrial chromosome, are also recognized.
+ * The PLINK code for unplaced markers, "0", sorts after MT. Any other name,
+ * such as an unplaced or alternate contig, sorts after the named
+ * chromosomes and lexicographically among the other contigs by name without
+ * the "chr" prefix, so the order never depends on the input. Looked up on
+ * its own, a contig has the ordinal <code>CONTIG</code>; looked up among a
+ * set of chromosomes with <code>getOrdinals</code> or
+ * <code>getPositionKeys</code>, each contig of the set has an ordinal of its
+ * own, numbered from <code>CONTIG</code> in that order, so the ordinals
+ * alone give the whole order.</p>
+ *
+ * <p>The table is built once and never changes, so lookups take no lock.</p>
+ *
+ * @author Jelai Wang
+ */
+public final class Chromosomes {
+	/**
+	 * The ordinal for unplaced markers (PLINK chromosome code 0).
+	 */
+	public static final int UNPLACED = 27;
+
+	/**
+	 * The ordinal of a contig, such as an alternate haplotype, looked up on
+	 * its own, and the first ordinal of the contigs of a set.
+	 */
+	public static final int CONTIG = 28;
+
+	private static final Map<String, Integer> NAME2ORDINAL;
+	private static final String[] ORDINAL2NAME = new String[CONTIG];
+
+	static {
+		Map<String, Integer> name2ordinal = new HashMap<String, Integer>();
+		for (int i = 1; i <= 22; i++) {
+			register(name2ordinal, String.valueOf(i), i);
+		}
+		register(name2ordinal, "X", 23);
+		register(name2ordinal, "Y", 24);
+		register(name2ordinal, "XY", 25);
+		register(name2ordinal, "MT", 26);
+		register(name2ordinal, "0", UNPLACED);
+		// Aliases.
+		alias(name2ordinal, "23", 23);
+		alias(name2ordinal, "24", 24);
+		alias(name2ordinal, "25", 25);
+		alias(name2ordinal, "26", 26);
+		alias(name2ordinal, "M", 26);
+		NAME2ORDINAL = Collections.unmodifiableMap(name2ordinal);
+	}
+
+	private Chromosomes() {
+	}
+
+	private static void register(Map<String, Integer> name2ordinal, String name, int ordinal) {
+		ORDINAL2NAME[ordinal] = name;
+		alias(name2ordinal, name, ordinal);
+	}
+
+	// Maps the name, and the name with the usual "chr" prefixes, to the ordinal.
+	private static void alias(Map<String, Integer> name2ordinal, String name, int ordinal) {
+		Integer value = Integer.valueOf(ordinal);
+		name2ordinal.put(name, value);
+		name2ordinal.put("chr" + name, value);
+		name2ordinal.put("Chr" + name, value);
+		name2ordinal.put("CHR" + name, value);
+	}
+
+	/**
+	 * Returns the ordinal of the given chromosome, or <code>CONTIG</code> if it has none of its own.
+	 */
+	public static int getOrdinal(String chromosome) {
+		if (chromosome == null)
+			throw new NullPointerException("chromosome");
+		Integer ordinal = NAME2ORDINAL.get(chromosome);
+		if (ordinal == null && hasPrefix(chromosome)) // An unusual case of the prefix, such as "cHr1".
+			ordinal = NAME2ORDINAL.get(chromosome.substring(3));
+		return ordinal != null ? ordinal.intValue() : CONTIG;
+	}
+
+	private static boolean hasPrefix(String chromosome) {
+		return chromosome.length() > 3 && chromosome.regionMatches(true, 0, "chr", 0, 3);
+	}
+
+	/**
+	 * Returns the canonical name, without any "chr" prefix, for the given ordinal.
+	 * @throws IllegalArgumentException If the ordinal is <code>CONTIG</code>, which names no single chromosome, or out of range.
+	 */
+	public static String getName(int ordinal) {
+		if (ordinal < 1 || ordinal >= CONTIG)
+			throw new IllegalArgumentException(String.valueOf(ordinal));
+		return ORDINAL2NAME[ordinal];
+	}
+
+	/**
+	 * Returns the canonical name of the given chromosome, for example
+	 * "X" for "chrX" or "23", or the name without any "chr" prefix for a contig.
+	 */
+	public static String getCanonicalName(String chromosome) {
+		int ordinal = getOrdinal(chromosome);
+		if (ordinal != CONTIG)
+			return ORDINAL2NAME[ordinal];
+		return hasPrefix(chromosome) ? chromosome.substring(3) : chromosome;
+	}
+
+	/**
+	 * Returns the ordinal of each of the given chromosomes, giving each
+	 * contig among them an ordinal of its own from <code>CONTIG</code> up, in
+	 * order of canonical name, so that comparing the ordinals orders the
+	 * chromosomes as <code>compare</code> does.
+	 */
+	public static int[] getOrdinals(String[] chromosomes) {
+		if (chromosomes == null)
+			throw new NullPointerException("chromosomes");
+		int[] ordinals = new int[chromosomes.length];
+		SortedMap<String, Integer> contigs = null;
+		for (int i = 0; i < chromosomes.length; i++) {
+			ordinals[i] = getOrdinal(chromosomes[i]);
+			if (ordinals[i] == CONTIG) {
+				if (contigs == null) contigs = new TreeMap<String, Integer>();
+				contigs.put(getCanonicalName(chromosomes[i]), null);
+			}
+		}
+		if (contigs == null)
+			return ordinals;
+		int ordinal = CONTIG;
+		for (Iterator<Map.Entry<String, Integer>> it = contigs.entrySet().iterator(); it.hasNext(); ) {
+			it.next().setValue(Integer.valueOf(ordinal++));
+		}
+		for (int i = 0; i < chromosomes.length; i++) {
+			if (ordinals[i] == CONTIG)
+				ordinals[i] = contigs.get(getCanonicalName(chromosomes[i])).intValue();
+		}
+		return ordinals;
+	}
+
+	/**
+	 * Compares two chromosomes in natural order, returning zero if they are
+	 * the same chromosome under different names, such as "chr1" and "1".
+	 */
+	public static int compare(String chromosome1, String chromosome2) {
+		if (chromosome1.equals(chromosome2))
+			return 0;
+		int ordinal1 = getOrdinal(chromosome1), ordinal2 = getOrdinal(chromosome2);
+		if (ordinal1 != ordinal2)
+			return ordinal1 < ordinal2 ? -1 : 1;
+		if (ordinal1 != CONTIG)
+			return 0;
+		return getCanonicalName(chromosome1).compareTo(getCanonicalName(chromosome2));
+	}
+
+	/**
+	 * Returns a key that packs the chromosome ordinal and the position into
+	 * a single long, so that comparing keys orders SNPs naturally by
+	 * chromosome and then by position. Looked up on its own, every contig
+	 * has the ordinal <code>CONTIG</code>, so the keys of SNPs on different
+	 * contigs must be ordered with <code>compare</code>; see
+	 * <code>getPositionKeys</code> for keys that order contigs too.
+	 */
+	public static long getPositionKey(String chromosome, int position) {
+		return getPositionKey(getOrdinal(chromosome), position);
+	}
+
+	private static long getPositionKey(int ordinal, int position) {
+		if (position < 0)
+			throw new IllegalArgumentException(String.valueOf(position));
+		return ((long) ordinal << 32) | position;
+	}
+
+	/**
+	 * Returns the position key of the given SNP.
+	 */
+	public static long getPositionKey(SNP snp) {
+		return getPositionKey(snp.getChromosome(), snp.getPosition());
+	}
+
+	/**
+	 * Returns the position key of each of the given SNPs, with the
+	 * chromosome ordinals of <code>getOrdinals</code>, so that comparing the
+	 * keys alone orders the SNPs naturally by chromosome, contigs included,
+	 * and then by position.
+	 */
+	public static long[] getPositionKeys(List<? extends SNP> snps) {
+		if (snps == null)
+			throw new NullPointerException("snps");
+		String[] chromosomes = new String[snps.size()];
+		for (int i = 0; i < chromosomes.length; i++) {
+			chromosomes[i] = snps.get(i).getChromosome();
+		}
+		int[] ordinals = getOrdinals(chromosomes);
+		long[] keys = new long[ordinals.length];
+		for (int i = 0; i < keys.length; i++) {
+			keys[i] = getPositionKey(ordinals[i], snps.get(i).getPosition());
+		}
+		return keys;
+	}
+}
@@ -0,0 +1,53 @@
+package edu.uab.ssg.model.snp;
+
+/**
+ * A default MarkerGenotypes implementation backed by a pair of allele arrays.
+ *
+ * @author Jelai Wang
+ */
+
+public final class DefaultMarkerGenotypes implements MarkerGenotypes {
+	private SNP snp;
+	private Strand strand;
+	private String[] alleles1, alleles2;
+
+	/**
+	 * Constructs the genotypes.
+	 * @param snp The SNP genotyped.
+	 * @param strand The strand of the alleles, or null if unknown.
+	 * @param alleles1 The first allele of each sample, null for missing data.
+	 * @param alleles2 The second allele of each sample, null for missing data.
+	 */
+	public DefaultMarkerGenotypes(SNP snp, Strand strand, String[] alleles1, String[] alleles2) {
+		if (snp == null)
+			throw new NullPointerException("snp");
+		if (alleles1 == null)
+			throw new NullPointerException("alleles1");
+		if (alleles2 == null)
+			throw new NullPointerException("alleles2");
+		if (alleles1.length != alleles2.length)
+			throw new IllegalArgumentException(alleles1.length + " " + alleles2.length);
+		this.snp = snp;
+		this.strand = strand;
+		this.alleles1 = alleles1.clone();
+		this.alleles2 = alleles2.clone();
+	}
+
+	public SNP getSNP() { return snp; }
+	public Strand getStrand() { return strand; }
+	public int getNumberOfSamples() { return alleles1.length; }
+	public String getAllele1(int sampleIndex) { return alleles1[sampleIndex]; }
+	public String getAllele2(int sampleIndex) { return alleles2[sampleIndex]; }
+
+	/**
+	 * Returns a string representation for debugging purposes.
+	 */
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		builder.append(snp.getName()).append(' ').append(strand);
+		for (int i = 0; i < alleles1.length; i++) {
+			builder.append(' ').append(alleles1[i]).append('/').append(alleles2[i]);
+		}
+		return builder.toString();
+	}
+}
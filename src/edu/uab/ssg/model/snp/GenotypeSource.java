@@ -0,0 +1,29 @@
+package edu.uab.ssg.model.snp;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * A source of genotypes that is read one SNP at a time, typically
+ * backed by a file that is too large to load into <code>Sample</code> objects.
+ *
+ * @author Jelai Wang
+ */
+
+public interface GenotypeSource {
+	/**
+	 * Returns the names of the samples, in the same sequence as the sample
+	 * indexes of the <code>MarkerGenotypes</code> returned by this source.
+	 */
+	List<String> getSampleNames();
+
+	/**
+	 * Returns the genotypes at the next SNP or null if this source is exhausted.
+	 */
+	MarkerGenotypes next() throws IOException;
+
+	/**
+	 * Closes this source.
+	 */
+	void close() throws IOException;
+}
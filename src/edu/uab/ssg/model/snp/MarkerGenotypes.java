@@ -0,0 +1,39 @@
+package edu.uab.ssg.model.snp;
+
+/**
+ * The genotypes of a fixed sequence of samples at a single SNP.
+ * This is the marker-major counterpart of <code>Sample</code>, and is the
+ * unit of data passed along by a <code>GenotypeSource</code>.
+ *
+ * @author Jelai Wang
+ */
+
+public interface MarkerGenotypes {
+	/**
+	 * Returns the SNP for these genotypes.
+	 */
+	SNP getSNP();
+
+	/**
+	 * Returns the strand of the alleles of these genotypes or null if the
+	 * strand is unknown.
+	 */
+	Strand getStrand();
+
+	/**
+	 * Returns the number of samples.
+	 */
+	int getNumberOfSamples();
+
+	/**
+	 * Returns the first allele for the sample at the given index or null
+	 * if the data are missing.
+	 */
+	String getAllele1(int sampleIndex);
+
+	/**
+	 * Returns the second allele for the sample at the given index or null
+	 * if the data are missing.
+	 */
+	String getAllele2(int sampleIndex);
+}
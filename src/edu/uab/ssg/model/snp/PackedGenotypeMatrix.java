@@ -0,0 +1,336 @@
+package edu.uab.ssg.model.snp;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * A marker-major matrix of biallelic genotypes packed two bits per call.
+ *
+ * <p>Each marker keeps a table of its two alleles, and each call is coded as
+ * <code>HOMOZYGOUS_1</code>, <code>HETEROZYGOUS</code>,
+ * <code>HOMOZYGOUS_2</code> or <code>MISSING</code> relative to that table,
+ * so 32 calls fit in a long. Because the codes do not name the alleles,
+ * flipping a marker to the opposite strand only complements the two entries
+ * of its allele table and leaves the packed calls alone; flipping a set of
+ * markers takes time proportional to the number of markers, however many
+ * samples there are.</p>
+ *
+ * <p>The order of the alleles within a heterozygous call is not kept; it is
+ * returned in the order of the allele table. A call with only one of its two
+ * alleles missing is stored as missing.</p>
+ *
+ * @author Jelai Wang
+ */
+public final class PackedGenotypeMatrix {
+	/**
+	 * The code for a call homozygous for the first allele of the marker.
+	 */
+	public static final int HOMOZYGOUS_1 = 0;
+
+	/**
+	 * The code for a heterozygous call.
+	 */
+	public static final int HETEROZYGOUS = 1;
+
+	/**
+	 * The code for a call homozygous for the second allele of the marker.
+	 */
+	public static final int HOMOZYGOUS_2 = 2;
+
+	/**
+	 * The code for a missing call.
+	 */
+	public static final int MISSING = 3;
+
+	/**
+	 * The number of calls packed in a word; see <code>getWord</code>.
+	 */
+	public static final int CALLS_PER_WORD = 32;
+
+	private List<String> sampleNames;
+	private int numberOfSamples, wordsPerMarker;
+	private int numberOfMarkers = 0;
+	private SNP[] snps = new SNP[16];
+	private Strand[] strands = new Strand[16];
+	private String[] alleles1 = new String[16], alleles2 = new String[16];
+	private long[][] calls = new long[16][];
+
+	/**
+	 * Constructs an empty matrix for the given samples.
+	 */
+	public PackedGenotypeMatrix(List<String> sampleNames) {
+		if (sampleNames == null)
+			throw new NullPointerException("sampleNames");
+		this.sampleNames = Collections.unmodifiableList(new ArrayList<String>(sampleNames));
+		this.numberOfSamples = sampleNames.size();
+		this.wordsPerMarker = (numberOfSamples + CALLS_PER_WORD - 1) / CALLS_PER_WORD;
+	}
+
+	/**
+	 * Reads every remaining marker of the given source into a new matrix.
+	 * The source is not closed.
+	 */
+	public static PackedGenotypeMatrix read(GenotypeSource source) throws IOException {
+		if (source == null)
+			throw new NullPointerException("source");
+		PackedGenotypeMatrix matrix = new PackedGenotypeMatrix(source.getSampleNames());
+		MarkerGenotypes genotypes = null;
+		while ((genotypes = source.next()) != null) {
+			matrix.add(genotypes);
+		}
+		return matrix;
+	}
+
+	/**
+	 * Appends the genotypes of a marker, returning its index.
+	 * @throws IllegalArgumentException If the marker has more than two alleles or the wrong number of samples.
+	 */
+	public int add(MarkerGenotypes genotypes) {
+		if (genotypes == null)
+			throw new NullPointerException("genotypes");
+		if (genotypes.getNumberOfSamples() != numberOfSamples)
+			throw new IllegalArgumentException(String.valueOf(genotypes.getNumberOfSamples()));
+		String allele1 = null, allele2 = null;
+		long[] words = new long[wordsPerMarker];
+		for (int i = 0; i < numberOfSamples; i++) {
+			String a1 = genotypes.getAllele1(i);
+			String a2 = genotypes.getAllele2(i);
+			int code = MISSING;
+			if (a1 != null && a2 != null) {
+				if (allele1 == null) allele1 = a1;
+				if (allele2 == null && !a1.equals(allele1)) allele2 = a1;
+				if (allele2 == null && !a2.equals(allele1)) allele2 = a2;
+				boolean first1 = isAllele(a1, allele1, allele2, genotypes), first2 = isAllele(a2, allele1, allele2, genotypes);
+				code = first1 && first2 ? HOMOZYGOUS_1 : (first1 || first2 ? HETEROZYGOUS : HOMOZYGOUS_2);
+			}
+			words[i / CALLS_PER_WORD] |= (long) code << ((i % CALLS_PER_WORD) << 1);
+		}
+		if (numberOfMarkers == snps.length) {
+			int capacity = numberOfMarkers * 2;
+			snps = Arrays.copyOf(snps, capacity);
+			strands = Arrays.copyOf(strands, capacity);
+			alleles1 = Arrays.copyOf(alleles1, capacity);
+			alleles2 = Arrays.copyOf(alleles2, capacity);
+			calls = Arrays.copyOf(calls, capacity);
+		}
+		snps[numberOfMarkers] = genotypes.getSNP();
+		strands[numberOfMarkers] = genotypes.getStrand();
+		alleles1[numberOfMarkers] = allele1;
+		alleles2[numberOfMarkers] = allele2;
+		calls[numberOfMarkers] = words;
+		return numberOfMarkers++;
+	}
+
+	/**
+	 * Appends a marker of calls already packed as by <code>getWord</code>,
+	 * returning its index. The words are copied.
+	 * @param strand The strand, or null if the strand is unknown.
+	 * @param allele1 The first allele, or null if every call is missing.
+	 * @param allele2 The second allele, or null if the marker is monomorphic or every call is missing.
+	 * @throws IllegalArgumentException If there is the wrong number of words or a bit past the last sample is set.
+	 */
+	public int add(SNP snp, Strand strand, String allele1, String allele2, long[] words) {
+		if (snp == null)
+			throw new NullPointerException("snp");
+		if (words == null)
+			throw new NullPointerException("words");
+		if (allele1 == null && allele2 != null)
+			throw new IllegalArgumentException(allele2);
+		if (words.length != wordsPerMarker)
+			throw new IllegalArgumentException(String.valueOf(words.length));
+		int remainder = numberOfSamples % CALLS_PER_WORD;
+		if (remainder != 0 && (words[wordsPerMarker - 1] >>> (remainder << 1)) != 0L)
+			throw new IllegalArgumentException(Long.toHexString(words[wordsPerMarker - 1]));
+		if (numberOfMarkers == snps.length) {
+			int capacity = numberOfMarkers * 2;
+			snps = Arrays.copyOf(snps, capacity);
+			strands = Arrays.copyOf(strands, capacity);
+			alleles1 = Arrays.copyOf(alleles1, capacity);
+			alleles2 = Arrays.copyOf(alleles2, capacity);
+			calls = Arrays.copyOf(calls, capacity);
+		}
+		snps[numberOfMarkers] = snp;
+		strands[numberOfMarkers] = strand;
+		alleles1[numberOfMarkers] = allele1;
+		alleles2[numberOfMarkers] = allele2;
+		calls[numberOfMarkers] = words.clone();
+		return numberOfMarkers++;
+	}
+
+	// Returns true if the allele is the first allele, false if it is the second.
+	private static boolean isAllele(String allele, String allele1, String allele2, MarkerGenotypes genotypes) {
+		if (allele.equals(allele1))
+			return true;
+		if (allele.equals(allele2))
+			return false;
+		throw new IllegalArgumentException(genotypes.getSNP().getName() + " " + allele);
+	}
+
+	/**
+	 * Returns the names of the samples.
+	 */
+	public List<String> getSampleNames() { return sampleNames; }
+
+	/**
+	 * Returns the number of samples.
+	 */
+	public int getNumberOfSamples() { return numberOfSamples; }
+
+	/**
+	 * Returns the number of markers.
+	 */
+	public int getNumberOfMarkers() { return numberOfMarkers; }
+
+	/**
+	 * Returns the SNP of the given marker.
+	 */
+	public SNP getSNP(int marker) {
+		checkMarker(marker);
+		return snps[marker];
+	}
+
+	/**
+	 * Returns the strand of the given marker, or null if the strand is unknown.
+	 */
+	public Strand getStrand(int marker) {
+		checkMarker(marker);
+		return strands[marker];
+	}
+
+	/**
+	 * Returns the first allele of the given marker, or null if every call is missing.
+	 */
+	public String getFirstAllele(int marker) {
+		checkMarker(marker);
+		return alleles1[marker];
+	}
+
+	/**
+	 * Returns the second allele of the given marker, or null if the marker is monomorphic or every call is missing.
+	 */
+	public String getSecondAllele(int marker) {
+		checkMarker(marker);
+		return alleles2[marker];
+	}
+
+	/**
+	 * Returns the code of the call for the given marker and sample, for example <code>HETEROZYGOUS</code>.
+	 */
+	public int getCode(int marker, int sampleIndex) {
+		checkMarker(marker);
+		if (sampleIndex < 0 || sampleIndex >= numberOfSamples)
+			throw new IndexOutOfBoundsException(String.valueOf(sampleIndex));
+		return (int) (calls[marker][sampleIndex / CALLS_PER_WORD] >>> ((sampleIndex % CALLS_PER_WORD) << 1)) & 3;
+	}
+
+	/**
+	 * Returns a word of packed calls of the given marker, for bulk processing.
+	 * The code of sample <tt>s</tt> is in bits <tt>2 * (s % CALLS_PER_WORD)</tt>
+	 * and up of word <tt>s / CALLS_PER_WORD</tt>, so each byte of a word holds
+	 * four samples, the first in the low bits. Bits past the last sample are zero.
+	 */
+	public long getWord(int marker, int index) {
+		checkMarker(marker);
+		return calls[marker][index];
+	}
+
+	/**
+	 * Returns the first allele of the call for the given marker and sample, or null if the call is missing.
+	 */
+	public String getAllele1(int marker, int sampleIndex) {
+		int code = getCode(marker, sampleIndex);
+		if (code == MISSING)
+			return null;
+		return code == HOMOZYGOUS_2 ? alleles2[marker] : alleles1[marker];
+	}
+
+	/**
+	 * Returns the second allele of the call for the given marker and sample, or null if the call is missing.
+	 */
+	public String getAllele2(int marker, int sampleIndex) {
+		int code = getCode(marker, sampleIndex);
+		if (code == MISSING)
+			return null;
+		return code == HOMOZYGOUS_1 ? alleles1[marker] : alleles2[marker];
+	}
+
+	/**
+	 * Returns a view of the genotypes of the given marker.
+	 */
+	public MarkerGenotypes getMarkerGenotypes(final int marker) {
+		checkMarker(marker);
+		return new MarkerGenotypes() {
+			public SNP getSNP() { return snps[marker]; }
+			public Strand getStrand() { return strands[marker]; }
+			public int getNumberOfSamples() { return numberOfSamples; }
+			public String getAllele1(int sampleIndex) { return PackedGenotypeMatrix.this.getAllele1(marker, sampleIndex); }
+			public String getAllele2(int sampleIndex) { return PackedGenotypeMatrix.this.getAllele2(marker, sampleIndex); }
+		};
+	}
+
+	/**
+	 * Returns a source that walks the markers of this matrix in order.
+	 */
+	public GenotypeSource createGenotypeSource() {
+		return new GenotypeSource() {
+			private int marker = 0;
+
+			public List<String> getSampleNames() { return sampleNames; }
+
+			public MarkerGenotypes next() {
+				return marker < numberOfMarkers ? getMarkerGenotypes(marker++) : null;
+			}
+
+			public void close() {
+			}
+		};
+	}
+
+	/**
+	 * Flips the given marker to the opposite strand.
+	 * @throws IllegalArgumentException If an allele of the marker is not a nucleotide.
+	 */
+	public void flipStrand(int marker) {
+		checkMarker(marker);
+		checkFlip(marker);
+		flip(marker);
+	}
+
+	/**
+	 * Flips the markers marked true to the opposite strand.
+	 * Nothing is flipped if an allele of any of these markers is not a nucleotide.
+	 * @param markers One flag per marker.
+	 * @throws IllegalArgumentException If an allele of a marker to be flipped is not a nucleotide.
+	 */
+	public void flipStrand(boolean[] markers) {
+		if (markers == null)
+			throw new NullPointerException("markers");
+		if (markers.length != numberOfMarkers)
+			throw new IllegalArgumentException(String.valueOf(markers.length));
+		for (int i = 0; i < numberOfMarkers; i++) {
+			if (markers[i]) checkFlip(i);
+		}
+		for (int i = 0; i < numberOfMarkers; i++) {
+			if (markers[i]) flip(i);
+		}
+	}
+
+	private void checkFlip(int marker) {
+		if ((alleles1[marker] != null && Util.complement(alleles1[marker]) == null) || (alleles2[marker] != null && Util.complement(alleles2[marker]) == null))
+			throw new IllegalArgumentException(snps[marker].getName() + " " + alleles1[marker] + " " + alleles2[marker]);
+	}
+
+	private void flip(int marker) {
+		if (alleles1[marker] != null) alleles1[marker] = Util.complement(alleles1[marker]);
+		if (alleles2[marker] != null) alleles2[marker] = Util.complement(alleles2[marker]);
+		Strand strand = strands[marker];
+		if (strand == IlluminaStrand.TOP) strands[marker] = IlluminaStrand.BOT;
+		else if (strand == IlluminaStrand.BOT) strands[marker] = IlluminaStrand.TOP;
+		else strands[marker] = null; // We don't know what the opposite of another strand designation is called.
+	}
+
+	private void checkMarker(int marker) {
+		if (marker < 0 || marker >= numberOfMarkers)
+			throw new IndexOutOfBoundsException(String.valueOf(marker));
+	}
+}
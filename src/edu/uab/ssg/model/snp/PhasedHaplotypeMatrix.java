@@ -0,0 +1,147 @@
+package edu.uab.ssg.model.snp;
+
+import java.util.*;
+
+/**
+ * A sample-major matrix of phased biallelic haplotypes, one bit per allele.
+ *
+ * <p>Samples are added one at a time, each with its two haplotypes given as
+ * one single-character allele per marker, for example as decoded by
+ * <code>edu.uab.ssg.io.fastphase.OUTParser</code>. Each marker keeps a table
+ * of its two alleles in the order they were first seen, and each haplotype
+ * is stored as a bitset with a set bit where it carries the second allele,
+ * so 64 alleles fit in a long.</p>
+ *
+ * @author Jelai Wang
+ */
+public final class PhasedHaplotypeMatrix {
+	/**
+	 * The number of alleles packed in a word; see <code>getWord</code>.
+	 */
+	public static final int ALLELES_PER_WORD = 64;
+
+	private int numberOfMarkers, wordsPerHaplotype;
+	private byte[] alleles1, alleles2;
+	private List<String> sampleIDs = new ArrayList<String>();
+	private List<long[]> haplotypes = new ArrayList<long[]>();
+
+	/**
+	 * Constructs an empty matrix for haplotypes of the given number of markers.
+	 */
+	public PhasedHaplotypeMatrix(int numberOfMarkers) {
+		if (numberOfMarkers < 0)
+			throw new IllegalArgumentException(String.valueOf(numberOfMarkers));
+		this.numberOfMarkers = numberOfMarkers;
+		this.wordsPerHaplotype = (numberOfMarkers + ALLELES_PER_WORD - 1) / ALLELES_PER_WORD;
+		this.alleles1 = new byte[numberOfMarkers];
+		this.alleles2 = new byte[numberOfMarkers];
+	}
+
+	/**
+	 * Appends a sample, returning its index. The matrix is unchanged if an
+	 * exception is thrown.
+	 * @param haplotype1 The ASCII code of the allele of each marker on the first haplotype.
+	 * @param haplotype2 The ASCII code of the allele of each marker on the second haplotype.
+	 * @throws IllegalArgumentException If a haplotype has the wrong number of markers or a marker would have more than two alleles.
+	 */
+	public int add(String sampleID, byte[] haplotype1, byte[] haplotype2) {
+		if (sampleID == null)
+			throw new NullPointerException("sampleID");
+		if (haplotype1 == null)
+			throw new NullPointerException("haplotype1");
+		if (haplotype2 == null)
+			throw new NullPointerException("haplotype2");
+		if (haplotype1.length != numberOfMarkers)
+			throw new IllegalArgumentException(String.valueOf(haplotype1.length));
+		if (haplotype2.length != numberOfMarkers)
+			throw new IllegalArgumentException(String.valueOf(haplotype2.length));
+		for (int i = 0; i < numberOfMarkers; i++) { // Check before changing any allele table.
+			byte a1 = alleles1[i], a2 = alleles2[i], h1 = haplotype1[i], h2 = haplotype2[i];
+			if (h1 == 0 || h2 == 0)
+				throw new IllegalArgumentException(String.valueOf(i));
+			if (a1 == 0) a1 = h1;
+			if (a2 == 0 && h1 != a1) a2 = h1;
+			if (a2 == 0 && h2 != a1) a2 = h2;
+			if ((h1 != a1 && h1 != a2) || (h2 != a1 && h2 != a2))
+				throw new IllegalArgumentException(i + " " + (char) h1 + " " + (char) h2);
+		}
+		long[] bits = new long[2 * wordsPerHaplotype];
+		for (int i = 0; i < numberOfMarkers; i++) {
+			bits[i / ALLELES_PER_WORD] |= (long) code(i, haplotype1[i]) << (i % ALLELES_PER_WORD);
+			bits[wordsPerHaplotype + i / ALLELES_PER_WORD] |= (long) code(i, haplotype2[i]) << (i % ALLELES_PER_WORD);
+		}
+		sampleIDs.add(sampleID);
+		haplotypes.add(bits);
+		return sampleIDs.size() - 1;
+	}
+
+	// Returns 0 for the first allele of the marker and 1 for the second, adding the allele to the table.
+	private int code(int marker, byte allele) {
+		if (alleles1[marker] == 0) alleles1[marker] = allele;
+		if (allele == alleles1[marker])
+			return 0;
+		if (alleles2[marker] == 0) alleles2[marker] = allele;
+		return 1;
+	}
+
+	/**
+	 * Returns the IDs of the samples.
+	 */
+	public List<String> getSampleIDs() { return Collections.unmodifiableList(sampleIDs); }
+
+	/**
+	 * Returns the number of samples.
+	 */
+	public int getNumberOfSamples() { return sampleIDs.size(); }
+
+	/**
+	 * Returns the number of markers.
+	 */
+	public int getNumberOfMarkers() { return numberOfMarkers; }
+
+	/**
+	 * Returns the first allele of the given marker, or null if there are no samples.
+	 */
+	public String getFirstAllele(int marker) {
+		checkMarker(marker);
+		return alleles1[marker] == 0 ? null : String.valueOf((char) alleles1[marker]);
+	}
+
+	/**
+	 * Returns the second allele of the given marker, or null if the marker is monomorphic.
+	 */
+	public String getSecondAllele(int marker) {
+		checkMarker(marker);
+		return alleles2[marker] == 0 ? null : String.valueOf((char) alleles2[marker]);
+	}
+
+	/**
+	 * Returns the allele of the given sample, haplotype and marker.
+	 * @param haplotype 0 for the first haplotype and 1 for the second.
+	 */
+	public String getAllele(int sampleIndex, int haplotype, int marker) {
+		checkMarker(marker);
+		long word = getWord(sampleIndex, haplotype, marker / ALLELES_PER_WORD);
+		return ((word >>> (marker % ALLELES_PER_WORD)) & 1L) == 0 ? getFirstAllele(marker) : getSecondAllele(marker);
+	}
+
+	/**
+	 * Returns a word of the bitset of the given haplotype, for bulk
+	 * processing. Bit <tt>m % ALLELES_PER_WORD</tt> of word
+	 * <tt>m / ALLELES_PER_WORD</tt> is set if marker <tt>m</tt> carries the
+	 * second allele. Bits past the last marker are zero.
+	 * @param haplotype 0 for the first haplotype and 1 for the second.
+	 */
+	public long getWord(int sampleIndex, int haplotype, int index) {
+		if (haplotype != 0 && haplotype != 1)
+			throw new IllegalArgumentException(String.valueOf(haplotype));
+		if (index < 0 || index >= wordsPerHaplotype)
+			throw new IndexOutOfBoundsException(String.valueOf(index));
+		return haplotypes.get(sampleIndex)[haplotype * wordsPerHaplotype + index];
+	}
+
+	private void checkMarker(int marker) {
+		if (marker < 0 || marker >= numberOfMarkers)
+			throw new IndexOutOfBoundsException(String.valueOf(marker));
+	}
+}
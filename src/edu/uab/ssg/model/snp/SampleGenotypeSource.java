@@ -0,0 +1,61 @@
+package edu.uab.ssg.model.snp;
+
+import java.util.*;
+
+/**
+ * A GenotypeSource that walks a list of SNPs over samples already held in
+ * memory. This is mostly useful for adapting existing <code>Sample</code>
+ * objects to the streaming APIs.
+ *
+ * @author Jelai Wang
+ */
+
+public final class SampleGenotypeSource implements GenotypeSource {
+	private List<SNP> snps;
+	private List<Sample> samples;
+	private List<String> sampleNames;
+	private int index = 0;
+
+	/**
+	 * Constructs the source.
+	 * @param snps The SNPs, in the sequence they should be returned.
+	 */
+	public SampleGenotypeSource(List<SNP> snps, List<Sample> samples) {
+		if (snps == null)
+			throw new NullPointerException("snps");
+		if (samples == null)
+			throw new NullPointerException("samples");
+		this.snps = new ArrayList<SNP>(snps);
+		this.samples = new ArrayList<Sample>(samples);
+		List<String> list = new ArrayList<String>();
+		for (int i = 0, n = samples.size(); i < n; i++) {
+			list.add(samples.get(i).getName());
+		}
+		this.sampleNames = Collections.unmodifiableList(list);
+	}
+
+	public List<String> getSampleNames() { return sampleNames; }
+
+	public MarkerGenotypes next() {
+		if (index >= snps.size())
+			return null;
+		SNP snp = snps.get(index++);
+		int n = samples.size();
+		String[] alleles1 = new String[n];
+		String[] alleles2 = new String[n];
+		Strand strand = null;
+		for (int i = 0; i < n; i++) {
+			Sample sample = samples.get(i);
+			if (sample.existsGenotype(snp)) {
+				Sample.Genotype genotype = sample.getGenotype(snp);
+				alleles1[i] = genotype.getAllele1();
+				alleles2[i] = genotype.getAllele2();
+				if (strand == null) strand = genotype.getStrand();
+			}
+		}
+		return new DefaultMarkerGenotypes(snp, strand, alleles1, alleles2);
+	}
+
+	public void close() {
+	}
+}
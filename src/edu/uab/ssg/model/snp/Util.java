@@ -1,6 +1,6 @@
 package edu.uab.ssg.model.snp;
 
-import java.util.Comparator;
+import java.util.*;
 
 /**
  * 	A collection of utility objects and functions.
@@ -41,6 +41,124 @@ public final class Util {
 		}
 	};
 
+	/**
+	 *	A Comparator that orders <tt>SNP</tt> objects naturally by chromosome (1, 2, ..., 22, X, Y, XY, MT, then other contigs) and position.
+	 *	See <tt>Chromosomes</tt> for the chromosome ordinals.
+	 */
+	public static final Comparator<SNP> ORDER_BY_NATURAL_CHROMOSOME_POSITION = new Comparator<SNP>() {
+		public int compare(SNP snp1, SNP snp2) {
+			long key1 = Chromosomes.getPositionKey(snp1), key2 = Chromosomes.getPositionKey(snp2);
+			if ((int) (key1 >>> 32) != Chromosomes.CONTIG || (int) (key2 >>> 32) != Chromosomes.CONTIG)
+				return key1 < key2 ? -1 : (key1 > key2 ? 1 : 0);
+			// Both on contigs, which share an ordinal here.
+			int value = Chromosomes.compare(snp1.getChromosome(), snp2.getChromosome());
+			if (value != 0)
+				return value;
+			int pos1 = snp1.getPosition(), pos2 = snp2.getPosition();
+			return pos1 < pos2 ? -1 : (pos1 > pos2 ? 1 : 0);
+		}
+
+		public boolean equals(Object o) {
+			if (o == this) {
+				return true;
+			}
+			return false;
+		}
+	};
+
+	/**
+	 *	Sorts the SNPs as <tt>ORDER_BY_NATURAL_CHROMOSOME_POSITION</tt> does, keeping the order of ties, but
+	 *	computes the position key of each SNP once (see <tt>Chromosomes.getPositionKeys</tt>) and compares only keys.
+	 */
+	public static void sortByNaturalChromosomePosition(List<SNP> snps) {
+		final long[] keys = Chromosomes.getPositionKeys(snps);
+		Integer[] order = new Integer[keys.length];
+		for (int i = 0; i < order.length; i++) {
+			order[i] = Integer.valueOf(i);
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			public int compare(Integer i1, Integer i2) {
+				long key1 = keys[i1.intValue()], key2 = keys[i2.intValue()];
+				return key1 < key2 ? -1 : (key1 > key2 ? 1 : 0);
+			}
+		});
+		List<SNP> sorted = new ArrayList<SNP>(order.length);
+		for (int i = 0; i < order.length; i++) {
+			sorted.add(snps.get(order[i].intValue()));
+		}
+		for (int i = 0; i < order.length; i++) {
+			snps.set(i, sorted.get(i));
+		}
+	}
+
+	// Indexed by ASCII code, the allele of that one character, shared by every parser that decodes allele codes.
+	private static final String[] ALLELES = new String[128];
+	static {
+		for (int i = 1; i < ALLELES.length; i++) {
+			ALLELES[i] = String.valueOf((char) i);
+		}
+	}
+
+	/**
+	 *	Returns the allele of one ASCII character, such as "A" for 'A', as a string shared by every call, or null for zero, the usual code of missing data.
+	 *	@throws IllegalArgumentException If the character is not ASCII.
+	 */
+	public static String getAllele(int ch) {
+		if (ch < 0 || ch >= ALLELES.length)
+			throw new IllegalArgumentException(String.valueOf(ch));
+		return ALLELES[ch];
+	}
+
+	// Indexed by character, the complementary nucleotide or zero if there is none.
+	private static final byte[] COMPLEMENT = new byte[128];
+	private static final String[] COMPLEMENT_STRING = new String[128];
+	static {
+		String from = "ACGTacgt", to = "TGCAtgca";
+		for (int i = 0; i < from.length(); i++) {
+			COMPLEMENT[from.charAt(i)] = (byte) to.charAt(i);
+			COMPLEMENT_STRING[from.charAt(i)] = String.valueOf(to.charAt(i));
+		}
+	}
+
+	/**
+	 *	Returns the allele on the opposite strand, for example T for A, or null if the allele is not a single nucleotide.
+	 */
+	public static String complement(String allele) {
+		if (allele == null)
+			throw new NullPointerException("allele");
+		if (allele.length() != 1)
+			return null;
+		char c = allele.charAt(0);
+		return c < 128 ? COMPLEMENT_STRING[c] : null;
+	}
+
+	/**
+	 *	Returns the nucleotide on the opposite strand, for example T for A.
+	 *	@throws IllegalArgumentException If the character is not a nucleotide.
+	 */
+	public static char complement(char allele) {
+		byte c = allele < 128 ? COMPLEMENT[allele] : 0;
+		if (c == 0)
+			throw new IllegalArgumentException(String.valueOf(allele));
+		return (char) c;
+	}
+
+	/**
+	 *	Complements, in place, the nucleotides in the given range of ASCII text.
+	 *	Other bytes are left unchanged, so delimiters and missing values can be
+	 *	passed through with the calls around them.
+	 */
+	public static void complement(byte[] bytes, int offset, int length) {
+		if (bytes == null)
+			throw new NullPointerException("bytes");
+		if (offset < 0 || length < 0 || offset + length > bytes.length)
+			throw new IndexOutOfBoundsException(offset + " " + length);
+		for (int i = offset, end = offset + length; i < end; i++) {
+			byte b = bytes[i];
+			if (b > 0 && COMPLEMENT[b] != 0) bytes[i] = COMPLEMENT[b];
+		}
+	}
+
 	private Util() {
 	}
 }
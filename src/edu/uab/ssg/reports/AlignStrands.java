@@ -0,0 +1,71 @@
+package edu.uab.ssg.reports;
+
+import edu.uab.ssg.io.plink.*;
+import edu.uab.ssg.model.snp.*;
+import edu.uab.ssg.util.StrandAligner;
+import java.io.*;
+import java.util.*;
+
+/**
+ * Aligns a target PED file to the strand of a reference PED file in one
+ * run, replacing StrandMatchReport followed by FlipCalls.
+ * See <code>StrandAligner</code>.
+ */
+public final class AlignStrands {
+	public static void main(String[] args) throws IOException {
+		String refMapFileName = args[0];
+		String refPedFileName = args[1];
+		String tgtMapFileName = args[2];
+		String tgtPedFileName = args[3];
+		String outputFileName = args[4];
+		int numberOfThreads = args.length > 5 ? Integer.parseInt(args[5]) : Runtime.getRuntime().availableProcessors();
+
+		List<SNP> refMarkers = parseMapFile(refMapFileName);
+		System.out.println("Read " + refMarkers.size() + " markers from " + refMapFileName + ".");
+		List<SNP> tgtMarkers = parseMapFile(tgtMapFileName);
+		System.out.println("Read " + tgtMarkers.size() + " markers from " + tgtMapFileName + ".");
+
+		StrandAligner aligner = new StrandAligner();
+		System.out.print("Counting alleles in " + refPedFileName + " ... ");
+		BufferedReader in = new BufferedReader(new FileReader(refPedFileName));
+		StrandAligner.AlleleSummary reference = aligner.summarize(refMarkers, in, numberOfThreads);
+		in.close();
+		System.out.println("done!");
+		System.out.print("Counting alleles in " + tgtPedFileName + " ... ");
+		in = new BufferedReader(new FileReader(tgtPedFileName));
+		StrandAligner.AlleleSummary target = aligner.summarize(tgtMarkers, in, numberOfThreads);
+		in.close();
+		System.out.println("done!");
+
+		StrandAligner.Decision[] decisions = aligner.align(reference, target);
+		int numOfFlips = 0, numOfUnresolved = 0;
+		for (int i = 0; i < decisions.length; i++) {
+			if (decisions[i] == StrandAligner.Decision.FLIP) {
+				numOfFlips++;
+			}
+			else if (decisions[i] == StrandAligner.Decision.UNRESOLVED) {
+				numOfUnresolved++;
+				System.err.println(tgtMarkers.get(i).getName() + " " + decisions[i]);
+			}
+		}
+		System.out.println("Flipping " + numOfFlips + " markers, " + numOfUnresolved + " markers unresolved.");
+
+		System.out.print("Writing output to " + outputFileName + " ... ");
+		in = new BufferedReader(new FileReader(tgtPedFileName));
+		Writer out = new BufferedWriter(new FileWriter(outputFileName));
+		aligner.flip(in, out, decisions, numberOfThreads);
+		in.close();
+		out.close();
+		System.out.println("done!");
+	}
+
+	private static List<SNP> parseMapFile(String mapFileName) throws IOException {
+		MAPParser mapParser = new MAPParser();
+		List<SNP> markers = mapParser.parse(new FileInputStream(mapFileName), new MAPParser.BadRecordFormatListener() {
+			public void handleBadRecordFormat(String line) {
+				System.err.println(line);
+			}
+		});
+		return markers;
+	}
+}
@@ -2,6 +2,7 @@ package edu.uab.ssg.reports;
 
 import edu.uab.ssg.io.plink.*;
 import edu.uab.ssg.model.snp.*;
+import edu.uab.ssg.util.StrandAligner;
 import java.util.*;
 import java.io.*;
 
@@ -24,63 +25,24 @@ public class FlipCalls {
 		});
 		System.out.println("Read " + markers.size() + " markers from " + mapFileName + ".");
 
-		System.out.print("Writing output to " + outputFileName + " ... ");
-		final PEDWriter pedWriter = new PEDWriter(markers, new FileOutputStream(outputFileName));
-		PEDParser pedParser = new PEDParser();
-		pedParser.parse(new FileInputStream(pedFileName), new PEDParser.RecordListener() {
-			public void handleParsedRecord(PEDParser.SampleRecord record) {
-				int numOfCalls = record.getNumberOfAvailableGenotypeCalls();
-				if (numOfCalls != markers.size()) { // Sanity check.
-					throw new RuntimeException(numOfCalls + " " + markers.size());
-				}
-				SampleBuilder builder = new SampleBuilder(record.getFID());
-				for (int i = 0; i < numOfCalls; i++) {
-					SNP snp = markers.get(i);
-					String a1 = record.getAllele1(i);
-					String a2 = record.getAllele2(i);
-					Strand strand = IlluminaStrand.TOP; // LOOK!!
-
-					// Translate genotype call to opposite strand if flip.
-					boolean flip = marker2flip.get(snp.getName());
-					if (flip && a1 != null) a1 = translateToOppositeStrand(a1);
-					if (flip && a2 != null) a2 = translateToOppositeStrand(a2);
-
-					builder.setGenotype(snp, a1, a2, strand);
-				}
-				try {
-					pedWriter.write(builder.getInstance());
-				}
-				catch (IOException e) {
-					e.printStackTrace();
-				}
-			}
+		// Look up the flip call of each genotype column once, rather than per sample.
+		StrandAligner.Decision[] decisions = new StrandAligner.Decision[markers.size()];
+		for (int i = 0; i < decisions.length; i++) {
+			Boolean flip = marker2flip.get(markers.get(i).getName());
+			if (flip == null)
+				throw new RuntimeException(markers.get(i).getName());
+			decisions[i] = flip.booleanValue() ? StrandAligner.Decision.FLIP : StrandAligner.Decision.KEEP;
+		}
 
-			public void handleBadRecordFormat(String line) {
-				System.err.println(line);
-			}
-		});
-		pedWriter.close();
+		System.out.print("Writing output to " + outputFileName + " ... ");
+		BufferedReader in = new BufferedReader(new FileReader(pedFileName));
+		Writer out = new BufferedWriter(new FileWriter(outputFileName));
+		new StrandAligner().flip(in, out, decisions, Runtime.getRuntime().availableProcessors());
+		in.close();
+		out.close();
 		System.out.println("done!");
 	}
 
-	private static String translateToOppositeStrand(String allele) {
-		if ("A".equals(allele)) {
-			return "T";
-		}
-		else if ("C".equals(allele)) {
-			return "G";
-		}
-		else if ("G".equals(allele)) {
-			return "C";
-		}
-		else if ("T".equals(allele)) {
-			return "A";
-		}
-		else {
-			throw new RuntimeException(allele);
-		}
-	}
-
 	private static Map<String, Boolean> parseStrandMatchReport(String fileName) throws IOException {
 		Map<String, Boolean> map = new LinkedHashMap<String, Boolean>();
 		BufferedReader in = new BufferedReader(new FileReader(fileName));
@@ -1,9 +1,9 @@
 package edu.uab.ssg.reports;
 
 import edu.uab.ssg.io.ncbi.*;
+import edu.uab.ssg.util.GeneIndex;
 import java.util.*;
 import java.io.*;
-import java.util.zip.GZIPInputStream;
 
 /**
  *	This gene report parses NCBI-formatted <tt>gene_info</tt> and <tt>seq_gene.md</tt> files and outputs a tab-delimited text table containing annotation records for each user-supplied gene of interest.
@@ -17,6 +17,8 @@ import java.util.zip.GZIPInputStream;
  *		<li>assembly name, usually something like <i>reference</i> or <i>GRCh37.p2-Primary Assembly</i>, look at the <tt>group_label</tt> field in the <tt>seq_gene.md</tt> file for valid values</li>
  *	</ol>
  *
+ *	<p>An optional sixth parameter names a cache file. The parsed <tt>gene_info</tt> and <tt>seq_gene.md</tt> records are written to it on the first run and read back on later runs with the same feature type and assembly name, skipping the slow parse of the gzipped files. The cache is rebuilt whenever either input file is newer.</p>
+ *
  *	<p>The <tt>gene_info</tt> file is parsed, in both the symbol and synonym fields, for the user-supplied gene names. If a match is found, the Entrez Gene ID is used to cross-reference the mapping data in the <tt>seq_gene.md</tt> file. In other words, the <tt>seq_gene.md</tt> file is parsed for records of feature type, e.g. <i>GENE</i>, and group label, e.g. <i>GRCh37.p2-Primary Assembly</i>, specified as command-line arguments. The chromosome start and end positions for the gene are retrieved as described in the <a href="http://www.ncbi.nlm.nih.gov/bookshelf/br.fcgi?book=helpgene&part=genefaq">Entrez Gene FAQ</a>. Note that the position data in the <tt>seq_gene.md</tt> file is one-based (see FAQ).</p>
  *
  *	<p>If the output has no mapping data, that means the feature type and assembly name specified as command-line arguments don't appear together in records from <tt>seq_gene.md</tt>. This may be due to a typo, so double-check the input. Also, take care to properly quote values (especially for assembly name) that contain spaces.</p>
@@ -35,28 +37,19 @@ public final class GeneReport {
 		File geneNamesFile = new File(args[0]);
 		File geneInfoFile = new File(args[1]);
 		File seqGeneMdFile = new File(args[2]);
-		final String featureType = args[3];
-		final String groupLabel = args[4];
+		String featureType = args[3];
+		String groupLabel = args[4];
+		File cacheFile = args.length > 5 ? new File(args[5]) : null;
 
 		Set<String> userSuppliedNames = parseUserSuppliedNames(new FileInputStream(geneNamesFile));
 		System.out.println("Read " + userSuppliedNames.size() + " user-supplied gene names.");
 
-		GeneInfoParser geneInfoParser = new GeneInfoParser();
-		List<GeneInfoParser.Record> geneInfoRecords = geneInfoParser.parse(new GZIPInputStream(new FileInputStream(geneInfoFile)));
-
-		SeqGeneMdParser seqGeneMdParser = new SeqGeneMdParser();
-		List<SeqGeneMdParser.Record> seqGeneMdRecords = seqGeneMdParser.parse(new GZIPInputStream(new FileInputStream(seqGeneMdFile)), new SeqGeneMdParser.RecordFilter() {
-			public boolean acceptRecord(SeqGeneMdParser.Record record) {
-				// See NCBI Entrez Gene FAQ for further detail.
-				if (featureType.equals(record.getFeatureType()) && groupLabel.equals(record.getGroupLabel())) return true;
-				return false;
-			}
-		});
+		GeneIndex index = GeneIndex.load(geneInfoFile, seqGeneMdFile, featureType, groupLabel, cacheFile);
 
 		Map<String, List<GeneInfoParser.Record>> geneInfoMap  = new LinkedHashMap<String, List<GeneInfoParser.Record>>();
 		for (Iterator<String> it = userSuppliedNames.iterator(); it.hasNext(); ) {
 			String geneName = it.next();
-			List<GeneInfoParser.Record> _geneInfoRecords = findGeneInfo(geneName, geneInfoRecords);
+			List<GeneInfoParser.Record> _geneInfoRecords = index.findGeneInfo(geneName);
 			if (_geneInfoRecords.size() == 0) {
 				System.err.println("Couldn't find gene info for " + geneName + ".");
 			}
@@ -103,7 +96,7 @@ public final class GeneReport {
 				}
 				// Append map data.
 				if (geneInfoRecord != null) {
-					SeqGeneMdParser.Record seqGeneMdRecord = findSeqGeneMd(geneInfoRecord.getGeneID(), seqGeneMdRecords);
+					SeqGeneMdParser.Record seqGeneMdRecord = index.getSeqGeneMd(geneInfoRecord.getGeneID());
 					if (seqGeneMdRecord != null) {
 						builder.append(DELIMITER).append(seqGeneMdRecord.getChromosome());
 						builder.append(DELIMITER).append(seqGeneMdRecord.getChrStart());
@@ -143,32 +136,4 @@ public final class GeneReport {
 		in.close();
 		return set;
 	}
-
-	// Return a list of records that contain the given gene name in either the symbol or synonym fields.
-	private static List<GeneInfoParser.Record> findGeneInfo(String geneName, List<GeneInfoParser.Record> geneInfoRecords) {
-		List<GeneInfoParser.Record> list = new ArrayList<GeneInfoParser.Record>();
-		for (Iterator<GeneInfoParser.Record> it = geneInfoRecords.iterator(); it.hasNext(); ) {
-			GeneInfoParser.Record record = it.next();
-			if (geneName.equals(record.getSymbol())) {
-				list.add(record);
-			}
-			else if (record.getSynonyms().contains(geneName)) {
-				list.add(record);
-			}
-		}
-		return list;
-	}
-
-	private static SeqGeneMdParser.Record findSeqGeneMd(String entrez, List<SeqGeneMdParser.Record> seqGeneMdRecords) {
-		for (Iterator<SeqGeneMdParser.Record> it = seqGeneMdRecords.iterator(); it.hasNext(); ) {
-			SeqGeneMdParser.Record record = it.next();
-			// Find record with matching Entrez Gene ID.
-			String featureID = record.getFeatureID();
-			String[] tmp = featureID.split(":");
-			if (entrez.equals(tmp[1])) {
-				return record;
-			}
-		}
-		return null;
-	}
 }
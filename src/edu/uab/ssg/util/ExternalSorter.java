@@ -0,0 +1,433 @@
+package edu.uab.ssg.util;
+
+import edu.uab.ssg.model.snp.*;
+import java.util.*;
+import java.io.*;
+
+/**
+ * An external merge sort for record streams too large to sort in memory.
+ *
+ * <p>Records are buffered in memory until a fixed budget of records is
+ * reached, at which point the buffer is sorted and spilled to a temporary
+ * file. When <code>sort</code> is called, the spilled runs are merged with a
+ * priority queue and handed to the caller in sorted order. Runs are merged
+ * in passes of at most <code>MAX_FAN_IN</code> files, so the number of open
+ * files stays bounded regardless of the input size. The sort is stable.</p>
+ *
+ * <p>If the sorter is constructed with a <code>KeyedOrder</code>, the key of each record is
+ * computed once, when the record is added, and kept beside the record in
+ * memory and in the spill files; records are then compared by key, and by
+ * the order itself only when their keys are equal.</p>
+ *
+ * <p>Records are written to the spill files with a user-supplied
+ * <code>RecordCodec</code>. Codecs are provided for <code>SNP</code> objects
+ * and for lines of text; the latter, together with
+ * <code>createLineOrder</code>, sorts the lines of MAP, BIM or VCF files
+ * (or the <code>toString()</code> of any parsed record that returns its
+ * original line) by chromosome and position without parsing them in full.</p>
+ *
+ * <p>A sorter is used once: records are added, <code>sort</code> is called,
+ * and the temporary files are deleted as soon as the merge finishes.</p>
+ *
+ * @author Jelai Wang
+ */
+public final class ExternalSorter<T> {
+	/**
+	 * The maximum number of runs merged at once.
+	 */
+	public static final int MAX_FAN_IN = 64;
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private Comparator<T> order;
+	private KeyedOrder<T> keyedOrder; // The order, if the sorter was constructed with a keyed order, and otherwise null.
+	private Comparator<Entry<T>> entryOrder;
+	private RecordCodec<T> codec;
+	private int maxRecordsInMemory;
+	private File tempDirectory;
+	private List<Entry<T>> buffer = new ArrayList<Entry<T>>();
+	private LinkedList<File> runs = new LinkedList<File>();
+	private List<File> tempFiles = new ArrayList<File>(); // Every spill file, deleted once sort is done.
+	private boolean sorted = false;
+
+	/**
+	 * Constructs the sorter.
+	 * @param order The sort order.
+	 * @param codec The codec used to write records to and read records from the spill files.
+	 * @param maxRecordsInMemory The number of records to buffer in memory before spilling to disk.
+	 * @param tempDirectory The directory for spill files, or null for the default temporary-file directory.
+	 */
+	public ExternalSorter(Comparator<T> order, RecordCodec<T> codec, int maxRecordsInMemory, File tempDirectory) {
+		this(order, null, codec, maxRecordsInMemory, tempDirectory);
+	}
+
+	/**
+	 * Constructs the sorter for an order with a key computed once per record.
+	 * @param order The sort order.
+	 * @param codec The codec used to write records to and read records from the spill files.
+	 * @param maxRecordsInMemory The number of records to buffer in memory before spilling to disk.
+	 * @param tempDirectory The directory for spill files, or null for the default temporary-file directory.
+	 */
+	public ExternalSorter(KeyedOrder<T> order, RecordCodec<T> codec, int maxRecordsInMemory, File tempDirectory) {
+		this(order, order, codec, maxRecordsInMemory, tempDirectory);
+	}
+
+	private ExternalSorter(Comparator<T> order, KeyedOrder<T> keyedOrder, RecordCodec<T> codec, int maxRecordsInMemory, File tempDirectory) {
+		if (order == null)
+			throw new NullPointerException("order");
+		if (codec == null)
+			throw new NullPointerException("codec");
+		if (maxRecordsInMemory < 1)
+			throw new IllegalArgumentException(String.valueOf(maxRecordsInMemory));
+		this.order = order;
+		this.keyedOrder = keyedOrder;
+		this.entryOrder = new Comparator<Entry<T>>() {
+			public int compare(Entry<T> entry1, Entry<T> entry2) {
+				return ExternalSorter.this.compare(entry1.key, entry1.record, entry2.key, entry2.record);
+			}
+		};
+		this.codec = codec;
+		this.maxRecordsInMemory = maxRecordsInMemory;
+		this.tempDirectory = tempDirectory;
+	}
+
+	/**
+	 * Adds a record, spilling the in-memory buffer to disk if it is full.
+	 */
+	public void add(T record) throws IOException {
+		if (record == null)
+			throw new NullPointerException("record");
+		if (sorted)
+			throw new IllegalStateException("sort has already been called");
+		buffer.add(new Entry<T>(keyedOrder != null ? keyedOrder.getKey(record) : 0L, record));
+		if (buffer.size() >= maxRecordsInMemory) {
+			spill();
+		}
+	}
+
+	/**
+	 * Returns the number of spill files written so far.
+	 */
+	public int getNumberOfRuns() { return runs.size(); }
+
+	/**
+	 * Sorts the records added so far, handing each to the handler in order.
+	 */
+	public void sort(RecordHandler<T> handler) throws IOException {
+		if (handler == null)
+			throw new NullPointerException("handler");
+		if (sorted)
+			throw new IllegalStateException("sort has already been called");
+		sorted = true;
+		try {
+			if (runs.isEmpty()) {
+				// Everything fit in memory, so skip the disk altogether.
+				Collections.sort(buffer, entryOrder);
+				for (int i = 0, n = buffer.size(); i < n; i++) {
+					handler.handleSortedRecord(buffer.get(i).record);
+				}
+				buffer.clear();
+				return;
+			}
+			if (!buffer.isEmpty()) {
+				spill();
+			}
+			buffer = null;
+			while (runs.size() > MAX_FAN_IN) {
+				// Merge consecutive runs pass by pass, keeping the runs in input order so the sort stays stable.
+				LinkedList<File> merged = new LinkedList<File>();
+				while (!runs.isEmpty()) {
+					List<File> batch = new ArrayList<File>();
+					while (!runs.isEmpty() && batch.size() < MAX_FAN_IN) {
+						batch.add(runs.removeFirst());
+					}
+					File file = createTempFile();
+					merged.addLast(file);
+					DataOutputStream out = openOutput(file);
+					try {
+						merge(batch, out, null);
+					}
+					finally {
+						out.close();
+					}
+				}
+				runs = merged;
+			}
+			List<File> batch = new ArrayList<File>(runs);
+			runs.clear();
+			merge(batch, null, handler);
+		}
+		finally {
+			// On failure, this also removes the runs of an unfinished merge pass.
+			for (int i = 0, n = tempFiles.size(); i < n; i++) {
+				tempFiles.get(i).delete();
+			}
+			tempFiles.clear();
+			runs.clear();
+		}
+	}
+
+	// Compares by key first, then by the order, as in KeyedOrder.
+	private int compare(long key1, T record1, long key2, T record2) {
+		if (key1 != key2)
+			return key1 < key2 ? -1 : 1;
+		return order.compare(record1, record2);
+	}
+
+	private void spill() throws IOException {
+		Collections.sort(buffer, entryOrder);
+		File file = createTempFile();
+		runs.addLast(file);
+		DataOutputStream out = openOutput(file);
+		try {
+			for (int i = 0, n = buffer.size(); i < n; i++) {
+				Entry<T> entry = buffer.get(i);
+				write(entry.key, entry.record, out);
+			}
+		}
+		finally {
+			out.close();
+		}
+		buffer.clear();
+	}
+
+	private void write(long key, T record, DataOutputStream out) throws IOException {
+		if (keyedOrder != null)
+			out.writeLong(key);
+		codec.write(record, out);
+	}
+
+	// Merges the runs into the output stream, if it is not null, and otherwise hands the records to the handler.
+	private void merge(List<File> files, DataOutputStream out, RecordHandler<T> handler) throws IOException {
+		PriorityQueue<Run> queue = new PriorityQueue<Run>(files.size());
+		List<Run> open = new ArrayList<Run>();
+		try {
+			for (int i = 0; i < files.size(); i++) {
+				Run run = new Run(i, files.get(i));
+				open.add(run);
+				if (run.advance()) {
+					queue.add(run);
+				}
+			}
+			while (!queue.isEmpty()) {
+				Run run = queue.poll();
+				if (out != null)
+					write(run.key, run.head, out);
+				else
+					handler.handleSortedRecord(run.head);
+				if (run.advance()) {
+					queue.add(run);
+				}
+			}
+		}
+		finally {
+			for (int i = 0; i < open.size(); i++) {
+				open.get(i).close();
+			}
+			for (int i = 0; i < files.size(); i++) {
+				files.get(i).delete();
+			}
+		}
+	}
+
+	private File createTempFile() throws IOException {
+		File file = File.createTempFile("sort", ".run", tempDirectory);
+		file.deleteOnExit();
+		tempFiles.add(file);
+		return file;
+	}
+
+	private static DataOutputStream openOutput(File file) throws IOException {
+		return new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE));
+	}
+
+	private class Run implements Comparable<Run> {
+		private int index;
+		private DataInputStream in;
+		private long key;
+		private T head;
+
+		private Run(int index, File file) throws IOException {
+			this.index = index;
+			this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE));
+		}
+
+		private boolean advance() throws IOException {
+			try {
+				key = keyedOrder != null ? in.readLong() : 0L;
+				head = codec.read(in);
+				return true;
+			}
+			catch (EOFException e) {
+				head = null;
+				return false;
+			}
+		}
+
+		public int compareTo(Run other) {
+			int value = ExternalSorter.this.compare(key, head, other.key, other.head);
+			return value != 0 ? value : (index - other.index);
+		}
+
+		private void close() throws IOException {
+			in.close();
+		}
+	}
+
+	private static final class Entry<T> {
+		private long key;
+		private T record;
+
+		private Entry(long key, T record) {
+			this.key = key;
+			this.record = record;
+		}
+	}
+
+	/**
+	 * A sort order with a key computed once per record. Records with smaller
+	 * keys sort first, and <code>compare</code> must agree with the keys:
+	 * the sorter calls it only to order records with equal keys.
+	 */
+	public interface KeyedOrder<T> extends Comparator<T> {
+		/**
+		 * Returns the key of the record.
+		 */
+		long getKey(T record);
+	}
+
+	/**
+	 * Writes records to and reads records from spill files.
+	 */
+	public interface RecordCodec<T> {
+		/**
+		 * Writes the record.
+		 */
+		void write(T record, DataOutput out) throws IOException;
+
+		/**
+		 * Reads the next record, throwing <code>EOFException</code> if there are no more records.
+		 */
+		T read(DataInput in) throws IOException;
+	}
+
+	/**
+	 * A handler for records in sorted order.
+	 */
+	public interface RecordHandler<T> {
+		/**
+		 * Handles the next record in sorted order.
+		 */
+		void handleSortedRecord(T record) throws IOException;
+	}
+
+	/**
+	 * A codec for <code>SNP</code> objects, which are read back as <code>DefaultSNP</code> objects.
+	 */
+	public static final RecordCodec<SNP> SNP_CODEC = new RecordCodec<SNP>() {
+		public void write(SNP snp, DataOutput out) throws IOException {
+			out.writeUTF(snp.getName());
+			out.writeUTF(snp.getChromosome());
+			out.writeInt(snp.getPosition());
+		}
+
+		public SNP read(DataInput in) throws IOException {
+			String name = in.readUTF();
+			String chr = in.readUTF();
+			int pos = in.readInt();
+			return new DefaultSNP(name, chr, pos);
+		}
+	};
+
+	/**
+	 * A codec for lines of text of any length, such as VCF records with many samples.
+	 */
+	public static final RecordCodec<String> LINE_CODEC = new RecordCodec<String>() {
+		public void write(String line, DataOutput out) throws IOException {
+			byte[] bytes = line.getBytes("UTF-8");
+			out.writeInt(bytes.length);
+			out.write(bytes);
+		}
+
+		public String read(DataInput in) throws IOException {
+			byte[] bytes = new byte[in.readInt()];
+			in.readFully(bytes);
+			return new String(bytes, "UTF-8");
+		}
+	};
+
+	/**
+	 * Creates an order for delimited lines of text, naturally by chromosome
+	 * and position, as in <code>Util.ORDER_BY_NATURAL_CHROMOSOME_POSITION</code>.
+	 * For example, use fields 0 and 3 for PLINK MAP and BIM files and fields
+	 * 0 and 1 for VCF files. The key of a line packs the chromosome ordinal
+	 * and the position, so a sorter extracts and parses the two fields once
+	 * per line; lines of contigs, which share an ordinal, have the position
+	 * left out of their key and are compared field by field. Lines with a
+	 * missing field cause an <code>IllegalArgumentException</code>.
+	 * @param delimiter The field delimiter.
+	 * @param chromosomeField The zero-based index of the chromosome field.
+	 * @param positionField The zero-based index of the position field.
+	 */
+	public static KeyedOrder<String> createLineOrder(final char delimiter, final int chromosomeField, final int positionField) {
+		if (chromosomeField < 0)
+			throw new IllegalArgumentException(String.valueOf(chromosomeField));
+		if (positionField < 0)
+			throw new IllegalArgumentException(String.valueOf(positionField));
+		return new KeyedOrder<String>() {
+			public long getKey(String line) {
+				int ordinal = Chromosomes.getOrdinal(getField(line, chromosomeField));
+				if (ordinal == Chromosomes.CONTIG)
+					return (long) ordinal << 32;
+				return ((long) ordinal << 32) | getPosition(line);
+			}
+
+			public int compare(String line1, String line2) {
+				long key1 = getKey(line1), key2 = getKey(line2);
+				if (key1 != key2)
+					return key1 < key2 ? -1 : 1;
+				if ((int) (key1 >>> 32) != Chromosomes.CONTIG)
+					return 0;
+				int value = Chromosomes.compare(getField(line1, chromosomeField), getField(line2, chromosomeField));
+				if (value != 0)
+					return value;
+				int pos1 = getPosition(line1), pos2 = getPosition(line2);
+				return pos1 < pos2 ? -1 : (pos1 > pos2 ? 1 : 0);
+			}
+
+			// Parses the position field in place.
+			private int getPosition(String line) {
+				int start = getStart(line, positionField);
+				int end = line.indexOf(delimiter, start);
+				if (end < 0) end = line.length();
+				if (end == start || end - start > 9)
+					return Integer.parseInt(line.substring(start, end));
+				int value = 0;
+				for (int i = start; i < end; i++) {
+					char ch = line.charAt(i);
+					if (ch < '0' || ch > '9')
+						throw new NumberFormatException(line.substring(start, end));
+					value = value * 10 + (ch - '0');
+				}
+				return value;
+			}
+
+			private String getField(String line, int field) {
+				int start = getStart(line, field);
+				int end = line.indexOf(delimiter, start);
+				return end < 0 ? line.substring(start) : line.substring(start, end);
+			}
+
+			private int getStart(String line, int field) {
+				int start = 0;
+				for (int i = 0; i < field; i++) {
+					start = line.indexOf(delimiter, start);
+					if (start < 0)
+						throw new IllegalArgumentException(line);
+					start++;
+				}
+				return start;
+			}
+		};
+	}
+}
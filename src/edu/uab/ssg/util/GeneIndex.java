@@ -0,0 +1,401 @@
+package edu.uab.ssg.util;
+
+import edu.uab.ssg.io.ncbi.*;
+import java.util.*;
+import java.io.*;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * An index of NCBI gene_info and seq_gene.md records for looking up genes
+ * by name and by Entrez Gene ID.
+ *
+ * <p>Gene names are matched, ignoring case, against the symbol and every
+ * synonym of each gene_info record. Entrez Gene IDs are matched against the
+ * GeneID field of gene_info records and the feature ID, e.g. "GeneID:3811",
+ * of seq_gene.md records. Every lookup is a single hash lookup, and
+ * records are always returned in input order.</p>
+ *
+ * <p>The index can be written to a cache file and read back, which is much
+ * faster than decompressing and re-parsing the NCBI files. The cache holds
+ * the fields of each record already split, with the synonyms and dbXrefs
+ * of gene_info records as lists and the coordinates of seq_gene.md records
+ * as ints, so reading it back parses nothing. The cache contains only the
+ * records given to the index, so a cache built from seq_gene.md records of
+ * one feature type and group label should not be used for another; see
+ * <code>load</code>.</p>
+ *
+ * @author Jelai Wang
+ */
+public final class GeneIndex {
+	private static final String DELIMITER = "\t";
+	private static final String NOT_AVAILABLE = "-";
+	private static final int CACHE_VERSION = 2;
+	private static final int NUMBER_OF_FIELDS = 15;
+
+	private List<GeneInfoParser.Record> geneInfoRecords;
+	private List<SeqGeneMdParser.Record> seqGeneMdRecords;
+	private Map<String, List<GeneInfoParser.Record>> name2geneinfo = new HashMap<String, List<GeneInfoParser.Record>>();
+	private Map<String, GeneInfoParser.Record> entrez2geneinfo = new HashMap<String, GeneInfoParser.Record>();
+	private Map<String, SeqGeneMdParser.Record> entrez2md = new HashMap<String, SeqGeneMdParser.Record>();
+
+	/**
+	 * Constructs the index.
+	 * @param seqGeneMdRecords The seq_gene.md records, typically only those of a single feature type and group label.
+	 */
+	public GeneIndex(List<GeneInfoParser.Record> geneInfoRecords, List<SeqGeneMdParser.Record> seqGeneMdRecords) {
+		if (geneInfoRecords == null)
+			throw new NullPointerException("geneInfoRecords");
+		if (seqGeneMdRecords == null)
+			throw new NullPointerException("seqGeneMdRecords");
+		this.geneInfoRecords = Collections.unmodifiableList(new ArrayList<GeneInfoParser.Record>(geneInfoRecords));
+		this.seqGeneMdRecords = Collections.unmodifiableList(new ArrayList<SeqGeneMdParser.Record>(seqGeneMdRecords));
+		for (int i = 0, n = geneInfoRecords.size(); i < n; i++) {
+			GeneInfoParser.Record record = geneInfoRecords.get(i);
+			addName(record.getSymbol(), record);
+			List<String> synonyms = record.getSynonyms();
+			for (int j = 0, m = synonyms.size(); j < m; j++) {
+				addName(synonyms.get(j), record);
+			}
+			if (!entrez2geneinfo.containsKey(record.getGeneID())) {
+				entrez2geneinfo.put(record.getGeneID(), record);
+			}
+		}
+		for (int i = 0, n = seqGeneMdRecords.size(); i < n; i++) {
+			SeqGeneMdParser.Record record = seqGeneMdRecords.get(i);
+			String entrez = getEntrezID(record);
+			if (!entrez2md.containsKey(entrez)) {
+				entrez2md.put(entrez, record);
+			}
+		}
+	}
+
+	private void addName(String name, GeneInfoParser.Record record) {
+		if (name == null)
+			return;
+		String key = fold(name);
+		List<GeneInfoParser.Record> list = name2geneinfo.get(key);
+		if (list == null) {
+			list = new ArrayList<GeneInfoParser.Record>(1);
+			name2geneinfo.put(key, list);
+		}
+		// A name may appear as both symbol and synonym, or twice as a synonym, of the same record.
+		if (list.isEmpty() || list.get(list.size() - 1) != record) {
+			list.add(record);
+		}
+	}
+
+	private static String fold(String name) {
+		return name.toUpperCase(Locale.ENGLISH);
+	}
+
+	/**
+	 * Returns the Entrez Gene ID from the feature ID of the given seq_gene.md record.
+	 */
+	public static String getEntrezID(SeqGeneMdParser.Record record) {
+		String featureID = record.getFeatureID();
+		return featureID.substring(featureID.indexOf(':') + 1);
+	}
+
+	/**
+	 * Returns the gene_info records whose symbol or synonyms contain the given name, ignoring case.
+	 */
+	public List<GeneInfoParser.Record> findGeneInfo(String name) {
+		if (name == null)
+			throw new NullPointerException("name");
+		List<GeneInfoParser.Record> list = name2geneinfo.get(fold(name));
+		if (list == null)
+			return Collections.emptyList();
+		return Collections.unmodifiableList(list);
+	}
+
+	/**
+	 * Returns the first gene_info record with the given Entrez Gene ID, or null if there is none.
+	 */
+	public GeneInfoParser.Record getGeneInfo(String entrez) {
+		if (entrez == null)
+			throw new NullPointerException("entrez");
+		return entrez2geneinfo.get(entrez);
+	}
+
+	/**
+	 * Returns the first seq_gene.md record with the given Entrez Gene ID, or null if there is none.
+	 */
+	public SeqGeneMdParser.Record getSeqGeneMd(String entrez) {
+		if (entrez == null)
+			throw new NullPointerException("entrez");
+		return entrez2md.get(entrez);
+	}
+
+	/**
+	 * Returns the gene_info records.
+	 */
+	public List<GeneInfoParser.Record> getGeneInfoRecords() { return geneInfoRecords; }
+
+	/**
+	 * Returns the seq_gene.md records.
+	 */
+	public List<SeqGeneMdParser.Record> getSeqGeneMdRecords() { return seqGeneMdRecords; }
+
+	/**
+	 * Writes the index to the given output stream in cache format.
+	 */
+	public void writeTo(OutputStream out) throws IOException {
+		if (out == null)
+			throw new NullPointerException("out");
+		DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out, 1 << 16));
+		data.writeInt(CACHE_VERSION);
+		data.writeInt(geneInfoRecords.size());
+		for (int i = 0, n = geneInfoRecords.size(); i < n; i++) {
+			GeneInfoParser.Record record = geneInfoRecords.get(i);
+			writeFields(record.toString(), data);
+			writeList(record.getSynonyms(), data);
+			writeList(record.getdbXrefs(), data);
+		}
+		data.writeInt(seqGeneMdRecords.size());
+		for (int i = 0, n = seqGeneMdRecords.size(); i < n; i++) {
+			SeqGeneMdParser.Record record = seqGeneMdRecords.get(i);
+			writeFields(record.toString(), data);
+			data.writeInt(record.getChrStart());
+			data.writeInt(record.getChrStop());
+			data.writeInt(record.getCtgStart());
+			data.writeInt(record.getCtgStop());
+		}
+		data.flush();
+	}
+
+	private static void writeFields(String line, DataOutputStream out) throws IOException {
+		String[] fields = line.split(DELIMITER, -1);
+		if (fields.length != NUMBER_OF_FIELDS)
+			throw new IllegalArgumentException(line);
+		for (int i = 0; i < fields.length; i++) {
+			writeString(fields[i], out);
+		}
+	}
+
+	private static void writeList(List<String> list, DataOutputStream out) throws IOException {
+		out.writeInt(list.size());
+		for (int i = 0, n = list.size(); i < n; i++) {
+			writeString(list.get(i), out);
+		}
+	}
+
+	private static void writeString(String s, DataOutputStream out) throws IOException {
+		byte[] bytes = s.getBytes("UTF-8");
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	/**
+	 * Reads an index in cache format from the given input stream.
+	 * @throws IOException If the stream is not a cache of this version, or ends early.
+	 */
+	public static GeneIndex readFrom(InputStream in) throws IOException {
+		if (in == null)
+			throw new NullPointerException("in");
+		DataInputStream data = new DataInputStream(new BufferedInputStream(in, 1 << 16));
+		int version = data.readInt();
+		if (version != CACHE_VERSION)
+			throw new IOException("Unsupported cache version " + version + ".");
+		int n = readCount(data);
+		List<GeneInfoParser.Record> geneInfoRecords = new ArrayList<GeneInfoParser.Record>(n);
+		for (int i = 0; i < n; i++) {
+			String[] fields = readFields(data);
+			List<String> synonyms = readList(data);
+			geneInfoRecords.add(new CachedGeneInfoRecord(fields, synonyms, readList(data)));
+		}
+		n = readCount(data);
+		List<SeqGeneMdParser.Record> seqGeneMdRecords = new ArrayList<SeqGeneMdParser.Record>(n);
+		for (int i = 0; i < n; i++) {
+			String[] fields = readFields(data);
+			int chrStart = data.readInt(), chrStop = data.readInt(), ctgStart = data.readInt(), ctgStop = data.readInt();
+			seqGeneMdRecords.add(new CachedSeqGeneMdRecord(fields, chrStart, chrStop, ctgStart, ctgStop));
+		}
+		return new GeneIndex(geneInfoRecords, seqGeneMdRecords);
+	}
+
+	private static String[] readFields(DataInputStream in) throws IOException {
+		String[] fields = new String[NUMBER_OF_FIELDS];
+		for (int i = 0; i < fields.length; i++) {
+			fields[i] = readString(in);
+		}
+		return fields;
+	}
+
+	private static List<String> readList(DataInputStream in) throws IOException {
+		int n = readCount(in);
+		if (n == 0)
+			return Collections.emptyList();
+		List<String> list = new ArrayList<String>(n);
+		for (int i = 0; i < n; i++) {
+			list.add(readString(in));
+		}
+		return Collections.unmodifiableList(list);
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		byte[] bytes = new byte[readCount(in)];
+		in.readFully(bytes);
+		return new String(bytes, "UTF-8");
+	}
+
+	// Reads a count or length, which a damaged cache could leave negative or absurdly large.
+	private static int readCount(DataInputStream in) throws IOException {
+		int n = in.readInt();
+		if (n < 0 || n > 1 << 28)
+			throw new IOException("Bad count " + n + " in cache.");
+		return n;
+	}
+
+	/**
+	 * Returns an index for the given gzipped gene_info and seq_gene.md
+	 * files, keeping only seq_gene.md records of the given feature type and
+	 * group label. If a cache file is given, the index is read from it when
+	 * it is newer than both input files and was built for the same feature
+	 * type and group label; otherwise, or if the cache cannot be read, for
+	 * example because it is of another version or was cut short, the input
+	 * files are parsed and the cache file is rewritten. The new cache is
+	 * written to a temporary file in the same directory and renamed into
+	 * place, so a failed write never leaves a partial cache behind.
+	 * @param cacheFile The cache file, or null to always parse the input files.
+	 */
+	public static GeneIndex load(File geneInfoFile, File seqGeneMdFile, String featureType, String groupLabel, File cacheFile) throws IOException {
+		if (geneInfoFile == null)
+			throw new NullPointerException("geneInfoFile");
+		if (seqGeneMdFile == null)
+			throw new NullPointerException("seqGeneMdFile");
+		if (featureType == null)
+			throw new NullPointerException("featureType");
+		if (groupLabel == null)
+			throw new NullPointerException("groupLabel");
+		String key = featureType + DELIMITER + groupLabel;
+		if (cacheFile != null && cacheFile.exists() && cacheFile.lastModified() >= geneInfoFile.lastModified() && cacheFile.lastModified() >= seqGeneMdFile.lastModified()) {
+			DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)));
+			try {
+				if (key.equals(in.readUTF()))
+					return readFrom(in);
+			}
+			catch (IOException e) { // Includes EOFException. Rebuild the cache.
+			}
+			catch (RuntimeException e) { // A damaged cache. Rebuild it.
+			}
+			finally {
+				in.close();
+			}
+		}
+
+		GeneInfoParser geneInfoParser = new GeneInfoParser();
+		List<GeneInfoParser.Record> geneInfoRecords = geneInfoParser.parse(new GZIPInputStream(new FileInputStream(geneInfoFile)));
+		SeqGeneMdParser seqGeneMdParser = new SeqGeneMdParser();
+		final List<SeqGeneMdParser.Record> seqGeneMdRecords = new ArrayList<SeqGeneMdParser.Record>();
+		// See NCBI Entrez Gene FAQ for further detail on feature type and group label.
+		seqGeneMdParser.parse(new GZIPInputStream(new FileInputStream(seqGeneMdFile)), SeqGeneMdParser.createFeatureFilter(featureType, groupLabel), new SeqGeneMdParser.ChromosomeListener() {
+			public void handleChromosome(String chromosome, List<SeqGeneMdParser.Record> records) {
+				seqGeneMdRecords.addAll(records);
+			}
+
+			public void handleBadRecordFormat(String line) {
+				System.err.println("Ignoring line: " + line);
+			}
+		});
+		GeneIndex index = new GeneIndex(geneInfoRecords, seqGeneMdRecords);
+		if (cacheFile != null)
+			writeCache(index, key, cacheFile);
+		return index;
+	}
+
+	// Writes the cache to a temporary file and renames it into place.
+	private static void writeCache(GeneIndex index, String key, File cacheFile) throws IOException {
+		File tmp = File.createTempFile(cacheFile.getName(), ".tmp", cacheFile.getAbsoluteFile().getParentFile());
+		try {
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+			try {
+				out.writeUTF(key);
+				index.writeTo(out);
+			}
+			finally {
+				out.close();
+			}
+			// A rename onto an existing file fails on some platforms.
+			if (!tmp.renameTo(cacheFile) && !(cacheFile.delete() && tmp.renameTo(cacheFile)))
+				throw new IOException("Cannot rename " + tmp + " to " + cacheFile + ".");
+		}
+		finally {
+			tmp.delete(); // Already gone if it was renamed.
+		}
+	}
+
+	private static String join(String[] fields) {
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < fields.length; i++) {
+			if (i > 0) builder.append(DELIMITER);
+			builder.append(fields[i]);
+		}
+		return builder.toString();
+	}
+
+	private static String valueOf(String token) {
+		return NOT_AVAILABLE.equals(token) ? null : token;
+	}
+
+	// A gene_info record read back from the cache. See GeneInfoParser for the field layout.
+	private static final class CachedGeneInfoRecord implements GeneInfoParser.Record {
+		private String[] tmp;
+		private List<String> synonyms, dbXrefs;
+
+		private CachedGeneInfoRecord(String[] fields, List<String> synonyms, List<String> dbXrefs) {
+			this.tmp = fields;
+			this.synonyms = synonyms;
+			this.dbXrefs = dbXrefs;
+		}
+
+		public String getTaxID() { return valueOf(tmp[0]); }
+		public String getGeneID() { return valueOf(tmp[1]); }
+		public String getSymbol() { return valueOf(tmp[2]); }
+		public String getLocusTag() { return valueOf(tmp[3]); }
+		public List<String> getSynonyms() { return synonyms; }
+		public List<String> getdbXrefs() { return dbXrefs; }
+		public String getChromosome() { return valueOf(tmp[6]); }
+		public String getMapLocation() { return valueOf(tmp[7]); }
+		public String getDescription() { return valueOf(tmp[8]); }
+		public String getTypeOfGene() { return valueOf(tmp[9]); }
+		public String getSymbolFromNomenclatureAuthority() { return valueOf(tmp[10]); }
+		public String getFullNameFromNomenclatureAuthority() { return valueOf(tmp[11]); }
+		public String getNomenclatureStatus() { return valueOf(tmp[12]); }
+		public String getOtherDesignations() { return valueOf(tmp[13]); }
+		public String getModificationDate() { return valueOf(tmp[14]); }
+
+		public String toString() { return join(tmp); }
+	}
+
+	// A seq_gene.md record read back from the cache. See SeqGeneMdParser for the field layout.
+	private static final class CachedSeqGeneMdRecord implements SeqGeneMdParser.Record {
+		private String[] tmp;
+		private int chrStart, chrStop, ctgStart, ctgStop;
+
+		private CachedSeqGeneMdRecord(String[] fields, int chrStart, int chrStop, int ctgStart, int ctgStop) {
+			this.tmp = fields;
+			this.chrStart = chrStart;
+			this.chrStop = chrStop;
+			this.ctgStart = ctgStart;
+			this.ctgStop = ctgStop;
+		}
+
+		public String getTaxID() { return tmp[0]; }
+		public String getChromosome() { return tmp[1]; }
+		public int getChrStart() { return chrStart; }
+		public int getChrStop() { return chrStop; }
+		public String getChrOrient() { return tmp[4]; }
+		public String getContig() { return tmp[5]; }
+		public int getCtgStart() { return ctgStart; }
+		public int getCtgStop() { return ctgStop; }
+		public String getCtgOrient() { return tmp[8]; }
+		public String getFeatureName() { return tmp[9]; }
+		public String getFeatureID() { return tmp[10]; }
+		public String getFeatureType() { return tmp[11]; }
+		public String getGroupLabel() { return tmp[12]; }
+		public String getTranscript() { return tmp[13]; }
+		public String getEvidenceCode() { return tmp[14]; }
+
+		public String toString() { return join(tmp); }
+	}
+}
@@ -0,0 +1,449 @@
+package edu.uab.ssg.util;
+
+import edu.uab.ssg.model.snp.*;
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * A streaming k-way merge-join of position-sorted genotype sources, for
+ * example an Illumina batch and a HapMap reference panel.
+ *
+ * <p>Every source must be sorted by the comparator passed to the
+ * constructor. SNPs are aligned by chromosome and position (see
+ * <code>DefaultSNP</code>), and the samples of the merged records are the
+ * samples of each source concatenated in source sequence. A sample from a
+ * source that lacks a SNP is reported as missing at that SNP.</p>
+ *
+ * <p>The first source with data at a SNP establishes the reference alleles
+ * and strand. The calls from every other source are kept as they are if
+ * their alleles are consistent with the reference alleles, translated to the
+ * opposite strand if only the complemented alleles are consistent, or set to
+ * missing (and reported as an allele conflict) if neither is. When both
+ * readings are consistent, as for ambiguous A/T or G/C SNPs, the calls are
+ * only flipped if both sources report strands of the same kind that differ
+ * by name (e.g. TOP and BOT).</p>
+ *
+ * <p>Only one record per source is held in memory by the sequential merge.
+ * The parallel merge opens one set of sources per chromosome and merges
+ * chromosomes on separate threads, buffering at most the merge window of
+ * records per chromosome before they are passed, in chromosome order, to
+ * the listener on the calling thread.</p>
+ *
+ * @author Jelai Wang
+ */
+public final class GenotypeMerger {
+	private static final int KEEP = 0, FLIP = 1, CONFLICT = 2;
+
+	private Comparator<SNP> order;
+	private int windowSize;
+
+	/**
+	 * Constructs the merger.
+	 * @param order The order in which the SNPs of every source are sorted, for example <code>Util.ORDER_BY_CHROMOSOME_POSITION</code>.
+	 * @param windowSize The maximum number of merged records buffered per chromosome by the parallel merge.
+	 */
+	public GenotypeMerger(Comparator<SNP> order, int windowSize) {
+		if (order == null)
+			throw new NullPointerException("order");
+		if (windowSize < 1)
+			throw new IllegalArgumentException(String.valueOf(windowSize));
+		this.order = order;
+		this.windowSize = windowSize;
+	}
+
+	/**
+	 * Merges the sources on the calling thread. The sources are closed.
+	 */
+	public void merge(List<GenotypeSource> sources, MergeListener listener) throws IOException {
+		if (sources == null)
+			throw new NullPointerException("sources");
+		if (listener == null)
+			throw new NullPointerException("listener");
+		Join join = new Join(sources);
+		try {
+			listener.handleSampleNames(join.getSampleNames());
+			MarkerGenotypes record = null;
+			while ((record = join.next()) != null) {
+				for (Iterator<Event> it = join.drainNotices().iterator(); it.hasNext(); ) {
+					dispatch(it.next(), listener);
+				}
+				listener.handleMergedRecord(record);
+			}
+			for (Iterator<Event> it = join.drainNotices().iterator(); it.hasNext(); ) {
+				dispatch(it.next(), listener);
+			}
+		}
+		finally {
+			join.close();
+		}
+	}
+
+	/**
+	 * Merges the chromosomes in parallel, passing merged records to the
+	 * listener on the calling thread in the sequence of the given chromosomes.
+	 * @param chromosomes The chromosomes to merge, in output sequence.
+	 * @param factory Opens the sources for a single chromosome. Every chromosome must have the same samples.
+	 * @param numberOfThreads The number of chromosomes merged at the same time.
+	 */
+	public void merge(List<String> chromosomes, SourceFactory factory, int numberOfThreads, MergeListener listener) throws IOException {
+		if (chromosomes == null)
+			throw new NullPointerException("chromosomes");
+		if (factory == null)
+			throw new NullPointerException("factory");
+		if (numberOfThreads < 1)
+			throw new IllegalArgumentException(String.valueOf(numberOfThreads));
+		if (listener == null)
+			throw new NullPointerException("listener");
+		ExecutorService executor = Executors.newFixedThreadPool(numberOfThreads);
+		try {
+			// Tasks are queued in chromosome sequence so the chromosome being
+			// drained always has a thread, even when later ones are blocked.
+			List<BlockingQueue<Event>> queues = new ArrayList<BlockingQueue<Event>>();
+			for (Iterator<String> it = chromosomes.iterator(); it.hasNext(); ) {
+				BlockingQueue<Event> queue = new ArrayBlockingQueue<Event>(windowSize);
+				executor.execute(new ChromosomeTask(it.next(), factory, queue));
+				queues.add(queue);
+			}
+			List<String> sampleNames = null;
+			for (int i = 0; i < queues.size(); i++) {
+				BlockingQueue<Event> queue = queues.get(i);
+				Event event = null;
+				while ((event = queue.take()).type != Event.END) {
+					if (event.type == Event.ERROR) {
+						rethrow(event.error);
+					}
+					else if (event.type == Event.SAMPLES) {
+						if (sampleNames == null) {
+							sampleNames = event.sampleNames;
+							listener.handleSampleNames(sampleNames);
+						}
+						else if (!sampleNames.equals(event.sampleNames)) {
+							throw new IllegalArgumentException(chromosomes.get(i) + " " + event.sampleNames);
+						}
+					}
+					else {
+						dispatch(event, listener);
+					}
+				}
+			}
+		}
+		catch (InterruptedException e) {
+			throw new InterruptedIOException();
+		}
+		finally {
+			executor.shutdownNow(); // Unblocks any task still waiting on a full queue.
+		}
+	}
+
+	private void dispatch(Event event, MergeListener listener) throws IOException {
+		if (event.type == Event.MERGED)
+			listener.handleMergedRecord(event.record);
+		else if (event.type == Event.CONFLICT)
+			listener.handleAlleleConflict(event.snp, event.sourceIndex);
+		else if (event.type == Event.DUPLICATE)
+			listener.handleDuplicateMarker(event.snp, event.sourceIndex);
+		else
+			throw new RuntimeException(String.valueOf(event.type));
+	}
+
+	private static void rethrow(Throwable t) throws IOException {
+		if (t instanceof IOException)
+			throw (IOException) t;
+		if (t instanceof RuntimeException)
+			throw (RuntimeException) t;
+		if (t instanceof Error)
+			throw (Error) t;
+		throw new RuntimeException(t);
+	}
+
+	/**
+	 * A listener for handling merged records and problems found while merging.
+	 */
+	public interface MergeListener {
+		/**
+		 * Handles the names of the samples of the merged records.
+		 * This is called once, before any merged record.
+		 */
+		void handleSampleNames(List<String> sampleNames) throws IOException;
+
+		/**
+		 * Handles the merged genotypes at a SNP.
+		 */
+		void handleMergedRecord(MarkerGenotypes record) throws IOException;
+
+		/**
+		 * Handles a SNP where the alleles from the given source could not be
+		 * reconciled with the reference alleles on either strand. The calls
+		 * from that source are reported as missing in the merged record.
+		 */
+		void handleAlleleConflict(SNP snp, int sourceIndex);
+
+		/**
+		 * Handles a SNP that appears more than once at the same position in
+		 * the given source. Only the first record is merged.
+		 */
+		void handleDuplicateMarker(SNP snp, int sourceIndex);
+	}
+
+	/**
+	 * A factory for the sources of a single chromosome.
+	 */
+	public interface SourceFactory {
+		/**
+		 * Opens the sources for the given chromosome, in the same source
+		 * sequence for every chromosome.
+		 */
+		List<GenotypeSource> openSources(String chromosome) throws IOException;
+	}
+
+	private final class ChromosomeTask implements Runnable {
+		private String chromosome;
+		private SourceFactory factory;
+		private BlockingQueue<Event> queue;
+
+		private ChromosomeTask(String chromosome, SourceFactory factory, BlockingQueue<Event> queue) {
+			this.chromosome = chromosome;
+			this.factory = factory;
+			this.queue = queue;
+		}
+
+		public void run() {
+			Join join = null;
+			try {
+				join = new Join(factory.openSources(chromosome));
+				queue.put(Event.createSamplesEvent(join.getSampleNames()));
+				MarkerGenotypes record = null;
+				while ((record = join.next()) != null) {
+					for (Iterator<Event> it = join.drainNotices().iterator(); it.hasNext(); ) {
+						queue.put(it.next());
+					}
+					queue.put(Event.createMergedEvent(record));
+				}
+				for (Iterator<Event> it = join.drainNotices().iterator(); it.hasNext(); ) {
+					queue.put(it.next());
+				}
+				join.close();
+				join = null;
+				queue.put(Event.createEndEvent());
+			}
+			catch (InterruptedException e) { // The merge was abandoned.
+			}
+			catch (Throwable t) {
+				try {
+					queue.put(Event.createErrorEvent(t));
+				}
+				catch (InterruptedException e) {
+				}
+			}
+			finally {
+				if (join != null) {
+					try {
+						join.close();
+					}
+					catch (IOException e) { // An error has already been reported.
+					}
+				}
+			}
+		}
+	}
+
+	// The merge-join state for a single set of sources.
+	private final class Join {
+		private GenotypeSource[] sources;
+		private MarkerGenotypes[] heads;
+		private int[] offsets;
+		private int numberOfSamples;
+		private List<String> sampleNames;
+		private List<Event> notices = new ArrayList<Event>();
+
+		private Join(List<GenotypeSource> sources) throws IOException {
+			if (sources == null)
+				throw new NullPointerException("sources");
+			this.sources = sources.toArray(new GenotypeSource[sources.size()]);
+			this.heads = new MarkerGenotypes[this.sources.length];
+			this.offsets = new int[this.sources.length];
+			List<String> list = new ArrayList<String>();
+			for (int i = 0; i < this.sources.length; i++) {
+				offsets[i] = list.size();
+				list.addAll(this.sources[i].getSampleNames());
+			}
+			this.numberOfSamples = list.size();
+			this.sampleNames = Collections.unmodifiableList(list);
+			for (int i = 0; i < this.sources.length; i++) {
+				heads[i] = this.sources[i].next();
+			}
+		}
+
+		private List<String> getSampleNames() { return sampleNames; }
+
+		private List<Event> drainNotices() {
+			List<Event> tmp = notices;
+			this.notices = new ArrayList<Event>();
+			return tmp;
+		}
+
+		// Returns the next merged record or null if all sources are exhausted.
+		private MarkerGenotypes next() throws IOException {
+			MarkerGenotypes min = null;
+			for (int i = 0; i < heads.length; i++) {
+				if (heads[i] != null && (min == null || order.compare(heads[i].getSNP(), min.getSNP()) < 0)) {
+					min = heads[i];
+				}
+			}
+			if (min == null)
+				return null;
+			SNP snp = min.getSNP();
+			String[] alleles1 = new String[numberOfSamples];
+			String[] alleles2 = new String[numberOfSamples];
+			Set<String> referenceAlleles = new HashSet<String>();
+			Strand referenceStrand = null;
+			boolean isReference = true;
+			for (int i = 0; i < heads.length; i++) {
+				MarkerGenotypes row = heads[i];
+				if (row == null || order.compare(row.getSNP(), snp) != 0)
+					continue;
+				advance(i);
+				int decision = KEEP;
+				if (isReference) {
+					referenceStrand = row.getStrand();
+					isReference = false;
+				}
+				else {
+					decision = reconcile(referenceAlleles, referenceStrand, row);
+				}
+				if (decision == CONFLICT) {
+					notices.add(Event.createNoticeEvent(Event.CONFLICT, snp, i));
+					continue;
+				}
+				for (int j = 0, n = row.getNumberOfSamples(); j < n; j++) {
+					String a1 = row.getAllele1(j);
+					String a2 = row.getAllele2(j);
+					if (decision == FLIP) {
+						if (a1 != null) a1 = Util.complement(a1);
+						if (a2 != null) a2 = Util.complement(a2);
+					}
+					if (a1 != null) referenceAlleles.add(a1);
+					if (a2 != null) referenceAlleles.add(a2);
+					alleles1[offsets[i] + j] = a1;
+					alleles2[offsets[i] + j] = a2;
+				}
+			}
+			return new DefaultMarkerGenotypes(snp, referenceStrand, alleles1, alleles2);
+		}
+
+		// Moves the given source past its current SNP, skipping duplicates.
+		private void advance(int index) throws IOException {
+			SNP current = heads[index].getSNP();
+			MarkerGenotypes next = null;
+			while ((next = sources[index].next()) != null) {
+				int c = order.compare(next.getSNP(), current);
+				if (c > 0)
+					break;
+				if (c < 0)
+					throw new IllegalStateException("SOURCE " + index + " IS NOT SORTED AT " + next.getSNP());
+				notices.add(Event.createNoticeEvent(Event.DUPLICATE, next.getSNP(), index));
+			}
+			heads[index] = next;
+		}
+
+		private void close() throws IOException {
+			IOException exception = null;
+			for (int i = 0; i < sources.length; i++) {
+				try {
+					sources[i].close();
+				}
+				catch (IOException e) {
+					if (exception == null) exception = e;
+				}
+			}
+			if (exception != null)
+				throw exception;
+		}
+	}
+
+	private static int reconcile(Set<String> referenceAlleles, Strand referenceStrand, MarkerGenotypes row) {
+		Set<String> observed = new HashSet<String>();
+		Set<String> complemented = new HashSet<String>();
+		for (int i = 0, n = row.getNumberOfSamples(); i < n; i++) {
+			String a1 = row.getAllele1(i);
+			String a2 = row.getAllele2(i);
+			if (a1 != null) observed.add(a1);
+			if (a2 != null) observed.add(a2);
+		}
+		if (observed.isEmpty())
+			return KEEP;
+		for (Iterator<String> it = observed.iterator(); it.hasNext(); ) {
+			String allele = Util.complement(it.next());
+			if (allele == null) { // Not a nucleotide, so it can't be flipped.
+				complemented = null;
+				break;
+			}
+			complemented.add(allele);
+		}
+		Set<String> union = new HashSet<String>(referenceAlleles);
+		union.addAll(observed);
+		boolean isConsistent = union.size() <= 2;
+		boolean isFlipConsistent = false;
+		if (complemented != null) {
+			union = new HashSet<String>(referenceAlleles);
+			union.addAll(complemented);
+			isFlipConsistent = union.size() <= 2;
+		}
+		if (isConsistent && !isFlipConsistent)
+			return KEEP;
+		if (!isConsistent && isFlipConsistent)
+			return FLIP;
+		if (!isConsistent && !isFlipConsistent)
+			return CONFLICT;
+		// Both readings work, so fall back on the reported strands.
+		Strand strand = row.getStrand();
+		if (referenceStrand != null && strand != null && referenceStrand.getClass() == strand.getClass() && !referenceStrand.getName().equals(strand.getName()))
+			return FLIP;
+		return KEEP;
+	}
+
+	private static final class Event {
+		private static final int MERGED = 0, CONFLICT = 1, DUPLICATE = 2, SAMPLES = 3, END = 4, ERROR = 5;
+
+		private int type;
+		private MarkerGenotypes record;
+		private SNP snp;
+		private int sourceIndex;
+		private List<String> sampleNames;
+		private Throwable error;
+
+		private Event(int type) {
+			this.type = type;
+		}
+
+		private static Event createMergedEvent(MarkerGenotypes record) {
+			Event event = new Event(MERGED);
+			event.record = record;
+			return event;
+		}
+
+		private static Event createNoticeEvent(int type, SNP snp, int sourceIndex) {
+			Event event = new Event(type);
+			event.snp = snp;
+			event.sourceIndex = sourceIndex;
+			return event;
+		}
+
+		private static Event createSamplesEvent(List<String> sampleNames) {
+			Event event = new Event(SAMPLES);
+			event.sampleNames = sampleNames;
+			return event;
+		}
+
+		private static Event createEndEvent() {
+			return new Event(END);
+		}
+
+		private static Event createErrorEvent(Throwable error) {
+			Event event = new Event(ERROR);
+			event.error = error;
+			return event;
+		}
+	}
+}
@@ -0,0 +1,162 @@
+package edu.uab.ssg.util;
+
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.io.*;
+
+/**
+ * A hash map from long keys to int values held in primitive arrays.
+ *
+ * <p>The map uses open addressing with linear probing, so an entry costs a
+ * long and an int rather than two boxed objects and a hash entry. It only
+ * grows (there is no remove), which is all an index needs. A map can be
+ * written out and later mapped read-only from the file, so a large index
+ * is available immediately without being rebuilt; see <code>map</code>.
+ * <code>Long.MIN_VALUE</code> is reserved and cannot be used as a key.</p>
+ *
+ * @author Jelai Wang
+ */
+public final class LongIntMap {
+	private static final long EMPTY = Long.MIN_VALUE;
+	private static final float LOAD_FACTOR = 0.75f;
+
+	private LongBuffer keys;
+	private IntBuffer values;
+	private int capacity;
+	private int size = 0;
+	private boolean readOnly = false;
+
+	/**
+	 * Constructs an empty map.
+	 * @param expectedSize The number of entries to size the map for.
+	 */
+	public LongIntMap(int expectedSize) {
+		if (expectedSize < 0)
+			throw new IllegalArgumentException(String.valueOf(expectedSize));
+		allocate(Math.max(16, (int) (expectedSize / LOAD_FACTOR) + 1));
+	}
+
+	private LongIntMap(LongBuffer keys, IntBuffer values, int capacity, int size) {
+		this.keys = keys;
+		this.values = values;
+		this.capacity = capacity;
+		this.size = size;
+		this.readOnly = true;
+	}
+
+	private void allocate(int capacity) {
+		long[] array = new long[capacity];
+		Arrays.fill(array, EMPTY);
+		this.keys = LongBuffer.wrap(array);
+		this.values = IntBuffer.wrap(new int[capacity]);
+		this.capacity = capacity;
+	}
+
+	private int slot(long key) {
+		// Mix the bits so that sequential keys, like rs numbers, spread out.
+		long h = key * 0x9E3779B97F4A7C15L;
+		h ^= (h >>> 32);
+		int slot = (int) ((h & 0x7fffffffffffffffL) % capacity);
+		while (true) {
+			long k = keys.get(slot);
+			if (k == EMPTY || k == key)
+				return slot;
+			if (++slot == capacity) slot = 0;
+		}
+	}
+
+	/**
+	 * Associates the value with the key, returning the previous value or -1 if there was none.
+	 */
+	public int put(long key, int value) {
+		if (readOnly)
+			throw new UnsupportedOperationException("The map is read-only.");
+		if (key == EMPTY)
+			throw new IllegalArgumentException(String.valueOf(key));
+		int slot = slot(key);
+		if (keys.get(slot) == key) {
+			int previous = values.get(slot);
+			values.put(slot, value);
+			return previous;
+		}
+		keys.put(slot, key);
+		values.put(slot, value);
+		if (++size > capacity * LOAD_FACTOR) {
+			rehash();
+		}
+		return -1;
+	}
+
+	private void rehash() {
+		LongBuffer oldKeys = keys;
+		IntBuffer oldValues = values;
+		int oldCapacity = capacity;
+		allocate(oldCapacity * 2);
+		for (int i = 0; i < oldCapacity; i++) {
+			long key = oldKeys.get(i);
+			if (key != EMPTY) {
+				int slot = slot(key);
+				keys.put(slot, key);
+				values.put(slot, oldValues.get(i));
+			}
+		}
+	}
+
+	/**
+	 * Returns the value for the key, or -1 if the key is not in the map.
+	 */
+	public int get(long key) {
+		if (key == EMPTY)
+			return -1;
+		int slot = slot(key);
+		return keys.get(slot) == key ? values.get(slot) : -1;
+	}
+
+	/**
+	 * Returns true if the key is in the map.
+	 */
+	public boolean containsKey(long key) {
+		if (key == EMPTY)
+			return false;
+		return keys.get(slot(key)) == key;
+	}
+
+	/**
+	 * Returns the number of entries.
+	 */
+	public int size() { return size; }
+
+	/**
+	 * Writes the map, returning the number of bytes written.
+	 */
+	public long writeTo(DataOutputStream out) throws IOException {
+		if (out == null)
+			throw new NullPointerException("out");
+		out.writeInt(capacity);
+		out.writeInt(size);
+		for (int i = 0; i < capacity; i++) {
+			out.writeLong(keys.get(i));
+		}
+		for (int i = 0; i < capacity; i++) {
+			out.writeInt(values.get(i));
+		}
+		return 8 + capacity * 12L;
+	}
+
+	/**
+	 * Maps a read-only map, previously written with <code>writeTo</code>, from the given position of the file.
+	 */
+	public static LongIntMap map(FileChannel channel, long position) throws IOException {
+		if (channel == null)
+			throw new NullPointerException("channel");
+		ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, position, 8);
+		int capacity = header.getInt();
+		int size = header.getInt();
+		if (capacity <= 0 || size < 0 || size > capacity)
+			throw new IOException(capacity + " " + size);
+		LongBuffer keys = channel.map(FileChannel.MapMode.READ_ONLY, position + 8, capacity * 8L).asLongBuffer();
+		IntBuffer values = channel.map(FileChannel.MapMode.READ_ONLY, position + 8 + capacity * 8L, capacity * 4L).asIntBuffer();
+		return new LongIntMap(keys, values, capacity, size);
+	}
+}
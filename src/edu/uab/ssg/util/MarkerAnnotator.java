@@ -0,0 +1,230 @@
+package edu.uab.ssg.util;
+
+import edu.uab.ssg.io.ncbi.*;
+import edu.uab.ssg.model.snp.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.io.*;
+
+/**
+ * Annotates markers with the NCBI gene, if any, that contains them.
+ *
+ * <p>A marker is annotated with the first seq_gene.md record, in input
+ * order, whose chr start and stop boundaries contain its position, and with
+ * the gene_info record for that record's Entrez Gene ID. The batch and
+ * streaming methods split their input into shards of consecutive markers on
+ * the same chromosome, annotate the shards on a pool of worker threads, and
+ * reassemble the results in input order through a bounded reorder buffer
+ * (see <code>OrderedExecutor</code>), so output order and memory use do not
+ * depend on the number of threads.</p>
+ *
+ * @author Jelai Wang
+ */
+public final class MarkerAnnotator {
+	/**
+	 * The default maximum number of markers in a shard.
+	 */
+	public static final int DEFAULT_SHARD_SIZE = 10000;
+
+	private static final String DELIMITER = "\t";
+	private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+
+	private SeqGeneMdPositionIndex index;
+	private GeneIndex geneIndex;
+	private int shardSize = DEFAULT_SHARD_SIZE;
+
+	/**
+	 * Constructs the annotator.
+	 * @param index The gene boundaries, typically GENE records for a single group label.
+	 * @param geneIndex The gene_info records, looked up by Entrez Gene ID.
+	 */
+	public MarkerAnnotator(SeqGeneMdPositionIndex index, GeneIndex geneIndex) {
+		if (index == null)
+			throw new NullPointerException("index");
+		if (geneIndex == null)
+			throw new NullPointerException("geneIndex");
+		this.index = index;
+		this.geneIndex = geneIndex;
+	}
+
+	/**
+	 * Sets the maximum number of markers in a shard.
+	 */
+	public void setShardSize(int shardSize) {
+		if (shardSize < 1)
+			throw new IllegalArgumentException(String.valueOf(shardSize));
+		this.shardSize = shardSize;
+	}
+
+	/**
+	 * Returns the annotation for the given position, or null if no gene contains it.
+	 */
+	public Annotation annotate(String chr, int pos) {
+		SeqGeneMdParser.Record record = index.getFirstRecord(chr, pos);
+		if (record == null)
+			return null;
+		String entrez = GeneIndex.getEntrezID(record);
+		return new Annotation(entrez, record, geneIndex.getGeneInfo(entrez));
+	}
+
+	/**
+	 * Annotates the given SNPs.
+	 * @param numberOfThreads The number of shards annotated at the same time.
+	 * @return The annotations, in the same order as the SNPs, with null for SNPs outside any gene.
+	 */
+	public List<Annotation> annotate(final List<SNP> snps, int numberOfThreads) throws IOException {
+		if (snps == null)
+			throw new NullPointerException("snps");
+		if (numberOfThreads < 1)
+			throw new IllegalArgumentException(String.valueOf(numberOfThreads));
+		final List<Annotation> annotations = new ArrayList<Annotation>(snps.size());
+		ExecutorService executor = Executors.newFixedThreadPool(numberOfThreads);
+		try {
+			OrderedExecutor<List<Annotation>> shards = new OrderedExecutor<List<Annotation>>(executor, numberOfThreads * 2, new OrderedExecutor.ResultHandler<List<Annotation>>() {
+				public void handleResult(List<Annotation> result) {
+					annotations.addAll(result);
+				}
+			});
+			int start = 0;
+			for (int i = 1, n = snps.size(); i <= n; i++) {
+				if (i == n || i - start >= shardSize || !snps.get(i).getChromosome().equals(snps.get(start).getChromosome())) {
+					final List<SNP> shard = snps.subList(start, i);
+					shards.submit(new Callable<List<Annotation>>() {
+						public List<Annotation> call() {
+							List<Annotation> list = new ArrayList<Annotation>(shard.size());
+							for (int j = 0, m = shard.size(); j < m; j++) {
+								SNP snp = shard.get(j);
+								list.add(annotate(snp.getChromosome(), snp.getPosition()));
+							}
+							return list;
+						}
+					});
+					start = i;
+				}
+			}
+			shards.finish();
+		}
+		finally {
+			executor.shutdownNow();
+		}
+		return annotations;
+	}
+
+	/**
+	 * Annotates tab-delimited lines of text with at least chr, snp and bp
+	 * fields, appending the Entrez Gene ID, gene symbol, chr start and chr
+	 * stop fields to each line. The appended fields are empty for a marker
+	 * outside any gene, and all but the Entrez Gene ID are empty for a gene
+	 * without a gene_info record.
+	 * @param numberOfThreads The number of shards annotated at the same time.
+	 */
+	public void annotate(BufferedReader in, Writer out, int numberOfThreads) throws IOException {
+		if (in == null)
+			throw new NullPointerException("in");
+		if (out == null)
+			throw new NullPointerException("out");
+		if (numberOfThreads < 1)
+			throw new IllegalArgumentException(String.valueOf(numberOfThreads));
+		final Writer writer = out;
+		ExecutorService executor = Executors.newFixedThreadPool(numberOfThreads);
+		try {
+			OrderedExecutor<String> shards = new OrderedExecutor<String>(executor, numberOfThreads * 2, new OrderedExecutor.ResultHandler<String>() {
+				public void handleResult(String result) throws IOException {
+					writer.write(result);
+				}
+			});
+			List<String> shard = new ArrayList<String>(shardSize);
+			String shardChr = null;
+			String line = null;
+			while ((line = in.readLine()) != null) {
+				int tab = line.indexOf(DELIMITER);
+				String chr = tab < 0 ? line : line.substring(0, tab);
+				if (!shard.isEmpty() && (shard.size() >= shardSize || !chr.equals(shardChr))) {
+					shards.submit(new LineTask(shard));
+					shard = new ArrayList<String>(shardSize);
+				}
+				shard.add(line);
+				shardChr = chr;
+			}
+			if (!shard.isEmpty()) {
+				shards.submit(new LineTask(shard));
+			}
+			shards.finish();
+		}
+		finally {
+			executor.shutdownNow();
+		}
+		writer.flush();
+	}
+
+	private class LineTask implements Callable<String> {
+		private List<String> lines;
+
+		private LineTask(List<String> lines) {
+			this.lines = lines;
+		}
+
+		public String call() {
+			StringBuilder builder = new StringBuilder();
+			for (int i = 0, n = lines.size(); i < n; i++) {
+				String line = lines.get(i);
+				String[] tokens = line.split(DELIMITER, -1);
+				if (tokens.length < 3) // We expect at least chr snp bp fields.
+					throw new RuntimeException(line);
+				String chr = tokens[0];
+				int pos = Integer.parseInt(tokens[2]);
+
+				builder.append(line);
+				Annotation annotation = annotate(chr, pos);
+				if (annotation != null) {
+					builder.append(DELIMITER).append(annotation.getEntrezID());
+					GeneInfoParser.Record geneInfoRecord = annotation.getGeneInfoRecord();
+					if (geneInfoRecord != null) {
+						SeqGeneMdParser.Record seqGeneMdRecord = annotation.getSeqGeneMdRecord();
+						builder.append(DELIMITER).append(geneInfoRecord.getSymbol());
+						builder.append(DELIMITER).append(seqGeneMdRecord.getChrStart());
+						builder.append(DELIMITER).append(seqGeneMdRecord.getChrStop());
+					}
+					else { // See LOC100129610 for an example.
+						builder.append(DELIMITER).append(DELIMITER).append(DELIMITER);
+					}
+				}
+				else {
+					builder.append(DELIMITER).append(DELIMITER).append(DELIMITER).append(DELIMITER);
+				}
+				builder.append(LINE_SEPARATOR);
+			}
+			return builder.toString();
+		}
+	}
+
+	/**
+	 * The gene that contains a marker.
+	 */
+	public static final class Annotation {
+		private String entrez;
+		private SeqGeneMdParser.Record seqGeneMdRecord;
+		private GeneInfoParser.Record geneInfoRecord;
+
+		private Annotation(String entrez, SeqGeneMdParser.Record seqGeneMdRecord, GeneInfoParser.Record geneInfoRecord) {
+			this.entrez = entrez;
+			this.seqGeneMdRecord = seqGeneMdRecord;
+			this.geneInfoRecord = geneInfoRecord;
+		}
+
+		/**
+		 * Returns the Entrez Gene ID.
+		 */
+		public String getEntrezID() { return entrez; }
+
+		/**
+		 * Returns the seq_gene.md record with the gene boundaries.
+		 */
+		public SeqGeneMdParser.Record getSeqGeneMdRecord() { return seqGeneMdRecord; }
+
+		/**
+		 * Returns the gene_info record, or null if there is none for the Entrez Gene ID.
+		 */
+		public GeneInfoParser.Record getGeneInfoRecord() { return geneInfoRecord; }
+	}
+}
@@ -0,0 +1,193 @@
+package edu.uab.ssg.util;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Writes a sequence of items, such as the lines of a file, to an output
+ * stream in batches encoded by a user-supplied <code>Encoder</code>.
+ *
+ * <p>Each batch is encoded into a growable byte buffer. On one thread, the
+ * batches are encoded on the calling thread into a single buffer kept by
+ * the writer, so repeated writes of a few items allocate nothing. On a
+ * thread pool, batches are encoded by an <code>OrderedExecutor</code> and
+ * written in order; buffers come from a pool with one buffer more than the
+ * outstanding batches, so one is always free for the next batch, and are
+ * returned to it once written.</p>
+ *
+ * <p>The output stream is neither flushed nor closed.</p>
+ *
+ * @author Jelai Wang
+ */
+public final class OrderedBatchWriter {
+	private OutputStream out;
+	private Batch batch = new Batch();
+
+	/**
+	 * Constructs the writer.
+	 */
+	public OrderedBatchWriter(OutputStream out) {
+		if (out == null)
+			throw new NullPointerException("out");
+		this.out = out;
+	}
+
+	/**
+	 * Writes the items, encoding batches of them on a thread pool of the
+	 * given size, or on the calling thread if it is 1 or there is only one batch.
+	 * @param numberOfItems The number of items, numbered from zero.
+	 * @param itemsPerBatch The number of items of each batch but the last.
+	 * @param numberOfThreads The number of threads for encoding batches.
+	 */
+	public void write(Encoder encoder, int numberOfItems, int itemsPerBatch, int numberOfThreads) throws IOException {
+		if (numberOfThreads < 1)
+			throw new IllegalArgumentException(String.valueOf(numberOfThreads));
+		if (numberOfThreads == 1 || numberOfItems <= itemsPerBatch) {
+			write(encoder, numberOfItems, itemsPerBatch);
+			return;
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(numberOfThreads);
+		try {
+			write(encoder, numberOfItems, itemsPerBatch, executor, numberOfThreads * 2);
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Writes the items, encoding batches of them on the given executor.
+	 * @param numberOfItems The number of items, numbered from zero.
+	 * @param itemsPerBatch The number of items of each batch but the last.
+	 * @param executor Encodes the batches. The caller remains responsible for shutting it down.
+	 * @param maxPending The maximum number of batches encoded but not yet written.
+	 */
+	public void write(final Encoder encoder, int numberOfItems, int itemsPerBatch, ExecutorService executor, int maxPending) throws IOException {
+		checkArguments(encoder, numberOfItems, itemsPerBatch);
+		if (executor == null)
+			throw new NullPointerException("executor");
+		if (maxPending < 1)
+			throw new IllegalArgumentException(String.valueOf(maxPending));
+		final BlockingQueue<Batch> buffers = new ArrayBlockingQueue<Batch>(maxPending + 1);
+		for (int i = 0; i <= maxPending; i++) {
+			buffers.add(new Batch());
+		}
+		OrderedExecutor<Batch> batches = new OrderedExecutor<Batch>(executor, maxPending, new OrderedExecutor.ResultHandler<Batch>() {
+			public void handleResult(Batch result) throws IOException {
+				out.write(result.bytes, 0, result.length);
+				buffers.add(result);
+			}
+		});
+		for (int start = 0; start < numberOfItems; start += itemsPerBatch) {
+			final int from = start, to = Math.min(start + itemsPerBatch, numberOfItems);
+			final Batch batch = buffers.remove();
+			batch.length = 0;
+			batches.submit(new Callable<Batch>() {
+				public Batch call() throws IOException {
+					encoder.encode(from, to, batch);
+					return batch;
+				}
+			});
+		}
+		batches.finish();
+	}
+
+	// Encodes and writes each batch in turn on the calling thread.
+	private void write(Encoder encoder, int numberOfItems, int itemsPerBatch) throws IOException {
+		checkArguments(encoder, numberOfItems, itemsPerBatch);
+		for (int start = 0; start < numberOfItems; start += itemsPerBatch) {
+			batch.length = 0;
+			encoder.encode(start, Math.min(start + itemsPerBatch, numberOfItems), batch);
+			out.write(batch.bytes, 0, batch.length);
+		}
+	}
+
+	private static void checkArguments(Encoder encoder, int numberOfItems, int itemsPerBatch) {
+		if (encoder == null)
+			throw new NullPointerException("encoder");
+		if (numberOfItems < 0)
+			throw new IllegalArgumentException(String.valueOf(numberOfItems));
+		if (itemsPerBatch < 1)
+			throw new IllegalArgumentException(String.valueOf(itemsPerBatch));
+	}
+
+	/**
+	 * Encodes a batch of items.
+	 */
+	public interface Encoder {
+		/**
+		 * Appends the encoded items from <tt>from</tt>, inclusive, to
+		 * <tt>to</tt>, exclusive, to the empty batch. May be called on
+		 * several threads at once, for different batches.
+		 */
+		void encode(int from, int to, Batch batch) throws IOException;
+	}
+
+	/**
+	 * A growable buffer of encoded bytes.
+	 */
+	public static final class Batch {
+		private byte[] bytes = new byte[0];
+		private int length = 0;
+
+		private Batch() {
+		}
+
+		/**
+		 * Appends a byte.
+		 */
+		public void append(byte b) {
+			ensureCapacity(1);
+			bytes[length++] = b;
+		}
+
+		/**
+		 * Appends a string encoded as UTF-8, copying ASCII characters directly.
+		 */
+		public void append(String s) throws IOException {
+			int n = s.length();
+			ensureCapacity(n);
+			for (int i = 0; i < n; i++) {
+				char ch = s.charAt(i);
+				if (ch >= 0x80) { // Not ASCII, so encode the rest of the string.
+					byte[] encoded = s.substring(i).getBytes("UTF-8");
+					ensureCapacity(encoded.length);
+					System.arraycopy(encoded, 0, bytes, length, encoded.length);
+					length += encoded.length;
+					return;
+				}
+				bytes[length++] = (byte) ch;
+			}
+		}
+
+		/**
+		 * Grows the buffer, if necessary, so that at least <tt>n</tt> more
+		 * bytes can be put directly into <code>getBytes</code> past the end
+		 * of the batch; see <code>setLength</code>.
+		 */
+		public void ensureCapacity(int n) {
+			if (length + n > bytes.length)
+				bytes = Arrays.copyOf(bytes, Math.max(Math.max(bytes.length * 2, 1 << 12), length + n));
+		}
+
+		/**
+		 * Returns the buffer, which is replaced when it grows.
+		 */
+		public byte[] getBytes() { return bytes; }
+
+		/**
+		 * Returns the number of bytes in the batch.
+		 */
+		public int getLength() { return length; }
+
+		/**
+		 * Sets the number of bytes in the batch, after bytes have been put directly into the buffer.
+		 */
+		public void setLength(int length) {
+			if (length < 0 || length > bytes.length)
+				throw new IndexOutOfBoundsException(String.valueOf(length));
+			this.length = length;
+		}
+	}
+}
@@ -0,0 +1,105 @@
+package edu.uab.ssg.util;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.io.*;
+
+/**
+ * Runs tasks on an executor and hands their results to a handler in the
+ * order the tasks were submitted, on the calling thread.
+ *
+ * <p>At most <code>maxPending</code> tasks are outstanding at a time; a call
+ * to <code>submit</code> that would exceed the bound first waits for the
+ * oldest task and handles its result. This acts as a bounded reorder buffer:
+ * memory stays fixed however long the input, and output written by the
+ * handler comes out in input order however the tasks are scheduled.</p>
+ *
+ * @author Jelai Wang
+ */
+public final class OrderedExecutor<T> {
+	private ExecutorService executor;
+	private int maxPending;
+	private ResultHandler<T> handler;
+	private LinkedList<Future<T>> pending = new LinkedList<Future<T>>();
+
+	/**
+	 * Constructs the executor.
+	 * @param executor Runs the tasks. The caller remains responsible for shutting it down.
+	 * @param maxPending The maximum number of outstanding tasks.
+	 * @param handler Handles the results in submission order.
+	 */
+	public OrderedExecutor(ExecutorService executor, int maxPending, ResultHandler<T> handler) {
+		if (executor == null)
+			throw new NullPointerException("executor");
+		if (maxPending < 1)
+			throw new IllegalArgumentException(String.valueOf(maxPending));
+		if (handler == null)
+			throw new NullPointerException("handler");
+		this.executor = executor;
+		this.maxPending = maxPending;
+		this.handler = handler;
+	}
+
+	/**
+	 * Submits a task, first handling the oldest result if too many tasks are outstanding.
+	 * A task that failed has its exception rethrown here or from <code>finish</code>.
+	 */
+	public void submit(Callable<T> task) throws IOException {
+		if (task == null)
+			throw new NullPointerException("task");
+		while (pending.size() >= maxPending) {
+			handleNext();
+		}
+		pending.addLast(executor.submit(task));
+	}
+
+	/**
+	 * Waits for every outstanding task and handles its result.
+	 */
+	public void finish() throws IOException {
+		while (!pending.isEmpty()) {
+			handleNext();
+		}
+	}
+
+	private void handleNext() throws IOException {
+		Future<T> future = pending.removeFirst();
+		T result = null;
+		try {
+			result = future.get();
+		}
+		catch (InterruptedException e) {
+			cancel();
+			throw new InterruptedIOException();
+		}
+		catch (ExecutionException e) {
+			cancel();
+			Throwable t = e.getCause();
+			if (t instanceof IOException)
+				throw (IOException) t;
+			if (t instanceof RuntimeException)
+				throw (RuntimeException) t;
+			if (t instanceof Error)
+				throw (Error) t;
+			throw new RuntimeException(t);
+		}
+		handler.handleResult(result);
+	}
+
+	private void cancel() {
+		for (Iterator<Future<T>> it = pending.iterator(); it.hasNext(); ) {
+			it.next().cancel(true);
+		}
+		pending.clear();
+	}
+
+	/**
+	 * A handler for task results.
+	 */
+	public interface ResultHandler<T> {
+		/**
+		 * Handles the result of the next task in submission order.
+		 */
+		void handleResult(T result) throws IOException;
+	}
+}
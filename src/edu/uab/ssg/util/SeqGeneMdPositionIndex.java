@@ -6,49 +6,188 @@ import java.util.*;
 /**
  * An index for searching SeqGeneMdParser.Records by chromosome position.
  *
+ * <p>The records of each chromosome are sorted by chr start, and each entry
+ * carries the largest chr stop seen so far. A search is a binary search for
+ * the last record starting at or before the position, followed by a scan
+ * backwards that stops as soon as no earlier record can reach the position,
+ * so a query touches only the records near the position rather than the
+ * whole chromosome.</p>
+ *
+ * <p>Records can be added incrementally, for example a chromosome at a time
+ * from <code>SeqGeneMdParser.ChromosomeListener</code>, so the index never
+ * needs the unfiltered records in memory. The sorted arrays are rebuilt on
+ * the first query after an add. Queries are safe to run concurrently, but
+ * not concurrently with <code>add</code>.</p>
+ *
  * @author Jelai Wang
  */
 public final class SeqGeneMdPositionIndex {
 	private Map<String, List<SeqGeneMdParser.Record>> chr2md = new LinkedHashMap<String, List<SeqGeneMdParser.Record>>();
-	
+	private volatile Map<String, Intervals> chr2intervals = null;
+
+	/**
+	 * Constructs an empty index.
+	 */
+	public SeqGeneMdPositionIndex() {
+	}
+
 	/**
 	 * Constructs the index.
 	 */
 	public SeqGeneMdPositionIndex(List<SeqGeneMdParser.Record> records) {
+		addAll(records);
+	}
+
+	/**
+	 * Adds a record to the index.
+	 */
+	public synchronized void add(SeqGeneMdParser.Record record) {
+		if (record == null)
+			throw new NullPointerException("record");
+		String chr = record.getChromosome();
+		List<SeqGeneMdParser.Record> list = chr2md.get(chr);
+		if (list == null) {
+			list = new ArrayList<SeqGeneMdParser.Record>();
+			chr2md.put(chr, list);
+		}
+		list.add(record);
+		chr2intervals = null;
+	}
+
+	/**
+	 * Adds records to the index.
+	 */
+	public void addAll(List<SeqGeneMdParser.Record> records) {
 		if (records == null)
 			throw new NullPointerException("records");
-		// Organize records by chromosome.
 		for (int i = 0, n = records.size(); i < n; i++) {
-			SeqGeneMdParser.Record record = records.get(i);
-			String chr = record.getChromosome();
-			List<SeqGeneMdParser.Record> list = chr2md.get(chr);
-			if (list == null) {
-				list = new ArrayList<SeqGeneMdParser.Record>();
-				chr2md.put(chr, list);
+			add(records.get(i));
+		}
+	}
+
+	private Map<String, Intervals> getIntervals() {
+		Map<String, Intervals> map = chr2intervals;
+		if (map == null) {
+			synchronized (this) {
+				map = chr2intervals;
+				if (map == null) {
+					map = new HashMap<String, Intervals>();
+					for (Iterator<Map.Entry<String, List<SeqGeneMdParser.Record>>> it = chr2md.entrySet().iterator(); it.hasNext(); ) {
+						Map.Entry<String, List<SeqGeneMdParser.Record>> entry = it.next();
+						map.put(entry.getKey(), new Intervals(entry.getValue()));
+					}
+					chr2intervals = map;
+				}
 			}
-			list.add(record);
 		}
+		return map;
+	}
+
+	/**
+	 * Returns true if the index has records for the given chromosome.
+	 */
+	public boolean containsChromosome(String chr) {
+		if (chr == null)
+			throw new NullPointerException("chr");
+		return getIntervals().containsKey(chr);
 	}
 
 	/**
 	 * Returns SeqGeneMdParser.Records that contain the given base-pair position within the chr start and stop boundaries.
+	 * The records are returned in their original input order.
 	 */
 	List<SeqGeneMdParser.Record> getRecords(String chr, int pos) {
 		if (chr == null)
 			throw new NullPointerException("chr");
 		if (pos < 0)
 			throw new IllegalArgumentException(String.valueOf(pos));
-		if (!chr2md.containsKey(chr))
+		Intervals intervals = getIntervals().get(chr);
+		if (intervals == null)
 			throw new IllegalArgumentException(chr);
-		List<SeqGeneMdParser.Record> matches = new ArrayList<SeqGeneMdParser.Record>();
-		List<SeqGeneMdParser.Record> list = chr2md.get(chr);
+		int[] matches = intervals.find(pos);
+		List<SeqGeneMdParser.Record> list = new ArrayList<SeqGeneMdParser.Record>(matches.length);
+		for (int i = 0; i < matches.length; i++) {
+			list.add(intervals.records[matches[i]]);
+		}
+		return list;
+	}
+
+	/**
+	 * Returns the first SeqGeneMdParser.Record, in input order, that contains the given base-pair position, or null if there is none.
+	 * Unlike <code>getRecords</code>, an unknown chromosome is not an error.
+	 */
+	SeqGeneMdParser.Record getFirstRecord(String chr, int pos) {
+		if (chr == null)
+			throw new NullPointerException("chr");
+		if (pos < 0)
+			throw new IllegalArgumentException(String.valueOf(pos));
+		Intervals intervals = getIntervals().get(chr);
+		if (intervals == null)
+			return null;
+		int[] matches = intervals.find(pos);
+		return matches.length > 0 ? intervals.records[matches[0]] : null;
+	}
+
+	private static final class Intervals {
+		// Indexed by input order.
+		private SeqGeneMdParser.Record[] records;
+		// Indexed by sorted order.
+		private int[] starts, maxStops, order;
 
-		for (int i = 0, n = list.size(); i < n; i++) { // Linear search.
-			SeqGeneMdParser.Record record = list.get(i);
-			int chrStart = record.getChrStart();
-			int chrStop = record.getChrStop();
-			if (pos >= chrStart && pos <= chrStop) matches.add(record);
+		private Intervals(List<SeqGeneMdParser.Record> list) {
+			int n = list.size();
+			this.records = list.toArray(new SeqGeneMdParser.Record[n]);
+			Integer[] sorted = new Integer[n];
+			for (int i = 0; i < n; i++) {
+				sorted[i] = Integer.valueOf(i);
+			}
+			Arrays.sort(sorted, new Comparator<Integer>() { // Stable, so ties stay in input order.
+				public int compare(Integer i1, Integer i2) {
+					int start1 = records[i1.intValue()].getChrStart();
+					int start2 = records[i2.intValue()].getChrStart();
+					return start1 < start2 ? -1 : (start1 > start2 ? 1 : 0);
+				}
+			});
+			this.starts = new int[n];
+			this.maxStops = new int[n];
+			this.order = new int[n];
+			int maxStop = Integer.MIN_VALUE;
+			for (int i = 0; i < n; i++) {
+				int index = sorted[i].intValue();
+				order[i] = index;
+				starts[i] = records[index].getChrStart();
+				maxStop = Math.max(maxStop, records[index].getChrStop());
+				maxStops[i] = maxStop;
+			}
+		}
+
+		// Returns the input-order indices of the matching records, in ascending order.
+		private int[] find(int pos) {
+			// Find the last record starting at or before pos.
+			int low = 0, high = starts.length - 1, last = -1;
+			while (low <= high) {
+				int mid = (low + high) >>> 1;
+				if (starts[mid] <= pos) {
+					last = mid;
+					low = mid + 1;
+				}
+				else {
+					high = mid - 1;
+				}
+			}
+			int count = 0;
+			int[] matches = new int[4];
+			for (int i = last; i >= 0 && maxStops[i] >= pos; i--) {
+				if (records[order[i]].getChrStop() >= pos) {
+					if (count == matches.length) {
+						matches = Arrays.copyOf(matches, count * 2);
+					}
+					matches[count++] = order[i];
+				}
+			}
+			matches = Arrays.copyOf(matches, count);
+			Arrays.sort(matches);
+			return matches;
 		}
-		return matches;
 	}
 }
@@ -0,0 +1,447 @@
+package edu.uab.ssg.util;
+
+import edu.uab.ssg.model.snp.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.io.*;
+
+/**
+ * Aligns the genotype calls of a target panel to the strand of a reference
+ * panel, in one streaming pass over each PLINK PED file plus one over the
+ * target to write the result.
+ *
+ * <p>The PED files are first reduced to an <code>AlleleSummary</code> each,
+ * the A, C, G and T counts of every marker. A target marker is then matched
+ * to the reference marker of the same name and given a <code>Decision</code>
+ * from the two summaries alone. When the target alleles are a subset of
+ * the reference alleles the marker is kept, and when their complements are,
+ * it is flipped. An A/T or C/G marker reads the same on both strands, so it
+ * is resolved by allele frequency instead: the calls are flipped if the
+ * minor allele of the target is the major allele of the reference, provided
+ * the minor allele frequency in both panels is at most
+ * <code>getMaxAmbiguousMAF</code>. Markers that cannot be decided, or are
+ * not in the reference, are left unresolved.</p>
+ *
+ * <p><code>flip</code> then streams the target PED file to the output,
+ * complementing the calls of the flipped markers and copying everything
+ * else as is. Lines are scanned in place, without building a sample
+ * object per line. Both passes split their input into batches of lines
+ * that are processed on a pool of worker threads and reassembled in input
+ * order (see <code>OrderedExecutor</code>).</p>
+ *
+ * @author Jelai Wang
+ */
+public final class StrandAligner {
+	/**
+	 * The default maximum minor allele frequency for resolving an ambiguous A/T or C/G marker.
+	 */
+	public static final double DEFAULT_MAX_AMBIGUOUS_MAF = 0.4;
+
+	/**
+	 * The default number of PED lines in a batch.
+	 */
+	public static final int DEFAULT_BATCH_SIZE = 64;
+
+	private static final int NUMBER_OF_LEADING_FIELDS = 6; // FID, IID, paternal ID, maternal ID, sex, phenotype.
+	private static final char DELIMITER = '\t';
+	private static final char EOL = '\n';
+	private static final char MISSING_VALUE = '0';
+	// Counts are kept per marker in the order A, C, G, T, then anything else.
+	private static final int A = 0, C = 1, G = 2, T = 3, OTHER = 4, NUMBER_OF_COUNTS = 5;
+	private static final int AT = (1 << A) | (1 << T), CG = (1 << C) | (1 << G);
+
+	private double maxAmbiguousMAF = DEFAULT_MAX_AMBIGUOUS_MAF;
+	private int batchSize = DEFAULT_BATCH_SIZE;
+
+	/**
+	 * Constructs the aligner.
+	 */
+	public StrandAligner() {
+	}
+
+	/**
+	 * Sets the maximum minor allele frequency, in both panels, for resolving an ambiguous A/T or C/G marker.
+	 * Frequencies near 0.5 cannot tell the strands apart reliably.
+	 */
+	public void setMaxAmbiguousMAF(double maxAmbiguousMAF) {
+		if (maxAmbiguousMAF < 0 || maxAmbiguousMAF >= 0.5)
+			throw new IllegalArgumentException(String.valueOf(maxAmbiguousMAF));
+		this.maxAmbiguousMAF = maxAmbiguousMAF;
+	}
+
+	/**
+	 * Returns the maximum minor allele frequency for resolving an ambiguous A/T or C/G marker.
+	 */
+	public double getMaxAmbiguousMAF() { return maxAmbiguousMAF; }
+
+	/**
+	 * Sets the number of PED lines in a batch.
+	 */
+	public void setBatchSize(int batchSize) {
+		if (batchSize < 1)
+			throw new IllegalArgumentException(String.valueOf(batchSize));
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * Counts the alleles of every marker in the given PED file.
+	 * @param markers The markers, in the order of the genotype columns of the PED file.
+	 * @param numberOfThreads The number of batches counted at the same time.
+	 */
+	public AlleleSummary summarize(List<SNP> markers, BufferedReader in, int numberOfThreads) throws IOException {
+		if (markers == null)
+			throw new NullPointerException("markers");
+		if (in == null)
+			throw new NullPointerException("in");
+		if (numberOfThreads < 1)
+			throw new IllegalArgumentException(String.valueOf(numberOfThreads));
+		final AlleleSummary summary = new AlleleSummary(markers);
+		final int numberOfMarkers = markers.size();
+		ExecutorService executor = Executors.newFixedThreadPool(numberOfThreads);
+		try {
+			OrderedExecutor<int[]> batches = new OrderedExecutor<int[]>(executor, numberOfThreads * 2, new OrderedExecutor.ResultHandler<int[]>() {
+				public void handleResult(int[] result) {
+					summary.add(result);
+				}
+			});
+			List<String> batch = new ArrayList<String>(batchSize);
+			String line = null;
+			while ((line = in.readLine()) != null) {
+				batch.add(line);
+				if (batch.size() == batchSize) {
+					batches.submit(new CountTask(batch, numberOfMarkers));
+					batch = new ArrayList<String>(batchSize);
+				}
+			}
+			if (!batch.isEmpty()) {
+				batches.submit(new CountTask(batch, numberOfMarkers));
+			}
+			batches.finish();
+		}
+		finally {
+			executor.shutdownNow();
+		}
+		return summary;
+	}
+
+	private static final class CountTask implements Callable<int[]> {
+		private List<String> lines;
+		private int numberOfMarkers;
+
+		private CountTask(List<String> lines, int numberOfMarkers) {
+			this.lines = lines;
+			this.numberOfMarkers = numberOfMarkers;
+		}
+
+		public int[] call() {
+			// The allele counts of every marker, followed by the missing value counts.
+			int[] counts = new int[numberOfMarkers * (NUMBER_OF_COUNTS + 1)];
+			int missingOffset = numberOfMarkers * NUMBER_OF_COUNTS;
+			int[] bounds = new int[2 * (NUMBER_OF_LEADING_FIELDS + 2 * numberOfMarkers)];
+			for (int i = 0, n = lines.size(); i < n; i++) {
+				String line = lines.get(i);
+				bounds = split(line, bounds, numberOfMarkers);
+				for (int j = NUMBER_OF_LEADING_FIELDS, m = NUMBER_OF_LEADING_FIELDS + 2 * numberOfMarkers; j < m; j++) {
+					int marker = (j - NUMBER_OF_LEADING_FIELDS) >> 1;
+					int start = bounds[2 * j], end = bounds[2 * j + 1];
+					int code = end - start == 1 ? getCode(line.charAt(start)) : OTHER;
+					if (code < 0) counts[missingOffset + marker]++;
+					else counts[marker * NUMBER_OF_COUNTS + code]++;
+				}
+			}
+			return counts;
+		}
+	}
+
+	// Returns the count index of the allele, or -1 for a missing value.
+	private static int getCode(char allele) {
+		switch (allele) {
+			case 'A': return A;
+			case 'C': return C;
+			case 'G': return G;
+			case 'T': return T;
+			case MISSING_VALUE: return -1;
+			default: return OTHER;
+		}
+	}
+
+	// Finds the start and end of each whitespace-delimited field of a PED line, checking the number of genotype calls.
+	private static int[] split(String line, int[] bounds, int numberOfMarkers) {
+		int expected = NUMBER_OF_LEADING_FIELDS + 2 * numberOfMarkers;
+		if (bounds.length < 2 * expected) bounds = new int[2 * expected];
+		int count = 0;
+		for (int i = 0, n = line.length(); i < n; ) {
+			while (i < n && Character.isWhitespace(line.charAt(i))) i++;
+			if (i == n)
+				break;
+			int start = i;
+			while (i < n && !Character.isWhitespace(line.charAt(i))) i++;
+			if (count == expected)
+				throw new IllegalArgumentException(line.substring(0, Math.min(line.length(), 80)));
+			bounds[2 * count] = start;
+			bounds[2 * count + 1] = i;
+			count++;
+		}
+		if (count != expected)
+			throw new IllegalArgumentException(line.substring(0, Math.min(line.length(), 80)));
+		return bounds;
+	}
+
+	/**
+	 * Decides, for every marker of the target panel, whether its calls should be flipped to match the reference panel.
+	 * Markers are matched by name.
+	 * @return The decisions, in the order of the target markers.
+	 */
+	public Decision[] align(AlleleSummary reference, AlleleSummary target) {
+		if (reference == null)
+			throw new NullPointerException("reference");
+		if (target == null)
+			throw new NullPointerException("target");
+		List<SNP> markers = target.getMarkers();
+		Decision[] decisions = new Decision[markers.size()];
+		for (int i = 0; i < decisions.length; i++) {
+			int referenceIndex = reference.indexOf(markers.get(i).getName());
+			decisions[i] = referenceIndex < 0 ? Decision.UNRESOLVED : align(reference, referenceIndex, target, i);
+		}
+		return decisions;
+	}
+
+	/**
+	 * Decides whether the calls of a target marker should be flipped to match a reference marker.
+	 */
+	public Decision align(AlleleSummary reference, int referenceIndex, AlleleSummary target, int targetIndex) {
+		if (reference == null)
+			throw new NullPointerException("reference");
+		if (target == null)
+			throw new NullPointerException("target");
+		int referenceAlleles = reference.getAlleleMask(referenceIndex);
+		int targetAlleles = target.getAlleleMask(targetIndex);
+		if (targetAlleles == 0) // Nothing to flip.
+			return Decision.KEEP;
+		if (referenceAlleles <= 0 || targetAlleles < 0 || Integer.bitCount(referenceAlleles) > 2 || Integer.bitCount(targetAlleles) > 2)
+			return Decision.UNRESOLVED;
+		int alleles = referenceAlleles | targetAlleles;
+		if ((alleles & ~AT) == 0 || (alleles & ~CG) == 0) { // Ambiguous, so use allele frequencies.
+			int allele = (alleles & AT) != 0 ? A : C;
+			double referenceFrequency = reference.getFrequency(referenceIndex, allele);
+			double targetFrequency = target.getFrequency(targetIndex, allele);
+			if (Math.min(referenceFrequency, 1 - referenceFrequency) > maxAmbiguousMAF || Math.min(targetFrequency, 1 - targetFrequency) > maxAmbiguousMAF)
+				return Decision.UNRESOLVED;
+			return (referenceFrequency < 0.5) == (targetFrequency < 0.5) ? Decision.KEEP : Decision.FLIP;
+		}
+		if ((targetAlleles & ~referenceAlleles) == 0)
+			return Decision.KEEP;
+		if ((complement(targetAlleles) & ~referenceAlleles) == 0)
+			return Decision.FLIP;
+		return Decision.UNRESOLVED;
+	}
+
+	// Swaps A with T and C with G in a mask of alleles.
+	private static int complement(int alleles) {
+		return ((alleles & (1 << A)) << 3) | ((alleles & (1 << T)) >> 3) | ((alleles & (1 << C)) << 1) | ((alleles & (1 << G)) >> 1);
+	}
+
+	/**
+	 * Copies a PED file to the given writer, complementing the calls of the markers with a FLIP decision.
+	 * Fields are written tab-delimited, with the Unix-style line ending.
+	 * @param decisions The decisions, in the order of the genotype columns of the PED file, as returned by <code>align</code>.
+	 * @param numberOfThreads The number of batches flipped at the same time.
+	 */
+	public void flip(BufferedReader in, Writer out, Decision[] decisions, int numberOfThreads) throws IOException {
+		if (in == null)
+			throw new NullPointerException("in");
+		if (out == null)
+			throw new NullPointerException("out");
+		if (decisions == null)
+			throw new NullPointerException("decisions");
+		if (numberOfThreads < 1)
+			throw new IllegalArgumentException(String.valueOf(numberOfThreads));
+		final boolean[] flips = new boolean[decisions.length];
+		for (int i = 0; i < decisions.length; i++) {
+			flips[i] = decisions[i] == Decision.FLIP;
+		}
+		final Writer writer = out;
+		ExecutorService executor = Executors.newFixedThreadPool(numberOfThreads);
+		try {
+			OrderedExecutor<String> batches = new OrderedExecutor<String>(executor, numberOfThreads * 2, new OrderedExecutor.ResultHandler<String>() {
+				public void handleResult(String result) throws IOException {
+					writer.write(result);
+				}
+			});
+			List<String> batch = new ArrayList<String>(batchSize);
+			String line = null;
+			while ((line = in.readLine()) != null) {
+				batch.add(line);
+				if (batch.size() == batchSize) {
+					batches.submit(new FlipTask(batch, flips));
+					batch = new ArrayList<String>(batchSize);
+				}
+			}
+			if (!batch.isEmpty()) {
+				batches.submit(new FlipTask(batch, flips));
+			}
+			batches.finish();
+		}
+		finally {
+			executor.shutdownNow();
+		}
+		writer.flush();
+	}
+
+	private static final class FlipTask implements Callable<String> {
+		private List<String> lines;
+		private boolean[] flips;
+
+		private FlipTask(List<String> lines, boolean[] flips) {
+			this.lines = lines;
+			this.flips = flips;
+		}
+
+		public String call() {
+			StringBuilder builder = new StringBuilder();
+			int[] bounds = new int[2 * (NUMBER_OF_LEADING_FIELDS + 2 * flips.length)];
+			for (int i = 0, n = lines.size(); i < n; i++) {
+				String line = lines.get(i);
+				bounds = split(line, bounds, flips.length);
+				for (int j = 0, m = NUMBER_OF_LEADING_FIELDS + 2 * flips.length; j < m; j++) {
+					if (j > 0) builder.append(DELIMITER);
+					int start = bounds[2 * j], end = bounds[2 * j + 1];
+					if (j >= NUMBER_OF_LEADING_FIELDS && flips[(j - NUMBER_OF_LEADING_FIELDS) >> 1]) {
+						if (end - start != 1)
+							throw new IllegalArgumentException(line.substring(start, end));
+						builder.append(complement(line.charAt(start)));
+					}
+					else {
+						builder.append(line, start, end);
+					}
+				}
+				builder.append(EOL);
+			}
+			return builder.toString();
+		}
+	}
+
+	private static char complement(char allele) {
+		return allele == MISSING_VALUE ? MISSING_VALUE : Util.complement(allele);
+	}
+
+	/**
+	 * The alignment decision for a marker.
+	 */
+	public static final class Decision {
+		// See Bloch 104 for hints on enum implementation in Java.
+
+		/**
+		 * The calls are on the reference strand already.
+		 */
+		public static final Decision KEEP = new Decision("KEEP");
+
+		/**
+		 * The calls are on the opposite strand and should be complemented.
+		 */
+		public static final Decision FLIP = new Decision("FLIP");
+
+		/**
+		 * The strand could not be decided, and the calls are left as is.
+		 */
+		public static final Decision UNRESOLVED = new Decision("UNRESOLVED");
+
+		private String name;
+
+		private Decision(String name) {
+			this.name = name;
+		}
+
+		/**
+		 * Returns a string representation for debugging purposes.
+		 */
+		public String toString() { return name; }
+	}
+
+	/**
+	 * The allele counts of every marker of a panel.
+	 */
+	public static final class AlleleSummary {
+		private List<SNP> markers;
+		private Map<String, Integer> name2index = new HashMap<String, Integer>();
+		private int[] counts, missing;
+
+		private AlleleSummary(List<SNP> markers) {
+			this.markers = Collections.unmodifiableList(new ArrayList<SNP>(markers));
+			for (int i = 0, n = this.markers.size(); i < n; i++) {
+				String name = this.markers.get(i).getName();
+				if (name2index.put(name, Integer.valueOf(i)) != null)
+					throw new IllegalArgumentException(name);
+			}
+			this.counts = new int[this.markers.size() * NUMBER_OF_COUNTS];
+			this.missing = new int[this.markers.size()];
+		}
+
+		private void add(int[] batch) {
+			for (int i = 0; i < counts.length; i++) {
+				counts[i] += batch[i];
+			}
+			for (int i = 0; i < missing.length; i++) {
+				missing[i] += batch[counts.length + i];
+			}
+		}
+
+		/**
+		 * Returns the markers, in the order of the genotype columns of the PED file.
+		 */
+		public List<SNP> getMarkers() { return markers; }
+
+		/**
+		 * Returns the index of the marker with the given name, or -1 if there is none.
+		 */
+		public int indexOf(String name) {
+			if (name == null)
+				throw new NullPointerException("name");
+			Integer index = name2index.get(name);
+			return index == null ? -1 : index.intValue();
+		}
+
+		/**
+		 * Returns the number of calls of the given allele, A, C, G or T, at the given marker.
+		 */
+		public int getCount(int marker, char allele) {
+			int code = getCode(allele);
+			if (code < 0 || code == OTHER)
+				throw new IllegalArgumentException(String.valueOf(allele));
+			return counts[marker * NUMBER_OF_COUNTS + code];
+		}
+
+		/**
+		 * Returns the number of calls of alleles other than A, C, G or T, such as insertions and deletions, at the given marker.
+		 */
+		public int getNumberOfOtherValues(int marker) {
+			return counts[marker * NUMBER_OF_COUNTS + OTHER];
+		}
+
+		/**
+		 * Returns the number of missing allele values at the given marker.
+		 */
+		public int getNumberOfMissingValues(int marker) {
+			return missing[marker];
+		}
+
+		// Returns the alleles seen at the marker as a bit mask, or -1 if any was not A, C, G or T.
+		private int getAlleleMask(int marker) {
+			int offset = marker * NUMBER_OF_COUNTS;
+			if (counts[offset + OTHER] > 0)
+				return -1;
+			int mask = 0;
+			for (int i = A; i <= T; i++) {
+				if (counts[offset + i] > 0) mask |= 1 << i;
+			}
+			return mask;
+		}
+
+		// Returns the frequency of the allele among the two alleles of its ambiguous pair.
+		private double getFrequency(int marker, int allele) {
+			int offset = marker * NUMBER_OF_COUNTS;
+			int count = counts[offset + allele];
+			return (double) count / (count + counts[offset + (allele == A ? T : G)]);
+		}
+	}
+}
@@ -0,0 +1,67 @@
+package edu.uab.ssg.io;
+
+import junit.framework.TestCase;
+import junit.framework.Assert;
+import java.io.*;
+
+/**
+ * @author Jelai Wang
+ */
+
+public final class TestByteLineReader extends TestCase {
+	public void testFields() throws IOException {
+		String text = "1\trs1\t-\t1000\r\n\nX\trs2\t\t-42\nlast\tline";
+		ByteLineReader reader = new ByteLineReader(new ByteArrayInputStream(text.getBytes("UTF-8")), '\t');
+
+		Assert.assertTrue(reader.readLine());
+		Assert.assertEquals(4, reader.getNumberOfFields());
+		Assert.assertEquals("1\trs1\t-\t1000", reader.getLine());
+		Assert.assertEquals("rs1", reader.getField(1));
+		Assert.assertTrue(reader.fieldEquals(0, ByteLineReader.getBytes("1")));
+		Assert.assertFalse(reader.fieldEquals(1, ByteLineReader.getBytes("rs10")));
+		Assert.assertEquals(1000, reader.getIntField(3));
+
+		Assert.assertTrue(reader.readLine()); // Empty line.
+		Assert.assertEquals(1, reader.getNumberOfFields());
+		Assert.assertEquals("", reader.getField(0));
+
+		Assert.assertTrue(reader.readLine());
+		Assert.assertEquals("", reader.getField(2));
+		Assert.assertEquals(-42, reader.getIntField(3));
+		try {
+			reader.getIntField(1);
+			Assert.fail();
+		}
+		catch (NumberFormatException e) {
+			Assert.assertTrue(true);
+		}
+
+		Assert.assertTrue(reader.readLine()); // No line ending.
+		Assert.assertEquals("line", reader.getField(1));
+		Assert.assertFalse(reader.readLine());
+		reader.close();
+	}
+
+	public void testLongLine() throws IOException {
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < 50000; i++) {
+			builder.append(i).append(' ');
+		}
+		builder.append('\n');
+		ByteLineReader reader = new ByteLineReader(new ByteArrayInputStream(builder.toString().getBytes("UTF-8")), ' ');
+		Assert.assertTrue(reader.readLine());
+		Assert.assertEquals(50001, reader.getNumberOfFields());
+		Assert.assertEquals(49999, reader.getIntField(49999));
+		Assert.assertFalse(reader.readLine());
+	}
+
+	public void testFieldFilter() throws IOException {
+		ByteLineReader reader = new ByteLineReader(new ByteArrayInputStream("9606\tA\n10090\tB\n".getBytes("UTF-8")), '\t');
+		ByteLineReader.LineFilter filter = ByteLineReader.createFieldFilter(0, "9606", "9598");
+		Assert.assertTrue(reader.readLine());
+		Assert.assertTrue(filter.acceptLine(reader));
+		Assert.assertFalse(ByteLineReader.createFieldFilter(5, "9606").acceptLine(reader));
+		Assert.assertTrue(reader.readLine());
+		Assert.assertFalse(filter.acceptLine(reader));
+	}
+}
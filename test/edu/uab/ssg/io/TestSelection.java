@@ -0,0 +1,60 @@
+package edu.uab.ssg.io;
+
+import junit.framework.TestCase;
+import junit.framework.Assert;
+import java.util.*;
+
+/**
+ * @author Jelai Wang
+ */
+
+public final class TestSelection extends TestCase {
+	public void testMarkers() {
+		Assert.assertTrue(Selection.ALL.selectsAllSamples());
+		Assert.assertTrue(Selection.ALL.selectsAllMarkers());
+		Assert.assertTrue(Selection.ALL.isMarkerSelected("rs1", "1", 100));
+		Selection selection = new Selection(null, new HashSet<String>(Arrays.asList(new String[] { "rs1" }))).withRegion("2", 100, 200);
+		Assert.assertFalse(selection.selectsAllMarkers());
+		Assert.assertTrue(selection.isMarkerSelected("rs1", "1", 1));
+		Assert.assertTrue(selection.isMarkerSelected("rs2", "2", 100));
+		Assert.assertTrue(selection.isMarkerSelected("rs2", "2", 200));
+		Assert.assertFalse(selection.isMarkerSelected("rs2", "2", 201));
+		Assert.assertFalse(selection.isMarkerSelected("rs2", "3", 150));
+		Assert.assertTrue(selection.isMarkerSelected("rs2", null, 150));
+		try { selection.withRegion("1", 10, 9); Assert.fail(); } catch (IllegalArgumentException e) { Assert.assertTrue(true); }
+	}
+
+	public void testStrictColumns() {
+		Selection selection = new Selection(new HashSet<String>(Arrays.asList(new String[] { "s2", "s4" })), null);
+		Assert.assertFalse(selection.isSampleSelected("s1"));
+		Selection.Columns columns = selection.selectColumns(Arrays.asList(new String[] { "s1", "s2", "s3", "s4" }), 2, '\t', false);
+		Assert.assertEquals(4, columns.getNumberOfColumns());
+		Assert.assertEquals(2, columns.getNumberOfSelectedColumns());
+		Assert.assertEquals(3, columns.getColumnIndex(1));
+		Assert.assertEquals(Arrays.asList(new String[] { "b", "d" }), columns.select(Arrays.asList(new String[] { "a", "b", "c", "d" })));
+
+		String[] fields = columns.createFields();
+		String line = "rs1\t100\tAA\t\tCC\tDD";
+		int position = columns.readLeadingFields(line, fields);
+		columns.readSelectedFields(line, position, fields);
+		Assert.assertEquals(Arrays.asList(new String[] { "rs1", "100", "", "DD" }), Arrays.asList(fields));
+
+		line = "rs1\t100\tAA\tBB\tCC\t";
+		columns.readSelectedFields(line, columns.readLeadingFields(line, fields), fields);
+		Assert.assertEquals("", fields[3]);
+		try { line = "rs1\t100\tAA\tBB\tCC"; columns.readSelectedFields(line, columns.readLeadingFields(line, fields), fields); Assert.fail(); } catch (IllegalArgumentException e) { Assert.assertTrue(true); }
+		try { line = "rs1\t100\tAA\tBB\tCC\tDD\t"; columns.readSelectedFields(line, columns.readLeadingFields(line, fields), fields); Assert.fail(); } catch (IllegalArgumentException e) { Assert.assertTrue(true); }
+		try { columns.readLeadingFields("rs1", fields); Assert.fail(); } catch (IllegalArgumentException e) { Assert.assertTrue(true); }
+	}
+
+	public void testCollapsedColumns() {
+		Selection selection = new Selection(new HashSet<String>(Arrays.asList(new String[] { "s1" })), null);
+		Selection.Columns columns = selection.selectColumns(Arrays.asList(new String[] { "s1", "s1", "s2", "s2" }), 2, ' ', true);
+		String[] fields = columns.createFields();
+		String line = " rs1  100 A C  G T ";
+		columns.readSelectedFields(line, columns.readLeadingFields(line, fields), fields);
+		Assert.assertEquals(Arrays.asList(new String[] { "rs1", "100", "A", "C" }), Arrays.asList(fields));
+		try { line = "rs1 100 A C G "; columns.readSelectedFields(line, columns.readLeadingFields(line, fields), fields); Assert.fail(); } catch (IllegalArgumentException e) { Assert.assertTrue(true); }
+		try { line = "rs1 100 A C G T T"; columns.readSelectedFields(line, columns.readLeadingFields(line, fields), fields); Assert.fail(); } catch (IllegalArgumentException e) { Assert.assertTrue(true); }
+	}
+}
@@ -2,7 +2,10 @@ package edu.uab.ssg.io.decode;
 
 import junit.framework.TestCase;
 import junit.framework.Assert;
+import edu.uab.ssg.io.Selection;
+import edu.uab.ssg.model.snp.PackedGenotypeMatrix;
 import java.io.*;
+import java.util.*;
 
 /**
  * @author Jelai Wang
@@ -18,6 +21,81 @@ public final class TestGTypeFileParser extends TestCase {
 		Assert.assertEquals(0, helper.getNumberOfBadRecords());
 	}
 
+	public void testSelection() throws IOException {
+		InputStream in = getClass().getClassLoader().getResourceAsStream("edu/uab/ssg/io/decode/gtype.txt");
+		Selection selection = new Selection(Collections.singleton("AVA1017.GType"), null).withRegion("11", 1, 200000000);
+		final List<GTypeFileParser.SNPRecord> records = new ArrayList<GTypeFileParser.SNPRecord>();
+		new GTypeFileParser().parse(in, selection, new GTypeFileParser.RecordListener() {
+			public void handleParsedRecord(GTypeFileParser.SNPRecord record) { records.add(record); }
+			public void handleBadRecordFormat(String line) { Assert.fail(line); }
+		});
+		Assert.assertEquals(2, records.size());
+		Assert.assertEquals("BLR1-011551", records.get(0).getName());
+		Assert.assertEquals("BLR1-014511", records.get(1).getName());
+		Assert.assertEquals(Collections.singletonList("AVA1017.GType"), records.get(0).getSampleNames());
+		Assert.assertEquals("AB", records.get(0).getGenotype("AVA1017.GType"));
+		Assert.assertEquals("BB", records.get(1).getGenotype("AVA1017.GType"));
+		Assert.assertFalse(records.get(0).existsGenotype("AVA1001.GType"));
+	}
+
+	public void testIndexedRecords() throws IOException {
+		InputStream in = getClass().getClassLoader().getResourceAsStream("edu/uab/ssg/io/decode/gtype.txt");
+		final List<GTypeFileParser.SNPRecord> records = new ArrayList<GTypeFileParser.SNPRecord>();
+		PackedGenotypeMatrix matrix = new GTypeFileParser().parseMatrix(in, Selection.ALL, new GTypeFileParser.RecordListener() {
+			public void handleParsedRecord(GTypeFileParser.SNPRecord record) { records.add(record); }
+			public void handleBadRecordFormat(String line) { Assert.fail(line); }
+		});
+		Assert.assertEquals(7, records.size());
+		GTypeFileParser.SNPRecord record = records.get(3); // BLR1-014511
+		Assert.assertSame(records.get(0).getSampleNames(), record.getSampleNames());
+		Assert.assertEquals(7, record.getNumberOfSamples());
+		Assert.assertEquals(4, record.indexOf("AVA1017_1.GType"));
+		Assert.assertEquals(-1, record.indexOf("AVA9999.GType"));
+		Assert.assertEquals("NC", record.getGenotype(4));
+		Assert.assertEquals(GTypeFileParser.NC, record.getGenotypeCode(4));
+		Assert.assertEquals(GTypeFileParser.BB, record.getGenotypeCode(5));
+		try { record.getGenotype(7); Assert.fail(); } catch (IndexOutOfBoundsException e) { Assert.assertTrue(true); }
+
+		Assert.assertEquals(record.getSampleNames(), matrix.getSampleNames());
+		Assert.assertEquals(7, matrix.getNumberOfMarkers());
+		Assert.assertEquals("BLR1-014511", matrix.getSNP(3).getName());
+		Assert.assertEquals("11", matrix.getSNP(3).getChromosome());
+		Assert.assertEquals(118272286, matrix.getSNP(3).getPosition());
+		Assert.assertEquals(PackedGenotypeMatrix.MISSING, matrix.getCode(3, 4));
+		Assert.assertEquals(PackedGenotypeMatrix.HOMOZYGOUS_2, matrix.getCode(3, 5));
+		Assert.assertEquals(PackedGenotypeMatrix.HETEROZYGOUS, matrix.getCode(6, 0));
+		Assert.assertEquals(PackedGenotypeMatrix.HOMOZYGOUS_1, matrix.getCode(6, 3));
+		Assert.assertEquals("A", matrix.getAllele1(6, 0));
+		Assert.assertEquals("B", matrix.getAllele2(6, 0));
+	}
+
+	public void testOtherGenotype() throws IOException {
+		InputStream in = new ByteArrayInputStream("Name\tChr\tPosition\tS1\tS2\nrs1\t1\t100\tAB\t--\n".getBytes("UTF-8"));
+		final List<GTypeFileParser.SNPRecord> records = new ArrayList<GTypeFileParser.SNPRecord>();
+		PackedGenotypeMatrix matrix = new GTypeFileParser().parseMatrix(in, Selection.ALL, new GTypeFileParser.RecordListener() {
+			public void handleParsedRecord(GTypeFileParser.SNPRecord record) { records.add(record); }
+			public void handleBadRecordFormat(String line) { Assert.fail(line); }
+		});
+		Assert.assertEquals(GTypeFileParser.OTHER, records.get(0).getGenotypeCode(1));
+		Assert.assertEquals("--", records.get(0).getGenotype("S2"));
+		Assert.assertEquals(PackedGenotypeMatrix.HETEROZYGOUS, matrix.getCode(0, 0));
+		Assert.assertEquals(PackedGenotypeMatrix.MISSING, matrix.getCode(0, 1));
+	}
+
+	public void testDuplicateSampleNames() throws IOException {
+		InputStream in = new ByteArrayInputStream("Name\tChr\tPosition\tS1\tS2\tS1\nrs1\t1\t100\tAA\tAB\tBB\n".getBytes("UTF-8"));
+		final List<GTypeFileParser.SNPRecord> records = new ArrayList<GTypeFileParser.SNPRecord>();
+		new GTypeFileParser().parse(in, Selection.ALL, new GTypeFileParser.RecordListener() {
+			public void handleParsedRecord(GTypeFileParser.SNPRecord record) { records.add(record); }
+			public void handleBadRecordFormat(String line) { Assert.fail(line); }
+		});
+		GTypeFileParser.SNPRecord record = records.get(0);
+		Assert.assertEquals(Arrays.asList(new String[] { "S1", "S2", "S1" }), record.getSampleNames());
+		Assert.assertEquals(0, record.indexOf("S1"));
+		Assert.assertEquals("AA", record.getGenotype("S1"));
+		Assert.assertEquals("BB", record.getGenotype(2));
+	}
+
 	private static final class TestHelper implements GTypeFileParser.RecordListener {
 		private int numOfParsedRecords = 0;
 		private int numOfBadRecords = 0;
@@ -0,0 +1,129 @@
+package edu.uab.ssg.io.eigenstrat;
+
+import junit.framework.TestCase;
+import junit.framework.Assert;
+import java.util.*;
+import java.io.*;
+import edu.uab.ssg.model.snp.*;
+
+/**
+ * @author Jelai Wang
+ */
+
+public final class TestGENOParser extends TestCase {
+	public void testASCII() throws IOException {
+		InputStream in = getClass().getClassLoader().getResourceAsStream("edu/uab/ssg/io/eigenstrat/expected.geno");
+		TestHelper helper = new TestHelper();
+		new GENOParser().parse(in, helper);
+		Assert.assertEquals(2, helper.records.size());
+		Assert.assertEquals(0, helper.badLines.size());
+		Assert.assertEquals("291", helper.records.get(0).toString());
+		Assert.assertEquals(GENOParser.MISSING_VALUE, helper.records.get(0).getValue(1));
+		Assert.assertEquals("109", helper.records.get(1).toString());
+	}
+
+	public void testBadLine() throws IOException {
+		TestHelper helper = new TestHelper();
+		new GENOParser().parse(new ByteArrayInputStream("012\n0x2\n01\n210\n".getBytes("US-ASCII")), helper);
+		Assert.assertEquals(2, helper.records.size());
+		Assert.assertEquals(2, helper.badLines.size());
+		Assert.assertEquals("0x2", helper.badLines.get(0));
+	}
+
+	public void testPackedRoundTrip() throws IOException {
+		// Enough samples for a record longer than the minimum of 48 bytes.
+		int numberOfSamples = 250;
+		List<String> sampleIDs = new ArrayList<String>();
+		String[] a1 = new String[numberOfSamples], a2 = new String[numberOfSamples];
+		for (int i = 0; i < numberOfSamples; i++) {
+			sampleIDs.add("sample" + i);
+			a1[i] = i % 3 == 0 ? "G" : "A";
+			a2[i] = i % 2 == 0 ? "G" : "A";
+		}
+		a1[7] = a2[7] = null;
+		List<SNP> snps = new ArrayList<SNP>();
+		snps.add(new DefaultSNP("rs1", "chr1", 1000));
+		snps.add(new DefaultSNP("rs2", "chrX", 2000));
+		List<MarkerGenotypes> list = new ArrayList<MarkerGenotypes>();
+		list.add(new DefaultMarkerGenotypes(snps.get(0), null, a1, a2));
+		list.add(new DefaultMarkerGenotypes(snps.get(1), null, new String[numberOfSamples], new String[numberOfSamples]));
+
+		ByteArrayOutputStream packed = new ByteArrayOutputStream();
+		PackedGENOWriter packedWriter = new PackedGENOWriter(packed, sampleIDs, snps);
+		ByteArrayOutputStream ascii = new ByteArrayOutputStream();
+		GENOWriter asciiWriter = new GENOWriter(ascii);
+		for (int i = 0; i < list.size(); i++) {
+			packedWriter.write(list.get(i));
+			asciiWriter.write(list.get(i));
+		}
+		packedWriter.close();
+		asciiWriter.close();
+		Assert.assertEquals(3 * 63, packed.size()); // Header and two SNPs, 250 samples at four per byte.
+		Assert.assertTrue(new String(packed.toByteArray(), 0, 4, "US-ASCII").equals("GENO"));
+
+		TestHelper helper = new TestHelper();
+		GENOParser parser = new GENOParser();
+		parser.setExpectedIDs(sampleIDs, Arrays.asList(new String[] { "rs1", "rs2" }));
+		parser.parse(new ByteArrayInputStream(packed.toByteArray()), helper);
+		Assert.assertEquals(2, helper.records.size());
+		Assert.assertEquals(numberOfSamples, helper.records.get(0).getNumberOfSamples());
+		Assert.assertEquals(2, helper.records.get(0).getValue(0)); // G/G, and G is the reference allele.
+		Assert.assertEquals(0, helper.records.get(0).getValue(1)); // A/A
+		Assert.assertEquals(1, helper.records.get(0).getValue(2)); // A/G
+		Assert.assertEquals(GENOParser.MISSING_VALUE, helper.records.get(0).getValue(7));
+		Assert.assertEquals(GENOParser.MISSING_VALUE, helper.records.get(1).getValue(249));
+
+		// The packed and ASCII forms hold the same values.
+		String[] lines = ascii.toString().split("\n");
+		Assert.assertEquals(lines[0], helper.records.get(0).toString());
+		Assert.assertEquals(lines[1], helper.records.get(1).toString());
+
+		// A mismatched .ind file is caught by the header hash.
+		List<String> otherIDs = new ArrayList<String>(sampleIDs);
+		otherIDs.set(0, "other");
+		parser.setExpectedIDs(otherIDs, Arrays.asList(new String[] { "rs1", "rs2" }));
+		try {
+			parser.parse(new ByteArrayInputStream(packed.toByteArray()), new TestHelper());
+			Assert.fail();
+		}
+		catch (IOException e) {
+			Assert.assertTrue(true);
+		}
+	}
+
+	public void testHash() {
+		// hashit("ab") = 97 * 23 + 98, and hasharr of one ID is its hashit.
+		Assert.assertEquals(97 * 23 + 98, PackedGENOWriter.hash(Arrays.asList(new String[] { "ab" })));
+		Assert.assertEquals(((97 * 17) ^ 98), PackedGENOWriter.hash(Arrays.asList(new String[] { "a", "b" })));
+	}
+
+	public void testCompanionFiles() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		SNPWriter snpWriter = new SNPWriter(out);
+		SNP snp = new DefaultSNP("rs1", "chrX", 2000);
+		snpWriter.write(new DefaultMarkerGenotypes(snp, null, new String[] { null, "T" }, new String[] { null, "C" }));
+		snpWriter.write(snp, null, null);
+		snpWriter.close();
+		Assert.assertEquals("rs1\tX\t0.0\t2000\tT\tC\nrs1\tX\t0.0\t2000\tX\tX\n", out.toString());
+
+		out = new ByteArrayOutputStream();
+		INDWriter indWriter = new INDWriter(out);
+		indWriter.write("sample1", Sex.FEMALE, "Case");
+		indWriter.write("sample2", null, null);
+		indWriter.close();
+		Assert.assertEquals("sample1\tF\tCase\nsample2\tU\t???\n", out.toString());
+	}
+
+	private static final class TestHelper implements GENOParser.RecordListener {
+		private List<GENOParser.Record> records = new ArrayList<GENOParser.Record>();
+		private List<String> badLines = new ArrayList<String>();
+
+		public void handleParsedRecord(GENOParser.Record record) {
+			records.add(record);
+		}
+
+		public void handleBadRecordFormat(String line) {
+			badLines.add(line);
+		}
+	}
+}
@@ -37,6 +37,66 @@ public final class TestGENOWriter extends TestCase {
 		Assert.assertEquals(getExpectedOutput(), out.toString());
 	}
 
+	public void testBlock() throws IOException {
+		// An odd number of samples, more than fit in a word.
+		int numberOfSamples = 37;
+		List<String> sampleIDs = new ArrayList<String>();
+		String[] a1 = new String[numberOfSamples], a2 = new String[numberOfSamples];
+		for (int i = 0; i < numberOfSamples; i++) {
+			sampleIDs.add("sample" + i);
+			a1[i] = i % 3 == 0 ? "G" : "A";
+			a2[i] = i % 2 == 0 ? "G" : "A";
+		}
+		a1[5] = a2[5] = null;
+		List<SNP> snps = new ArrayList<SNP>();
+		PackedGenotypeMatrix block = new PackedGenotypeMatrix(sampleIDs);
+		for (int i = 0; i < 3; i++) {
+			SNP snp = new DefaultSNP("rs" + i, "1", 1000 * (i + 1));
+			snps.add(snp);
+			block.add(new DefaultMarkerGenotypes(snp, null, i == 2 ? new String[numberOfSamples] : a1, i == 2 ? new String[numberOfSamples] : a2));
+		}
+
+		// One SNP at a time and as a block, with the default reference alleles.
+		ByteArrayOutputStream expected = new ByteArrayOutputStream();
+		GENOWriter writer = new GENOWriter(expected);
+		for (int i = 0; i < 3; i++) {
+			writer.write(block.getMarkerGenotypes(i));
+		}
+		writer.close();
+		ByteArrayOutputStream actual = new ByteArrayOutputStream();
+		writer = new GENOWriter(actual);
+		writer.write(block, null);
+		writer.close();
+		Assert.assertEquals(expected.toString(), actual.toString());
+		String[] lines = actual.toString().split("\n");
+		Assert.assertEquals(3, lines.length);
+		Assert.assertEquals(numberOfSamples, lines[0].length());
+		Assert.assertTrue(lines[0].startsWith("201119"));
+
+		// A reference-allele table that counts the other allele, or one the SNP doesn't have.
+		actual = new ByteArrayOutputStream();
+		writer = new GENOWriter(actual);
+		writer.write(block, new String[] { "A", "C", null });
+		writer.close();
+		lines = actual.toString().split("\n");
+		Assert.assertTrue(lines[0].startsWith("021119"));
+		Assert.assertTrue(lines[1].startsWith("000009"));
+		Assert.assertTrue(lines[2].startsWith("999999"));
+
+		// The packed writer gives the same file either way.
+		ByteArrayOutputStream packedExpected = new ByteArrayOutputStream();
+		PackedGENOWriter packedWriter = new PackedGENOWriter(packedExpected, sampleIDs, snps);
+		for (int i = 0; i < 3; i++) {
+			packedWriter.write(block.getMarkerGenotypes(i));
+		}
+		packedWriter.close();
+		ByteArrayOutputStream packedActual = new ByteArrayOutputStream();
+		packedWriter = new PackedGENOWriter(packedActual, sampleIDs, snps);
+		packedWriter.write(block, null);
+		packedWriter.close();
+		Assert.assertTrue(Arrays.equals(packedExpected.toByteArray(), packedActual.toByteArray()));
+	}
+
 	private String getExpectedOutput() throws IOException {
 		InputStream in = getClass().getClassLoader().getResourceAsStream("edu/uab/ssg/io/eigenstrat/expected.geno");
 		StringBuilder builder = new StringBuilder();
@@ -43,6 +43,51 @@ public final class TestENTWriter extends TestCase {
 		Assert.assertEquals(getExpectedOutput(), out.toString());
 	}
 
+	public void testParallel() throws IOException {
+		// Enough samples for more than one batch of lines.
+		int numberOfSamples = 150;
+		List<String> sampleNames = new ArrayList<String>();
+		for (int i = 0; i < numberOfSamples; i++) {
+			sampleNames.add("sample" + i);
+		}
+		PackedGenotypeMatrix matrix = new PackedGenotypeMatrix(sampleNames);
+		for (int m = 0; m < 40; m++) {
+			String[] a1 = new String[numberOfSamples], a2 = new String[numberOfSamples];
+			for (int i = 0; i < numberOfSamples; i++) {
+				if ((i + m) % 11 == 0) continue; // Missing.
+				a1[i] = (i * (m + 1)) % 3 == 0 ? "T" : "C";
+				a2[i] = (i + m) % 4 == 0 ? "T" : "C";
+			}
+			matrix.add(new DefaultMarkerGenotypes(new DefaultSNP("rs" + m, "chr1", 100 + m), null, a1, a2));
+		}
+		ByteArrayOutputStream serial = new ByteArrayOutputStream();
+		new ENTWriter().write(matrix, serial, 1);
+		ByteArrayOutputStream parallel = new ByteArrayOutputStream();
+		new ENTWriter().write(matrix, parallel, 4);
+		Assert.assertEquals(serial.toString(), parallel.toString());
+
+		String[] lines = serial.toString().split("\n");
+		Assert.assertEquals(numberOfSamples + 1, lines.length);
+		Assert.assertEquals("150 40", lines[0]);
+		Assert.assertEquals("sample0 0 0 0 ", lines[1].substring(0, 14));
+		Assert.assertEquals(14 + 40, lines[1].length());
+		Assert.assertEquals('?', lines[1].charAt(14)); // Sample 0 is missing at rs0.
+		// At rs1, C is the major allele, so sample 1 (C/C) is 0, sample 3 (T/T) is 1 and sample 7 (C/T) is 2.
+		Assert.assertEquals('0', lines[2].charAt(15));
+		Assert.assertEquals('1', lines[4].charAt(15));
+		Assert.assertEquals('2', lines[8].charAt(15));
+	}
+
+	public void testTie() throws IOException {
+		// Equal counts of each allele; the allele later in alphabetical order is the minor allele.
+		List<String> sampleNames = Arrays.asList(new String[] { "s1", "s2" });
+		PackedGenotypeMatrix matrix = new PackedGenotypeMatrix(sampleNames);
+		matrix.add(new DefaultMarkerGenotypes(new DefaultSNP("rs1", "chr1", 100), null, new String[] { "G", "A" }, new String[] { "G", "A" }));
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		new ENTWriter().write(matrix, out, 2);
+		Assert.assertEquals("2 1\ns1 0 0 0 1\ns2 0 0 0 0\n", out.toString());
+	}
+
 	private String getExpectedOutput() throws IOException {
 		InputStream in = getClass().getClassLoader().getResourceAsStream("edu/uab/ssg/io/ent/expected.ent_gen");
 		StringBuilder builder = new StringBuilder();
@@ -4,6 +4,7 @@ import junit.framework.TestCase;
 import junit.framework.Assert;
 import java.io.*;
 import java.util.*;
+import edu.uab.ssg.model.snp.*;
 
 /**
  * @author Jelai Wang
@@ -18,6 +19,50 @@ public final class TestOUTParser extends TestCase {
 		Assert.assertEquals(2, helper.getNumberOfBadRecords());
 	}
 
+	public void testTruncatedFile() throws IOException {
+		String text = "BEGIN GENOTYPES\ns1  # subpop. label: 1\n0 1 1\n1 1 0\ns2  # subpop. label: 1\n0 1 1\n";
+		final List<String> parsed = new ArrayList<String>(), bad = new ArrayList<String>();
+		OUTParser.RecordListener listener = new OUTParser.RecordListener() {
+			public void handleParsedRecord(OUTParser.SampleRecord record) {
+				parsed.add(record.getSampleID());
+			}
+
+			public void handleBadRecordFormat(String sampleLine, String haplotype1Line, String haplotype2Line) {
+				bad.add(sampleLine);
+			}
+		};
+		new OUTParser().parse(new ByteArrayInputStream(text.getBytes("US-ASCII")), listener);
+		Assert.assertEquals(Arrays.asList(new String[] { "s1" }), parsed);
+		Assert.assertEquals(1, bad.size());
+
+		// No BEGIN GENOTYPES at all.
+		parsed.clear();
+		new OUTParser().parse(new ByteArrayInputStream("BEGIN COMMAND_LINE\n".getBytes("US-ASCII")), listener);
+		Assert.assertEquals(0, parsed.size());
+	}
+
+	public void testHaplotypeMatrix() throws IOException {
+		InputStream in = getClass().getClassLoader().getResourceAsStream("edu/uab/ssg/io/fastphase/test.out");
+		final PhasedHaplotypeMatrix matrix = new PhasedHaplotypeMatrix(19632);
+		new OUTParser().parse(in, new OUTParser.RecordListener() {
+			public void handleParsedRecord(OUTParser.SampleRecord record) {
+				matrix.add(record.getSampleID(), record.getHaplotype1(), record.getHaplotype2());
+			}
+
+			public void handleBadRecordFormat(String sampleLine, String haplotype1Line, String haplotype2Line) {
+			}
+		});
+		Assert.assertEquals(24, matrix.getNumberOfSamples());
+		Assert.assertEquals("HGDP00003", matrix.getSampleIDs().get(1));
+		Assert.assertEquals("1", matrix.getAllele(1, 0, 0));
+		Assert.assertEquals("0", matrix.getAllele(1, 1, 0));
+		Assert.assertEquals("0", matrix.getAllele(23, 0, 0));
+		Assert.assertEquals("1", matrix.getAllele(23, 1, 0));
+		Assert.assertEquals("0", matrix.getAllele(23, 1, 19631));
+		Assert.assertEquals("0", matrix.getFirstAllele(0)); // HGDP00001 carries 0 on both haplotypes.
+		Assert.assertEquals("1", matrix.getSecondAllele(0));
+	}
+
 	private static final class TestHelper implements OUTParser.RecordListener {
 		private int numOfParsedRecords = 0;
 		private int numOfBadRecords = 0;
@@ -51,6 +51,26 @@ public final class TestDATWriter extends TestCase {
 		writer.write(sample3);
 		writer.close();
 		Assert.assertEquals(getExpectedOutput(), out.toString());
+
+		// The same rows from a packed matrix.
+		List<Sample> samples = new ArrayList<Sample>();
+		samples.add(sample1);
+		samples.add(sample2);
+		samples.add(sample3);
+		PackedGenotypeMatrix matrix = PackedGenotypeMatrix.read(new SampleGenotypeSource(snps, samples));
+		out = new ByteArrayOutputStream();
+		writer = new DATWriter(snps, out);
+		writer.writeHeader();
+		writer.write(matrix, null, 2);
+		writer.close();
+		Assert.assertEquals(getExpectedOutput(), out.toString());
+
+		// Counting the other allele of snp1.
+		out = new ByteArrayOutputStream();
+		writer = new DATWriter(snps, out);
+		writer.write(matrix, new String[] { "T", null, null, null }, 1);
+		writer.close();
+		Assert.assertEquals("0\t1\tNA\t1", out.toString().split("\n")[0]);
 	}
 
 	private String getExpectedOutput() throws IOException {
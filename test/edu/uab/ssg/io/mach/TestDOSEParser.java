@@ -0,0 +1,40 @@
+package edu.uab.ssg.io.mach;
+
+import junit.framework.TestCase;
+import junit.framework.Assert;
+import java.io.*;
+import java.util.*;
+
+/**
+ * @author Jelai Wang
+ */
+
+public final class TestDOSEParser extends TestCase {
+	public void testExampleFile() throws IOException {
+		InputStream in = getClass().getClassLoader().getResourceAsStream("edu/uab/ssg/io/mach/mach1.out.dose");
+		final List<DOSEParser.IndividualRecord> records = new ArrayList<DOSEParser.IndividualRecord>();
+		final List<String> badLines = new ArrayList<String>();
+		new DOSEParser().parse(in, new DOSEParser.RecordListener() {
+			public void handleParsedRecord(DOSEParser.IndividualRecord record) {
+				records.add(record);
+			}
+
+			public void handleBadRecordFormat(String line) {
+				badLines.add(line);
+			}
+		});
+		Assert.assertEquals(3, records.size());
+		Assert.assertEquals(2, badLines.size());
+		DOSEParser.IndividualRecord record = records.get(0);
+		Assert.assertEquals("FAM1", record.getFamilyID());
+		Assert.assertEquals("IND1", record.getIndividualID());
+		Assert.assertEquals(4, record.getNumberOfMarkers());
+		Assert.assertEquals(1.998f, record.getDose(0), 0f);
+		Assert.assertEquals(1.013f, record.getDoses()[3], 0f);
+		Assert.assertEquals(2f, records.get(1).getDose(3), 0f);
+		// Exponents and a missing leading digit.
+		Assert.assertEquals(-0.0015f, records.get(2).getDose(0), 0f);
+		Assert.assertEquals(1f, records.get(2).getDose(1), 0f);
+		Assert.assertEquals(0.25f, records.get(2).getDose(3), 0f);
+	}
+}
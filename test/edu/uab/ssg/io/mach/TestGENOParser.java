@@ -32,6 +32,10 @@ public final class TestGENOParser extends TestCase {
 				Assert.assertEquals(7, genotypes.size());
 				Assert.assertEquals("A/A", genotypes.get(0));
 				Assert.assertEquals("A/G", genotypes.get(6));
+				Assert.assertEquals(7, record.getNumberOfGenotypes());
+				Assert.assertEquals("A", record.getAllele1(6));
+				Assert.assertEquals("G", record.getAllele2(6));
+				Assert.assertEquals((byte) 'G', record.getAllele2Code(6));
 			}
 			else if (numOfParsedRecords == 9) { // Last record.
 				Assert.assertEquals("FAM10", record.getFamilyID());
@@ -0,0 +1,63 @@
+package edu.uab.ssg.io.mach;
+
+import junit.framework.TestCase;
+import junit.framework.Assert;
+import java.io.*;
+
+/**
+ * @author Jelai Wang
+ */
+
+public final class TestHalfFloatCache extends TestCase {
+	public void testConversion() {
+		// Every half-precision value survives a round trip through float.
+		for (int i = 0; i < 0x10000; i++) {
+			short half = (short) i;
+			float value = HalfFloatCache.toFloat(half);
+			if (!Float.isNaN(value))
+				Assert.assertEquals(half, HalfFloatCache.toHalf(value));
+		}
+		Assert.assertEquals(1f, HalfFloatCache.toFloat(HalfFloatCache.toHalf(1f)), 0f);
+		Assert.assertEquals(65504f, HalfFloatCache.toFloat(HalfFloatCache.toHalf(65504f)), 0f);
+		Assert.assertTrue(Float.isInfinite(HalfFloatCache.toFloat(HalfFloatCache.toHalf(1e6f))));
+		Assert.assertEquals(0f, HalfFloatCache.toFloat(HalfFloatCache.toHalf(1e-10f)), 0f);
+		// Ties round to even: 1 + 2^-11 is halfway between 1 and 1 + 2^-10.
+		Assert.assertEquals(1f, HalfFloatCache.toFloat(HalfFloatCache.toHalf(1f + 1f / 2048)), 0f);
+		// Dosages keep three decimals.
+		for (int i = 0; i <= 2000; i++) {
+			float dose = i / 1000f;
+			Assert.assertEquals(dose, HalfFloatCache.toFloat(HalfFloatCache.toHalf(dose)), 0.0005f);
+		}
+	}
+
+	public void testCache() throws IOException {
+		File file = File.createTempFile("dose", ".hf16");
+		try {
+			HalfFloatCacheWriter writer = new HalfFloatCacheWriter(new FileOutputStream(file), 3);
+			writer.write(new float[] { 1.998f, 0.002f, 2f });
+			writer.write(new float[] { 0f, 1.5f, -0.25f });
+			try {
+				writer.write(new float[2]);
+				Assert.fail();
+			}
+			catch (IllegalArgumentException e) {
+				Assert.assertTrue(true);
+			}
+			writer.close();
+
+			HalfFloatCache cache = HalfFloatCache.open(file);
+			Assert.assertEquals(2, cache.getNumberOfRows());
+			Assert.assertEquals(3, cache.getNumberOfColumns());
+			float[] values = new float[3];
+			cache.read(0, values);
+			Assert.assertEquals(1.998f, values[0], 0.001f);
+			Assert.assertEquals(0.002f, values[1], 0.00001f);
+			Assert.assertEquals(1.5f, cache.get(1, 1), 0f);
+			Assert.assertEquals(-0.25f, cache.get(1, 2), 0f);
+			cache.close();
+		}
+		finally {
+			file.delete();
+		}
+	}
+}
@@ -0,0 +1,53 @@
+package edu.uab.ssg.io.mach;
+
+import junit.framework.TestCase;
+import junit.framework.Assert;
+import java.io.*;
+import java.util.*;
+
+/**
+ * @author Jelai Wang
+ */
+
+public final class TestMLINFOParser extends TestCase {
+	public void testExampleFile() throws IOException {
+		InputStream in = getClass().getClassLoader().getResourceAsStream("edu/uab/ssg/io/mach/mach1.out.mlinfo");
+		final List<MLINFOParser.MarkerRecord> records = new ArrayList<MLINFOParser.MarkerRecord>();
+		final List<String> badLines = new ArrayList<String>();
+		new MLINFOParser().parse(in, new MLINFOParser.RecordListener() {
+			public void handleParsedRecord(MLINFOParser.MarkerRecord record) {
+				records.add(record);
+			}
+
+			public void handleBadRecordFormat(String line) {
+				badLines.add(line);
+			}
+		});
+		Assert.assertEquals(2, records.size());
+		Assert.assertEquals(1, badLines.size());
+		MLINFOParser.MarkerRecord record = records.get(1);
+		Assert.assertEquals("rs2", record.getSNP());
+		Assert.assertEquals("G", record.getAllele1());
+		Assert.assertEquals("A", record.getAllele2());
+		Assert.assertEquals(0.7301f, record.getFrequency1(), 0f);
+		Assert.assertEquals(0.2699f, record.getMAF(), 0f);
+		Assert.assertEquals(0.9153f, record.getQuality(), 0f);
+		Assert.assertEquals(0.8407f, record.getRsq(), 0f);
+	}
+
+	public void testMissingColumn() throws IOException {
+		try {
+			new MLINFOParser().parse(new ByteArrayInputStream("SNP Al1 Al2 Freq1\n".getBytes("US-ASCII")), new MLINFOParser.RecordListener() {
+				public void handleParsedRecord(MLINFOParser.MarkerRecord record) {
+				}
+
+				public void handleBadRecordFormat(String line) {
+				}
+			});
+			Assert.fail();
+		}
+		catch (IOException e) {
+			Assert.assertTrue(true);
+		}
+	}
+}
@@ -0,0 +1,36 @@
+package edu.uab.ssg.io.mach;
+
+import junit.framework.TestCase;
+import junit.framework.Assert;
+import java.io.*;
+import java.util.*;
+
+/**
+ * @author Jelai Wang
+ */
+
+public final class TestMLPROBParser extends TestCase {
+	public void testExampleFile() throws IOException {
+		InputStream in = getClass().getClassLoader().getResourceAsStream("edu/uab/ssg/io/mach/mach1.out.mlprob");
+		final List<MLPROBParser.IndividualRecord> records = new ArrayList<MLPROBParser.IndividualRecord>();
+		final List<String> badLines = new ArrayList<String>();
+		new MLPROBParser().parse(in, new MLPROBParser.RecordListener() {
+			public void handleParsedRecord(MLPROBParser.IndividualRecord record) {
+				records.add(record);
+			}
+
+			public void handleBadRecordFormat(String line) {
+				badLines.add(line);
+			}
+		});
+		Assert.assertEquals(2, records.size());
+		Assert.assertEquals(1, badLines.size()); // An odd number of probabilities.
+		MLPROBParser.IndividualRecord record = records.get(1);
+		Assert.assertEquals("FAM2", record.getFamilyID());
+		Assert.assertEquals(3, record.getNumberOfMarkers());
+		Assert.assertEquals(0.012f, record.getHomozygousProbability(0), 0f);
+		Assert.assertEquals(0.975f, record.getHeterozygousProbability(0), 0f);
+		Assert.assertEquals(0.026f, record.getHeterozygousProbability(2), 0f);
+		Assert.assertEquals(6, record.getProbabilities().length);
+	}
+}
@@ -0,0 +1,111 @@
+package edu.uab.ssg.io.marchini_gwas;
+
+import junit.framework.TestCase;
+import junit.framework.Assert;
+import java.util.*;
+import java.util.concurrent.*;
+import java.io.*;
+import edu.uab.ssg.model.snp.*;
+
+/**
+ * @author Jelai Wang
+ */
+
+public final class TestConcurrentLegendBuilder extends TestCase {
+	public void testSmallExample() throws IOException {
+		List<SNP> snps = new ArrayList<SNP>();
+		snps.add(new DefaultSNP("snp1", "chr2", 1000));
+		snps.add(new DefaultSNP("snp2", "chr3", 2000));
+		snps.add(new DefaultSNP("snp3", "chr4", 3000));
+		snps.add(new DefaultSNP("snp4", "chr4", 4000));
+
+		ConcurrentLegendBuilder builder = new ConcurrentLegendBuilder(snps);
+		// snp1 is monomorphic.
+		builder.countAlleles(0, "AAAA".getBytes("US-ASCII"));
+		// snp2 is biallelic, counted in two columns and a row.
+		builder.countAlleles(1, "GA".getBytes("US-ASCII"));
+		builder.countAlleles(1, "A".getBytes("US-ASCII"));
+		// snp3 is triallelic.
+		builder.countAlleles(2, "GAC".getBytes("US-ASCII"));
+		// snp4 does not have a minor allele, but is biallelic.
+		builder.countAlleles(3, "GAG".getBytes("US-ASCII"));
+		builder.countHaplotype(new byte[] { 0, 'A', 0, 'A' });
+
+		Legend legend = builder.createMinorAlleleLegend();
+		Assert.assertEquals(3, legend.getSNPs().size());
+		Assert.assertEquals(1, builder.getBadSNPs().size());
+		Assert.assertEquals("snp3", builder.getBadSNPs().get(0).getName());
+		Assert.assertEquals(3, builder.getAllelesForBadSNP(2).size());
+		try { builder.getAllelesForBadSNP(1); Assert.fail(); } catch (IllegalArgumentException e) { Assert.assertTrue(true); }
+		try { builder.countAlleles(4, new byte[1]); Assert.fail(); } catch (IndexOutOfBoundsException e) { Assert.assertTrue(true); }
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		legend.write(out);
+		Assert.assertEquals(getExpectedOutput(), out.toString());
+	}
+
+	public void testUncountedSNP() {
+		List<SNP> snps = new ArrayList<SNP>();
+		snps.add(new DefaultSNP("snp1", "chr1", 1000));
+		snps.add(new DefaultSNP("snp2", "chr1", 2000));
+		ConcurrentLegendBuilder builder = new ConcurrentLegendBuilder(snps);
+		builder.countAlleles(1, new byte[] { 'T', 0 });
+		List<SNP> legendSNPs = builder.createMinorAlleleLegend().getSNPs();
+		Assert.assertEquals(1, legendSNPs.size());
+		Assert.assertEquals("snp2", legendSNPs.get(0).getName());
+	}
+
+	public void testConcurrentRows() throws Exception {
+		final int numberOfMarkers = 10000, numberOfSamples = 200;
+		List<SNP> snps = new ArrayList<SNP>();
+		for (int i = 0; i < numberOfMarkers; i++) {
+			snps.add(new DefaultSNP("snp" + i, "chr1", i + 1));
+		}
+		final ConcurrentLegendBuilder builder = new ConcurrentLegendBuilder(snps);
+		LegendBuilder expected = new LegendBuilder();
+		final List<byte[]> rows = new ArrayList<byte[]>();
+		Random random = new Random(7);
+		for (int s = 0; s < numberOfSamples; s++) {
+			byte[] alleles1 = new byte[numberOfMarkers], alleles2 = new byte[numberOfMarkers];
+			for (int i = 0; i < numberOfMarkers; i++) {
+				alleles1[i] = random.nextInt(10) == 0 ? 0 : (byte) (random.nextBoolean() ? 'C' : 'T');
+				alleles2[i] = random.nextBoolean() ? (byte) 'C' : (byte) 'T';
+				expected.countAllele(snps.get(i), alleles1[i] == 0 ? null : String.valueOf((char) alleles1[i]));
+				expected.countAllele(snps.get(i), String.valueOf((char) alleles2[i]));
+			}
+			rows.add(alleles1);
+			rows.add(alleles2);
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<Object>> futures = new ArrayList<Future<Object>>();
+			for (int s = 0; s < numberOfSamples; s++) {
+				final int sample = s;
+				futures.add(executor.submit(new Callable<Object>() {
+					public Object call() {
+						builder.countSample(rows.get(2 * sample), rows.get(2 * sample + 1));
+						return null;
+					}
+				}));
+			}
+			for (int i = 0; i < futures.size(); i++) {
+				futures.get(i).get();
+			}
+		}
+		finally {
+			executor.shutdownNow();
+		}
+		Assert.assertEquals(expected.createMinorAlleleLegend().toString(), builder.createMinorAlleleLegend().toString());
+		Assert.assertTrue(builder.getBadSNPs().isEmpty());
+	}
+
+	private String getExpectedOutput() throws IOException {
+		InputStream in = getClass().getClassLoader().getResourceAsStream("edu/uab/ssg/io/marchini_gwas/minor_allele.leg");
+		StringBuilder builder = new StringBuilder();
+		int ch = -1;
+		while ((ch = in.read()) != -1) {
+			builder.append((char) ch);
+		}
+		return builder.toString();
+	}
+}
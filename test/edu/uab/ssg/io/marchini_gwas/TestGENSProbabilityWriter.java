@@ -0,0 +1,93 @@
+package edu.uab.ssg.io.marchini_gwas;
+
+import junit.framework.TestCase;
+import junit.framework.Assert;
+import java.util.*;
+import java.io.*;
+import edu.uab.ssg.model.snp.*;
+
+/**
+ * @author Jelai Wang
+ */
+
+public final class TestGENSProbabilityWriter extends TestCase {
+	public void testRoundTrip() throws IOException {
+		final List<GENSParser.GenotypeRecord> records = new ArrayList<GENSParser.GenotypeRecord>();
+		GENSParser parser = new GENSParser();
+		parser.parse(getClass().getClassLoader().getResourceAsStream("edu/uab/ssg/io/marchini_gwas/test.gens"), new GENSParser.RecordListener() {
+			public void handleParsedRecord(GENSParser.GenotypeRecord record) { records.add(record); }
+			public void handleBadRecordFormat(String line) { Assert.fail(line); }
+		});
+		int numberOfSamples = records.get(0).getProbabilities().length / 3;
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		GENSProbabilityWriter writer = new GENSProbabilityWriter(numberOfSamples, GENSProbabilityWriter.DEFAULT_PRECISION, out);
+		for (Iterator<GENSParser.GenotypeRecord> it = records.iterator(); it.hasNext(); ) {
+			writer.write(it.next());
+		}
+		writer.close();
+		Assert.assertEquals(getExpectedOutput(), out.toString());
+
+		// The same records as one block of floats, on several threads.
+		List<SNP> snps = new ArrayList<SNP>();
+		String[] allelesA = new String[records.size()], allelesB = new String[records.size()];
+		float[] probabilities = new float[records.size() * numberOfSamples * 3];
+		for (int i = 0; i < records.size(); i++) {
+			GENSParser.GenotypeRecord record = records.get(i);
+			snps.add(new DefaultSNP(record.getName(), record.getChromosome(), record.getPosition()));
+			allelesA[i] = record.getAlleleA();
+			allelesB[i] = record.getAlleleB();
+			double[] values = record.getProbabilities();
+			for (int j = 0; j < values.length; j++) {
+				probabilities[i * values.length + j] = (float) values[j];
+			}
+		}
+		out = new ByteArrayOutputStream();
+		writer = new GENSProbabilityWriter(numberOfSamples, GENSProbabilityWriter.DEFAULT_PRECISION, out);
+		writer.write(snps, allelesA, allelesB, probabilities, 3);
+		writer.close();
+		Assert.assertEquals(getExpectedOutput(), out.toString());
+	}
+
+	public void testPrecision() throws IOException {
+		SNP snp = new DefaultSNP("rs1", "1", 100);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		GENSProbabilityWriter writer = new GENSProbabilityWriter(3, 1, out);
+		writer.write(snp, "A", "G", new double[] { 0.96, 0.04, 0, 0.25, 0.749, 0.001, 0.12, 0.35, 0.53 });
+		try { writer.write(snp, "A", "G", new double[] { 1, 0, 0 }); Assert.fail(); } catch (IllegalArgumentException e) { Assert.assertTrue(true); }
+		try { writer.write(snp, "A", "G", new double[] { 1, 0, 0, 1, 0, 0, 1.2, 0, 0 }); Assert.fail(); } catch (IllegalArgumentException e) { Assert.assertTrue(true); }
+		try { writer.write(snp, "A", "G", new double[] { 1, 0, 0, 1, 0, 0, Double.NaN, 0, 0 }); Assert.fail(); } catch (IllegalArgumentException e) { Assert.assertTrue(true); }
+		writer.close();
+		Assert.assertEquals("1 rs1 100 A G 1 0 0 0.3 0.7 0 0.1 0.4 0.5\n", out.toString());
+		try { new GENSProbabilityWriter(3, 0, out); Assert.fail(); } catch (IllegalArgumentException e) { Assert.assertTrue(true); }
+	}
+
+	public void testBadBlock() throws IOException {
+		// A bad probability in the last batch of a block must not leave the earlier batches written.
+		int numberOfSNPs = 100;
+		List<SNP> snps = new ArrayList<SNP>();
+		String[] allelesA = new String[numberOfSNPs], allelesB = new String[numberOfSNPs];
+		double[] probabilities = new double[numberOfSNPs * 3];
+		for (int i = 0; i < numberOfSNPs; i++) {
+			snps.add(new DefaultSNP("rs" + i, "1", i + 1));
+			allelesA[i] = "A";
+			allelesB[i] = "G";
+			probabilities[i * 3] = 1.;
+		}
+		probabilities[probabilities.length - 1] = -0.5;
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		GENSProbabilityWriter writer = new GENSProbabilityWriter(1, GENSProbabilityWriter.DEFAULT_PRECISION, out);
+		try { writer.write(snps, allelesA, allelesB, probabilities, 2); Assert.fail(); } catch (IllegalArgumentException e) { Assert.assertTrue(true); }
+		writer.close();
+		Assert.assertEquals(0, out.size());
+	}
+
+	private String getExpectedOutput() throws IOException {
+		InputStream in = getClass().getClassLoader().getResourceAsStream("edu/uab/ssg/io/marchini_gwas/test.gens");
+		StringBuilder builder = new StringBuilder();
+		int ch = -1;
+		while ((ch = in.read()) != -1) {
+			builder.append((char) ch);
+		}
+		return builder.toString();
+	}
+}
@@ -46,6 +46,44 @@ public final class TestHAPSWriter extends TestCase {
 		Assert.assertEquals(getExpectedOutput(), out.toString());
 	}
 
+	public void testStreaming() throws IOException {
+		SNP snp1 = new DefaultSNP("snp1", "chr2", 1000);
+		SNP snp2 = new DefaultSNP("snp2", "chr3", 2000);
+		SNP snp3 = new DefaultSNP("snp3", "chr4", 3000);
+		SampleBuilder builder1 = new SampleBuilder("sample1");
+		builder1.setGenotype(snp1, "A", "A", IlluminaStrand.TOP);
+		builder1.setGenotype(snp2, "C", "A", IlluminaStrand.TOP);
+		builder1.setGenotype(snp3, "C", "G", IlluminaStrand.TOP);
+		Sample sample1 = builder1.getInstance();
+		SampleBuilder builder2 = new SampleBuilder("sample2");
+		builder2.setGenotype(snp1, "A", "A", IlluminaStrand.TOP);
+		builder2.setGenotype(snp2, "C", "C", IlluminaStrand.TOP);
+		builder2.setGenotype(snp3, "C", "C", IlluminaStrand.TOP);
+		Sample sample2 = builder2.getInstance();
+		Legend legend = createLegend(new SNP[] { snp1, snp2, snp3 }, new Sample[] { sample1, sample2 });
+
+		CompiledLegend compiled = CompiledLegend.compile(legend);
+		Assert.assertSame(compiled, CompiledLegend.compile(compiled));
+		Assert.assertEquals(legend.toString(), compiled.toString());
+		Assert.assertEquals(1, compiled.indexOf(snp2));
+		Assert.assertEquals((byte) 'C', compiled.getAllele1Code(1));
+
+		// A Sample, then haplotypes as allele codes, with a missing allele on the third haplotype.
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		HAPSWriter writer = new HAPSWriter(compiled, out);
+		writer.write(sample1);
+		writer.write(new byte[] { 'A', 'C', 0 }, new byte[] { 'A', 'C', 'C' });
+		try {
+			writer.write(new byte[] { 'A', 'T', 'C' }, new byte[] { 'A', 'C', 'C' });
+			Assert.fail();
+		}
+		catch (RuntimeException e) {
+			Assert.assertTrue(true);
+		}
+		writer.close();
+		Assert.assertEquals("1 1 1\n1 0 0\n1 1 -\n1 1 1\n", out.toString());
+	}
+
 	private Legend createLegend(SNP[] snps, Sample[] samples) {
 		LegendBuilder builder = new LegendBuilder();
 		for (int i = 0; i < samples.length; i++) {
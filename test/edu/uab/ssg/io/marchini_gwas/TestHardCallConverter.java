@@ -0,0 +1,92 @@
+package edu.uab.ssg.io.marchini_gwas;
+
+import junit.framework.TestCase;
+import junit.framework.Assert;
+import java.util.*;
+import java.io.*;
+import edu.uab.ssg.model.snp.*;
+
+/**
+ * @author Jelai Wang
+ */
+
+public final class TestHardCallConverter extends TestCase {
+	public void testSmallExample() {
+		HardCallConverter converter = new HardCallConverter(Arrays.asList(new String[] { "s1", "s2", "s3" }), 0.9);
+		HardCallConverter.SNPMetrics metrics = converter.add(new DefaultSNP("rs1", "1", 100), "A", "G", new double[] { 0.5, 0.5, 0, 0, 0, 1, 0, 0, 0 });
+		Assert.assertEquals(1. / 3., metrics.getCallRate(), 1e-9);
+		Assert.assertEquals(1.25, metrics.getExpectedDosage(), 1e-9);
+		Assert.assertEquals(2., metrics.getCalledDosage(), 1e-9);
+		Assert.assertEquals(1. - 0.25 / 0.9375, metrics.getInfo(), 1e-9);
+		metrics = converter.add(new DefaultSNP("rs2", "1", 200), "C", "T", new double[] { 1, 0, 0, 1, 0, 0, 0.05, 0.95, 0 });
+		Assert.assertEquals(1., metrics.getCallRate(), 1e-9);
+		double theta = 0.95 / 3. / 2.;
+		Assert.assertEquals(1. - (0.95 - 0.95 * 0.95) / (2. * 3. * theta * (1. - theta)), metrics.getInfo(), 1e-9);
+		try { converter.add(new DefaultSNP("rs3", "1", 300), "C", "T", new double[3]); Assert.fail(); } catch (IllegalArgumentException e) { Assert.assertTrue(true); }
+
+		PackedGenotypeMatrix matrix = converter.getMatrix();
+		Assert.assertEquals(2, matrix.getNumberOfMarkers());
+		Assert.assertEquals(2, converter.getMetrics().size());
+		Assert.assertEquals("A", matrix.getFirstAllele(0));
+		Assert.assertEquals("G", matrix.getSecondAllele(0));
+		Assert.assertEquals(PackedGenotypeMatrix.MISSING, matrix.getCode(0, 0));
+		Assert.assertEquals(PackedGenotypeMatrix.HOMOZYGOUS_2, matrix.getCode(0, 1));
+		Assert.assertEquals(PackedGenotypeMatrix.MISSING, matrix.getCode(0, 2));
+		Assert.assertEquals(PackedGenotypeMatrix.HOMOZYGOUS_1, matrix.getCode(1, 0));
+		Assert.assertEquals(PackedGenotypeMatrix.HETEROZYGOUS, matrix.getCode(1, 2));
+		Assert.assertEquals("T", matrix.getAllele2(1, 2));
+	}
+
+	public void testMonomorphic() {
+		HardCallConverter converter = new HardCallConverter(Arrays.asList(new String[] { "s1", "s2" }), 0.);
+		HardCallConverter.SNPMetrics metrics = converter.add(new DefaultSNP("rs1", "1", 100), "A", "G", new double[] { 1, 0, 0, 1, 0, 0 });
+		Assert.assertEquals(0., metrics.getExpectedDosage(), 1e-9);
+		Assert.assertEquals(1., metrics.getInfo(), 1e-9);
+		metrics = converter.add(new DefaultSNP("rs2", "1", 200), "A", "G", new double[6]);
+		Assert.assertEquals(0., metrics.getCallRate(), 1e-9);
+		Assert.assertTrue(Double.isNaN(metrics.getInfo()));
+		Assert.assertTrue(Double.isNaN(metrics.getCalledDosage()));
+		PackedGenotypeMatrix matrix = converter.getMatrix();
+		Assert.assertEquals("A", matrix.getFirstAllele(0));
+		Assert.assertNull(matrix.getSecondAllele(0));
+		Assert.assertEquals(PackedGenotypeMatrix.HOMOZYGOUS_1, matrix.getCode(0, 1));
+		Assert.assertNull(matrix.getFirstAllele(1));
+		Assert.assertNull(matrix.getSecondAllele(1));
+	}
+
+	public void testExampleFile() throws IOException {
+		final List<GENSParser.GenotypeRecord> records = new ArrayList<GENSParser.GenotypeRecord>();
+		GENSParser parser = new GENSParser();
+		parser.parse(getClass().getClassLoader().getResourceAsStream("edu/uab/ssg/io/marchini_gwas/test.gens"), new GENSParser.RecordListener() {
+			public void handleParsedRecord(GENSParser.GenotypeRecord record) { records.add(record); }
+			public void handleBadRecordFormat(String line) { Assert.fail(line); }
+		});
+		int numberOfSamples = records.get(0).getGenotypeProbabilities().size();
+		List<String> sampleNames = new ArrayList<String>();
+		for (int i = 0; i < numberOfSamples; i++) {
+			sampleNames.add("sample" + i);
+		}
+		HardCallConverter converter = new HardCallConverter(sampleNames, 0.9);
+		for (int m = 0; m < records.size(); m++) {
+			GENSParser.GenotypeRecord record = records.get(m);
+			HardCallConverter.SNPMetrics metrics = converter.add(record);
+			Assert.assertEquals(record.getName(), metrics.getSNP().getName());
+			Assert.assertTrue(metrics.getInfo() <= 1.);
+			List<GENSParser.GenotypeProbabilities> probs = record.getGenotypeProbabilities();
+			int called = 0;
+			for (int s = 0; s < numberOfSamples; s++) {
+				GENSParser.Genotype genotype = probs.get(s).getGenotype(0.9);
+				PackedGenotypeMatrix matrix = converter.getMatrix();
+				if (genotype == null) {
+					Assert.assertNull(matrix.getAllele1(m, s));
+				}
+				else {
+					called++;
+					Assert.assertEquals(genotype.getAllele1(), matrix.getAllele1(m, s));
+					Assert.assertEquals(genotype.getAllele2(), matrix.getAllele2(m, s));
+				}
+			}
+			Assert.assertEquals((double) called / numberOfSamples, metrics.getCallRate(), 1e-9);
+		}
+	}
+}
@@ -0,0 +1,125 @@
+package edu.uab.ssg.io.marchini_gwas;
+
+import junit.framework.TestCase;
+import junit.framework.Assert;
+import java.util.*;
+import java.util.zip.GZIPOutputStream;
+import java.io.*;
+import edu.uab.ssg.model.snp.*;
+
+/**
+ * @author Jelai Wang
+ */
+
+public final class TestIndexedLegend extends TestCase {
+	public void testSmallExample() throws IOException {
+		IndexedLegend legend = new IndexedLegend(getClass().getClassLoader().getResourceAsStream("edu/uab/ssg/io/marchini_gwas/minor_allele.leg"), "chr2");
+		checkSmallExample(legend);
+	}
+
+	public void testGzipped() throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		OutputStream out = new GZIPOutputStream(bytes);
+		out.write(getExpectedOutput().getBytes("US-ASCII"));
+		out.close();
+		IndexedLegend legend = new IndexedLegend(new ByteArrayInputStream(bytes.toByteArray()), "chr2");
+		checkSmallExample(legend);
+	}
+
+	private void checkSmallExample(IndexedLegend legend) throws IOException {
+		List<SNP> snps = legend.getSNPs();
+		Assert.assertEquals(3, snps.size());
+		Assert.assertEquals(3, legend.getNumberOfSNPs());
+		SNP snp1 = snps.get(0);
+		Assert.assertEquals("chr2", snp1.getChromosome());
+		Assert.assertEquals("A", legend.getAllele0(snp1));
+		Assert.assertNull(legend.getAllele1(snp1));
+		Assert.assertEquals(0, legend.getAllele1Code(0));
+		SNP snp2 = snps.get(1);
+		Assert.assertEquals("A", legend.getAllele0(snp2));
+		Assert.assertEquals("G", legend.getAllele1(snp2));
+		Assert.assertEquals(2, legend.indexOf("snp4"));
+		Assert.assertEquals(2, legend.indexOfPosition(4000));
+		Assert.assertEquals(-1, legend.indexOf("snp3"));
+		Assert.assertEquals(-1, legend.indexOfPosition(3000));
+		Assert.assertEquals("A", legend.getAllele0(2));
+		Assert.assertEquals((byte) 'G', legend.getAllele1Code(2));
+		// Renamed SNP at the same location.
+		Assert.assertEquals("G", legend.getAllele1(new DefaultSNP("rs4", "chr2", 4000)));
+		Assert.assertNull(legend.getAllele1(new DefaultSNP("rs4", "chr3", 4000)));
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		legend.write(out);
+		Assert.assertEquals(getExpectedOutput(), out.toString());
+	}
+
+	public void testIMPUTE2Legend() throws IOException {
+		String input = "id position a0 a1 type AFR\n"
+			+ "rs1 100 A G Biallelic_SNP 0.1\n"
+			+ "rs2 200 T TA Biallelic_INDEL 0.2\n"
+			+ "rs3 200 C T Biallelic_SNP 0.3\n";
+		IndexedLegend legend = new IndexedLegend(new ByteArrayInputStream(input.getBytes("US-ASCII")), "22");
+		Assert.assertEquals(3, legend.getNumberOfSNPs());
+		Assert.assertEquals("TA", legend.getAllele1(1));
+		Assert.assertEquals(0, legend.getAllele1Code(1));
+		Assert.assertEquals((byte) 'T', legend.getAllele0Code(1));
+		Assert.assertEquals(1, legend.indexOfPosition(200));
+		Assert.assertEquals(2, legend.indexOf(new DefaultSNP("rs3", "22", 200)));
+		Assert.assertEquals("rs3", legend.getName(2));
+		Assert.assertEquals(200, legend.getPosition(2));
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		legend.write(out);
+		Assert.assertEquals("rs position a0 a1\nrs1 100 A G\nrs2 200 T TA\nrs3 200 C T\n", out.toString());
+	}
+
+	public void testRepeatedSNP() throws IOException {
+		// Multi-allelic site split over rows with the same id and position.
+		String input = "id position a0 a1\n. 100 A G\n. 100 A T\n";
+		IndexedLegend legend = new IndexedLegend(new ByteArrayInputStream(input.getBytes("US-ASCII")), "22");
+		String expected = "rs position a0 a1\n. 100 A G\n. 100 A T\n";
+		Assert.assertEquals(expected, legend.toString());
+		for (int threads = 1; threads <= 2; threads++) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			legend.writeTo(out, threads);
+			Assert.assertEquals(expected, out.toString());
+		}
+		CompiledLegend compiled = CompiledLegend.compile(legend);
+		Assert.assertEquals("T", compiled.getAllele1(1));
+		Assert.assertEquals(expected, compiled.toString());
+		IndexedLegend reread = new IndexedLegend(new ByteArrayInputStream(expected.getBytes("US-ASCII")), "22");
+		Assert.assertEquals("T", reread.getAllele1(1));
+	}
+
+	public void testLargeLegend() throws IOException {
+		StringBuilder input = new StringBuilder("id position a0 a1\n");
+		for (int i = 0; i < 10000; i++) {
+			input.append("rs").append(i / 2).append(' ').append(1000 + (i / 3) * 64).append(" A G\n");
+		}
+		IndexedLegend legend = new IndexedLegend(new ByteArrayInputStream(input.toString().getBytes("US-ASCII")), "1");
+		Assert.assertEquals(10000, legend.getNumberOfSNPs());
+		for (int i = 0; i < 10000; i++) {
+			Assert.assertEquals((i / 2) * 2, legend.indexOf("rs" + (i / 2)));
+			Assert.assertEquals((i / 3) * 3, legend.indexOfPosition(1000 + (i / 3) * 64));
+		}
+		Assert.assertEquals(-1, legend.indexOf("rs5000"));
+		Assert.assertEquals(-1, legend.indexOfPosition(1001));
+		Assert.assertEquals(-1, legend.indexOfPosition(0));
+	}
+
+	public void testBadInput() throws IOException {
+		try { new IndexedLegend(new ByteArrayInputStream("snp position a0 a1\n".getBytes("US-ASCII")), "1"); Assert.fail(); } catch (IllegalArgumentException e) { Assert.assertTrue(true); }
+		try { new IndexedLegend(new ByteArrayInputStream("rs position a0 a1\nrs1 100 A\n".getBytes("US-ASCII")), "1"); Assert.fail(); } catch (IllegalArgumentException e) { Assert.assertTrue(true); }
+		try { new IndexedLegend(new ByteArrayInputStream("rs position a0 a1\nrs1 1x0 A G\n".getBytes("US-ASCII")), "1"); Assert.fail(); } catch (IllegalArgumentException e) { Assert.assertTrue(true); }
+	}
+
+	private String getExpectedOutput() throws IOException {
+		InputStream in = getClass().getClassLoader().getResourceAsStream("edu/uab/ssg/io/marchini_gwas/minor_allele.leg");
+		StringBuilder builder = new StringBuilder();
+		int ch = -1;
+		while ((ch = in.read()) != -1) {
+			builder.append((char) ch);
+		}
+		return builder.toString();
+	}
+}
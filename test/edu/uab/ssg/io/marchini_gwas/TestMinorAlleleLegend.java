@@ -50,6 +50,23 @@ public final class TestMinorAlleleLegend extends TestCase {
 		Assert.assertEquals(getExpectedOutput(), out.toString());
 	}
 
+	public void testWriteTo() throws IOException {
+		LegendBuilder builder = new LegendBuilder();
+		StringBuilder expected = new StringBuilder("rs position a0 a1\n");
+		for (int i = 0; i < 10000; i++) {
+			SNP snp = new DefaultSNP("snp" + i, "chr1", i + 1);
+			builder.countAllele(snp, "C");
+			builder.countAllele(snp, "C");
+			if (i % 3 != 0) builder.countAllele(snp, "T");
+			expected.append("snp" + i + " " + (i + 1) + " C " + (i % 3 != 0 ? "T" : "-") + "\n");
+		}
+		Legend legend = builder.createMinorAlleleLegend();
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		((MinorAlleleLegend) legend).writeTo(out, 3);
+		Assert.assertEquals(expected.toString(), out.toString());
+		Assert.assertEquals(expected.toString(), legend.toString());
+	}
+
 	private String getExpectedOutput() throws IOException {
 		InputStream in = getClass().getClassLoader().getResourceAsStream("edu/uab/ssg/io/marchini_gwas/minor_allele.leg");
 		StringBuilder builder = new StringBuilder();
@@ -4,6 +4,8 @@ import junit.framework.TestCase;
 import junit.framework.Assert;
 import java.io.*;
 import java.util.List;
+import java.util.ArrayList;
+import edu.uab.ssg.io.ByteLineReader;
 import java.util.zip.GZIPInputStream;
 
 /**
@@ -61,4 +63,55 @@ public final class TestGeneInfoParser extends TestCase {
 		Assert.assertEquals("20101030", lastRecord.getModificationDate());
 		Assert.assertNotNull(firstRecord.toString());
 	}
+
+	public void testStreamingFilter() throws IOException {
+		InputStream in = getClass().getClassLoader().getResourceAsStream("edu/uab/ssg/io/ncbi/9606_subset.gene_info.gz");
+		GeneInfoParser parser = new GeneInfoParser();
+		final List<GeneInfoParser.Record> records = new ArrayList<GeneInfoParser.Record>();
+		final List<String> badRecords = new ArrayList<String>();
+		parser.parse(new GZIPInputStream(in), ByteLineReader.and(GeneInfoParser.createTaxIDFilter("9606"), GeneInfoParser.createTypeOfGeneFilter("protein-coding", "rRNA")), new GeneInfoParser.RecordListener() {
+			public void handleParsedRecord(GeneInfoParser.Record record) {
+				records.add(record);
+			}
+
+			public void handleBadRecordFormat(String line) {
+				badRecords.add(line);
+			}
+		});
+		Assert.assertEquals(21767 + 22, records.size());
+		Assert.assertEquals(0, badRecords.size());
+		GeneInfoParser.Record firstRecord = records.get(0);
+		Assert.assertEquals("A1BG", firstRecord.getSymbol());
+		Assert.assertEquals("HYST2477", firstRecord.getSynonyms().get(4));
+		Assert.assertEquals("HPRD:00726", firstRecord.getdbXrefs().get(3));
+
+		// No mouse genes in this file.
+		in = getClass().getClassLoader().getResourceAsStream("edu/uab/ssg/io/ncbi/9606_subset.gene_info.gz");
+		records.clear();
+		parser.parse(new GZIPInputStream(in), GeneInfoParser.createTaxIDFilter("10090"), new GeneInfoParser.RecordListener() {
+			public void handleParsedRecord(GeneInfoParser.Record record) {
+				records.add(record);
+			}
+
+			public void handleBadRecordFormat(String line) {
+			}
+		});
+		Assert.assertEquals(0, records.size());
+	}
+
+	public void testBadRecordFormat() throws IOException {
+		String text = "#Format: tax_id GeneID Symbol\n9606\t1\tA1BG\n";
+		final List<String> badRecords = new ArrayList<String>();
+		new GeneInfoParser().parse(new ByteArrayInputStream(text.getBytes("UTF-8")), ByteLineReader.ACCEPT_ALL, new GeneInfoParser.RecordListener() {
+			public void handleParsedRecord(GeneInfoParser.Record record) {
+				Assert.fail();
+			}
+
+			public void handleBadRecordFormat(String line) {
+				badRecords.add(line);
+			}
+		});
+		Assert.assertEquals(1, badRecords.size());
+		Assert.assertEquals("9606\t1\tA1BG", badRecords.get(0));
+	}
 }
@@ -4,6 +4,9 @@ import junit.framework.TestCase;
 import junit.framework.Assert;
 import java.io.*;
 import java.util.List;
+import java.util.ArrayList;
+import java.util.Arrays;
+import edu.uab.ssg.io.ByteLineReader;
 import java.util.zip.GZIPInputStream;
 
 /**
@@ -99,4 +102,57 @@ public final class TestSeqGeneMdParser extends TestCase {
 		Assert.assertEquals("-", lastRecord.getTranscript());
 		Assert.assertEquals("", lastRecord.getEvidenceCode());
 	}
+
+	public void testStreaming() throws IOException {
+		InputStream in = getClass().getClassLoader().getResourceAsStream("edu/uab/ssg/io/ncbi/test-seq_gene.md");
+		SeqGeneMdParser parser = new SeqGeneMdParser();
+		final List<String> chromosomes = new ArrayList<String>();
+		final List<SeqGeneMdParser.Record> records = new ArrayList<SeqGeneMdParser.Record>();
+		final List<String> badRecords = new ArrayList<String>();
+		SeqGeneMdParser.ChromosomeListener listener = new SeqGeneMdParser.ChromosomeListener() {
+			public void handleChromosome(String chromosome, List<SeqGeneMdParser.Record> group) {
+				chromosomes.add(chromosome);
+				records.addAll(group);
+			}
+
+			public void handleBadRecordFormat(String line) {
+				badRecords.add(line);
+			}
+		};
+		parser.parse(in, SeqGeneMdParser.createFeatureFilter("GENE", "GRCh37.p2-Primary Assembly"), listener);
+		Assert.assertEquals(Arrays.asList(new String[] { "1", "Y" }), chromosomes);
+		Assert.assertEquals(6, records.size());
+		for (int i = 0; i < records.size(); i++) {
+			Assert.assertEquals("GENE", records.get(i).getFeatureType());
+			Assert.assertEquals("GRCh37.p2-Primary Assembly", records.get(i).getGroupLabel());
+		}
+		Assert.assertEquals(0, badRecords.size());
+
+		// Restrict to a region of chromosome Y.
+		SeqGeneMdParser.Record last = records.get(records.size() - 1);
+		in = getClass().getClassLoader().getResourceAsStream("edu/uab/ssg/io/ncbi/test-seq_gene.md");
+		chromosomes.clear();
+		records.clear();
+		parser.parse(in, ByteLineReader.and(SeqGeneMdParser.createFeatureFilter("GENE", "GRCh37.p2-Primary Assembly"), SeqGeneMdParser.createRegionFilter("Y", last.getChrStop(), last.getChrStop() + 1000)), listener);
+		Assert.assertEquals(Arrays.asList(new String[] { "Y" }), chromosomes);
+		Assert.assertEquals(last.toString(), records.get(records.size() - 1).toString());
+		for (int i = 0; i < records.size(); i++) {
+			Assert.assertTrue(records.get(i).getChrStop() >= last.getChrStop());
+		}
+	}
+
+	public void testBadRecordFormat() throws IOException {
+		String text = "9606\t1\tbad\t2038\t+\tNW_001838563.2\t3842\t5164\t-\tLOC100131754\tGeneID:100131754\tGENE\tHuRef-Primary Assembly\t-\t\n";
+		final List<String> badRecords = new ArrayList<String>();
+		new SeqGeneMdParser().parse(new ByteArrayInputStream(text.getBytes("UTF-8")), ByteLineReader.ACCEPT_ALL, new SeqGeneMdParser.ChromosomeListener() {
+			public void handleChromosome(String chromosome, List<SeqGeneMdParser.Record> group) {
+				Assert.fail();
+			}
+
+			public void handleBadRecordFormat(String line) {
+				badRecords.add(line);
+			}
+		});
+		Assert.assertEquals(1, badRecords.size());
+	}
 }
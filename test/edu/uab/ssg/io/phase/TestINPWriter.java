@@ -36,6 +36,41 @@ public final class TestINPWriter extends TestCase {
 		Assert.assertEquals(getExpectedOutput(), out.toString());
 	}
 
+	public void testStreaming() throws IOException {
+		List<SNP> snps = new ArrayList<SNP>();
+		snps.add(new DefaultSNP("snp1", "chr3", 1000));
+		snps.add(new DefaultSNP("snp2", "chr3", 2000));
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		INPWriter writer = new INPWriter(snps, 3, out);
+		String[] alleles1 = new String[2], alleles2 = new String[2];
+		alleles1[0] = "A"; alleles2[0] = "A"; alleles1[1] = "C"; alleles2[1] = "G";
+		writer.write("sample1", alleles1, alleles2);
+		alleles1[0] = "A"; alleles2[0] = "T"; alleles1[1] = "G"; alleles2[1] = "G";
+		writer.write("sample2", alleles1, alleles2);
+		SampleBuilder b3 = new SampleBuilder("sample3");
+		b3.setGenotype(snps.get(0), "T", "A", IlluminaStrand.TOP);
+		Sample sample3 = b3.getInstance();
+		writer.write(sample3);
+		try {
+			writer.write(sample3);
+			Assert.fail();
+		}
+		catch (IllegalStateException e) {
+			Assert.assertTrue(true);
+		}
+		writer.close();
+		Assert.assertEquals(getExpectedOutput(), out.toString());
+
+		writer = new INPWriter(snps, 1, new ByteArrayOutputStream());
+		try {
+			writer.close();
+			Assert.fail();
+		}
+		catch (IllegalStateException e) {
+			Assert.assertTrue(true);
+		}
+	}
+
 	private String getExpectedOutput() throws IOException {
 		InputStream in = getClass().getClassLoader().getResourceAsStream("edu/uab/ssg/io/phase/expected.inp");
 		StringBuilder builder = new StringBuilder();
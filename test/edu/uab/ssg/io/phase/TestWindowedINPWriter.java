@@ -0,0 +1,137 @@
+package edu.uab.ssg.io.phase;
+
+import junit.framework.TestCase;
+import junit.framework.Assert;
+import java.util.*;
+import java.io.*;
+import edu.uab.ssg.model.snp.*;
+
+/**
+ * @author Jelai Wang
+ */
+
+public final class TestWindowedINPWriter extends TestCase {
+	public void testMarkers() throws IOException {
+		File directory = createDirectory();
+		try {
+			ByteArrayOutputStream manifest = new ByteArrayOutputStream();
+			WindowedINPWriter writer = new WindowedINPWriter(4, 2, WindowedINPWriter.Unit.MARKERS);
+			Assert.assertEquals(5, writer.write(createSource(), directory, "test", manifest, 3));
+			String[] lines = manifest.toString().split("\n");
+			Assert.assertEquals(5, lines.length);
+			Assert.assertEquals("test_chr1_1.inp\tchr1\t100\t400\trs0\trs3\t4", lines[0]);
+			Assert.assertEquals("test_chr1_4.inp\tchr1\t700\t1000\trs6\trs9\t4", lines[3]); // The window of rs8 and rs9 is dropped.
+			Assert.assertEquals("test_chr2_1.inp\tchr2\t50\t70\trs10\trs12\t3", lines[4]);
+
+			String expected = "2\n4\nP 300 400 500 600\nSSSS\nsample1\nA C A C\nA C A C\nsample2\nC ? C C\nC ? C C\n";
+			Assert.assertEquals(expected, read(new File(directory, "test_chr1_2.inp")));
+		}
+		finally {
+			delete(directory);
+		}
+	}
+
+	public void testBasePairs() throws IOException {
+		File directory = createDirectory();
+		try {
+			ByteArrayOutputStream manifest = new ByteArrayOutputStream();
+			// Windows start at 100, 300, 500, ... on chr1 and 50 on chr2.
+			WindowedINPWriter writer = new WindowedINPWriter(250, 50, WindowedINPWriter.Unit.BASE_PAIRS);
+			Assert.assertEquals(6, writer.write(createSource(), directory, "test", manifest, 1));
+			String[] lines = manifest.toString().split("\n");
+			Assert.assertEquals("test_chr1_1.inp\tchr1\t100\t300\trs0\trs2\t3", lines[0]);
+			Assert.assertEquals("test_chr1_5.inp\tchr1\t900\t1000\trs8\trs9\t2", lines[4]);
+			Assert.assertEquals("test_chr2_1.inp\tchr2\t50\t70\trs10\trs12\t3", lines[5]);
+		}
+		finally {
+			delete(directory);
+		}
+	}
+
+	public void testUnsorted() throws IOException {
+		List<MarkerGenotypes> list = new ArrayList<MarkerGenotypes>();
+		list.add(new DefaultMarkerGenotypes(new DefaultSNP("rs1", "chr1", 200), null, new String[] { "A" }, new String[] { "A" }));
+		list.add(new DefaultMarkerGenotypes(new DefaultSNP("rs2", "chr1", 100), null, new String[] { "A" }, new String[] { "A" }));
+		File directory = createDirectory();
+		try {
+			new WindowedINPWriter(2, 0, WindowedINPWriter.Unit.MARKERS).write(new ListSource(Arrays.asList(new String[] { "sample1" }), list), directory, "test", new ByteArrayOutputStream(), 1);
+			Assert.fail();
+		}
+		catch (IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+		finally {
+			delete(directory);
+		}
+	}
+
+	public void testChromosomeAgain() throws IOException {
+		List<MarkerGenotypes> list = new ArrayList<MarkerGenotypes>();
+		list.add(new DefaultMarkerGenotypes(new DefaultSNP("rs1", "chr1", 100), null, new String[] { "A" }, new String[] { "A" }));
+		list.add(new DefaultMarkerGenotypes(new DefaultSNP("rs2", "chr2", 100), null, new String[] { "A" }, new String[] { "A" }));
+		list.add(new DefaultMarkerGenotypes(new DefaultSNP("rs3", "chr1", 200), null, new String[] { "A" }, new String[] { "A" }));
+		File directory = createDirectory();
+		try {
+			new WindowedINPWriter(2, 0, WindowedINPWriter.Unit.MARKERS).write(new ListSource(Arrays.asList(new String[] { "sample1" }), list), directory, "test", new ByteArrayOutputStream(), 1);
+			Assert.fail();
+		}
+		catch (IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+		finally {
+			delete(directory);
+		}
+	}
+
+	// Ten markers on chr1 at 100, 200, ..., 1000 and three on chr2 at 50, 60, 70.
+	private GenotypeSource createSource() {
+		List<MarkerGenotypes> list = new ArrayList<MarkerGenotypes>();
+		for (int i = 0; i < 13; i++) {
+			SNP snp = i < 10 ? new DefaultSNP("rs" + i, "chr1", 100 * (i + 1)) : new DefaultSNP("rs" + i, "chr2", 50 + 10 * (i - 10));
+			String a = i % 2 == 0 ? "A" : "C";
+			String b = i == 3 ? null : "C";
+			list.add(new DefaultMarkerGenotypes(snp, null, new String[] { a, b }, new String[] { a, b }));
+		}
+		return new ListSource(Arrays.asList(new String[] { "sample1", "sample2" }), list);
+	}
+
+	private static File createDirectory() throws IOException {
+		File directory = File.createTempFile("windows", "");
+		directory.delete();
+		directory.mkdir();
+		return directory;
+	}
+
+	private static void delete(File directory) {
+		File[] files = directory.listFiles();
+		for (int i = 0; i < files.length; i++) {
+			files[i].delete();
+		}
+		directory.delete();
+	}
+
+	private static String read(File file) throws IOException {
+		InputStream in = new FileInputStream(file);
+		StringBuilder builder = new StringBuilder();
+		int ch = -1;
+		while ((ch = in.read()) != -1) {
+			builder.append((char) ch);
+		}
+		in.close();
+		return builder.toString();
+	}
+
+	private static final class ListSource implements GenotypeSource {
+		private List<String> sampleNames;
+		private Iterator<MarkerGenotypes> it;
+
+		private ListSource(List<String> sampleNames, List<MarkerGenotypes> list) {
+			this.sampleNames = sampleNames;
+			this.it = list.iterator();
+		}
+
+		public List<String> getSampleNames() { return sampleNames; }
+		public MarkerGenotypes next() { return it.hasNext() ? it.next() : null; }
+		public void close() {}
+	}
+}
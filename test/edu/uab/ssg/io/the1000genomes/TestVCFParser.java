@@ -3,7 +3,8 @@ package edu.uab.ssg.io.the1000genomes;
 import junit.framework.TestCase;
 import junit.framework.Assert;
 import java.io.*;
-import java.util.List;
+import java.util.*;
+import edu.uab.ssg.io.Selection;
 
 /**
  * @author Jelai Wang
@@ -103,6 +104,28 @@ public final class TestVCFParser extends TestCase {
 		Assert.assertEquals(0, helper.getNumberOfBadRecords());
 	}
 
+	public void testSelection() throws IOException {
+		InputStream in = getClass().getClassLoader().getResourceAsStream("edu/uab/ssg/io/the1000genomes/example.vcf");
+		Selection selection = new Selection(Collections.singleton("NA00002"), Collections.singleton("microsat1")).withRegion("20", 14000, 20000);
+		final List<VCFParser.VariantRecord> records = new ArrayList<VCFParser.VariantRecord>();
+		TestHelper helper = new TestHelper() {
+			public void handleParsedRecord(VCFParser.VariantRecord record) {
+				records.add(record);
+				super.handleParsedRecord(record);
+			}
+		};
+		new VCFParser().parse(in, selection, helper);
+		Assert.assertEquals(0, helper.getNumberOfBadRecords());
+		Assert.assertEquals(3, records.size());
+		Assert.assertEquals(14370, records.get(0).getPosition());
+		Assert.assertEquals(17330, records.get(1).getPosition());
+		Assert.assertEquals("microsat1", records.get(2).getID());
+		Assert.assertEquals(Collections.singletonList("NA00002"), records.get(0).getSamples());
+		Assert.assertEquals("1", records.get(0).getAllele1("NA00002"));
+		Assert.assertEquals("0", records.get(0).getAllele2("NA00002"));
+		try { records.get(0).getAllele1("NA00001"); Assert.fail(); } catch (IllegalArgumentException e) { Assert.assertTrue(true); }
+	}
+
 	private static class TestHelper implements VCFParser.RecordListener {
 		protected int numOfParsedRecords = 0;
 		protected int numOfBadRecords = 0;
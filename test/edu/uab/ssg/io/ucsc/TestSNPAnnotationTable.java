@@ -0,0 +1,157 @@
+package edu.uab.ssg.io.ucsc;
+
+import junit.framework.TestCase;
+import junit.framework.Assert;
+import java.io.*;
+import java.util.*;
+
+/**
+ * @author Jelai Wang
+ */
+
+public final class TestSNPAnnotationTable extends TestCase {
+	public void testExampleFile() throws IOException {
+		SNPAnnotationTable table = build(getClass().getClassLoader().getResourceAsStream("edu/uab/ssg/io/ucsc/test.txt"), new ArrayList<String>());
+		checkExampleFile(table);
+	}
+
+	public void testMap() throws IOException {
+		SNPAnnotationTable table = build(getClass().getClassLoader().getResourceAsStream("edu/uab/ssg/io/ucsc/test.txt"), new ArrayList<String>());
+		File file = File.createTempFile("snp", ".tbl");
+		try {
+			table.writeTo(file);
+			checkExampleFile(SNPAnnotationTable.map(file));
+		}
+		finally {
+			file.delete();
+		}
+	}
+
+	private void checkExampleFile(SNPAnnotationTable table) {
+		Assert.assertEquals(10, table.getNumberOfRows());
+		SNPAnnotationParser.SNPRecord record = table.getRecord(0);
+		Assert.assertEquals("chr1", record.getChrom());
+		Assert.assertEquals(10433, record.getChromStart());
+		Assert.assertEquals(10433, record.getChromEnd());
+		Assert.assertEquals("rs56289060", record.getName());
+		Assert.assertEquals("+", record.getStrand());
+		Assert.assertEquals("-/C", record.getObserved());
+		Assert.assertEquals("genomic", record.getMolType());
+		Assert.assertEquals("insertion", record.getSNPClass());
+		Assert.assertEquals("unknown", record.getValid());
+		Assert.assertEquals("near-gene-5", record.getFunc());
+		Assert.assertEquals("between", record.getLocType());
+
+		int row = table.findRow(56053134L);
+		Assert.assertEquals(9, row);
+		Assert.assertEquals("chrY", table.getChrom(row));
+		Assert.assertEquals(59362673, table.getChromStart(row));
+		Assert.assertEquals(59362674, table.getChromEnd(row));
+		Assert.assertEquals("A/G", table.getObserved(row));
+		Assert.assertEquals(-1, table.getNextRowWithSameName(row));
+		Assert.assertEquals(4, table.findRow("rs10218492"));
+		Assert.assertEquals("by-cluster", table.getValid(4));
+		Assert.assertEquals(-1, table.findRow(1L));
+		Assert.assertEquals(-1, table.findRow("rs1"));
+
+		int[] rows = table.findRows("chrY", 59362316, 59362317);
+		Assert.assertEquals(2, rows.length);
+		Assert.assertEquals("rs7341970", table.getName(rows[0]));
+		Assert.assertEquals("rs74957741", table.getName(rows[1]));
+		Assert.assertEquals("-", table.getStrand(rows[1]));
+		Assert.assertEquals(5, table.findRows("chr1", 0, Integer.MAX_VALUE).length);
+		Assert.assertEquals(0, table.findRows("chr1", 10434, 10491).length);
+		Assert.assertEquals(0, table.findRows("chr2", 0, Integer.MAX_VALUE).length);
+	}
+
+	public void testUnsortedInput() throws IOException {
+		StringBuilder builder = new StringBuilder();
+		builder.append(line("chrY", 200, "rs5")).append('\n');
+		builder.append(line("chr10", 100, "rs4")).append('\n');
+		builder.append(line("chr2", 300, "rs5")).append('\n');
+		builder.append("bad\tline\n");
+		builder.append(line("chr2", 100, "ss7")).append('\n');
+		builder.append(line("chr2", 100, "rs6")).append('\n');
+		List<String> badLines = new ArrayList<String>();
+		SNPAnnotationTable table = build(new ByteArrayInputStream(builder.toString().getBytes("UTF-8")), badLines);
+		Assert.assertEquals(1, badLines.size());
+		Assert.assertEquals("bad\tline", badLines.get(0));
+		Assert.assertEquals(5, table.getNumberOfRows());
+
+		// Natural chromosome order, then position, then input order.
+		String[] names = { "ss7", "rs6", "rs5", "rs4", "rs5" };
+		String[] chroms = { "chr2", "chr2", "chr2", "chr10", "chrY" };
+		for (int i = 0; i < names.length; i++) {
+			Assert.assertEquals(names[i], table.getName(i));
+			Assert.assertEquals(chroms[i], table.getChrom(i));
+		}
+		Assert.assertEquals(-1L, table.getRsNumber(0));
+		Assert.assertEquals(0, table.findRow("ss7"));
+		Assert.assertEquals(2, table.findRow(5L));
+		Assert.assertEquals(4, table.getNextRowWithSameName(2));
+		Assert.assertEquals(-1, table.getNextRowWithSameName(4));
+		Assert.assertEquals(2, table.findRows("chr2", 100, 101).length);
+	}
+
+	public void testChromosomeAliases() throws IOException {
+		StringBuilder builder = new StringBuilder();
+		builder.append(line("chr2", 300, "ss1")).append('\n');
+		builder.append(line("2", 100, "ss2")).append('\n');
+		builder.append(line("chr2", 200, "ss1")).append('\n');
+		builder.append(line("chrX", 100, "rs1")).append('\n');
+		SNPAnnotationTable table = build(new ByteArrayInputStream(builder.toString().getBytes("UTF-8")), new ArrayList<String>());
+		// One run of rows for chromosome 2, under the first name seen.
+		for (int i = 0; i < 3; i++) {
+			Assert.assertEquals("chr2", table.getChrom(i));
+		}
+		Assert.assertEquals(3, table.findRows("2", 0, Integer.MAX_VALUE).length);
+		Assert.assertEquals(3, table.findRows("chr2", 0, Integer.MAX_VALUE).length);
+		Assert.assertEquals(1, table.findRows("23", 0, Integer.MAX_VALUE).length);
+		Assert.assertEquals(0, table.findRow("ss2"));
+		Assert.assertEquals(1, table.findRow("ss1"));
+		File file = File.createTempFile("snp", ".tbl");
+		try {
+			table.writeTo(file);
+			SNPAnnotationTable mapped = SNPAnnotationTable.map(file);
+			Assert.assertEquals(1, mapped.findRow("ss1"));
+			Assert.assertEquals(3, mapped.findRows("2", 0, Integer.MAX_VALUE).length);
+		}
+		finally {
+			file.delete();
+		}
+	}
+
+	public void testManyValues() throws IOException {
+		// Enough distinct values to need two-byte codes.
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < 300; i++) {
+			builder.append(line("chr1", i, "rs" + i).replace("A/G", "A/G" + i)).append('\n');
+		}
+		SNPAnnotationTable table = build(new ByteArrayInputStream(builder.toString().getBytes("UTF-8")), new ArrayList<String>());
+		File file = File.createTempFile("snp", ".tbl");
+		try {
+			table.writeTo(file);
+			SNPAnnotationTable mapped = SNPAnnotationTable.map(file);
+			for (int i = 0; i < 300; i++) {
+				Assert.assertEquals("A/G" + i, table.getObserved(i));
+				Assert.assertEquals("A/G" + i, mapped.getObserved(i));
+				Assert.assertEquals(i, mapped.findRow((long) i));
+			}
+		}
+		finally {
+			file.delete();
+		}
+	}
+
+	private static String line(String chrom, int chromStart, String name) {
+		return "585\t" + chrom + "\t" + chromStart + "\t" + (chromStart + 1) + "\t" + name + "\t0\t+\tA\tA\tA/G\tgenomic\tsingle\tunknown\t0\t0\tunknown\texact\t1";
+	}
+
+	private static SNPAnnotationTable build(InputStream in, final List<String> badLines) throws IOException {
+		return SNPAnnotationTable.build(in, new SNPAnnotationTable.BadRecordFormatListener() {
+			public void handleBadRecordFormat(String line) {
+				badLines.add(line);
+			}
+		});
+	}
+}
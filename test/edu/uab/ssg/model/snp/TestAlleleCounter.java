@@ -90,4 +90,17 @@ public final class TestAlleleCounter extends TestCase {
 		Assert.assertTrue(counter.isBiallelic());
 		Assert.assertFalse(counter.isMonomorphic());
 	}
+
+	public void testBulk() {
+		AlleleCounter counter = new AlleleCounter();
+		counter.addAllele("G", 3);
+		counter.addAllele("A", 0);
+		counter.addAllele("A", 5);
+		counter.addAllele(null, 2);
+		Assert.assertEquals(3, counter.getFrequency("G"));
+		Assert.assertEquals(5, counter.getFrequency("A"));
+		Assert.assertEquals(2, counter.getNumberOfMissingValues());
+		Assert.assertEquals("G", counter.getMinorAllele());
+		Assert.assertTrue(counter.isBiallelic());
+	}
 }
@@ -0,0 +1,82 @@
+package edu.uab.ssg.model.snp;
+
+import junit.framework.TestCase;
+import junit.framework.Assert;
+import java.util.*;
+
+/**
+ * @author Jelai Wang
+ */
+
+public final class TestChromosomes extends TestCase {
+	public void testOrdinals() {
+		Assert.assertEquals(1, Chromosomes.getOrdinal("1"));
+		Assert.assertEquals(1, Chromosomes.getOrdinal("chr1"));
+		Assert.assertEquals(10, Chromosomes.getOrdinal("chr10"));
+		Assert.assertEquals(23, Chromosomes.getOrdinal("X"));
+		Assert.assertEquals(23, Chromosomes.getOrdinal("23"));
+		Assert.assertEquals(23, Chromosomes.getOrdinal("chrX"));
+		Assert.assertEquals(24, Chromosomes.getOrdinal("Y"));
+		Assert.assertEquals(25, Chromosomes.getOrdinal("XY"));
+		Assert.assertEquals(26, Chromosomes.getOrdinal("MT"));
+		Assert.assertEquals(26, Chromosomes.getOrdinal("chrM"));
+		Assert.assertEquals(Chromosomes.UNPLACED, Chromosomes.getOrdinal("0"));
+		Assert.assertEquals("X", Chromosomes.getName(23));
+	}
+
+	public void testContigs() {
+		Assert.assertEquals(Chromosomes.CONTIG, Chromosomes.getOrdinal("chrUn_gl000220"));
+		Assert.assertEquals(Chromosomes.CONTIG, Chromosomes.getOrdinal("Un_gl000220"));
+		Assert.assertEquals("Un_gl000220", Chromosomes.getCanonicalName("chrUn_gl000220"));
+		Assert.assertEquals("X", Chromosomes.getCanonicalName("chr23"));
+		Assert.assertEquals(3, Chromosomes.getOrdinal("cHr3"));
+		try {
+			Chromosomes.getName(Chromosomes.CONTIG);
+			Assert.fail();
+		}
+		catch (IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+	}
+
+	public void testOrdinalsOfSet() {
+		int[] ordinals = Chromosomes.getOrdinals(new String[] { "chrUn_gl000220", "2", "chr6_cox_hap2", "Un_gl000220", "chrX" });
+		Assert.assertEquals(Chromosomes.CONTIG + 1, ordinals[0]);
+		Assert.assertEquals(2, ordinals[1]);
+		Assert.assertEquals(Chromosomes.CONTIG, ordinals[2]);
+		Assert.assertEquals(Chromosomes.CONTIG + 1, ordinals[3]);
+		Assert.assertEquals(23, ordinals[4]);
+	}
+
+	public void testCompare() {
+		Assert.assertEquals(0, Chromosomes.compare("chr1", "1"));
+		Assert.assertTrue(Chromosomes.compare("2", "10") < 0);
+		Assert.assertTrue(Chromosomes.compare("0", "chr6_cox_hap2") < 0);
+		// Contigs sort by name without the prefix, whatever order they are seen in.
+		Assert.assertTrue(Chromosomes.compare("Un_gl000220", "chr6_cox_hap2") > 0);
+		Assert.assertTrue(Chromosomes.compare("chr6_cox_hap2", "chrUn_gl000220") < 0);
+		Assert.assertEquals(0, Chromosomes.compare("chrUn_gl000220", "Un_gl000220"));
+	}
+
+	public void testPositionKey() {
+		Assert.assertTrue(Chromosomes.getPositionKey("2", 1) < Chromosomes.getPositionKey("10", 1));
+		Assert.assertTrue(Chromosomes.getPositionKey("1", Integer.MAX_VALUE) < Chromosomes.getPositionKey("2", 0));
+		Assert.assertTrue(Chromosomes.getPositionKey("22", 5000) < Chromosomes.getPositionKey("X", 1));
+		Assert.assertEquals(Chromosomes.getPositionKey("chr3", 100), Chromosomes.getPositionKey(new DefaultSNP("rs1", "3", 100)));
+		List<SNP> snps = new ArrayList<SNP>();
+		snps.add(new DefaultSNP("rs1", "chrUn_gl000220", 1));
+		snps.add(new DefaultSNP("rs2", "chr6_cox_hap2", 1000));
+		snps.add(new DefaultSNP("rs3", "MT", 1000));
+		long[] keys = Chromosomes.getPositionKeys(snps);
+		Assert.assertTrue(keys[2] < keys[1]);
+		Assert.assertTrue(keys[1] < keys[0]);
+		Assert.assertEquals(Chromosomes.getPositionKey("MT", 1000), keys[2]);
+		try {
+			Chromosomes.getPositionKey("1", -1);
+			Assert.fail();
+		}
+		catch (IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+	}
+}
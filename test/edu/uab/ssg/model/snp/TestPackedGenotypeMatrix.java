@@ -0,0 +1,128 @@
+package edu.uab.ssg.model.snp;
+
+import junit.framework.TestCase;
+import junit.framework.Assert;
+import java.util.*;
+import java.io.IOException;
+
+/**
+ * @author Jelai Wang
+ */
+
+public final class TestPackedGenotypeMatrix extends TestCase {
+	private PackedGenotypeMatrix matrix;
+
+	protected void setUp() throws IOException {
+		// Enough samples to span two words.
+		List<String> sampleNames = new ArrayList<String>();
+		String[] a1 = new String[40], a2 = new String[40];
+		String[] b1 = new String[40], b2 = new String[40];
+		for (int i = 0; i < 40; i++) {
+			sampleNames.add("sample" + i);
+			a1[i] = i % 3 == 0 ? "G" : "A";
+			a2[i] = i % 2 == 0 ? "G" : "A";
+			b1[i] = "D";
+			b2[i] = "I";
+		}
+		a1[35] = null;
+		a2[36] = null;
+		List<MarkerGenotypes> list = new ArrayList<MarkerGenotypes>();
+		list.add(new DefaultMarkerGenotypes(new DefaultSNP("snp1", "1", 1000), IlluminaStrand.TOP, a1, a2));
+		list.add(new DefaultMarkerGenotypes(new DefaultSNP("snp2", "1", 2000), null, b1, b2));
+		list.add(new DefaultMarkerGenotypes(new DefaultSNP("snp3", "1", 3000), null, new String[40], new String[40]));
+		matrix = PackedGenotypeMatrix.read(new ListSource(sampleNames, list));
+	}
+
+	public void testRead() {
+		Assert.assertEquals(3, matrix.getNumberOfMarkers());
+		Assert.assertEquals(40, matrix.getNumberOfSamples());
+		Assert.assertEquals("sample39", matrix.getSampleNames().get(39));
+		Assert.assertEquals("snp2", matrix.getSNP(1).getName());
+		Assert.assertEquals("G", matrix.getFirstAllele(0));
+		Assert.assertEquals("A", matrix.getSecondAllele(0));
+		Assert.assertEquals(PackedGenotypeMatrix.HOMOZYGOUS_1, matrix.getCode(0, 0));
+		Assert.assertEquals(PackedGenotypeMatrix.HETEROZYGOUS, matrix.getCode(0, 2));
+		Assert.assertEquals("G", matrix.getAllele1(0, 2));
+		Assert.assertEquals("A", matrix.getAllele2(0, 2));
+		Assert.assertEquals(PackedGenotypeMatrix.HETEROZYGOUS, matrix.getCode(0, 3)); // G/A
+		Assert.assertEquals(PackedGenotypeMatrix.HOMOZYGOUS_2, matrix.getCode(0, 37));
+		Assert.assertEquals(PackedGenotypeMatrix.MISSING, matrix.getCode(0, 35));
+		Assert.assertEquals(PackedGenotypeMatrix.MISSING, matrix.getCode(0, 36));
+		Assert.assertNull(matrix.getAllele1(0, 35));
+		Assert.assertEquals(PackedGenotypeMatrix.HETEROZYGOUS, matrix.getCode(1, 39));
+		Assert.assertNull(matrix.getFirstAllele(2));
+		Assert.assertEquals(PackedGenotypeMatrix.MISSING, matrix.getCode(2, 0));
+	}
+
+	public void testFlipStrand() {
+		matrix.flipStrand(new boolean[] { true, false, true });
+		Assert.assertEquals("C", matrix.getFirstAllele(0));
+		Assert.assertEquals("T", matrix.getSecondAllele(0));
+		Assert.assertSame(IlluminaStrand.BOT, matrix.getStrand(0));
+		Assert.assertEquals("C", matrix.getAllele1(0, 0));
+		Assert.assertEquals("T", matrix.getAllele2(0, 37));
+		MarkerGenotypes genotypes = matrix.getMarkerGenotypes(0);
+		Assert.assertEquals("C", genotypes.getAllele1(2));
+		Assert.assertEquals("T", genotypes.getAllele2(2));
+
+		// Insertions and deletions can't be flipped, and nothing changes.
+		try {
+			matrix.flipStrand(new boolean[] { true, true, false });
+			Assert.fail();
+		}
+		catch (IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+		Assert.assertEquals("C", matrix.getFirstAllele(0));
+		matrix.flipStrand(0);
+		Assert.assertEquals("G", matrix.getFirstAllele(0));
+		Assert.assertSame(IlluminaStrand.TOP, matrix.getStrand(0));
+	}
+
+	public void testAddWords() {
+		PackedGenotypeMatrix matrix = new PackedGenotypeMatrix(Arrays.asList(new String[] { "s1", "s2", "s3" }));
+		long word = PackedGenotypeMatrix.HETEROZYGOUS | (PackedGenotypeMatrix.MISSING << 2) | (PackedGenotypeMatrix.HOMOZYGOUS_2 << 4);
+		Assert.assertEquals(0, matrix.add(new DefaultSNP("rs1", "1", 100), null, "A", "G", new long[] { word }));
+		Assert.assertEquals("A", matrix.getAllele1(0, 0));
+		Assert.assertEquals("G", matrix.getAllele2(0, 0));
+		Assert.assertNull(matrix.getAllele1(0, 1));
+		Assert.assertEquals("G", matrix.getAllele1(0, 2));
+		Assert.assertNull(matrix.getStrand(0));
+		try { matrix.add(new DefaultSNP("rs2", "1", 200), null, "A", "G", new long[] { 1L << 6 }); Assert.fail(); } catch (IllegalArgumentException e) { Assert.assertTrue(true); }
+		try { matrix.add(new DefaultSNP("rs2", "1", 200), null, "A", "G", new long[2]); Assert.fail(); } catch (IllegalArgumentException e) { Assert.assertTrue(true); }
+		Assert.assertEquals(1, matrix.getNumberOfMarkers());
+	}
+
+	public void testTooManyAlleles() {
+		PackedGenotypeMatrix matrix = new PackedGenotypeMatrix(Arrays.asList(new String[] { "s1", "s2" }));
+		try {
+			matrix.add(new DefaultMarkerGenotypes(new DefaultSNP("snp1", "1", 1000), null, new String[] { "A", "C" }, new String[] { "G", "C" }));
+			Assert.fail();
+		}
+		catch (IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+	}
+
+	public void testGenotypeSource() throws IOException {
+		GenotypeSource source = matrix.createGenotypeSource();
+		Assert.assertEquals(40, source.getSampleNames().size());
+		int count = 0;
+		while (source.next() != null) count++;
+		Assert.assertEquals(3, count);
+	}
+
+	private static final class ListSource implements GenotypeSource {
+		private List<String> sampleNames;
+		private Iterator<MarkerGenotypes> it;
+
+		private ListSource(List<String> sampleNames, List<MarkerGenotypes> list) {
+			this.sampleNames = sampleNames;
+			this.it = list.iterator();
+		}
+
+		public List<String> getSampleNames() { return sampleNames; }
+		public MarkerGenotypes next() { return it.hasNext() ? it.next() : null; }
+		public void close() {}
+	}
+}
@@ -0,0 +1,53 @@
+package edu.uab.ssg.model.snp;
+
+import junit.framework.TestCase;
+import junit.framework.Assert;
+
+/**
+ * @author Jelai Wang
+ */
+
+public final class TestPhasedHaplotypeMatrix extends TestCase {
+	public void testAdd() throws Exception {
+		// Enough markers for more than one word per haplotype.
+		int numberOfMarkers = 70;
+		PhasedHaplotypeMatrix matrix = new PhasedHaplotypeMatrix(numberOfMarkers);
+		byte[] h1 = new byte[numberOfMarkers], h2 = new byte[numberOfMarkers];
+		for (int i = 0; i < numberOfMarkers; i++) {
+			h1[i] = (byte) 'A';
+			h2[i] = (byte) (i % 2 == 0 ? 'A' : 'G');
+		}
+		h1[65] = (byte) 'G';
+		Assert.assertEquals(0, matrix.add("s1", h1, h2));
+		Assert.assertEquals("A", matrix.getFirstAllele(1));
+		Assert.assertEquals("G", matrix.getSecondAllele(1));
+		Assert.assertNull(matrix.getSecondAllele(0));
+		Assert.assertEquals("G", matrix.getAllele(0, 0, 65));
+		Assert.assertEquals("A", matrix.getAllele(0, 1, 64));
+		Assert.assertEquals(0L, matrix.getWord(0, 0, 0));
+		Assert.assertEquals(0L, matrix.getWord(0, 0, 1)); // G was seen first at marker 65.
+		Assert.assertEquals(0xaaaaaaaaaaaaaaaaL, matrix.getWord(0, 1, 0));
+		Assert.assertEquals((1L << 3) | (1L << 5), matrix.getWord(0, 1, 1));
+
+		// A third allele leaves the matrix unchanged.
+		h1[0] = (byte) 'C';
+		h2[0] = (byte) 'T';
+		try {
+			matrix.add("s2", h1, h2);
+			Assert.fail();
+		}
+		catch (IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+		Assert.assertEquals(1, matrix.getNumberOfSamples());
+		Assert.assertNull(matrix.getSecondAllele(0));
+
+		try {
+			matrix.add("s2", new byte[3], new byte[3]);
+			Assert.fail();
+		}
+		catch (IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+	}
+}
@@ -34,4 +34,78 @@ public final class TestUtil extends TestCase {
 		Assert.assertEquals(snp4, list.get(7));
 		Assert.assertEquals(snp6, list.get(8));
 	}
+
+	public void testNaturalComparator() {
+		List<SNP> list = new ArrayList<SNP>();
+		SNP snp1 = new DefaultSNP("snp1", "chr10", 1000);
+		SNP snp2 = new DefaultSNP("snp2", "chrX", 1000);
+		SNP snp3 = new DefaultSNP("snp3", "chr2", 2000);
+		SNP snp4 = new DefaultSNP("snp4", "chrMT", 100);
+		SNP snp5 = new DefaultSNP("snp5", "chr2", 1000);
+		SNP snp6 = new DefaultSNP("snp6", "chrY", 500);
+		list.add(snp1); list.add(snp2); list.add(snp3); list.add(snp4); list.add(snp5); list.add(snp6);
+
+		Collections.sort(list, Util.ORDER_BY_NATURAL_CHROMOSOME_POSITION);
+
+		Assert.assertEquals(snp5, list.get(0));
+		Assert.assertEquals(snp3, list.get(1));
+		Assert.assertEquals(snp1, list.get(2));
+		Assert.assertEquals(snp2, list.get(3));
+		Assert.assertEquals(snp6, list.get(4));
+		Assert.assertEquals(snp4, list.get(5));
+	}
+
+	public void testSortByNaturalChromosomePosition() {
+		List<SNP> list = new ArrayList<SNP>();
+		list.add(new DefaultSNP("snp1", "chrUn_gl000220", 10));
+		list.add(new DefaultSNP("snp2", "chr10", 1000));
+		list.add(new DefaultSNP("snp3", "chr6_cox_hap2", 500));
+		list.add(new DefaultSNP("snp4", "2", 1000));
+		list.add(new DefaultSNP("snp5", "Un_gl000220", 5));
+		list.add(new DefaultSNP("snp6", "chr2", 1000));
+		list.add(new DefaultSNP("snp7", "chr6_cox_hap2", 100));
+		List<SNP> expected = new ArrayList<SNP>(list);
+		Collections.sort(expected, Util.ORDER_BY_NATURAL_CHROMOSOME_POSITION);
+
+		Util.sortByNaturalChromosomePosition(list);
+
+		Assert.assertEquals(expected, list);
+		Assert.assertEquals("snp4", list.get(0).getName()); // Ties keep their order.
+		Assert.assertEquals("snp6", list.get(1).getName());
+		Assert.assertEquals("snp7", list.get(3).getName());
+		Assert.assertEquals("snp5", list.get(5).getName());
+	}
+
+	public void testGetAllele() {
+		Assert.assertEquals("A", Util.getAllele('A'));
+		Assert.assertSame(Util.getAllele('A'), Util.getAllele((byte) 'A'));
+		Assert.assertNull(Util.getAllele(0));
+		try {
+			Util.getAllele((byte) 0xff);
+			Assert.fail();
+		}
+		catch (IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+	}
+
+	public void testComplement() throws Exception {
+		Assert.assertEquals("T", Util.complement("A"));
+		Assert.assertEquals("G", Util.complement("C"));
+		Assert.assertEquals("C", Util.complement("G"));
+		Assert.assertEquals("A", Util.complement("T"));
+		Assert.assertNull(Util.complement("I"));
+		Assert.assertNull(Util.complement("AT"));
+		Assert.assertEquals('t', Util.complement('a'));
+		try {
+			Util.complement('0');
+			Assert.fail();
+		}
+		catch (IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+		byte[] bytes = "s1\tA C\t0 G\tT".getBytes("US-ASCII");
+		Util.complement(bytes, 3, bytes.length - 3);
+		Assert.assertEquals("s1\tT G\t0 C\tA", new String(bytes, "US-ASCII"));
+	}
 }
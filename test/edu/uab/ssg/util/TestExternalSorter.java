@@ -0,0 +1,129 @@
+package edu.uab.ssg.util;
+
+import junit.framework.TestCase;
+import junit.framework.Assert;
+import java.util.*;
+import java.io.*;
+import edu.uab.ssg.model.snp.*;
+
+/**
+ * @author Jelai Wang
+ */
+
+public final class TestExternalSorter extends TestCase {
+	public void testSNPs() throws IOException {
+		// Enough runs to force an intermediate merge pass.
+		Random random = new Random(1);
+		String[] chromosomes = { "1", "2", "10", "X", "Y", "MT" };
+		List<SNP> expected = new ArrayList<SNP>();
+		ExternalSorter<SNP> sorter = new ExternalSorter<SNP>(Util.ORDER_BY_NATURAL_CHROMOSOME_POSITION, ExternalSorter.SNP_CODEC, 7, null);
+		for (int i = 0; i < 1000; i++) {
+			SNP snp = new DefaultSNP("rs" + i, chromosomes[random.nextInt(chromosomes.length)], random.nextInt(100));
+			expected.add(snp);
+			sorter.add(snp);
+		}
+		Assert.assertTrue(sorter.getNumberOfRuns() > ExternalSorter.MAX_FAN_IN);
+		Collections.sort(expected, Util.ORDER_BY_NATURAL_CHROMOSOME_POSITION);
+		final List<String> observed = new ArrayList<String>();
+		sorter.sort(new ExternalSorter.RecordHandler<SNP>() {
+			public void handleSortedRecord(SNP snp) {
+				observed.add(snp.getName());
+			}
+		});
+		// The sort is stable, so ties on position must come back in input order.
+		Assert.assertEquals(expected.size(), observed.size());
+		for (int i = 0; i < expected.size(); i++) {
+			Assert.assertEquals(expected.get(i).getName(), observed.get(i));
+		}
+		Assert.assertEquals(0, sorter.getNumberOfRuns());
+	}
+
+	public void testMAPLines() throws IOException {
+		ExternalSorter<String> sorter = new ExternalSorter<String>(ExternalSorter.createLineOrder('\t', 0, 3), ExternalSorter.LINE_CODEC, 2, null);
+		sorter.add("10\trs1\t0\t500");
+		sorter.add("2\trs2\t0\t900");
+		sorter.add("X\trs3\t0\t100");
+		sorter.add("2\trs4\t0\t100");
+		sorter.add("1\trs5\t0\t700");
+		final List<String> observed = new ArrayList<String>();
+		sorter.sort(new ExternalSorter.RecordHandler<String>() {
+			public void handleSortedRecord(String line) {
+				observed.add(line.split("\t")[1]);
+			}
+		});
+		Assert.assertEquals(Arrays.asList(new String[] { "rs5", "rs4", "rs2", "rs1", "rs3" }), observed);
+	}
+
+	public void testInMemory() throws IOException {
+		ExternalSorter<String> sorter = new ExternalSorter<String>(ExternalSorter.createLineOrder('\t', 0, 1), ExternalSorter.LINE_CODEC, 100, null);
+		sorter.add("20\t14370\trs6054257");
+		sorter.add("20\t1110\trs6040355");
+		final List<String> observed = new ArrayList<String>();
+		sorter.sort(new ExternalSorter.RecordHandler<String>() {
+			public void handleSortedRecord(String line) {
+				observed.add(line);
+			}
+		});
+		Assert.assertEquals(0, sorter.getNumberOfRuns());
+		Assert.assertEquals("20\t1110\trs6040355", observed.get(0));
+		try {
+			sorter.add("20\t1\trs1");
+			Assert.fail();
+		}
+		catch (IllegalStateException e) {
+			Assert.assertTrue(true);
+		}
+	}
+
+	public void testContigLines() throws IOException {
+		ExternalSorter<String> sorter = new ExternalSorter<String>(ExternalSorter.createLineOrder('\t', 0, 1), ExternalSorter.LINE_CODEC, 2, null);
+		sorter.add("chrUn_gl000220\t5\tc");
+		sorter.add("chr6_cox_hap2\t900\tb");
+		sorter.add("chrUn_gl000220\t1\td");
+		sorter.add("MT\t100\ta");
+		sorter.add("chr6_cox_hap2\t20\te");
+		final List<String> observed = new ArrayList<String>();
+		sorter.sort(new ExternalSorter.RecordHandler<String>() {
+			public void handleSortedRecord(String line) {
+				observed.add(line.split("\t")[2]);
+			}
+		});
+		Assert.assertEquals(Arrays.asList(new String[] { "a", "e", "b", "d", "c" }), observed);
+	}
+
+	public void testFailedMergePass() throws IOException {
+		File directory = File.createTempFile("sort", ".dir");
+		directory.delete();
+		directory.mkdir();
+		final boolean[] fail = new boolean[1];
+		ExternalSorter.RecordCodec<String> codec = new ExternalSorter.RecordCodec<String>() {
+			public void write(String line, DataOutput out) throws IOException {
+				if (fail[0])
+					throw new IOException(line);
+				ExternalSorter.LINE_CODEC.write(line, out);
+			}
+
+			public String read(DataInput in) throws IOException {
+				return ExternalSorter.LINE_CODEC.read(in);
+			}
+		};
+		ExternalSorter<String> sorter = new ExternalSorter<String>(ExternalSorter.createLineOrder('\t', 0, 1), codec, 1, directory);
+		for (int i = 0; i <= ExternalSorter.MAX_FAN_IN; i++) {
+			sorter.add("1\t" + i);
+		}
+		Assert.assertEquals(ExternalSorter.MAX_FAN_IN + 1, directory.list().length);
+		fail[0] = true; // Fails in the intermediate merge pass.
+		try {
+			sorter.sort(new ExternalSorter.RecordHandler<String>() {
+				public void handleSortedRecord(String line) {
+				}
+			});
+			Assert.fail();
+		}
+		catch (IOException e) {
+			Assert.assertTrue(true);
+		}
+		Assert.assertEquals(0, directory.list().length);
+		directory.delete();
+	}
+}
@@ -0,0 +1,120 @@
+package edu.uab.ssg.util;
+
+import junit.framework.TestCase;
+import junit.framework.Assert;
+import java.util.*;
+import java.io.*;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import edu.uab.ssg.io.ncbi.*;
+
+/**
+ * @author Jelai Wang
+ */
+
+public final class TestGeneIndex extends TestCase {
+	private GeneIndex index;
+
+	protected void setUp() throws IOException {
+		InputStream in = getClass().getClassLoader().getResourceAsStream("edu/uab/ssg/util/test-seq_gene.md");
+		List<SeqGeneMdParser.Record> seqGeneMdRecords = new SeqGeneMdParser().parse(in, new SeqGeneMdParser.RecordFilter() {
+			public boolean acceptRecord(SeqGeneMdParser.Record record) {
+				if ("GENE".equals(record.getFeatureType()) && "GRCh37.p2-Primary Assembly".equals(record.getGroupLabel())) return true;
+				return false;
+			}
+		});
+		in = new GZIPInputStream(getClass().getClassLoader().getResourceAsStream("edu/uab/ssg/io/ncbi/9606_subset.gene_info.gz"));
+		List<GeneInfoParser.Record> list = new GeneInfoParser().parse(in);
+		List<GeneInfoParser.Record> geneInfoRecords = new ArrayList<GeneInfoParser.Record>();
+		for (int i = 0; i < list.size(); i++) { // Keep the heap small.
+			GeneInfoParser.Record record = list.get(i);
+			if (Integer.parseInt(record.getGeneID()) < 10000) geneInfoRecords.add(record);
+		}
+		index = new GeneIndex(geneInfoRecords, seqGeneMdRecords);
+	}
+
+	public void testLookups() {
+		assertLookups(index);
+	}
+
+	public void testCache() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		index.writeTo(out);
+		GeneIndex cached = GeneIndex.readFrom(new ByteArrayInputStream(out.toByteArray()));
+		Assert.assertEquals(index.getGeneInfoRecords().size(), cached.getGeneInfoRecords().size());
+		Assert.assertEquals(index.getSeqGeneMdRecords().size(), cached.getSeqGeneMdRecords().size());
+		assertLookups(cached);
+		GeneInfoParser.Record record = cached.getGeneInfo("3811");
+		Assert.assertEquals(index.getGeneInfo("3811").toString(), record.toString());
+		Assert.assertEquals("19", record.getChromosome());
+		Assert.assertNull(record.getLocusTag());
+		Assert.assertEquals(index.getGeneInfo("3811").getdbXrefs(), record.getdbXrefs());
+		SeqGeneMdParser.Record md = cached.getSeqGeneMd("3811");
+		Assert.assertEquals(index.getSeqGeneMd("3811").toString(), md.toString());
+		Assert.assertEquals(27596111, md.getCtgStart());
+		Assert.assertEquals("GRCh37.p2-Primary Assembly", md.getGroupLabel());
+	}
+
+	public void testLoad() throws IOException {
+		File geneInfoFile = File.createTempFile("gene_info", ".gz");
+		File seqGeneMdFile = File.createTempFile("seq_gene", ".md.gz");
+		File cacheFile = File.createTempFile("genes", ".cache");
+		try {
+			OutputStream out = new GZIPOutputStream(new FileOutputStream(geneInfoFile));
+			for (int i = 0; i < index.getGeneInfoRecords().size(); i++) {
+				out.write((index.getGeneInfoRecords().get(i).toString() + "\n").getBytes("UTF-8"));
+			}
+			out.close();
+			out = new GZIPOutputStream(new FileOutputStream(seqGeneMdFile));
+			InputStream in = getClass().getClassLoader().getResourceAsStream("edu/uab/ssg/util/test-seq_gene.md");
+			byte[] buffer = new byte[4096];
+			for (int n = 0; (n = in.read(buffer)) != -1; ) out.write(buffer, 0, n);
+			in.close();
+			out.close();
+			long lastModified = cacheFile.lastModified() - 60000L;
+			geneInfoFile.setLastModified(lastModified);
+			seqGeneMdFile.setLastModified(lastModified);
+
+			// An empty cache file is rebuilt.
+			assertLookups(GeneIndex.load(geneInfoFile, seqGeneMdFile, "GENE", "GRCh37.p2-Primary Assembly", cacheFile));
+			long length = cacheFile.length();
+			Assert.assertTrue(length > 0);
+			assertLookups(GeneIndex.load(geneInfoFile, seqGeneMdFile, "GENE", "GRCh37.p2-Primary Assembly", cacheFile));
+
+			// So is one cut short.
+			RandomAccessFile raf = new RandomAccessFile(cacheFile, "rw");
+			raf.setLength(length / 2);
+			raf.close();
+			assertLookups(GeneIndex.load(geneInfoFile, seqGeneMdFile, "GENE", "GRCh37.p2-Primary Assembly", cacheFile));
+			Assert.assertEquals(length, cacheFile.length());
+		}
+		finally {
+			geneInfoFile.delete();
+			seqGeneMdFile.delete();
+			cacheFile.delete();
+		}
+	}
+
+	private void assertLookups(GeneIndex index) {
+		// By symbol, ignoring case.
+		List<GeneInfoParser.Record> records = index.findGeneInfo("kir3dl1");
+		Assert.assertEquals(1, records.size());
+		Assert.assertEquals("3811", records.get(0).getGeneID());
+		// By synonym.
+		records = index.findGeneInfo("CD158E1");
+		Assert.assertEquals(1, records.size());
+		Assert.assertEquals("KIR3DL1", records.get(0).getSymbol());
+		// A synonym shared by two genes, in input order.
+		records = index.findGeneInfo("KIR");
+		Assert.assertEquals(2, records.size());
+		Assert.assertEquals("2669", records.get(0).getGeneID());
+		Assert.assertEquals("3811", records.get(1).getGeneID());
+		Assert.assertEquals(0, index.findGeneInfo("NO_SUCH_GENE").size());
+		// By Entrez Gene ID.
+		Assert.assertEquals("TCP1", index.getGeneInfo("6950").getSymbol());
+		SeqGeneMdParser.Record md = index.getSeqGeneMd("6950");
+		Assert.assertEquals(160199530, md.getChrStart());
+		Assert.assertEquals(160210735, md.getChrStop());
+		Assert.assertNull(index.getSeqGeneMd("2669"));
+	}
+}
@@ -0,0 +1,141 @@
+package edu.uab.ssg.util;
+
+import junit.framework.TestCase;
+import junit.framework.Assert;
+import java.util.*;
+import java.io.*;
+import edu.uab.ssg.model.snp.*;
+
+/**
+ * @author Jelai Wang
+ */
+
+public final class TestGenotypeMerger extends TestCase {
+	private SNP snp1 = new DefaultSNP("rs1", "1", 1000); // Both sources, same strand.
+	private SNP snp2 = new DefaultSNP("rs2", "1", 2000); // Both sources, opposite strand.
+	private SNP snp3 = new DefaultSNP("rs3", "1", 3000); // Reference only.
+	private SNP snp4 = new DefaultSNP("rs4", "2", 500); // Both sources, ambiguous A/T on opposite strands.
+	private SNP snp5 = new DefaultSNP("rs5", "2", 700); // Both sources, irreconcilable alleles.
+	private SNP snp6 = new DefaultSNP("rs6", "2", 900); // Target only.
+
+	public void testSequentialMerge() throws IOException {
+		List<GenotypeSource> sources = new ArrayList<GenotypeSource>();
+		sources.add(createReferenceSource("1"));
+		sources.add(createTargetSource("1"));
+		sources.add(createReferenceSource("2"));
+		sources.add(createTargetSource("2"));
+		// Merge by chromosome pairs, one chromosome at a time.
+		RecordingListener listener = new RecordingListener();
+		GenotypeMerger merger = new GenotypeMerger(Util.ORDER_BY_CHROMOSOME_POSITION, 2);
+		merger.merge(sources.subList(0, 2), listener);
+		merger.merge(sources.subList(2, 4), listener);
+		assertExpected(listener);
+	}
+
+	public void testParallelMerge() throws IOException {
+		RecordingListener listener = new RecordingListener();
+		GenotypeMerger merger = new GenotypeMerger(Util.ORDER_BY_CHROMOSOME_POSITION, 1);
+		merger.merge(Arrays.asList(new String[] { "1", "2" }), new GenotypeMerger.SourceFactory() {
+			public List<GenotypeSource> openSources(String chromosome) {
+				List<GenotypeSource> list = new ArrayList<GenotypeSource>();
+				list.add(createReferenceSource(chromosome));
+				list.add(createTargetSource(chromosome));
+				return list;
+			}
+		}, 2, listener);
+		assertExpected(listener);
+	}
+
+	public void testUnsortedSource() throws IOException {
+		List<SNP> snps = new ArrayList<SNP>();
+		snps.add(snp2);
+		snps.add(snp1);
+		List<GenotypeSource> sources = new ArrayList<GenotypeSource>();
+		sources.add(new SampleGenotypeSource(snps, new ArrayList<Sample>()));
+		GenotypeMerger merger = new GenotypeMerger(Util.ORDER_BY_CHROMOSOME_POSITION, 1);
+		try {
+			merger.merge(sources, new RecordingListener());
+			Assert.fail();
+		}
+		catch (IllegalStateException e) {
+			Assert.assertTrue(true);
+		}
+	}
+
+	private void assertExpected(RecordingListener listener) {
+		Assert.assertEquals(Arrays.asList(new String[] { "ref1", "ref2", "tgt1" }), listener.sampleNames);
+		List<String> expected = new ArrayList<String>();
+		expected.add("rs1 TOP A/G A/A A/A");
+		expected.add("rs2 TOP C/C C/T C/T");
+		expected.add("rs3 TOP G/G G/G null/null");
+		expected.add("rs4 TOP A/T A/A A/A");
+		expected.add("rs5 TOP A/C A/A null/null");
+		expected.add("rs6 BOT null/null null/null G/G");
+		Assert.assertEquals(expected, listener.records);
+		Assert.assertEquals(Arrays.asList(new String[] { "rs5 1" }), listener.conflicts);
+		Assert.assertEquals(Arrays.asList(new String[] { "rs1-dup 1" }), listener.duplicates);
+	}
+
+	private GenotypeSource createReferenceSource(String chromosome) {
+		SampleBuilder b1 = new SampleBuilder("ref1");
+		b1.setGenotype(snp1, "A", "G", IlluminaStrand.TOP);
+		b1.setGenotype(snp2, "C", "C", IlluminaStrand.TOP);
+		b1.setGenotype(snp3, "G", "G", IlluminaStrand.TOP);
+		b1.setGenotype(snp4, "A", "T", IlluminaStrand.TOP);
+		b1.setGenotype(snp5, "A", "C", IlluminaStrand.TOP);
+		SampleBuilder b2 = new SampleBuilder("ref2");
+		b2.setGenotype(snp1, "A", "A", IlluminaStrand.TOP);
+		b2.setGenotype(snp2, "C", "T", IlluminaStrand.TOP);
+		b2.setGenotype(snp3, "G", "G", IlluminaStrand.TOP);
+		b2.setGenotype(snp4, "A", "A", IlluminaStrand.TOP);
+		b2.setGenotype(snp5, "A", "A", IlluminaStrand.TOP);
+		List<Sample> samples = new ArrayList<Sample>();
+		samples.add(b1.getInstance());
+		samples.add(b2.getInstance());
+		return new SampleGenotypeSource(filter(chromosome, new SNP[] { snp1, snp2, snp3, snp4, snp5 }), samples);
+	}
+
+	private GenotypeSource createTargetSource(String chromosome) {
+		SNP duplicate = new DefaultSNP("rs1-dup", "1", 1000);
+		SampleBuilder b1 = new SampleBuilder("tgt1");
+		b1.setGenotype(snp1, "A", "A", IlluminaStrand.BOT);
+		b1.setGenotype(snp2, "G", "A", IlluminaStrand.BOT);
+		b1.setGenotype(snp4, "T", "T", IlluminaStrand.BOT);
+		b1.setGenotype(snp5, "G", "A", IlluminaStrand.BOT);
+		b1.setGenotype(snp6, "G", "G", IlluminaStrand.BOT);
+		List<Sample> samples = new ArrayList<Sample>();
+		samples.add(b1.getInstance());
+		return new SampleGenotypeSource(filter(chromosome, new SNP[] { snp1, duplicate, snp2, snp4, snp5, snp6 }), samples);
+	}
+
+	private List<SNP> filter(String chromosome, SNP[] snps) {
+		List<SNP> list = new ArrayList<SNP>();
+		for (int i = 0; i < snps.length; i++) {
+			if (chromosome.equals(snps[i].getChromosome())) list.add(snps[i]);
+		}
+		return list;
+	}
+
+	private static class RecordingListener implements GenotypeMerger.MergeListener {
+		private List<String> sampleNames;
+		private List<String> records = new ArrayList<String>();
+		private List<String> conflicts = new ArrayList<String>();
+		private List<String> duplicates = new ArrayList<String>();
+
+		public void handleSampleNames(List<String> sampleNames) {
+			if (this.sampleNames == null) this.sampleNames = sampleNames;
+		}
+
+		public void handleMergedRecord(MarkerGenotypes record) {
+			records.add(record.toString());
+		}
+
+		public void handleAlleleConflict(SNP snp, int sourceIndex) {
+			conflicts.add(snp.getName() + " " + sourceIndex);
+		}
+
+		public void handleDuplicateMarker(SNP snp, int sourceIndex) {
+			duplicates.add(snp.getName() + " " + sourceIndex);
+		}
+	}
+}
@@ -0,0 +1,67 @@
+package edu.uab.ssg.util;
+
+import junit.framework.TestCase;
+import junit.framework.Assert;
+import java.io.*;
+
+/**
+ * @author Jelai Wang
+ */
+
+public final class TestLongIntMap extends TestCase {
+	public void testPutAndGet() {
+		LongIntMap map = new LongIntMap(0);
+		for (int i = 0; i < 1000; i++) {
+			Assert.assertEquals(-1, map.put(i * 7L, i));
+		}
+		Assert.assertEquals(1000, map.size());
+		Assert.assertEquals(3, map.put(21L, 30));
+		Assert.assertEquals(1000, map.size());
+		Assert.assertEquals(30, map.get(21L));
+		Assert.assertEquals(999, map.get(6993L));
+		Assert.assertEquals(-1, map.get(8L));
+		Assert.assertTrue(map.containsKey(0L));
+		Assert.assertFalse(map.containsKey(-7L));
+		Assert.assertFalse(map.containsKey(Long.MIN_VALUE));
+		try {
+			map.put(Long.MIN_VALUE, 1);
+			Assert.fail();
+		}
+		catch (IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+	}
+
+	public void testMap() throws IOException {
+		LongIntMap map = new LongIntMap(10);
+		map.put(56289060L, 0);
+		map.put(-5L, 1);
+		map.put(Long.MAX_VALUE, 2);
+		File file = File.createTempFile("map", ".bin");
+		try {
+			DataOutputStream out = new DataOutputStream(new FileOutputStream(file));
+			out.writeInt(42); // Something before the map.
+			long length = map.writeTo(out);
+			out.close();
+			Assert.assertEquals(file.length(), 4 + length);
+			RandomAccessFile raf = new RandomAccessFile(file, "r");
+			LongIntMap mapped = LongIntMap.map(raf.getChannel(), 4);
+			raf.close();
+			Assert.assertEquals(3, mapped.size());
+			Assert.assertEquals(0, mapped.get(56289060L));
+			Assert.assertEquals(1, mapped.get(-5L));
+			Assert.assertEquals(2, mapped.get(Long.MAX_VALUE));
+			Assert.assertEquals(-1, mapped.get(1L));
+			try {
+				mapped.put(1L, 1);
+				Assert.fail();
+			}
+			catch (UnsupportedOperationException e) {
+				Assert.assertTrue(true);
+			}
+		}
+		finally {
+			file.delete();
+		}
+	}
+}
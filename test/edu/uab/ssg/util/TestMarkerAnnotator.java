@@ -0,0 +1,84 @@
+package edu.uab.ssg.util;
+
+import junit.framework.TestCase;
+import junit.framework.Assert;
+import java.util.*;
+import java.io.*;
+import java.util.zip.GZIPInputStream;
+import edu.uab.ssg.io.ncbi.*;
+import edu.uab.ssg.model.snp.*;
+
+/**
+ * @author Jelai Wang
+ */
+
+public final class TestMarkerAnnotator extends TestCase {
+	private MarkerAnnotator annotator;
+
+	protected void setUp() throws IOException {
+		InputStream in = getClass().getClassLoader().getResourceAsStream("edu/uab/ssg/util/test-seq_gene.md");
+		List<SeqGeneMdParser.Record> records = new SeqGeneMdParser().parse(in, new SeqGeneMdParser.RecordFilter() {
+			public boolean acceptRecord(SeqGeneMdParser.Record record) {
+				if ("GENE".equals(record.getFeatureType()) && "GRCh37.p2-Primary Assembly".equals(record.getGroupLabel())) return true;
+				return false;
+			}
+		});
+		in = new GZIPInputStream(getClass().getClassLoader().getResourceAsStream("edu/uab/ssg/io/ncbi/9606_subset.gene_info.gz"));
+		List<GeneInfoParser.Record> list = new GeneInfoParser().parse(in);
+		List<GeneInfoParser.Record> geneInfoRecords = new ArrayList<GeneInfoParser.Record>();
+		for (int i = 0; i < list.size(); i++) {
+			GeneInfoParser.Record record = list.get(i);
+			if ("3811".equals(record.getGeneID()) || "39".equals(record.getGeneID())) // Leave out TCP1.
+				geneInfoRecords.add(record);
+		}
+		annotator = new MarkerAnnotator(new SeqGeneMdPositionIndex(records), new GeneIndex(geneInfoRecords, records));
+		annotator.setShardSize(2);
+	}
+
+	public void testBatch() throws IOException {
+		List<SNP> snps = new ArrayList<SNP>();
+		snps.add(new DefaultSNP("rs1", "19", 55330000));
+		snps.add(new DefaultSNP("rs2", "6", 160200000)); // Overlapping ACAT2 and TCP1, ACAT2 comes first.
+		snps.add(new DefaultSNP("rs3", "6", 160205000)); // TCP1 only.
+		snps.add(new DefaultSNP("rs4", "6", 1));
+		snps.add(new DefaultSNP("rs5", "7", 160200000)); // Unknown chromosome.
+		List<MarkerAnnotator.Annotation> annotations = annotator.annotate(snps, 3);
+		Assert.assertEquals(5, annotations.size());
+		Assert.assertEquals("3811", annotations.get(0).getEntrezID());
+		Assert.assertEquals("KIR3DL1", annotations.get(0).getGeneInfoRecord().getSymbol());
+		Assert.assertEquals("39", annotations.get(1).getEntrezID());
+		Assert.assertEquals("6950", annotations.get(2).getEntrezID());
+		Assert.assertNull(annotations.get(2).getGeneInfoRecord());
+		Assert.assertEquals(160199530, annotations.get(2).getSeqGeneMdRecord().getChrStart());
+		Assert.assertNull(annotations.get(3));
+		Assert.assertNull(annotations.get(4));
+	}
+
+	public void testLines() throws IOException {
+		StringBuilder input = new StringBuilder();
+		input.append("19\trs1\t55330000\n");
+		input.append("6\trs2\t160200000\n");
+		input.append("6\trs3\t160205000\n");
+		input.append("6\trs4\t1\n");
+		input.append("6\trs5\t160183000\textra\n");
+		StringWriter out = new StringWriter();
+		annotator.annotate(new BufferedReader(new StringReader(input.toString())), out, 2);
+		String[] lines = out.toString().split(System.getProperty("line.separator"));
+		Assert.assertEquals(5, lines.length);
+		Assert.assertEquals("19\trs1\t55330000\t3811\tKIR3DL1\t55327893\t55342233", lines[0]);
+		Assert.assertEquals("6\trs2\t160200000\t39\tACAT2\t160182989\t160200087", lines[1]);
+		Assert.assertEquals("6\trs3\t160205000\t6950\t\t\t", lines[2]);
+		Assert.assertEquals("6\trs4\t1\t\t\t\t", lines[3]);
+		Assert.assertEquals("6\trs5\t160183000\textra\t39\tACAT2\t160182989\t160200087", lines[4]);
+	}
+
+	public void testBadLine() throws IOException {
+		try {
+			annotator.annotate(new BufferedReader(new StringReader("6\trs1\n")), new StringWriter(), 1);
+			Assert.fail();
+		}
+		catch (RuntimeException e) {
+			Assert.assertEquals("6\trs1", e.getMessage());
+		}
+	}
+}
@@ -0,0 +1,52 @@
+package edu.uab.ssg.util;
+
+import junit.framework.TestCase;
+import junit.framework.Assert;
+import java.io.*;
+
+/**
+ * @author Jelai Wang
+ */
+
+public final class TestOrderedBatchWriter extends TestCase {
+	public void testOrder() throws IOException {
+		OrderedBatchWriter.Encoder encoder = new OrderedBatchWriter.Encoder() {
+			public void encode(int from, int to, OrderedBatchWriter.Batch batch) throws IOException {
+				for (int i = from; i < to; i++) {
+					batch.append(Integer.toString(i));
+					batch.ensureCapacity(1);
+					batch.getBytes()[batch.getLength()] = '\n';
+					batch.setLength(batch.getLength() + 1);
+				}
+			}
+		};
+		StringBuilder expected = new StringBuilder();
+		for (int i = 0; i < 1000; i++) {
+			expected.append(i).append('\n');
+		}
+		for (int threads = 1; threads <= 4; threads++) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			OrderedBatchWriter writer = new OrderedBatchWriter(out);
+			writer.write(encoder, 1000, 7, threads);
+			Assert.assertEquals(expected.toString(), out.toString("US-ASCII"));
+			writer.write(encoder, 0, 7, threads);
+			Assert.assertEquals(expected.toString(), out.toString("US-ASCII"));
+		}
+	}
+
+	public void testFailure() throws IOException {
+		OrderedBatchWriter writer = new OrderedBatchWriter(new ByteArrayOutputStream());
+		try {
+			writer.write(new OrderedBatchWriter.Encoder() {
+				public void encode(int from, int to, OrderedBatchWriter.Batch batch) throws IOException {
+					if (from >= 50)
+						throw new IOException(String.valueOf(from));
+				}
+			}, 100, 10, 3);
+			Assert.fail();
+		}
+		catch (IOException e) {
+			Assert.assertTrue(true);
+		}
+	}
+}
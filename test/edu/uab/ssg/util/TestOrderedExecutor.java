@@ -0,0 +1,66 @@
+package edu.uab.ssg.util;
+
+import junit.framework.TestCase;
+import junit.framework.Assert;
+import java.util.*;
+import java.util.concurrent.*;
+import java.io.*;
+
+/**
+ * @author Jelai Wang
+ */
+
+public final class TestOrderedExecutor extends TestCase {
+	public void testSubmissionOrder() throws IOException {
+		final List<Integer> results = new ArrayList<Integer>();
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			OrderedExecutor<Integer> ordered = new OrderedExecutor<Integer>(executor, 3, new OrderedExecutor.ResultHandler<Integer>() {
+				public void handleResult(Integer result) {
+					results.add(result);
+				}
+			});
+			for (int i = 0; i < 20; i++) {
+				final int value = i;
+				ordered.submit(new Callable<Integer>() {
+					public Integer call() throws InterruptedException {
+						Thread.sleep((20 - value) % 4); // Later tasks tend to finish first.
+						return Integer.valueOf(value);
+					}
+				});
+				Assert.assertTrue(value - results.size() < 3);
+			}
+			ordered.finish();
+		}
+		finally {
+			executor.shutdownNow();
+		}
+		Assert.assertEquals(20, results.size());
+		for (int i = 0; i < 20; i++) {
+			Assert.assertEquals(i, results.get(i).intValue());
+		}
+	}
+
+	public void testFailedTask() {
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			OrderedExecutor<Integer> ordered = new OrderedExecutor<Integer>(executor, 2, new OrderedExecutor.ResultHandler<Integer>() {
+				public void handleResult(Integer result) {
+				}
+			});
+			ordered.submit(new Callable<Integer>() {
+				public Integer call() throws IOException {
+					throw new IOException("failed");
+				}
+			});
+			ordered.finish();
+			Assert.fail();
+		}
+		catch (IOException e) {
+			Assert.assertEquals("failed", e.getMessage());
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+}
@@ -53,4 +53,26 @@ public final class TestSeqGeneMdPositionIndex extends TestCase {
 		Assert.assertEquals("GRCh37.p2-Primary Assembly", record.getGroupLabel());
 		Assert.assertEquals("GeneID:6950", record.getFeatureID());
 	}
+
+	public void testIncremental() throws IOException {
+		InputStream in = getClass().getClassLoader().getResourceAsStream("edu/uab/ssg/util/test-seq_gene.md");
+		final SeqGeneMdPositionIndex index = new SeqGeneMdPositionIndex();
+		new SeqGeneMdParser().parse(in, SeqGeneMdParser.createFeatureFilter("GENE", "GRCh37.p2-Primary Assembly"), new SeqGeneMdParser.ChromosomeListener() {
+			public void handleChromosome(String chromosome, List<SeqGeneMdParser.Record> records) {
+				index.addAll(records);
+			}
+
+			public void handleBadRecordFormat(String line) {
+				Assert.fail(line);
+			}
+		});
+		Assert.assertTrue(index.containsChromosome("6"));
+		Assert.assertEquals(2, index.getRecords("6", 160200000).size());
+		Assert.assertEquals(0, index.getRecords("6", 160300000).size());
+		Assert.assertFalse(index.containsChromosome("7"));
+		// Adding after a query rebuilds the search arrays.
+		SeqGeneMdParser.Record record = index.getRecords("19", 55327893).get(0);
+		index.add(record);
+		Assert.assertEquals(2, index.getRecords("19", 55327893).size());
+	}
 }
@@ -0,0 +1,116 @@
+package edu.uab.ssg.util;
+
+import junit.framework.TestCase;
+import junit.framework.Assert;
+import java.util.*;
+import java.io.*;
+import edu.uab.ssg.model.snp.*;
+
+/**
+ * @author Jelai Wang
+ */
+
+public final class TestStrandAligner extends TestCase {
+	private static final String[] REF_MARKERS = { "m1", "m2", "m3", "m4", "m5", "m7" };
+	private static final String[] REF_ALLELES = {
+		"AAAAAGGGGG",
+		"AAAAAAGGGG",
+		"AATTTTTTTT",
+		"CCCCCGGGGG",
+		"AAAAAGGGGG",
+		"AAAAAGGGGG",
+	};
+	private static final String[] TGT_MARKERS = { "m1", "m2", "m3", "m4", "m5", "m6", "m7" };
+	private static final String[] TGT_ALLELES = {
+		"TTTTTCCCCC", // Opposite strand.
+		"AAGGGGGGGG", // Same strand.
+		"AAAAAAAATT", // Ambiguous, minor allele swapped.
+		"CCCCCGGGGG", // Ambiguous, frequencies too close to tell.
+		"AAAAACCCCC", // Alleles do not match on either strand.
+		"AAAAAAAAAA", // Not in the reference.
+		"0000000000", // All missing.
+	};
+
+	private StrandAligner aligner;
+
+	protected void setUp() {
+		aligner = new StrandAligner();
+		aligner.setBatchSize(2);
+	}
+
+	public void testSummarize() throws IOException {
+		StrandAligner.AlleleSummary summary = aligner.summarize(createMarkers(TGT_MARKERS), createPED(TGT_ALLELES, " "), 3);
+		Assert.assertEquals(7, summary.getMarkers().size());
+		Assert.assertEquals(2, summary.indexOf("m3"));
+		Assert.assertEquals(-1, summary.indexOf("m8"));
+		Assert.assertEquals(5, summary.getCount(0, 'T'));
+		Assert.assertEquals(5, summary.getCount(0, 'C'));
+		Assert.assertEquals(0, summary.getCount(0, 'A'));
+		Assert.assertEquals(8, summary.getCount(2, 'A'));
+		Assert.assertEquals(0, summary.getNumberOfOtherValues(0));
+		Assert.assertEquals(10, summary.getNumberOfMissingValues(6));
+	}
+
+	public void testAlign() throws IOException {
+		StrandAligner.AlleleSummary reference = aligner.summarize(createMarkers(REF_MARKERS), createPED(REF_ALLELES, "\t"), 2);
+		StrandAligner.AlleleSummary target = aligner.summarize(createMarkers(TGT_MARKERS), createPED(TGT_ALLELES, " "), 2);
+		StrandAligner.Decision[] decisions = aligner.align(reference, target);
+		Assert.assertEquals(7, decisions.length);
+		Assert.assertSame(StrandAligner.Decision.FLIP, decisions[0]);
+		Assert.assertSame(StrandAligner.Decision.KEEP, decisions[1]);
+		Assert.assertSame(StrandAligner.Decision.FLIP, decisions[2]);
+		Assert.assertSame(StrandAligner.Decision.UNRESOLVED, decisions[3]);
+		Assert.assertSame(StrandAligner.Decision.UNRESOLVED, decisions[4]);
+		Assert.assertSame(StrandAligner.Decision.UNRESOLVED, decisions[5]);
+		Assert.assertSame(StrandAligner.Decision.KEEP, decisions[6]);
+
+		// A stricter threshold leaves the ambiguous marker unresolved.
+		aligner.setMaxAmbiguousMAF(0.1);
+		Assert.assertSame(StrandAligner.Decision.UNRESOLVED, aligner.align(reference, 2, target, 2));
+	}
+
+	public void testFlip() throws IOException {
+		StrandAligner.Decision[] decisions = new StrandAligner.Decision[TGT_MARKERS.length];
+		Arrays.fill(decisions, StrandAligner.Decision.KEEP);
+		decisions[0] = StrandAligner.Decision.FLIP;
+		decisions[2] = StrandAligner.Decision.FLIP;
+		decisions[6] = StrandAligner.Decision.FLIP;
+		StringWriter out = new StringWriter();
+		aligner.flip(createPED(TGT_ALLELES, " "), out, decisions, 3);
+		String[] lines = out.toString().split("\n");
+		Assert.assertEquals(5, lines.length);
+		Assert.assertEquals("s1\t1\t0\t0\t1\t-9\tA\tA\tA\tA\tT\tT\tC\tC\tA\tA\tA\tA\t0\t0", lines[0]);
+		Assert.assertEquals("s5\t1\t0\t0\t1\t-9\tG\tG\tG\tG\tA\tA\tG\tG\tC\tC\tA\tA\t0\t0", lines[4]);
+	}
+
+	public void testBadLine() throws IOException {
+		try {
+			aligner.summarize(createMarkers(REF_MARKERS), new BufferedReader(new StringReader("s1 1 0 0 1 -9 A A\n")), 1);
+			Assert.fail();
+		}
+		catch (IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+	}
+
+	private static List<SNP> createMarkers(String[] names) {
+		List<SNP> markers = new ArrayList<SNP>();
+		for (int i = 0; i < names.length; i++) {
+			markers.add(new DefaultSNP(names[i], "1", 1000 * (i + 1)));
+		}
+		return markers;
+	}
+
+	// Builds a PED file with one line per pair of alleles in each marker string.
+	private static BufferedReader createPED(String[] alleles, String delimiter) {
+		StringBuilder builder = new StringBuilder();
+		for (int s = 0; s < alleles[0].length() / 2; s++) {
+			builder.append("s" + (s + 1)).append(delimiter).append("1").append(delimiter).append("0").append(delimiter).append("0").append(delimiter).append("1").append(delimiter).append("-9");
+			for (int i = 0; i < alleles.length; i++) {
+				builder.append(delimiter).append(alleles[i].charAt(2 * s)).append(delimiter).append(alleles[i].charAt(2 * s + 1));
+			}
+			builder.append('\n');
+		}
+		return new BufferedReader(new StringReader(builder.toString()));
+	}
+}